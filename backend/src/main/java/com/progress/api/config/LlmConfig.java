@@ -0,0 +1,83 @@
+package com.progress.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.service.LlmRateLimiter;
+import com.progress.api.service.LlmRouter;
+import com.progress.api.service.LlmUsageRecorder;
+import com.progress.api.service.OpenAiCompatibleClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(LlmProperties.class)
+public class LlmConfig {
+
+    /**
+     * The primary provider, bound from the {@code groq} block.
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "groq")
+    public LlmProperties.Provider groqProvider() {
+        LlmProperties.Provider provider = new LlmProperties.Provider();
+        provider.setName("groq");
+        provider.setBaseUrl("https://api.groq.com/openai/v1");
+        provider.setModel("llama-3.3-70b-versatile");
+        return provider;
+    }
+
+    @Bean
+    public LlmRouter llmRouter(
+            LlmProperties properties,
+            LlmProperties.Provider groqProvider,
+            ObjectMapper objectMapper,
+            LlmUsageRecorder usageRecorder,
+            MeterRegistry meterRegistry) {
+        List<LlmProperties.Provider> providers = new ArrayList<>();
+        providers.add(groqProvider);
+        providers.addAll(properties.getProviders());
+        for (LlmProperties.Provider provider : providers) {
+            if (provider.getName() == null || provider.getName().isBlank()) {
+                throw new IllegalStateException("Every llm.providers entry needs a name");
+            }
+        }
+
+        List<OpenAiCompatibleClient> clients = providers.stream()
+                .map(provider -> client(provider, objectMapper, usageRecorder, meterRegistry))
+                .toList();
+        return new LlmRouter(clients, properties.getDeadlineMs(), meterRegistry);
+    }
+
+    private OpenAiCompatibleClient client(
+            LlmProperties.Provider provider,
+            ObjectMapper objectMapper,
+            LlmUsageRecorder usageRecorder,
+            MeterRegistry meterRegistry) {
+        LlmProperties.RateLimit rateLimit = provider.getRateLimit();
+        usageRecorder.price(provider.getName(),
+                provider.getPricing().getPromptPerMillion(),
+                provider.getPricing().getCompletionPerMillion());
+        LlmRateLimiter rateLimiter = new LlmRateLimiter(
+                provider.getName(),
+                rateLimit.getRequestsPerMinute(),
+                rateLimit.getTokensPerMinute(),
+                rateLimit.getCompletionTokenEstimate(),
+                rateLimit.getMaxWaitMs(),
+                rateLimit.getMaxQueued(),
+                meterRegistry);
+        return new OpenAiCompatibleClient(
+                provider.getName(),
+                provider.getApiKey(),
+                provider.getBaseUrl(),
+                provider.getModel(),
+                provider.getTimeout(),
+                objectMapper,
+                rateLimiter,
+                usageRecorder);
+    }
+}
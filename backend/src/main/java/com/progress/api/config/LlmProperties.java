@@ -0,0 +1,52 @@
+package com.progress.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LLM providers beyond the primary {@code groq} block, which keeps its own prefix so existing
+ * deployments need no changes. Every provider must speak the OpenAI chat completions API.
+ */
+@Data
+@ConfigurationProperties(prefix = "llm")
+public class LlmProperties {
+
+    /**
+     * Time budget for one completion, including failover to other providers.
+     */
+    private long deadlineMs = 45000;
+
+    private List<Provider> providers = new ArrayList<>();
+
+    @Data
+    public static class Provider {
+        private String name;
+        private String apiKey;
+        private String baseUrl;
+        private String model;
+        private int timeout = 30000;
+        private RateLimit rateLimit = new RateLimit();
+        private Pricing pricing = new Pricing();
+    }
+
+    /**
+     * Price in USD per million tokens; zero leaves the provider's calls uncosted.
+     */
+    @Data
+    public static class Pricing {
+        private double promptPerMillion;
+        private double completionPerMillion;
+    }
+
+    @Data
+    public static class RateLimit {
+        private long requestsPerMinute = 30;
+        private long tokensPerMinute = 12000;
+        private int completionTokenEstimate = 512;
+        private long maxWaitMs = 10000;
+        private int maxQueued = 20;
+    }
+}
@@ -0,0 +1,20 @@
+package com.progress.api.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    /** Pub/sub subscriptions of the Redis blacklist and token store, created only when one of them is in use */
+    @Bean
+    @ConditionalOnExpression("'${token-blacklist.type:in-memory}' == 'redis' or '${external-token-store.type:in-memory}' == 'redis'")
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
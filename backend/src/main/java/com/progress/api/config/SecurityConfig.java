@@ -54,7 +54,8 @@ public class SecurityConfig {
                                 .authorizeHttpRequests(auth -> auth
                                                 .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                                                 .requestMatchers("/api/auth/**").permitAll()
-                                                .requestMatchers("/actuator/**").permitAll()
+                                                // other actuator endpoints (metrics, llmusage) need a valid JWT when exposed
+                                                .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/info").permitAll()
                                                 .requestMatchers(
                                                                 "/swagger-ui/**",
                                                                 "/swagger-ui.html",
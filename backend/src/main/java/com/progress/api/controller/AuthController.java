@@ -5,6 +5,7 @@ import com.progress.api.dto.LoginResponse;
 import com.progress.api.dto.LogoutResponse;
 import com.progress.api.exception.ApiException;
 import com.progress.api.security.JwtTokenProvider;
+import com.progress.api.security.VerifiedToken;
 import com.progress.api.service.AuthService;
 import com.progress.api.service.TokenBlacklist;
 import io.swagger.v3.oas.annotations.Operation;
@@ -26,6 +27,8 @@ import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 @Slf4j
 @RestController
@@ -74,25 +77,41 @@ public class AuthController {
                 throw new ApiException("No refresh token provided", HttpStatus.UNAUTHORIZED);
             }
 
-            if (!jwtTokenProvider.isTokenValid(refreshToken)) {
+            Optional<VerifiedToken> verified = jwtTokenProvider.verify(refreshToken);
+            if (verified.isEmpty() || !verified.get().isRefreshToken()) {
                 clearRefreshTokenCookie(response);
                 throw new ApiException("Invalid or expired refresh token", HttpStatus.UNAUTHORIZED);
             }
 
-            if (tokenBlacklist.isBlacklisted(refreshToken)) {
+            String uuid = verified.get().subject();
+
+            if (tokenBlacklist.isBlacklisted(refreshToken, verified.get().expiresAt())) {
                 clearRefreshTokenCookie(response);
                 throw new ApiException("Refresh token has been revoked", HttpStatus.UNAUTHORIZED);
             }
 
-            String uuid = jwtTokenProvider.extractUuid(refreshToken);
+            if (jwtTokenProvider.isStateless()) {
+                return ResponseEntity.ok(refreshStateless(verified.get()));
+            }
 
-            // Generate new tokens (external token remains in server-side storage)
-            String newAccessToken = jwtTokenProvider.generateToken(uuid);
-            String newRefreshToken = jwtTokenProvider.generateRefreshToken(uuid);
+            if (verified.get().family() == null) {
+                // issued before refresh families existed
+                clearRefreshTokenCookie(response);
+                throw new ApiException("Session must be renewed, please log in again", HttpStatus.UNAUTHORIZED);
+            }
 
-            // Blacklist the old refresh token (rotate refresh tokens)
-            long oldExpiration = jwtTokenProvider.extractExpiration(refreshToken);
-            tokenBlacklist.blacklist(refreshToken, oldExpiration);
+            // Rotate within this login's family; a replayed token ends the family, other devices keep theirs
+            OptionalLong sequence = authService.renewSession(verified.get());
+            if (sequence.isEmpty()) {
+                clearRefreshTokenCookie(response);
+                throw new ApiException("Refresh token has been revoked", HttpStatus.UNAUTHORIZED);
+            }
+
+            // Generate new tokens (external token remains in server-side storage)
+            long sessionVersion = verified.get().version();
+            String newAccessToken = jwtTokenProvider.generateToken(uuid, sessionVersion);
+            String newRefreshToken = jwtTokenProvider.generateRefreshToken(uuid, sessionVersion,
+                    verified.get().family(), sequence.getAsLong());
 
             setRefreshTokenCookie(response, newRefreshToken);
 
@@ -114,6 +133,27 @@ public class AuthController {
         }
     }
 
+    /**
+     * Stateless refresh: issues a new access token from the external token sealed in the refresh
+     * token. The refresh token is not rotated, so the blacklist only grows on logout.
+     */
+    private LoginResponse refreshStateless(VerifiedToken refreshToken) {
+        if (refreshToken.externalToken() == null) {
+            throw new ApiException("Session must be renewed, please log in again", HttpStatus.UNAUTHORIZED);
+        }
+        String uuid = refreshToken.subject();
+        String newAccessToken = jwtTokenProvider.generateStatelessToken(uuid, refreshToken.externalToken());
+
+        log.debug("Stateless token refreshed for uuid: {}", uuid);
+
+        return LoginResponse.builder()
+                .token(newAccessToken)
+                .uuid(uuid)
+                .message("Token refreshed successfully")
+                .refreshToken(null)
+                .build();
+    }
+
     @PostMapping("/logout")
     @Operation(summary = "Logout", description = "Invalidate the current JWT token and clear refresh cookie")
     @SecurityRequirement(name = "bearerAuth")
@@ -125,30 +165,22 @@ public class AuthController {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            try {
-                uuid = jwtTokenProvider.extractUuid(token);
-                long expirationTimeMs = jwtTokenProvider.extractExpiration(token);
-                tokenBlacklist.blacklist(token, expirationTimeMs);
-            } catch (Exception e) {
-                log.warn("Could not blacklist access token: {}", e.getMessage());
-            }
+            uuid = revokeIfStateless(token);
         }
 
         String refreshToken = extractRefreshTokenFromCookie(request);
         if (refreshToken != null) {
-            try {
-                if (uuid == null) {
-                    uuid = jwtTokenProvider.extractUuid(refreshToken);
-                }
-                long expirationTimeMs = jwtTokenProvider.extractExpiration(refreshToken);
-                tokenBlacklist.blacklist(refreshToken, expirationTimeMs);
-            } catch (Exception e) {
-                log.warn("Could not blacklist refresh token: {}", e.getMessage());
+            String refreshUuid = revokeIfStateless(refreshToken);
+            if (uuid == null) {
+                uuid = refreshUuid;
             }
         }
 
-        // Remove external token from server-side storage
-        if (uuid != null) {
+        if (uuid == null) {
+            log.warn("Logout without a valid access or refresh token; nothing to revoke");
+        } else if (!jwtTokenProvider.isStateless()) {
+            // Revoke every token of the session and remove external token from server-side storage
+            authService.revokeSessions(uuid);
             authService.removeExternalToken(uuid);
         }
 
@@ -163,6 +195,18 @@ public class AuthController {
                         .build());
     }
 
+    /**
+     * Subject of a valid token. In stateless mode the token is also blacklisted, which is the
+     * only way to revoke it before it expires.
+     */
+    private String revokeIfStateless(String token) {
+        Optional<VerifiedToken> verified = jwtTokenProvider.verify(token);
+        if (verified.isPresent() && jwtTokenProvider.isStateless()) {
+            tokenBlacklist.blacklist(token, verified.get().expiresAt());
+        }
+        return verified.map(VerifiedToken::subject).orElse(null);
+    }
+
     private void setRefreshTokenCookie(HttpServletResponse response, String refreshToken) {
         Cookie cookie = new Cookie(REFRESH_TOKEN_COOKIE, refreshToken);
         cookie.setHttpOnly(true);
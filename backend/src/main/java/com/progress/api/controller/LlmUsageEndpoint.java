@@ -0,0 +1,26 @@
+package com.progress.api.controller;
+
+import com.progress.api.dto.LlmUsageSnapshot;
+import com.progress.api.service.LlmUsageRecorder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/llmusage}: LLM calls, tokens, cost and latency percentiles over the recent
+ * window. Not exposed by default; once exposed it needs a valid JWT like any non-health actuator
+ * endpoint.
+ */
+@Component
+@Endpoint(id = "llmusage")
+@RequiredArgsConstructor
+public class LlmUsageEndpoint {
+
+    private final LlmUsageRecorder usageRecorder;
+
+    @ReadOperation
+    public LlmUsageSnapshot usage() {
+        return usageRecorder.snapshot();
+    }
+}
@@ -1,8 +1,12 @@
 package com.progress.api.controller;
 
+import com.progress.api.dto.RecommendationJobResponse;
 import com.progress.api.dto.RecommendationRequest;
 import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.exception.ApiException;
+import com.progress.api.service.RecommendationJobService;
 import com.progress.api.service.RecommendationService;
+import com.progress.api.service.SseHeartbeat;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -11,9 +15,18 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/recommendations")
@@ -23,6 +36,14 @@ import org.springframework.web.bind.annotation.*;
 public class RecommendationController {
 
         private final RecommendationService recommendationService;
+        private final RecommendationJobService recommendationJobService;
+
+        @Value("${recommendation.stream.heartbeat-seconds:15}")
+        private long heartbeatSeconds;
+
+        // below spring.mvc.async.request-timeout, so a job still queued ends with a pending event, not a timeout
+        @Value("${recommendation.jobs.events-timeout-seconds:50}")
+        private long jobEventsTimeoutSeconds;
 
         @PostMapping("/suggest")
         @Operation(summary = "Get AI recommendations", description = """
@@ -41,17 +62,90 @@ public class RecommendationController {
                         @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token"),
                         @ApiResponse(responseCode = "500", description = "Internal server error - AI service unavailable")
         })
-        public ResponseEntity<RecommendationResponse> getRecommendations(
+        public Mono<ResponseEntity<RecommendationResponse>> getRecommendations(
+                        Authentication authentication,
+                        @RequestBody(required = false) RecommendationRequest request) {
+                String uuid = (String) authentication.getPrincipal();
+                String externalToken = (String) authentication.getCredentials();
+
+                return recommendationService.getRecommendations(uuid, externalToken, request)
+                                .map(ResponseEntity::ok);
+        }
+
+        @PostMapping(value = "/suggest/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        @Operation(summary = "Stream AI recommendations", description = """
+                        Same analysis as /suggest, delivered as server-sent events while the model is still writing.
+
+                        Events, in order:
+                        - status: the student's current academic status
+                        - recommendation: one per option, as soon as the model has finished it
+                        - complete: the final response, sorted by match score, with the summary
+                        - error: sent instead of the remaining events if generation fails
+
+                        Comment lines are sent while waiting so a closed connection is noticed; closing it
+                        cancels the generation.
+                        """)
+        public Flux<ServerSentEvent<Object>> streamRecommendations(
+                        Authentication authentication,
+                        @RequestBody(required = false) RecommendationRequest request) {
+                String uuid = (String) authentication.getPrincipal();
+                String externalToken = (String) authentication.getCredentials();
+
+                return SseHeartbeat.wrap(recommendationService.streamRecommendations(uuid, externalToken, request),
+                                Duration.ofSeconds(heartbeatSeconds));
+        }
+
+        @PostMapping("/jobs")
+        @Operation(summary = "Queue AI recommendations", description = """
+                        Queues the same analysis as /suggest and returns a job id straight away.
+                        Poll GET /jobs/{jobId} or subscribe to GET /jobs/{jobId}/events for the result.
+                        """)
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "202", description = "Job queued", content = @Content(schema = @Schema(implementation = RecommendationJobResponse.class))),
+                        @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing token"),
+                        @ApiResponse(responseCode = "503", description = "Queue full - retry after the number of seconds in Retry-After")
+        })
+        public ResponseEntity<RecommendationJobResponse> submitJob(
                         Authentication authentication,
                         @RequestBody(required = false) RecommendationRequest request) {
                 String uuid = (String) authentication.getPrincipal();
                 String externalToken = (String) authentication.getCredentials();
 
-                RecommendationResponse response = recommendationService.getRecommendations(
-                                uuid,
-                                externalToken,
-                                request);
+                RecommendationJobResponse job = recommendationJobService.submit(uuid, externalToken, request);
+                return ResponseEntity.accepted()
+                                .location(URI.create("/api/recommendations/jobs/" + job.getJobId()))
+                                .body(job);
+        }
+
+        @GetMapping("/jobs/{jobId}")
+        @Operation(summary = "Get recommendation job", description = "Returns the job status, and the result once it has completed")
+        public ResponseEntity<RecommendationJobResponse> getJob(
+                        Authentication authentication,
+                        @PathVariable String jobId) {
+                String uuid = (String) authentication.getPrincipal();
+                return ResponseEntity.ok(recommendationJobService.getJob(jobId, uuid));
+        }
 
-                return ResponseEntity.ok(response);
+        @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        @Operation(summary = "Subscribe to recommendation job", description = """
+                        Sends a single complete event when the job finishes. A job that is still queued or
+                        running after recommendation.jobs.events-timeout-seconds ends the stream with a
+                        pending event carrying its current state; poll GET /jobs/{jobId} or subscribe again.
+                        """)
+        public Flux<ServerSentEvent<Object>> subscribeToJob(
+                        Authentication authentication,
+                        @PathVariable String jobId) {
+                String uuid = (String) authentication.getPrincipal();
+                return SseHeartbeat.wrap(Mono.defer(() -> recommendationJobService.awaitJob(jobId, uuid))
+                                .map(job -> ServerSentEvent.<Object>builder(job).event("complete").build())
+                                .timeout(Duration.ofSeconds(jobEventsTimeoutSeconds), Mono.fromSupplier(() -> ServerSentEvent
+                                                .<Object>builder(recommendationJobService.getJob(jobId, uuid))
+                                                .event("pending")
+                                                .build()))
+                                .onErrorResume(ApiException.class, e -> Mono.just(ServerSentEvent
+                                                .<Object>builder(Map.of("message", e.getMessage()))
+                                                .event("error")
+                                                .build()))
+                                .flux(), Duration.ofSeconds(heartbeatSeconds));
         }
 }
@@ -0,0 +1,55 @@
+package com.progress.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LlmUsageSnapshot {
+
+    private Instant from;
+
+    private Instant to;
+
+    private Usage total;
+
+    /**
+     * Usage per {@code provider/model}.
+     */
+    private Map<String, Usage> byModel;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Usage {
+        private long calls;
+        private Map<String, Long> outcomes;
+        private long promptTokens;
+        private long completionTokens;
+        private long totalTokens;
+        private double costUsd;
+        private double callsPerMinute;
+        private double tokensPerMinute;
+        private Latency latencyMs;
+        private Latency ttfbMs;
+        private Latency queueMs;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Latency {
+        private long p50;
+        private long p95;
+        private long max;
+    }
+}
@@ -0,0 +1,34 @@
+package com.progress.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationJobResponse {
+
+    private String jobId;
+
+    private JobStatus status;
+
+    private Instant submittedAt;
+
+    private Instant completedAt;
+
+    private RecommendationResponse result;
+
+    private String error;
+
+    public enum JobStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
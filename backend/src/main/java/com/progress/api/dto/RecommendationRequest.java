@@ -21,4 +21,9 @@ public class RecommendationRequest {
     private String universityCode;
 
     private String additionalContext;
+
+    /**
+     * {@code "quick"} skips the LLM and returns the local key-subject ranking straight away.
+     */
+    private String mode;
 }
@@ -8,8 +8,16 @@ public class ApiException extends RuntimeException {
     
     private final HttpStatus status;
 
+    /** Seconds the client should wait before retrying, sent as {@code Retry-After}; null when not applicable. */
+    private final Long retryAfterSeconds;
+
     public ApiException(String message, HttpStatus status) {
+        this(message, status, null);
+    }
+
+    public ApiException(String message, HttpStatus status, Long retryAfterSeconds) {
         super(message);
         this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 }
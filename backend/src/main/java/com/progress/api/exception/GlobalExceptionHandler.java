@@ -1,6 +1,7 @@
 package com.progress.api.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -20,7 +21,13 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(ApiException.class)
     public ResponseEntity<Map<String, Object>> handleApiException(ApiException ex) {
         log.error("API Exception: {}", ex.getMessage());
-        return buildErrorResponse(ex.getMessage(), ex.getStatus());
+        ResponseEntity<Map<String, Object>> response = buildErrorResponse(ex.getMessage(), ex.getStatus());
+        if (ex.getRetryAfterSeconds() != null) {
+            return ResponseEntity.status(response.getStatusCode())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                    .body(response.getBody());
+        }
+        return response;
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
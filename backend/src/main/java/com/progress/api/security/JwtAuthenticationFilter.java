@@ -50,27 +50,48 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         log.debug("Processing JWT for request: {} {}", request.getMethod(), request.getRequestURI());
 
-        if (tokenBlacklist.isBlacklisted(jwt)) {
+        Optional<VerifiedToken> verified = jwtTokenProvider.verify(jwt);
+
+        if (verified.isPresent() && !verified.get().isAccessToken()) {
+            // refresh tokens live much longer and are only meant for /api/auth/refresh
+            log.debug("Rejected {} token used as a bearer token", verified.get().type());
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (verified.isPresent() && tokenBlacklist.isBlacklisted(jwt, verified.get().expiresAt())) {
             log.debug("Rejected blacklisted token");
             filterChain.doFilter(request, response);
             return;
         }
 
-        if (jwtTokenProvider.isTokenValid(jwt)) {
-            uuid = jwtTokenProvider.extractUuid(jwt);
+        if (verified.isPresent()) {
+            uuid = verified.get().subject();
             log.debug("JWT valid for UUID: {}", uuid);
-            
-            // Retrieve external token from server-side storage
-            Optional<String> externalTokenOpt = externalTokenStore.retrieve(uuid);
-            
-            if (externalTokenOpt.isEmpty()) {
-                log.warn("No external token found for UUID: {}, session may have expired", uuid);
-                filterChain.doFilter(request, response);
-                return;
-            }
 
-            String externalToken = externalTokenOpt.get();
-            log.debug("External token retrieved, setting security context");
+            String externalToken = verified.get().externalToken();
+            if (externalToken == null) {
+                // Retrieve external token and session version from server-side storage
+                Optional<ExternalTokenStore.Session> sessionOpt = externalTokenStore.retrieveSession(uuid);
+
+                if (sessionOpt.isEmpty()) {
+                    log.warn("No external token found for UUID: {}, session may have expired", uuid);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+
+                if (sessionOpt.get().version() != verified.get().version()) {
+                    log.debug("Rejected token from revoked session version for UUID: {}", uuid);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+
+                externalToken = sessionOpt.get().externalToken();
+                log.debug("External token retrieved, setting security context");
+            } else {
+                // stateless token: the external token came sealed inside the JWT
+                log.debug("External token carried by the JWT, setting security context");
+            }
 
             UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                     uuid,
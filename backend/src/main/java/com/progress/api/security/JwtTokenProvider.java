@@ -1,15 +1,30 @@
 package com.progress.api.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+@Slf4j
 @Component
 public class JwtTokenProvider {
 
@@ -21,18 +36,112 @@ public class JwtTokenProvider {
 
     @Value("${jwt.refresh-expiration}")
     private long refreshExpiration;
+
+    @Value("${jwt.verified-cache.max-entries:10000}")
+    private int verifiedCacheMaxEntries;
+
+    @Value("${jwt.session-mode:stateful}")
+    private String sessionMode;
+
+    @Value("${jwt.stateless.encryption-key:}")
+    private String encryptionKey;
+
+    @Value("${jwt.stateless.expiration:300000}")
+    private long statelessExpiration;
+
+    // built once from the secret; the parser is immutable and thread-safe
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+    private volatile SecretKey contentKey;
+    private volatile JwtParser decrypter;
+
+    /**
+     * Recently verified tokens by SHA-256 digest, so a token presented on every request pays
+     * for HMAC verification and claims parsing once. Entries are only valid until the token expires.
+     */
+    private final Map<ByteBuffer, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    // where the next eviction sample resumes, so successive samples cover different entries
+    private Iterator<Map.Entry<ByteBuffer, VerifiedToken>> evictionSweep;
     
+    private static final int EVICTION_SAMPLE = 8;
+
+    /** Values of the {@code type} claim */
+    public static final String ACCESS_TOKEN = "access";
+    public static final String REFRESH_TOKEN = "refresh";
+
+    private static final String VERSION_CLAIM = "ver";
+    private static final String EXTERNAL_TOKEN_CLAIM = "ext";
+    private static final String FAMILY_CLAIM = "fam";
+    private static final String SEQUENCE_CLAIM = "seq";
+
+    /** Fails startup rather than the first login when stateless mode has no usable key */
+    @PostConstruct
+    void checkStatelessKey() {
+        if (isStateless()) {
+            getContentKey();
+        }
+    }
+
+    /**
+     * Whether sessions are carried by the tokens themselves: the PROGRES token travels inside
+     * the access and refresh tokens as an encrypted claim and nothing is kept server-side.
+     */
+    public boolean isStateless() {
+        return "stateless".equalsIgnoreCase(sessionMode);
+    }
+
     public String generateToken(String uuid) {
-        return buildToken(uuid, jwtExpiration, "access");
-    }    
+        return generateToken(uuid, 0);
+    }
     public String generateRefreshToken(String uuid) {
-        return buildToken(uuid, refreshExpiration, "refresh");
+        return generateRefreshToken(uuid, 0);
     }
 
-    private String buildToken(String uuid, long expiration, String tokenType) {
+    /** Access token bound to a session version; version 0 issues an unversioned token */
+    public String generateToken(String uuid, long sessionVersion) {
+        return buildToken(uuid, jwtExpiration, ACCESS_TOKEN, sessionVersion);
+    }
+    public String generateRefreshToken(String uuid, long sessionVersion) {
+        return buildToken(uuid, refreshExpiration, REFRESH_TOKEN, sessionVersion);
+    }
+
+    /**
+     * Refresh token of one login's family; each rotation issues the next sequence, so the store
+     * can tell the current token from ones it already replaced.
+     */
+    public String generateRefreshToken(String uuid, long sessionVersion, String family, long sequence) {
+        return buildToken(uuid, refreshExpiration, REFRESH_TOKEN, sessionVersion, null, family, sequence);
+    }
+
+    /**
+     * Stateless access token: the external token is sealed into a nested JWE (direct AES-256-GCM
+     * under {@code jwt.stateless.encryption-key}) so the filter needs no store lookup. Lives for
+     * {@code jwt.stateless.expiration}, since nothing can revoke it other than the blacklist.
+     */
+    public String generateStatelessToken(String uuid, String externalToken) {
+        return buildToken(uuid, statelessExpiration, ACCESS_TOKEN, 0, seal(externalToken));
+    }
+    public String generateStatelessRefreshToken(String uuid, String externalToken) {
+        return buildToken(uuid, refreshExpiration, REFRESH_TOKEN, 0, seal(externalToken));
+    }
+
+    private String buildToken(String uuid, long expiration, String tokenType, long sessionVersion) {
+        return buildToken(uuid, expiration, tokenType, sessionVersion, null);
+    }
+
+    private String buildToken(String uuid, long expiration, String tokenType, long sessionVersion, String sealedExternalToken) {
+        return buildToken(uuid, expiration, tokenType, sessionVersion, sealedExternalToken, null, 0);
+    }
+
+    private String buildToken(String uuid, long expiration, String tokenType, long sessionVersion,
+            String sealedExternalToken, String family, long sequence) {
         return Jwts.builder()
                 .subject(uuid)
                 .claim("type", tokenType)
+                .claim(VERSION_CLAIM, sessionVersion > 0 ? sessionVersion : null)
+                .claim(EXTERNAL_TOKEN_CLAIM, sealedExternalToken)
+                .claim(FAMILY_CLAIM, family)
+                .claim(SEQUENCE_CLAIM, family != null ? sequence : null)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(getSignInKey())
@@ -48,15 +157,101 @@ public class JwtTokenProvider {
     }
 
     public boolean isTokenValid(String token) {
+        return verify(token).isPresent();
+    }
+
+    /**
+     * Checks the token's signature and expiry once and returns its claims, or empty if the
+     * token is malformed, forged or expired.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        ByteBuffer digest = digest(token);
+        VerifiedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return Optional.of(cached);
+            }
+            verifiedTokens.remove(digest);
+            return Optional.empty();
+        }
+
+        VerifiedToken verified;
+        try {
+            Claims claims = extractAllClaims(token);
+            Long version = claims.get(VERSION_CLAIM, Long.class);
+            String sealed = claims.get(EXTERNAL_TOKEN_CLAIM, String.class);
+            Long sequence = claims.get(SEQUENCE_CLAIM, Long.class);
+            verified = new VerifiedToken(claims.getSubject(), claims.get("type", String.class),
+                    version == null ? 0 : version, claims.getExpiration().getTime(),
+                    sealed == null ? null : unseal(sealed), claims.get(FAMILY_CLAIM, String.class),
+                    sequence == null ? 0 : sequence);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (verified.isExpired()) {
+            return Optional.empty();
+        }
+        cacheVerified(digest, verified);
+        return Optional.of(verified);
+    }
+
+    private void cacheVerified(ByteBuffer digest, VerifiedToken verified) {
+        if (verifiedTokens.size() >= verifiedCacheMaxEntries) {
+            evictSoonestExpiring();
+        }
+        verifiedTokens.put(digest, verified);
+    }
+
+    /**
+     * Makes room for a new token by dropping the one that expires soonest among a few sampled
+     * entries, so an expired entry always goes first and the cache keeps taking new tokens.
+     */
+    private synchronized void evictSoonestExpiring() {
+        Map.Entry<ByteBuffer, VerifiedToken> victim = null;
+        int remaining = Math.min(EVICTION_SAMPLE, verifiedTokens.size());
+        while (remaining-- > 0) {
+            if (evictionSweep == null || !evictionSweep.hasNext()) {
+                evictionSweep = verifiedTokens.entrySet().iterator();
+                if (!evictionSweep.hasNext()) {
+                    break;
+                }
+            }
+            Map.Entry<ByteBuffer, VerifiedToken> candidate = evictionSweep.next();
+            if (victim == null || candidate.getValue().expiresAt() < victim.getValue().expiresAt()) {
+                victim = candidate;
+            }
+        }
+        if (victim != null) {
+            verifiedTokens.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    int verifiedCacheSize() {
+        return verifiedTokens.size();
+    }
+
+    private static ByteBuffer digest(String token) {
         try {
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpirationDate(token).before(new Date());
+    @Scheduled(fixedRate = 300000)
+    public void cleanupVerifiedTokens() {
+        int beforeSize = verifiedTokens.size();
+
+        verifiedTokens.values().removeIf(VerifiedToken::isExpired);
+
+        int removed = beforeSize - verifiedTokens.size();
+        if (removed > 0) {
+            log.debug("Evicted {} expired verified tokens. Remaining: {}", removed, verifiedTokens.size());
+        }
     }
 
     public long extractExpiration(String token) {
@@ -73,19 +268,63 @@ public class JwtTokenProvider {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
+    private String seal(String externalToken) {
+        return Jwts.builder()
+                .content(externalToken.getBytes(StandardCharsets.UTF_8))
+                .encryptWith(getContentKey(), Jwts.ENC.A256GCM)
+                .compact();
+    }
+
+    private String unseal(String sealed) {
+        JwtParser current = decrypter;
+        if (current == null) {
+            current = Jwts.parser().decryptWith(getContentKey()).build();
+            decrypter = current;
+        }
+        return new String(current.parseEncryptedContent(sealed).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private SecretKey getContentKey() {
+        SecretKey current = contentKey;
+        if (current == null) {
+            if (encryptionKey == null || encryptionKey.isBlank()) {
+                throw new IllegalStateException("jwt.stateless.encryption-key is required for stateless sessions");
+            }
+            byte[] keyBytes = Decoders.BASE64.decode(encryptionKey);
+            if (keyBytes.length != 32) {
+                throw new IllegalStateException("jwt.stateless.encryption-key must be a base64 256-bit key");
+            }
+            current = new SecretKeySpec(keyBytes, "AES");
+            contentKey = current;
+        }
+        return current;
+    }
+
+    private JwtParser getParser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parser().verifyWith(getSignInKey()).build();
+            parser = current;
+        }
+        return current;
+    }
+
     private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        SecretKey current = signingKey;
+        if (current == null) {
+            byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+            current = Keys.hmacShaKeyFor(keyBytes);
+            signingKey = current;
+        }
+        return current;
     }
     public long getJwtExpiration() {
-        return jwtExpiration;
+        return isStateless() ? statelessExpiration : jwtExpiration;
     }    
     public long getRefreshExpiration() {
         return refreshExpiration;
@@ -0,0 +1,36 @@
+package com.progress.api.security;
+
+/**
+ * The claims of a JWT whose signature and expiry have been checked.
+ *
+ * @param version       session version the token was issued under, 0 for tokens issued without one
+ * @param expiresAt     expiry in epoch milliseconds
+ * @param externalToken PROGRES token carried by a stateless token, already decrypted; null otherwise
+ * @param family        refresh family (one per login) of a stateful refresh token; null otherwise
+ * @param sequence      position of a refresh token within its family, 0 without one
+ */
+public record VerifiedToken(String subject, String type, long version, long expiresAt, String externalToken,
+        String family, long sequence) {
+
+    public VerifiedToken(String subject, String type, long version, long expiresAt) {
+        this(subject, type, version, expiresAt, null);
+    }
+
+    public VerifiedToken(String subject, String type, long version, long expiresAt, String externalToken) {
+        this(subject, type, version, expiresAt, externalToken, null, 0);
+    }
+
+    /** Only access tokens authenticate API calls */
+    public boolean isAccessToken() {
+        return JwtTokenProvider.ACCESS_TOKEN.equals(type);
+    }
+
+    /** Only refresh tokens can be exchanged for new tokens */
+    public boolean isRefreshToken() {
+        return JwtTokenProvider.REFRESH_TOKEN.equals(type);
+    }
+
+    public boolean isExpired() {
+        return expiresAt <= System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,544 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+record UniversityLookupResult(JsonNode structure, boolean isSupported, String fallbackName) {
+}
+
+/**
+ * The next-level options for one catalogue position, with their prompt block pre-rendered and
+ * a lexical index over them. Nodes are shared across requests, so the tree must not be modified.
+ * The key identifies the position across restarts.
+ */
+record CatalogNode(String key, JsonNode availableOptions, String rendered, OptionIndex index) {
+
+    static CatalogNode of(String key, JsonNode availableOptions) {
+        return new CatalogNode(key, availableOptions, availableOptions.toPrettyString(),
+                OptionIndex.build(availableOptions.path("availableOptions")));
+    }
+}
+
+/**
+ * A position a student can hold: a level within a field, narrowed by their major at L2 or their
+ * speciality at L3 when known. Names are the catalogue's own.
+ */
+record CatalogPosition(String university, String field, String levelCode, String major, String speciality,
+        CatalogNode node) {
+}
+
+/**
+ * In-memory view of {@code data/academic-structure.json}. The catalogue is static, so it is
+ * parsed once at startup and every lookup afterwards is a pure in-memory walk. The options for
+ * every (field, level, parent major or speciality) position are built and rendered up front too.
+ */
+@Slf4j
+@Component
+public class AcademicCatalog {
+
+    private static final String CATALOG_PATH = "data/academic-structure.json";
+    private static final List<String> LEVEL_CODES =
+            List.of("L1", "L2", "L3", "M1", "M2", "1CPI", "2CPI", "1CS", "2CS", "3CS");
+
+    private final ObjectMapper objectMapper;
+    private final JsonNode universities;
+    /** Per field node (by identity), the catalogue nodes keyed by level code and parent code. */
+    private final Map<JsonNode, Map<String, CatalogNode>> nodes;
+    private final List<CatalogPosition> positions;
+
+    public AcademicCatalog(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.universities = load(objectMapper).path("universities");
+        List<CatalogPosition> built = new ArrayList<>();
+        this.nodes = buildNodes(built);
+        this.positions = List.copyOf(built);
+    }
+
+    private static JsonNode load(ObjectMapper objectMapper) {
+        ClassPathResource resource = new ClassPathResource(CATALOG_PATH);
+        try (InputStream is = resource.getInputStream()) {
+            return objectMapper.readTree(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load academic catalogue from " + CATALOG_PATH, e);
+        }
+    }
+
+    private String normalizeUniversityName(String name) {
+        if (name == null || name.isBlank())
+            return null;
+        return name.toLowerCase()
+                .replaceAll("[àáâãäå]", "a")
+                .replaceAll("[èéêë]", "e")
+                .replaceAll("[ìíîï]", "i")
+                .replaceAll("[òóôõö]", "o")
+                .replaceAll("[ùúûü]", "u")
+                .replaceAll("[ç]", "c")
+                .replaceAll("[^a-z0-9\\s]", "")
+                .trim()
+                .replaceAll("\\s+", "_");
+    }
+
+    public UniversityLookupResult lookupUniversity(String universityName) {
+        if (universityName == null || universityName.isBlank()) {
+            Map.Entry<String, JsonNode> first = universities.fields().next();
+            String fallbackName = first.getValue().path("name").asText();
+            log.info("No university specified, using default: {}", fallbackName);
+            return new UniversityLookupResult(first.getValue(), false, fallbackName);
+        }
+
+        String normalizedKey = normalizeUniversityName(universityName);
+        log.info("Looking for university with key: {}", normalizedKey);
+
+        JsonNode university = universities.path(normalizedKey);
+        if (!university.isMissingNode()) {
+            log.info("Found exact match for university: {}", university.path("name").asText());
+            return new UniversityLookupResult(university, true, null);
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> fields = universities.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            String key = entry.getKey();
+
+            if (key.contains(normalizedKey) || normalizedKey.contains(key)) {
+                log.info("Found partial match for university: {}", entry.getValue().path("name").asText());
+                return new UniversityLookupResult(entry.getValue(), true, null);
+            }
+        }
+
+        Map.Entry<String, JsonNode> first = universities.fields().next();
+        String fallbackName = first.getValue().path("name").asText();
+        log.warn("No match found for '{}', using fallback: {}", universityName, fallbackName);
+        return new UniversityLookupResult(first.getValue(), false, fallbackName);
+    }
+
+    public String[] getUniversityInfo(JsonNode structure) {
+        return new String[] {
+                structure.path("name").asText("Unknown University"),
+                structure.path("nameAr").asText("")
+        };
+    }
+
+    public JsonNode findAvailableOptions(JsonNode structure, String currentField, String currentLevel,
+            String currentMajor, String currentSpeciality) {
+        CatalogNode node = findNode(structure, currentField, currentLevel, currentMajor, currentSpeciality);
+        return node != null ? node.availableOptions() : null;
+    }
+
+    /**
+     * The pre-built catalogue node for the student's position, or null if their field is not
+     * in the catalogue.
+     */
+    CatalogNode findNode(JsonNode structure, String currentField, String currentLevel,
+            String currentMajor, String currentSpeciality) {
+        JsonNode fields = structure.path("fields");
+        if (!fields.isArray() || currentField == null) {
+            return null; // Field not supported
+        }
+
+        String normalizedCurrentField = normalizeFieldName(currentField);
+        JsonNode matchedField = null;
+
+        // Find matching field
+        for (JsonNode field : fields) {
+            String fieldName = field.path("name").asText();
+            String fieldNameAr = field.path("nameAr").asText("");
+            String normalizedFieldName = normalizeFieldName(fieldName);
+
+            if (normalizedCurrentField.equals(normalizedFieldName) ||
+                    normalizedCurrentField.contains(normalizedFieldName) ||
+                    normalizedFieldName.contains(normalizedCurrentField) ||
+                    currentField.contains(fieldNameAr) ||
+                    fieldNameAr.contains(currentField)) {
+                log.info("Found field match: {} -> {}", currentField, fieldName);
+                matchedField = field;
+                break;
+            }
+        }
+
+        if (matchedField == null) {
+            log.warn("Field '{}' not found in academic structure", currentField);
+            return null; // Field not supported
+        }
+
+        String levelCode = extractLevelCode(currentLevel);
+        log.info("Extracted level code: {} from '{}'", levelCode, currentLevel);
+        JsonNode levels = matchedField.path("levels");
+        String parentCode = resolveParentCode(levels, levelCode, currentMajor, currentSpeciality);
+        String nodeKey = nodeKey(levelCode, parentCode);
+        CatalogNode node = nodes.getOrDefault(matchedField, Map.of()).get(nodeKey);
+        return node != null ? node
+                : CatalogNode.of(positionKey(structure, matchedField, nodeKey),
+                        extractNextOptions(levels, levelCode, parentCode));
+    }
+
+    /**
+     * Every position in the catalogue, each with its pre-built node.
+     */
+    List<CatalogPosition> positions() {
+        return positions;
+    }
+
+    private Map<JsonNode, Map<String, CatalogNode>> buildNodes(List<CatalogPosition> positions) {
+        Map<JsonNode, Map<String, CatalogNode>> built = new IdentityHashMap<>();
+        int count = 0;
+        for (JsonNode university : universities) {
+            for (JsonNode field : university.path("fields")) {
+                JsonNode levels = field.path("levels");
+                Map<String, CatalogNode> fieldNodes = new HashMap<>();
+                for (String levelCode : LEVEL_CODES) {
+                    List<JsonNode> parents = new ArrayList<>();
+                    parents.add(null);
+                    parents.addAll(parents(levels, levelCode));
+                    for (JsonNode parent : parents) {
+                        String parentCode = parent != null ? parent.path("code").asText() : null;
+                        String nodeKey = nodeKey(levelCode, parentCode);
+                        CatalogNode node = CatalogNode.of(positionKey(university, field, nodeKey),
+                                extractNextOptions(levels, levelCode, parentCode));
+                        fieldNodes.put(nodeKey, node);
+
+                        String parentName = parent != null ? parent.path("name").asText() : null;
+                        positions.add(new CatalogPosition(university.path("name").asText(),
+                                field.path("name").asText(), levelCode,
+                                "L2".equals(levelCode) ? parentName : null,
+                                "L3".equals(levelCode) ? parentName : null,
+                                node));
+                    }
+                }
+                built.put(field, Map.copyOf(fieldNodes));
+                count += fieldNodes.size();
+            }
+        }
+        log.info("Pre-rendered {} catalogue nodes", count);
+        return built;
+    }
+
+    private static String nodeKey(String levelCode, String parentCode) {
+        return parentCode == null ? levelCode : levelCode + "/" + parentCode;
+    }
+
+    private static String positionKey(JsonNode university, JsonNode field, String nodeKey) {
+        return university.path("name").asText() + "|" + field.path("name").asText() + "|" + nodeKey;
+    }
+
+    /**
+     * The majors or specialities that narrow the options at {@code levelCode}.
+     */
+    private List<JsonNode> parents(JsonNode levels, String levelCode) {
+        JsonNode parents = switch (levelCode) {
+            case "L2" -> levels.path("L2").path("majors");
+            case "L3" -> levels.path("L3").path("specialities");
+            default -> null;
+        };
+        List<JsonNode> entries = new ArrayList<>();
+        if (parents != null && parents.isArray()) {
+            parents.forEach(entries::add);
+        }
+        return entries;
+    }
+
+    /**
+     * The code of the student's current major (at L2) or speciality (at L3), or null when it
+     * does not narrow the options or cannot be matched.
+     */
+    private String resolveParentCode(JsonNode levels, String levelCode, String currentMajor,
+            String currentSpeciality) {
+        JsonNode candidates;
+        String normalized;
+        switch (levelCode) {
+            case "L2" -> {
+                candidates = levels.path("L2").path("majors");
+                normalized = normalizeFieldName(currentMajor);
+            }
+            case "L3" -> {
+                candidates = levels.path("L3").path("specialities");
+                normalized = normalizeFieldName(currentSpeciality);
+            }
+            default -> {
+                return null;
+            }
+        }
+        if (candidates.isArray()) {
+            for (JsonNode candidate : candidates) {
+                if (isMatch(candidate.path("name").asText(), candidate.path("nameAr").asText(), normalized)) {
+                    return candidate.path("code").asText();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String extractLevelCode(String levelName) {
+        if (levelName == null)
+            return "L1";
+
+        String lowerLevel = levelName.toLowerCase();
+
+        // ===== ENGINEERING / CLASSIC SYSTEM =====
+
+        // CPI - Cycle Préparatoire Intégré (prep years 1-2)
+        if (lowerLevel.contains("cpi") || lowerLevel.contains("préparatoire intégré") ||
+                lowerLevel.contains("classe préparatoire")) {
+            if (lowerLevel.contains("1") || lowerLevel.contains("première") || lowerLevel.contains("أولى")) {
+                return "1CPI";
+            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième") || lowerLevel.contains("ثانية")) {
+                return "2CPI";
+            }
+            return "1CPI";
+        }
+
+        // CS - Cycle Supérieur (engineering years 3-5)
+        if (lowerLevel.contains("cycle supérieur") || lowerLevel.contains("cs")) {
+            if (lowerLevel.contains("1") || lowerLevel.contains("première") || lowerLevel.contains("أولى")) {
+                return "1CS";
+            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième") || lowerLevel.contains("ثانية")) {
+                return "2CS";
+            } else if (lowerLevel.contains("3") || lowerLevel.contains("troisième") || lowerLevel.contains("ثالثة")) {
+                return "3CS";
+            }
+            return "1CS";
+        }
+
+        // Generic engineering year detection (e.g., "3ème année ingénieur")
+        if (lowerLevel.contains("ingénieur") || lowerLevel.contains("مهندس")) {
+            if (lowerLevel.contains("1") || lowerLevel.contains("première")) {
+                return "1CPI"; // Year 1 = 1st prep
+            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième")) {
+                return "2CPI"; // Year 2 = 2nd prep
+            } else if (lowerLevel.contains("3") || lowerLevel.contains("troisième")) {
+                return "1CS"; // Year 3 = 1st senior
+            } else if (lowerLevel.contains("4") || lowerLevel.contains("quatrième")) {
+                return "2CS"; // Year 4 = 2nd senior
+            } else if (lowerLevel.contains("5") || lowerLevel.contains("cinquième")) {
+                return "3CS"; // Year 5 = 3rd senior (final)
+            }
+        }
+
+        if (lowerLevel.contains("master") || lowerLevel.contains("ماستر")) {
+            if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
+                return "M1";
+            } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
+                return "M2";
+            }
+            return "M1";
+        }
+
+        if (lowerLevel.contains("licence") || lowerLevel.contains("ليسانس")) {
+            if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
+                return "L1";
+            } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
+                return "L2";
+            } else if (lowerLevel.contains("3") || lowerLevel.contains("ثالثة") || lowerLevel.contains("troisième")) {
+                return "L3";
+            }
+        }
+
+        if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
+            return "L1";
+        } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
+            return "L2";
+        } else if (lowerLevel.contains("3") || lowerLevel.contains("ثالثة") || lowerLevel.contains("troisième")) {
+            return "L3";
+        }
+
+        return "L1"; 
+    }
+
+    private JsonNode extractNextOptions(JsonNode levels, String currentLevelCode, String parentCode) {
+        var result = objectMapper.createObjectNode();
+        var optionsList = objectMapper.createArrayNode();
+
+        switch (currentLevelCode) {
+            case "L1":
+                JsonNode l1 = levels.path("L1");
+                JsonNode l1NextOptions = l1.path("nextOptions");
+                if (l1NextOptions.isArray()) {
+                    JsonNode l2Majors = levels.path("L2").path("majors");
+                    for (JsonNode optionCode : l1NextOptions) {
+                        JsonNode major = findByCode(l2Majors, optionCode.asText());
+                        if (major != null) {
+                            var opt = objectMapper.createObjectNode();
+                            opt.put("code", optionCode.asText());
+                            opt.put("name", major.path("name").asText());
+                            opt.put("type", "major");
+                            copyKeySubjects(major, opt);
+                            optionsList.add(opt);
+                        }
+                    }
+                }
+                result.put("nextLevel", "L2 (2ème année Licence)");
+                break;
+
+            case "L2":
+                result.put("nextLevel", "L3 (3ème année Licence)");
+
+                JsonNode l3Specs = levels.path("L3").path("specialities");
+                if (l3Specs.isArray()) {
+                    for (JsonNode spec : l3Specs) {
+                        String parentMajor = spec.path("parentMajor").asText();
+                        if (parentCode == null || parentMajor.equals(parentCode)) {
+                            var opt = objectMapper.createObjectNode();
+                            opt.put("code", spec.path("code").asText());
+                            opt.put("name", spec.path("name").asText());
+                            opt.put("type", "speciality");
+                            opt.put("parentMajor", parentMajor);
+                            copyKeySubjects(spec, opt);
+                            optionsList.add(opt);
+                        }
+                    }
+                }
+                break;
+
+            case "L3":
+                result.put("nextLevel", "M1 (1ère année Master)");
+
+                JsonNode masterSpecs = levels.path("Master").path("specialities");
+                if (masterSpecs.isArray()) {
+                    for (JsonNode spec : masterSpecs) {
+                        String parentL3 = spec.path("parentL3").asText();
+                        if (parentCode == null || parentL3.equals(parentCode)) {
+                            var opt = objectMapper.createObjectNode();
+                            opt.put("code", spec.path("code").asText());
+                            opt.put("name", spec.path("name").asText());
+                            opt.put("type", "master_speciality");
+                            opt.put("parentL3", parentL3);
+                            copyKeySubjects(spec, opt);
+                            optionsList.add(opt);
+                        }
+                    }
+                }
+                break;
+
+            case "M1":                    
+                result.put("nextLevel", "M2 (2ème année Master)");
+                result.put("note", "You will continue in the same Master speciality for M2.");
+                break;
+
+            case "M2":                
+                result.put("nextLevel", "Graduation");
+                result.put("note", "You are in your final year! No more academic levels after this.");
+                break;
+
+            case "1CPI":                
+                result.put("nextLevel", "2CPI (2ème année Cycle Préparatoire)");
+                result.put("note",
+                        "Continue to 2nd year of preparatory cycle. No specialization choices at this stage.");
+                break;
+
+            case "2CPI":
+                result.put("nextLevel", "1CS (1ère année Cycle Supérieur)");
+                JsonNode seniorSpecs = levels.path("CS").path("specialities");
+                if (seniorSpecs.isArray()) {
+                    for (JsonNode spec : seniorSpecs) {
+                        var opt = objectMapper.createObjectNode();
+                        opt.put("code", spec.path("code").asText());
+                        opt.put("name", spec.path("name").asText());
+                        opt.put("type", "engineering_speciality");
+                        copyKeySubjects(spec, opt);
+                        optionsList.add(opt);
+                    }
+                }
+                if (optionsList.isEmpty()) {
+                    result.put("note",
+                            "Specializations available at 3CS (final year). Continue with common curriculum for now.");
+                }
+                break;
+
+            case "1CS":                
+                result.put("nextLevel", "2CS (2ème année Cycle Supérieur)");
+                result.put("note", "Continue to 2nd year of senior cycle. Main specialization often chosen at 3CS.");
+                break;
+
+            case "2CS":
+                result.put("nextLevel", "3CS (3ème année Cycle Supérieur - Final Year)");
+                JsonNode finalSpecs = levels.path("3CS").path("specialities");
+                if (!finalSpecs.isArray()) {
+                    finalSpecs = levels.path("CS").path("specialities"); // fallback
+                }
+                if (finalSpecs.isArray()) {
+                    for (JsonNode spec : finalSpecs) {
+                        var opt = objectMapper.createObjectNode();
+                        opt.put("code", spec.path("code").asText());
+                        opt.put("name", spec.path("name").asText());
+                        opt.put("type", "final_year_speciality");
+                        copyKeySubjects(spec, opt);
+                        optionsList.add(opt);
+                    }
+                }
+                if (optionsList.isEmpty()) {
+                    result.put("note",
+                            "Final year specialization choices will be based on your performance and available spots.");
+                }
+                break;
+
+            case "3CS":
+                result.put("nextLevel", "Graduation - Diploma of State Engineer (Diplôme d'Ingénieur d'État)");
+                result.put("note",
+                        "Congratulations! You are in your final year. Focus on your PFE (Projet de Fin d'Études) and prepare for your engineering career!");
+                break;
+
+            default:
+                result.put("note", "Unable to determine next level options for level code: " + currentLevelCode);
+        }
+
+        result.set("availableOptions", optionsList);
+
+        if (optionsList.isEmpty() && !result.has("note")) {
+            result.put("note", "No specific options found for your current level/major in the system.");
+        }
+
+        return result;
+    }
+
+    private void copyKeySubjects(JsonNode source, ObjectNode option) {
+        JsonNode keySubjects = source.path("keySubjects");
+        if (keySubjects.isContainerNode() && !keySubjects.isEmpty()) {
+            option.set("keySubjects", keySubjects);
+        }
+    }
+
+    private boolean isMatch(String name, String nameAr, String normalizedSearch) {
+        if (normalizedSearch == null || normalizedSearch.isEmpty())
+            return false;
+        String normName = normalizeFieldName(name);
+        return normName.contains(normalizedSearch) || normalizedSearch.contains(normName) ||
+                (nameAr != null && nameAr.contains(normalizedSearch)); // loose match for arabic if passed
+    }
+
+    private JsonNode findByCode(JsonNode array, String code) {
+        if (!array.isArray())
+            return null;
+        for (JsonNode item : array) {
+            if (code.equals(item.path("code").asText())) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private String normalizeFieldName(String name) {
+        if (name == null)
+            return "";
+        return name.toLowerCase()
+                .replaceAll("[àâäãå]", "a")
+                .replaceAll("[éèêë]", "e")
+                .replaceAll("[îï]", "i")
+                .replaceAll("[ôöõ]", "o")
+                .replaceAll("[ùûü]", "u")
+                .replaceAll("[ç]", "c")
+                .replaceAll("[^a-z0-9]", "");
+    }
+}
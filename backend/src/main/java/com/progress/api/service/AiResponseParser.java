@@ -0,0 +1,295 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Turns raw model output into validated recommendation objects without going back to the LLM.
+ * Output that is not valid JSON is repaired locally: code fences and surrounding prose are
+ * stripped, single quotes and trailing commas are tolerated, and output cut off mid-way is
+ * closed after its last complete object. Every recommendation is then checked against the
+ * options that were offered; entries for unknown codes are dropped. Only output with no usable
+ * recommendation left fails, unless no options were offered in the first place.
+ */
+@Slf4j
+@Component
+public class AiResponseParser {
+
+    static final String RESULT_VALID = "valid";
+    static final String RESULT_REPAIRED = "repaired";
+    static final String RESULT_FAILED = "failed";
+
+    /**
+     * Recommendation objects that passed validation, normalised, and the model's summary.
+     */
+    public record Parsed(List<ObjectNode> recommendations, String summary, boolean repaired, int dropped) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper lenientMapper;
+    private final MeterRegistry meterRegistry;
+
+    public AiResponseParser(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.lenientMapper = objectMapper.copy()
+                .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES.mappedFeature())
+                .enable(JsonReadFeature.ALLOW_TRAILING_COMMA.mappedFeature())
+                .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES.mappedFeature())
+                .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param availableOptions the catalogue result whose {@code availableOptions} the model chose from
+     * @throws ApiException when nothing usable can be recovered
+     */
+    public Parsed parse(String raw, JsonNode availableOptions) {
+        Map<String, String> options = optionNames(availableOptions);
+
+        boolean repaired = false;
+        JsonNode root = readStrict(raw);
+        if (root == null) {
+            repaired = true;
+            root = readRepaired(raw);
+        }
+        if (root == null) {
+            return fail("unparseable", raw);
+        }
+
+        JsonNode entries = root.isArray() ? root : root.path("recommendations");
+        List<ObjectNode> recommendations = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int dropped = 0;
+        for (JsonNode entry : entries) {
+            Optional<ObjectNode> valid = validate(entry, options);
+            if (valid.isPresent() && seen.add(valid.get().path("code").asText())) {
+                recommendations.add(valid.get());
+            } else {
+                dropped++;
+            }
+        }
+        // levels without choices legitimately get an empty list and an explanatory summary
+        if (recommendations.isEmpty() && !options.isEmpty()) {
+            return fail("no valid recommendations", raw);
+        }
+
+        count(repaired ? RESULT_REPAIRED : RESULT_VALID);
+        if (dropped > 0) {
+            Counter.builder("recommendation.llm_output.dropped")
+                    .description("Recommendations dropped from LLM output for an unknown code or missing fields")
+                    .register(meterRegistry)
+                    .increment(dropped);
+            log.debug("Dropped {} invalid recommendation(s) from LLM output", dropped);
+        }
+        return new Parsed(recommendations, root.path("summary").asText(""), repaired, dropped);
+    }
+
+    /**
+     * Checks one recommendation against the offered options and normalises it: the code is
+     * matched case-insensitively and canonicalised, a missing name is taken from the catalogue
+     * and the match score is clamped to 0..100.
+     */
+    public Optional<ObjectNode> validate(JsonNode entry, Map<String, String> options) {
+        if (entry == null || !entry.isObject()) {
+            return Optional.empty();
+        }
+        String code = canonicalCode(entry.path("code").asText("").trim(), options);
+        if (code == null) {
+            return Optional.empty();
+        }
+
+        ObjectNode recommendation = ((ObjectNode) entry).deepCopy();
+        recommendation.put("code", code);
+        if (recommendation.path("name").asText("").isBlank()) {
+            String name = options.get(code);
+            if (name == null) {
+                return Optional.empty();
+            }
+            recommendation.put("name", name);
+        }
+        JsonNode score = entry.path("matchScore");
+        int matchScore = score.isNumber() ? score.asInt() : parseScore(score.asText(""));
+        recommendation.put("matchScore", Math.max(0, Math.min(100, matchScore)));
+        return Optional.of(recommendation);
+    }
+
+    /**
+     * Option names by code, in catalogue order.
+     */
+    public static Map<String, String> optionNames(JsonNode availableOptions) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (JsonNode option : availableOptions.path("availableOptions")) {
+            options.put(option.path("code").asText(), option.path("name").asText());
+        }
+        return options;
+    }
+
+    private static String canonicalCode(String code, Map<String, String> options) {
+        if (code.isEmpty()) {
+            return null;
+        }
+        if (options.containsKey(code)) {
+            return code;
+        }
+        String upper = code.toUpperCase(Locale.ROOT);
+        return options.keySet().stream()
+                .filter(known -> known.toUpperCase(Locale.ROOT).equals(upper))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static int parseScore(String text) {
+        String digits = text.replaceAll("[^0-9.]", "");
+        if (digits.isEmpty()) {
+            return 0;
+        }
+        try {
+            return (int) Math.round(Double.parseDouble(digits));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private JsonNode readStrict(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(raw);
+            return root != null && root.isContainerNode() ? root : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private JsonNode readRepaired(String raw) {
+        String extracted = extractJson(raw);
+        if (extracted == null) {
+            return null;
+        }
+        try {
+            return lenientMapper.readTree(extracted);
+        } catch (JsonProcessingException e) {
+            log.debug("Repaired LLM output is still not JSON: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cuts the first JSON object or array out of {@code text}, dropping fences and prose around
+     * it. If the text ends before the value closes, keeps everything up to the last complete
+     * object and closes whatever is still open. Returns null if there is nothing to salvage.
+     */
+    static String extractJson(String text) {
+        if (text == null) {
+            return null;
+        }
+        int start = startOfJson(text);
+        if (start < 0) {
+            return null;
+        }
+
+        Deque<Character> open = new ArrayDeque<>();
+        boolean inString = false;
+        boolean escaped = false;
+        char quote = '"';
+        int safeEnd = -1;
+        List<Character> safeOpen = List.of();
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == quote) {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> {
+                    inString = true;
+                    quote = c;
+                }
+                case '{', '[' -> open.push(c);
+                case '}', ']' -> {
+                    Character opener = open.poll();
+                    if (opener == null || (opener == '{') != (c == '}')) {
+                        return null;
+                    }
+                    if (open.isEmpty()) {
+                        return text.substring(start, i + 1);
+                    }
+                    if (c == '}') {
+                        safeEnd = i + 1;
+                        safeOpen = new ArrayList<>(open);
+                    }
+                }
+                default -> {
+                    // only structure matters here
+                }
+            }
+        }
+
+        if (safeEnd < 0) {
+            return null;
+        }
+        StringBuilder closed = new StringBuilder(text.substring(start, safeEnd));
+        for (Character opener : safeOpen) {
+            closed.append(opener == '{' ? '}' : ']');
+        }
+        return closed.toString();
+    }
+
+    private static int startOfJson(String text) {
+        int brace = text.indexOf('{');
+        int bracket = text.indexOf('[');
+        if (bracket >= 0 && (brace < 0 || bracket < brace)) {
+            // only a bare array of objects, not a bracketed aside in the prose
+            int next = bracket + 1;
+            while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                next++;
+            }
+            if (next < text.length() && text.charAt(next) == '{') {
+                return bracket;
+            }
+        }
+        return brace;
+    }
+
+    private Parsed fail(String reason, String raw) {
+        count(RESULT_FAILED);
+        log.error("Unrecoverable AI response ({}): {}", reason, raw);
+        throw new ApiException("Failed to parse AI recommendation", HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private void count(String result) {
+        Counter.builder("recommendation.llm_output")
+                .description("LLM recommendation outputs by parse result")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
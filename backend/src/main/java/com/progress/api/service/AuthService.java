@@ -5,8 +5,10 @@ import com.progress.api.dto.LoginRequest;
 import com.progress.api.dto.LoginResponse;
 import com.progress.api.exception.ApiException;
 import com.progress.api.security.JwtTokenProvider;
+import com.progress.api.security.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -14,6 +16,9 @@ import org.springframework.web.reactive.function.client.WebClientRequestExceptio
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.util.OptionalLong;
+import java.util.UUID;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -23,6 +28,10 @@ public class AuthService {
     private final JwtTokenProvider jwtTokenProvider;
     private final ExternalTokenStore externalTokenStore;
 
+    // how long the refresh token replaced by a rotation stays usable, for tabs refreshing at once
+    @Value("${jwt.refresh-reuse-grace-ms:10000}")
+    private long refreshReuseGraceMillis;
+
     public Mono<LoginResponse> authenticate(LoginRequest request) {
         return webClient.post()
                 .uri("/authentication/v1/")
@@ -40,10 +49,22 @@ public class AuthService {
                     String uuid = externalResponse.getUuid();
                     String externalToken = externalResponse.getToken();
 
-                    externalTokenStore.store(uuid, externalToken, jwtTokenProvider.getRefreshExpiration());
+                    String jwtToken;
+                    String refreshToken;
+                    if (jwtTokenProvider.isStateless()) {
+                        jwtToken = jwtTokenProvider.generateStatelessToken(uuid, externalToken);
+                        refreshToken = jwtTokenProvider.generateStatelessRefreshToken(uuid, externalToken);
+                    } else {
+                        externalTokenStore.store(uuid, externalToken, jwtTokenProvider.getRefreshExpiration());
+                        long sessionVersion = externalTokenStore.sessionVersion(uuid, jwtTokenProvider.getRefreshExpiration());
 
-                    String jwtToken = jwtTokenProvider.generateToken(uuid);
-                    String refreshToken = jwtTokenProvider.generateRefreshToken(uuid);
+                        String family = UUID.randomUUID().toString();
+                        externalTokenStore.startRefreshFamily(uuid, family, jwtTokenProvider.getRefreshExpiration());
+
+                        jwtToken = jwtTokenProvider.generateToken(uuid, sessionVersion);
+                        refreshToken = jwtTokenProvider.generateRefreshToken(uuid, sessionVersion, family,
+                                ExternalTokenStore.FIRST_REFRESH_SEQUENCE);
+                    }
 
                     log.info("User authenticated successfully: {}", uuid);
 
@@ -80,6 +101,23 @@ public class AuthService {
                 });
     }
 
+    /**
+     * Rotates the refresh family of the presented token and extends the session. Each login has
+     * its own family, so other devices keep their tokens. Returns the sequence of the next refresh
+     * token; empty means the session was logged out or revoked, or the token was replayed.
+     */
+    public OptionalLong renewSession(VerifiedToken refreshToken) {
+        return externalTokenStore.rotateRefreshFamily(refreshToken.subject(), refreshToken.version(),
+                refreshToken.family(), refreshToken.sequence(), refreshReuseGraceMillis,
+                jwtTokenProvider.getRefreshExpiration());
+    }
+
+    /** Revokes every access and refresh token issued for the uuid so far */
+    public void revokeSessions(String uuid) {
+        externalTokenStore.bumpSessionVersion(uuid, jwtTokenProvider.getRefreshExpiration());
+        log.debug("Revoked sessions for user: {}", uuid);
+    }
+
     public void removeExternalToken(String uuid) {
         externalTokenStore.remove(uuid);
         log.debug("Removed external token for user: {}", uuid);
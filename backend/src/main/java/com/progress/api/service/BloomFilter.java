@@ -0,0 +1,44 @@
+package com.progress.api.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over {@link TokenDigest}s. The digest is already a uniform hash, so
+ * the probe positions come from double hashing its two halves.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray(Math.toIntExact((m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(TokenDigest digest) {
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(digest, i);
+            long mask = 1L << index;
+            bits.getAndAccumulate((int) (index >>> 6), mask, (word, bit) -> word | bit);
+        }
+    }
+
+    boolean mightContain(TokenDigest digest) {
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(digest, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(TokenDigest digest, int i) {
+        return Math.floorMod(digest.high() + i * digest.low(), bitCount);
+    }
+}
@@ -0,0 +1,151 @@
+package com.progress.api.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates baseline recommendations for every cohort in the catalogue, every position in every
+ * average band, ahead of orientation season. Students without personal preferences are then
+ * served from the {@link PrecomputedRecommendationStore} without waiting on the LLM. Calls run
+ * with bounded concurrency and are started no faster than the configured share of the LLM quota.
+ * Cohorts that already have a current baseline are skipped, so a run cut short by quota errors
+ * picks up where it stopped.
+ */
+@Slf4j
+@Service
+public class CohortPrecomputeJob {
+
+    public record Summary(int cohorts, int generated, int skipped, int failed) {
+    }
+
+    private record Cohort(CatalogPosition position, String averageBand) {
+    }
+
+    private final AcademicCatalog academicCatalog;
+    private final RecommendationService recommendationService;
+    private final PrecomputedRecommendationStore store;
+    private final MeterRegistry meterRegistry;
+    private final int concurrency;
+    private final Bucket startRate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CohortPrecomputeJob(
+            AcademicCatalog academicCatalog,
+            RecommendationService recommendationService,
+            PrecomputedRecommendationStore store,
+            MeterRegistry meterRegistry,
+            @Value("${recommendation.precompute.concurrency:2}") int concurrency,
+            @Value("${recommendation.precompute.requests-per-minute:20}") int requestsPerMinute) {
+        this.academicCatalog = academicCatalog;
+        this.recommendationService = recommendationService;
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+        this.concurrency = concurrency;
+        this.startRate = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(requestsPerMinute)
+                        .refillGreedy(requestsPerMinute, Duration.ofMinutes(1))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Runs on {@code recommendation.precompute.cron}, which is off unless configured.
+     */
+    @Scheduled(cron = "${recommendation.precompute.cron:-}")
+    public void scheduledRun() {
+        if (store.isEnabled()) {
+            run();
+        }
+    }
+
+    /**
+     * Generates every missing or stale baseline and saves the store. Returns straight away with
+     * an empty summary if a run is already in progress.
+     */
+    public Summary run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Cohort precompute already running, ignoring this trigger");
+            return new Summary(0, 0, 0, 0);
+        }
+        try {
+            List<Cohort> cohorts = academicCatalog.positions().stream()
+                    .flatMap(position -> CohortProfile.averageBands().stream()
+                            .map(band -> new Cohort(position, band)))
+                    .toList();
+            log.info("Precomputing recommendations for {} cohorts (concurrency {})", cohorts.size(), concurrency);
+
+            AtomicInteger generated = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            Flux.fromIterable(cohorts)
+                    .filter(cohort -> {
+                        if (store.contains(cohort.position().node(), cohort.averageBand())) {
+                            skipped.incrementAndGet();
+                            count("skipped");
+                            return false;
+                        }
+                        return true;
+                    })
+                    .flatMap(cohort -> generate(cohort)
+                            .doOnNext(ok -> (ok ? generated : failed).incrementAndGet()), concurrency)
+                    .blockLast();
+
+            try {
+                store.save();
+            } catch (IOException e) {
+                log.error("Failed to save precomputed recommendations", e);
+            }
+
+            Summary summary = new Summary(cohorts.size(), generated.get(), skipped.get(), failed.get());
+            log.info("Cohort precompute finished: {}", summary);
+            return summary;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Mono<Boolean> generate(Cohort cohort) {
+        CatalogNode node = cohort.position().node();
+        return Mono.fromCallable(() -> {
+                    startRate.asBlocking().consume(1);
+                    return CohortProfile.of(cohort.position(), cohort.averageBand());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(profile -> recommendationService.generateCohortBaseline(profile, node))
+                .map(response -> {
+                    store.put(node, cohort.averageBand(), response);
+                    count("generated");
+                    return true;
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to precompute {}: {}",
+                            PrecomputedRecommendationStore.key(node, cohort.averageBand()), e.getMessage());
+                    count("failed");
+                    return Mono.just(false);
+                });
+    }
+
+    private void count(String outcome) {
+        Counter.builder("recommendation.precompute.cohorts")
+                .description("Cohorts handled by the recommendation precompute batch")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
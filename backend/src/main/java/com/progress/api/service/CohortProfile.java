@@ -0,0 +1,101 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Anonymised, bucketed view of a student used to build cohort-level prompts.
+ * Two students with the same profile receive the same prompt, so the LLM
+ * output can be shared between them.
+ */
+public record CohortProfile(
+        String university,
+        String field,
+        String level,
+        String major,
+        String speciality,
+        String averageBand,
+        List<String> optionCodes) {
+
+    static final int AVERAGE_BAND_WIDTH = 2;
+    static final String UNKNOWN_BAND = "unknown";
+
+    public static CohortProfile from(CurrentStatus status, JsonNode availableOptions) {
+        return new CohortProfile(
+                status.getUniversity(),
+                status.getField(),
+                status.getLevel(),
+                status.getMajor(),
+                status.getSpeciality(),
+                averageBand(status.getCurrentAverage()),
+                optionCodes(availableOptions));
+    }
+
+    /**
+     * The profile shared by every student at a catalogue position within one average band,
+     * named with the catalogue's own labels.
+     */
+    static CohortProfile of(CatalogPosition position, String averageBand) {
+        return new CohortProfile(
+                position.university(),
+                position.field(),
+                position.levelCode(),
+                position.major(),
+                position.speciality(),
+                averageBand,
+                optionCodes(position.node().availableOptions()));
+    }
+
+    /**
+     * Every band {@link #averageBand(Double)} can produce, unknown first.
+     */
+    static List<String> averageBands() {
+        List<String> bands = new ArrayList<>();
+        bands.add(UNKNOWN_BAND);
+        for (int lower = 0; lower < 20; lower += AVERAGE_BAND_WIDTH) {
+            bands.add(lower + "-" + (lower + AVERAGE_BAND_WIDTH));
+        }
+        return bands;
+    }
+
+    private static List<String> optionCodes(JsonNode availableOptions) {
+        List<String> codes = new ArrayList<>();
+        JsonNode options = availableOptions.path("availableOptions");
+        if (options.isArray()) {
+            for (JsonNode option : options) {
+                codes.add(option.path("code").asText());
+            }
+        }
+        codes.sort(String::compareTo);
+        return List.copyOf(codes);
+    }
+
+    /**
+     * Rounds an average out of 20 down into a fixed-width band, e.g. 13.4 -> "12-14".
+     */
+    static String averageBand(Double average) {
+        if (average == null || average.isNaN() || average < 0) {
+            return UNKNOWN_BAND;
+        }
+        int lower = (int) (Math.min(average, 19.99) / AVERAGE_BAND_WIDTH) * AVERAGE_BAND_WIDTH;
+        return lower + "-" + (lower + AVERAGE_BAND_WIDTH);
+    }
+
+    public String key() {
+        return String.join("|",
+                nullToEmpty(university),
+                nullToEmpty(field),
+                nullToEmpty(level),
+                nullToEmpty(major),
+                nullToEmpty(speciality),
+                averageBand,
+                String.join(",", optionCodes));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,168 @@
+package com.progress.api.service;
+
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import com.progress.api.dto.RecommendationResponse.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shares LLM recommendations between students that map to the same {@link CohortProfile}.
+ */
+@Slf4j
+@Service
+public class CohortRecommendationCache {
+
+    private record CachedRecommendations(List<Recommendation> recommendations, String summary, String model,
+            long expiresAt) {
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private final Map<String, CachedRecommendations> cache = new ConcurrentHashMap<>();
+
+    /** Misses currently being generated, so concurrent students of one cohort share a single LLM call. */
+    private final Map<String, Mono<RecommendationResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /** Streamed misses currently being generated; subscribers that join late replay what was already emitted. */
+    private final Map<String, Flux<?>> streaming = new ConcurrentHashMap<>();
+
+    @Value("${recommendation.cohort-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.cohort-cache.ttl-minutes:720}")
+    private long ttlMinutes;
+
+    @Value("${recommendation.cohort-cache.max-entries:5000}")
+    private int maxEntries;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<RecommendationResponse> get(CohortProfile profile, CurrentStatus currentStatus) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = profile.key();
+        CachedRecommendations entry = cache.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired()) {
+            cache.remove(key);
+            return Optional.empty();
+        }
+
+        log.debug("Cohort cache hit for key: {}", key);
+        return Optional.of(response(entry.recommendations(), entry.summary(), entry.model(), currentStatus));
+    }
+
+    /**
+     * Serves the cohort from the cache, or generates it with {@code loader} on a miss. Concurrent
+     * misses for the same cohort subscribe to one shared generation; each caller still receives
+     * its own copy carrying its own current status.
+     */
+    public Mono<RecommendationResponse> getOrLoad(CohortProfile profile, CurrentStatus currentStatus,
+            Supplier<Mono<RecommendationResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return Mono.defer(() -> {
+            Optional<RecommendationResponse> cached = get(profile, currentStatus);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+            String key = profile.key();
+            return inFlight.computeIfAbsent(key, k -> loader.get()
+                            .doOnNext(generated -> put(profile, generated))
+                            .doFinally(signal -> inFlight.remove(k))
+                            .cache())
+                    .map(shared -> withStatus(shared, currentStatus));
+        });
+    }
+
+    /**
+     * Streamed counterpart of {@link #getOrLoad}: concurrent misses for the same cohort subscribe
+     * to one generation, and a subscriber that joins mid-stream first replays everything it has
+     * emitted. The generation is cancelled once all its subscribers have gone. Whatever it emits
+     * is shared as is, so per-student data must be applied by the subscribers.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> streamOrLoad(CohortProfile profile, Supplier<Flux<T>> generation) {
+        if (!enabled) {
+            return generation.get();
+        }
+        return Flux.defer(() -> (Flux<T>) streaming.computeIfAbsent(profile.key(), key -> generation.get()
+                .doFinally(signal -> streaming.remove(key))
+                .replay()
+                .refCount()));
+    }
+
+    /** Copy of a shared cohort response carrying one student's current status */
+    public static RecommendationResponse withStatus(RecommendationResponse shared, CurrentStatus currentStatus) {
+        return response(shared.getRecommendations(), shared.getSummary(), shared.getModel(), currentStatus);
+    }
+
+    private static RecommendationResponse response(List<Recommendation> recommendations, String summary,
+            String model, CurrentStatus currentStatus) {
+        return RecommendationResponse.builder()
+                .currentStatus(currentStatus)
+                .recommendations(recommendations == null ? null : List.copyOf(recommendations))
+                .summary(summary)
+                .model(model)
+                .build();
+    }
+
+    public void put(CohortProfile profile, RecommendationResponse response) {
+        if (!enabled || response.getRecommendations() == null) {
+            return;
+        }
+        if (cache.size() >= maxEntries) {
+            cleanupExpiredEntries();
+            if (cache.size() >= maxEntries) {
+                log.warn("Cohort cache is full ({} entries), not caching key: {}", cache.size(), profile.key());
+                return;
+            }
+        }
+
+        long expiresAt = System.currentTimeMillis() + ttlMinutes * 60_000L;
+        cache.put(profile.key(), new CachedRecommendations(
+                List.copyOf(response.getRecommendations()),
+                response.getSummary(),
+                response.getModel(),
+                expiresAt));
+        log.debug("Cached cohort recommendations for key: {}", profile.key());
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void cleanupExpiredEntries() {
+        int beforeSize = cache.size();
+
+        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+
+        int removed = beforeSize - cache.size();
+        if (removed > 0) {
+            log.info("Cleaned up {} expired cohort recommendations. Remaining: {}", removed, cache.size());
+        }
+    }
+}
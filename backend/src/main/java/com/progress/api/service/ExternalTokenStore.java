@@ -1,13 +1,21 @@
 package com.progress.api.service;
 
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 /* 
  Interface for securely storing external API tokens server-side
 */
 public interface ExternalTokenStore {
+
+    /** External token and current session version for a uuid; version 0 means none was started */
+    record Session(String externalToken, long version) {
+    }
+
     void store(String uuid, String externalToken, long ttlMillis);
     Optional<String> retrieve(String uuid);
+    /** Retrieve the external token together with the session version, in one lookup */
+    Optional<Session> retrieveSession(String uuid);
     void remove(String uuid);
     boolean exists(String uuid);
     void clear();
@@ -16,4 +24,40 @@ public interface ExternalTokenStore {
     void storeAllowedCards(String uuid, Set<String> cardIds, long ttlMillis);
     /** Retrieve the cached set of allowed card IDs for a user */
     Optional<Set<String>> getAllowedCards(String uuid);
+
+    /**
+     * Current session version for a uuid, starting one if it has none. Issued JWTs carry it as
+     * their {@code ver} claim. The version outlives {@link #remove}, so a logout stays in effect
+     * after the external token is gone.
+     */
+    long sessionVersion(String uuid, long ttlMillis);
+    /** Move the session to a new version, revoking every JWT and refresh family issued under an earlier one */
+    long bumpSessionVersion(String uuid, long ttlMillis);
+
+    /**
+     * Starts the refresh family of one login, kept next to the session version. Its first
+     * refresh token carries sequence {@link #FIRST_REFRESH_SEQUENCE}.
+     */
+    void startRefreshFamily(String uuid, String family, long ttlMillis);
+
+    /**
+     * Advances a refresh family in one atomic step and extends the session. The presented token
+     * must carry the current session version and the family's current sequence. The token the
+     * last rotation replaced is also accepted for {@code graceMillis} afterwards, so two tabs
+     * refreshing with the same cookie both succeed; it gets the current sequence back. Any other
+     * sequence means a replaced token was replayed, and the family is ended. Returns the sequence
+     * to issue, or empty if the token is refused.
+     */
+    OptionalLong rotateRefreshFamily(String uuid, long version, String family, long sequence,
+            long graceMillis, long ttlMillis);
+
+    long FIRST_REFRESH_SEQUENCE = 1;
+
+    /**
+     * Next version after {@code current}. Versions follow the clock, so a uuid whose version
+     * expired never restarts below a version that tokens still in circulation could carry.
+     */
+    static long nextVersion(long current) {
+        return Math.max(current + 1, System.currentTimeMillis());
+    }
 }
@@ -0,0 +1,343 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Compact grade profile distilled from the PROGRES {@code periode/bilans} document. The raw
+ * document carries dozens of administrative fields per module; a recommendation only needs
+ * averages, coefficients and credits, and how the student fares on each option's key subjects.
+ */
+final class GradeFeatures {
+
+    static final double PASS_MARK = 10.0;
+
+    private static final double STRENGTH_MARGIN = 1.0;
+    private static final int STEM_LENGTH = 6;
+    private static final int MAX_FALLBACK_HIGHLIGHTS = 3;
+    private static final Set<String> STOP_WORDS = Set.of("de", "des", "du", "la", "le", "les", "et", "en", "au", "aux");
+
+    record Subject(String period, String unit, String name, double coefficient, Double average) {
+    }
+
+    record Unit(String period, String name, Double average, Double creditsEarned, Double credits) {
+    }
+
+    private final List<Subject> subjects;
+    private final List<Unit> units;
+
+    private GradeFeatures(List<Subject> subjects, List<Unit> units) {
+        this.subjects = List.copyOf(subjects);
+        this.units = List.copyOf(units);
+    }
+
+    static GradeFeatures extract(JsonNode bilans) {
+        List<Subject> subjects = new ArrayList<>();
+        List<Unit> units = new ArrayList<>();
+
+        Iterable<JsonNode> periods = bilans.isArray() ? bilans : List.of(bilans);
+
+        for (JsonNode period : periods) {
+            String periodName = period.path("periodeLibelleFr").asText("");
+            for (JsonNode ue : period.path("bilanUes")) {
+                String unitName = ue.path("ueLibelleFr").asText("");
+                List<Subject> unitSubjects = new ArrayList<>();
+                for (JsonNode mc : ue.path("bilanMcs")) {
+                    String name = mc.path("mcLibelleFr").asText("").trim();
+                    if (name.isEmpty()) {
+                        continue;
+                    }
+                    unitSubjects.add(new Subject(periodName, unitName, name,
+                            mc.path("coefficient").asDouble(1.0),
+                            average(mc)));
+                }
+                subjects.addAll(unitSubjects);
+
+                Double unitAverage = average(ue);
+                units.add(new Unit(periodName, unitName,
+                        unitAverage != null ? unitAverage : weightedAverage(unitSubjects),
+                        number(ue, "creditObtenu"),
+                        number(ue, "credit")));
+            }
+        }
+        return new GradeFeatures(subjects, units);
+    }
+
+    boolean isEmpty() {
+        return subjects.isEmpty();
+    }
+
+    List<Subject> subjects() {
+        return subjects;
+    }
+
+    List<Unit> units() {
+        return units;
+    }
+
+    /**
+     * Coefficient-weighted average over every graded subject, or null when nothing is graded.
+     */
+    Double overallAverage() {
+        return weightedAverage(subjects);
+    }
+
+    /**
+     * Coefficient-weighted average of the subjects that match {@code keySubject}, or null if none do.
+     */
+    Double keySubjectAverage(String keySubject) {
+        return weightedAverage(subjects.stream().filter(s -> matches(s.name(), keySubject)).toList());
+    }
+
+    /**
+     * Weighted mean of the option's key-subject averages over the key subjects the student has
+     * grades in, or null when none of them appear on the transcript.
+     */
+    Double optionFit(JsonNode option) {
+        double weighted = 0;
+        double weights = 0;
+        for (Map.Entry<String, Double> keySubject : keySubjectWeights(option).entrySet()) {
+            Double average = keySubjectAverage(keySubject.getKey());
+            if (average != null) {
+                weighted += average * keySubject.getValue();
+                weights += keySubject.getValue();
+            }
+        }
+        return weights == 0 ? null : weighted / weights;
+    }
+
+    /**
+     * An option's key subjects with their catalogue weights, heaviest first. Plain arrays of
+     * names are accepted too, each weighted 1.
+     */
+    static Map<String, Double> keySubjectWeights(JsonNode option) {
+        JsonNode keySubjects = option.path("keySubjects");
+        Map<String, Double> weights = new LinkedHashMap<>();
+        if (keySubjects.isObject()) {
+            keySubjects.fields().forEachRemaining(entry -> weights.put(entry.getKey(), entry.getValue().asDouble(1.0)));
+        } else if (keySubjects.isArray()) {
+            keySubjects.forEach(name -> weights.put(name.asText(), 1.0));
+        }
+        Map<String, Double> sorted = new LinkedHashMap<>();
+        weights.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    static GradeFeatures empty() {
+        return new GradeFeatures(List.of(), List.of());
+    }
+
+    /**
+     * Key subjects across the options where the student is at least a point above their own
+     * average. Falls back to their best subjects when no key subject matches their transcript.
+     */
+    Map<String, Double> strengths(JsonNode availableOptions) {
+        Double overall = overallAverage();
+        Map<String, Double> keyAverages = keySubjectAverages(availableOptions);
+        if (overall == null) {
+            return Map.of();
+        }
+        if (keyAverages.isEmpty()) {
+            return rankedSubjects(true, s -> s.average() >= overall + STRENGTH_MARGIN);
+        }
+        Map<String, Double> strengths = new LinkedHashMap<>();
+        keyAverages.forEach((subject, average) -> {
+            if (average >= overall + STRENGTH_MARGIN && average >= PASS_MARK) {
+                strengths.put(subject, average);
+            }
+        });
+        return strengths;
+    }
+
+    /**
+     * Key subjects across the options that are failed or at least a point below the student's
+     * own average. Falls back to their weakest subjects when no key subject matches.
+     */
+    Map<String, Double> weaknesses(JsonNode availableOptions) {
+        Double overall = overallAverage();
+        Map<String, Double> keyAverages = keySubjectAverages(availableOptions);
+        if (overall == null) {
+            return Map.of();
+        }
+        if (keyAverages.isEmpty()) {
+            return rankedSubjects(false,
+                    s -> s.average() < PASS_MARK || s.average() <= overall - STRENGTH_MARGIN);
+        }
+        Map<String, Double> weaknesses = new LinkedHashMap<>();
+        keyAverages.forEach((subject, average) -> {
+            if (average < PASS_MARK || average <= overall - STRENGTH_MARGIN) {
+                weaknesses.put(subject, average);
+            }
+        });
+        return weaknesses;
+    }
+
+    /**
+     * Renders the profile as pipe-separated tables, a small fraction of the raw document's size.
+     */
+    String render(JsonNode availableOptions) {
+        StringBuilder out = new StringBuilder();
+
+        out.append("Overall average: ").append(format(overallAverage())).append("/20");
+        double earned = 0;
+        double total = 0;
+        boolean hasCredits = false;
+        for (Unit unit : units) {
+            if (unit.credits() != null) {
+                hasCredits = true;
+                total += unit.credits();
+                earned += unit.creditsEarned() != null ? unit.creditsEarned() : 0;
+            }
+        }
+        if (hasCredits) {
+            out.append(" | credits ").append(formatCredits(earned)).append('/').append(formatCredits(total));
+        }
+        out.append('\n');
+
+        out.append("Units (period | unit | avg | credits):\n");
+        for (Unit unit : units) {
+            out.append(unit.period()).append(" | ").append(unit.name()).append(" | ")
+                    .append(format(unit.average())).append(" | ")
+                    .append(unit.credits() == null ? "-"
+                            : formatCredits(unit.creditsEarned() != null ? unit.creditsEarned() : 0)
+                                    + "/" + formatCredits(unit.credits()))
+                    .append('\n');
+        }
+
+        out.append("Subjects (unit | subject | avg | coef):\n");
+        for (Subject subject : subjects) {
+            out.append(subject.unit()).append(" | ").append(subject.name()).append(" | ")
+                    .append(format(subject.average())).append(" | ")
+                    .append(formatCredits(subject.coefficient())).append('\n');
+        }
+
+        if (availableOptions != null) {
+            StringBuilder fit = new StringBuilder();
+            for (JsonNode option : availableOptions) {
+                Double optionFit = optionFit(option);
+                if (optionFit != null) {
+                    fit.append(option.path("code").asText()).append(" | ").append(format(optionFit)).append('\n');
+                }
+            }
+            if (!fit.isEmpty()) {
+                out.append("Key-subject fit (option | weighted avg of matching key subjects):\n").append(fit);
+            }
+        }
+
+        appendHighlights(out, "Strengths", strengths(availableOptions));
+        appendHighlights(out, "Weaknesses", weaknesses(availableOptions));
+        return out.toString();
+    }
+
+    /**
+     * Whether a transcript subject covers a catalogue key subject. Every significant word of the
+     * key subject must share a stem with a word of the subject name, so "Systèmes d'exploitation"
+     * matches "Système d'exploitation 2" but "Mécanique des fluides" does not match
+     * "Mécanique rationnelle".
+     */
+    static boolean matches(String subjectName, String keySubject) {
+        Set<String> subjectStems = stems(subjectName);
+        Set<String> keyStems = stems(keySubject);
+        return !keyStems.isEmpty() && subjectStems.containsAll(keyStems);
+    }
+
+    static Set<String> stems(String text) {
+        Set<String> stems = new LinkedHashSet<>();
+        if (text == null) {
+            return stems;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\b[dl]'", " ")
+                .replaceAll("[^a-z\\s]", " ");
+        for (String word : normalized.trim().split("\\s+")) {
+            if (word.length() >= 2 && !STOP_WORDS.contains(word)) {
+                stems.add(word.length() > STEM_LENGTH ? word.substring(0, STEM_LENGTH) : word);
+            }
+        }
+        return stems;
+    }
+
+    private Map<String, Double> keySubjectAverages(JsonNode availableOptions) {
+        Map<String, Double> averages = new LinkedHashMap<>();
+        if (availableOptions == null) {
+            return averages;
+        }
+        for (JsonNode option : availableOptions) {
+            for (String name : keySubjectWeights(option).keySet()) {
+                if (!averages.containsKey(name)) {
+                    Double average = keySubjectAverage(name);
+                    if (average != null) {
+                        averages.put(name, average);
+                    }
+                }
+            }
+        }
+        return averages;
+    }
+
+    private Map<String, Double> rankedSubjects(boolean best, Predicate<Subject> filter) {
+        Comparator<Subject> byAverage = Comparator.comparingDouble(Subject::average);
+        Map<String, Double> ranked = new LinkedHashMap<>();
+        subjects.stream()
+                .filter(s -> s.average() != null)
+                .filter(filter)
+                .sorted(best ? byAverage.reversed() : byAverage)
+                .limit(MAX_FALLBACK_HIGHLIGHTS)
+                .forEach(s -> ranked.put(s.name(), s.average()));
+        return ranked;
+    }
+
+    private static void appendHighlights(StringBuilder out, String label, Map<String, Double> highlights) {
+        if (highlights.isEmpty()) {
+            return;
+        }
+        out.append(label).append(": ");
+        List<String> entries = new ArrayList<>();
+        highlights.forEach((subject, average) -> entries.add(subject + " " + format(average)));
+        out.append(String.join(", ", entries)).append('\n');
+    }
+
+    private static Double weightedAverage(List<Subject> subjects) {
+        double weighted = 0;
+        double coefficients = 0;
+        for (Subject subject : subjects) {
+            if (subject.average() != null) {
+                weighted += subject.average() * subject.coefficient();
+                coefficients += subject.coefficient();
+            }
+        }
+        return coefficients == 0 ? null : weighted / coefficients;
+    }
+
+    private static Double average(JsonNode node) {
+        Double average = number(node, "moyenneGenerale");
+        return average != null ? average : number(node, "moyenne");
+    }
+
+    private static Double number(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isNumber() ? value.asDouble() : null;
+    }
+
+    private static String format(Double value) {
+        return value == null ? "-" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String formatCredits(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -1,37 +1,154 @@
 package com.progress.api.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Sessions held in this instance only. Each uuid has one entry carrying its external token,
+ * allowed cards and session version, each with its own expiry. Reads take no lock: they look the
+ * entry up in a concurrent map and stamp its last access, while writes and expiry serialise on
+ * the store. Once {@code external-token-store.in-memory.max-entries} is exceeded, the least
+ * recently used of a small sample of entries is dropped, an approximate LRU that needs no shared
+ * access list. Expiry is driven by a {@link TimingWheel} turned once a second, so no pass ever
+ * walks the whole store, and reads compare against the time of the last turn or write instead
+ * of reading the system clock.
+ *
+ * <p>With {@code external-token-store.in-memory.persistence.enabled}, every change is also
+ * written to a {@link SessionJournal} and replayed at startup, so a deploy does not log everyone
+ * out. The journal is compacted into a snapshot on a schedule and at shutdown.
+ */
 @Slf4j
 @Service
 @ConditionalOnProperty(name = "external-token-store.type", havingValue = "in-memory", matchIfMissing = true)
-public class InMemoryExternalTokenStore implements ExternalTokenStore {
+public class InMemoryExternalTokenStore implements ExternalTokenStore, ReactiveExternalTokenStore {
 
-    private record TokenEntry(String token, long expiresAt) {
-        boolean isExpired() {
-            return System.currentTimeMillis() > expiresAt;
-        }
+    private static final long TICK_MILLIS = 1000;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private record RefreshFamily(long sequence, long rotatedAt) {
     }
 
-    private final Map<String, TokenEntry> tokenStore = new ConcurrentHashMap<>();
+    /**
+     * Fields read without the lock are volatile. Writers set an expiry before its value and
+     * readers load the value first, so a value is never seen with an older expiry than its own.
+     */
+    private static final class SessionEntry {
+        final String uuid;
+        volatile String token;
+        volatile long tokenExpiresAt;
+        volatile Set<String> cardIds;
+        volatile long cardsExpiresAt;
+        volatile long version;
+        volatile long versionExpiresAt;
+        // System.nanoTime() of the last read or write, compared when picking an eviction victim
+        volatile long lastAccess;
+        // guarded by the store: deadline of the earliest timer that still applies, 0 if none
+        long scheduledAt;
+        boolean removed;
+        // guarded by the store: refresh families of the current version, null if none
+        Map<String, RefreshFamily> families;
+
+        SessionEntry(String uuid) {
+            this.uuid = uuid;
+            this.lastAccess = System.nanoTime();
+        }
+
+        String liveToken(long now) {
+            String current = token;
+            return current != null && now <= tokenExpiresAt ? current : null;
+        }
+
+        Set<String> liveCards(long now) {
+            Set<String> current = cardIds;
+            return current != null && now <= cardsExpiresAt ? current : null;
+        }
+
+        long currentVersion(long now) {
+            long current = version;
+            return current != 0 && now <= versionExpiresAt ? current : 0;
+        }
+
+        boolean isEmpty() {
+            return token == null && cardIds == null && version == 0;
+        }
 
-    private record AllowedCardsEntry(Set<String> cardIds, long expiresAt) {
-        boolean isExpired() {
-            return System.currentTimeMillis() > expiresAt;
+        long nextExpiry() {
+            long next = Long.MAX_VALUE;
+            if (token != null) {
+                next = Math.min(next, tokenExpiresAt);
+            }
+            if (cardIds != null) {
+                next = Math.min(next, cardsExpiresAt);
+            }
+            if (version != 0) {
+                next = Math.min(next, versionExpiresAt);
+            }
+            return next;
         }
     }
 
-    private final Map<String, AllowedCardsEntry> allowedCardsStore = new ConcurrentHashMap<>();
+    private final Map<String, SessionEntry> entries = new ConcurrentHashMap<>();
+    private TimingWheel<SessionEntry> wheel;
+    // where the next eviction sample resumes, so successive samples cover different entries
+    private Iterator<SessionEntry> evictionSweep;
+    private volatile int tokenCount;
+    // time of the last wheel turn or write; reads treat anything that expired before it as gone
+    private volatile long clock;
+
+    private final int maxEntries;
+    private final SessionJournal journal;
+    private final Counter expired;
+    private final Counter evicted;
+
+    public InMemoryExternalTokenStore(
+            @Value("${external-token-store.in-memory.max-entries:100000}") int maxEntries,
+            MeterRegistry meterRegistry,
+            Optional<SessionJournal> journal) {
+        this.maxEntries = maxEntries;
+        this.journal = journal.orElse(null);
+        this.clock = System.currentTimeMillis();
+        this.wheel = new TimingWheel<>(TICK_MILLIS, clock);
+        this.expired = removals("expired", meterRegistry);
+        this.evicted = removals("evicted", meterRegistry);
+        Gauge.builder("token.store.entries", this, InMemoryExternalTokenStore::entryCount)
+                .description("Sessions held in the in-memory token store")
+                .register(meterRegistry);
+        Gauge.builder("token.store.tokens", this, InMemoryExternalTokenStore::size)
+                .description("External tokens held in the in-memory token store")
+                .register(meterRegistry);
+    }
+
+    private static Counter removals(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("token.store.removals")
+                .description("Sessions dropped from the in-memory token store")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
 
     @Override
     public void store(String uuid, String externalToken, long ttlMillis) {
@@ -44,8 +161,11 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
             return;
         }
 
-        long expiresAt = System.currentTimeMillis() + ttlMillis;
-        tokenStore.put(uuid, new TokenEntry(externalToken, expiresAt));
+        long expiresAt = now() + ttlMillis;
+        synchronized (this) {
+            putToken(uuid, externalToken, expiresAt);
+            journal(SessionJournal.Change.token(uuid, externalToken, expiresAt));
+        }
         log.debug("Stored external token for UUID: {}, expires: {}", uuid, Instant.ofEpochMilli(expiresAt));
     }
 
@@ -55,19 +175,27 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
             return Optional.empty();
         }
 
-        TokenEntry entry = tokenStore.get(uuid);
-        if (entry == null) {
+        SessionEntry entry = read(uuid);
+        String token = entry == null ? null : entry.liveToken(clock);
+        if (token == null) {
             log.debug("No external token found for UUID: {}", uuid);
-            return Optional.empty();
         }
+        return Optional.ofNullable(token);
+    }
 
-        if (entry.isExpired()) {
-            log.debug("External token expired for UUID: {}", uuid);
-            tokenStore.remove(uuid);
+    @Override
+    public Optional<Session> retrieveSession(String uuid) {
+        if (uuid == null || uuid.isBlank()) {
             return Optional.empty();
         }
 
-        return Optional.of(entry.token());
+        SessionEntry entry = read(uuid);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long now = clock;
+        String token = entry.liveToken(now);
+        return token == null ? Optional.empty() : Optional.of(new Session(token, entry.currentVersion(now)));
     }
 
     @Override
@@ -75,9 +203,17 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
         if (uuid == null || uuid.isBlank()) {
             return;
         }
-        TokenEntry removed = tokenStore.remove(uuid);
-        allowedCardsStore.remove(uuid);
-        if (removed != null) {
+        boolean removed;
+        synchronized (this) {
+            SessionEntry entry = entries.get(uuid);
+            if (entry == null) {
+                return;
+            }
+            removed = entry.token != null;
+            removeToken(entry);
+            journal(SessionJournal.Change.remove(uuid));
+        }
+        if (removed) {
             log.debug("Removed external token for UUID: {}", uuid);
         }
     }
@@ -87,27 +223,24 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
         if (uuid == null || uuid.isBlank()) {
             return false;
         }
-        TokenEntry entry = tokenStore.get(uuid);
-        if (entry == null) {
-            return false;
-        }
-        if (entry.isExpired()) {
-            tokenStore.remove(uuid);
-            return false;
-        }
-        return true;
+        SessionEntry entry = read(uuid);
+        return entry != null && entry.liveToken(clock) != null;
     }
 
     @Override
-    public void clear() {
-        tokenStore.clear();
-        allowedCardsStore.clear();
+    public synchronized void clear() {
+        clearEntries();
+        journal(SessionJournal.Change.clear());
         log.info("Cleared all external tokens from store");
     }
 
     @Override
     public int size() {
-        return tokenStore.size();
+        return tokenCount;
+    }
+
+    int entryCount() {
+        return entries.size();
     }
 
     @Override
@@ -115,8 +248,11 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
         if (uuid == null || uuid.isBlank() || cardIds == null) {
             return;
         }
-        long expiresAt = System.currentTimeMillis() + ttlMillis;
-        allowedCardsStore.put(uuid, new AllowedCardsEntry(Collections.unmodifiableSet(cardIds), expiresAt));
+        long expiresAt = now() + ttlMillis;
+        synchronized (this) {
+            putCards(uuid, Collections.unmodifiableSet(cardIds), expiresAt);
+            journal(SessionJournal.Change.cards(uuid, cardIds, expiresAt));
+        }
         log.debug("Cached {} allowed cards for UUID: {}", cardIds.size(), uuid);
     }
 
@@ -125,27 +261,405 @@ public class InMemoryExternalTokenStore implements ExternalTokenStore {
         if (uuid == null || uuid.isBlank()) {
             return Optional.empty();
         }
-        AllowedCardsEntry entry = allowedCardsStore.get(uuid);
-        if (entry == null) {
-            return Optional.empty();
+        SessionEntry entry = read(uuid);
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.liveCards(clock));
+    }
+
+    @Override
+    public long sessionVersion(String uuid, long ttlMillis) {
+        long now = now();
+        synchronized (this) {
+            SessionEntry entry = entryFor(uuid);
+            long current = entry.currentVersion(now);
+            return setVersion(entry, current != 0 ? current : ExternalTokenStore.nextVersion(0), now + ttlMillis);
         }
-        if (entry.isExpired()) {
-            allowedCardsStore.remove(uuid);
-            return Optional.empty();
+    }
+
+    @Override
+    public long bumpSessionVersion(String uuid, long ttlMillis) {
+        long now = now();
+        long version;
+        synchronized (this) {
+            SessionEntry entry = entryFor(uuid);
+            version = setVersion(entry, ExternalTokenStore.nextVersion(entry.currentVersion(now)), now + ttlMillis);
         }
-        return Optional.of(entry.cardIds());
+        log.debug("Session version for UUID {} bumped to {}", uuid, version);
+        return version;
     }
 
-    @Scheduled(fixedRate = 300000)
-    public void cleanupExpiredTokens() {
-        int beforeSize = tokenStore.size();
+    @Override
+    public void startRefreshFamily(String uuid, String family, long ttlMillis) {
+        long now = now();
+        synchronized (this) {
+            SessionEntry entry = entryFor(uuid);
+            if (entry.families != null) {
+                List<String> idle = entry.families.entrySet().stream()
+                        .filter(e -> e.getValue().rotatedAt() < now - ttlMillis)
+                        .map(Map.Entry::getKey)
+                        .toList();
+                idle.forEach(id -> setFamily(entry, id, 0, now));
+            }
+            setFamily(entry, family, FIRST_REFRESH_SEQUENCE, now);
+        }
+    }
 
-        tokenStore.entrySet().removeIf(entry -> entry.getValue().isExpired());
-        allowedCardsStore.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    @Override
+    public OptionalLong rotateRefreshFamily(String uuid, long version, String family, long sequence,
+            long graceMillis, long ttlMillis) {
+        long now = now();
+        synchronized (this) {
+            SessionEntry entry = entries.get(uuid);
+            if (entry == null || entry.currentVersion(now) != version || entry.families == null) {
+                return OptionalLong.empty();
+            }
+            RefreshFamily current = entry.families.get(family);
+            if (current == null) {
+                return OptionalLong.empty();
+            }
+            long issued = current.sequence();
+            if (sequence == current.sequence()) {
+                issued = sequence + 1;
+                setFamily(entry, family, issued, now);
+            } else if (sequence != current.sequence() - 1 || now - current.rotatedAt() > graceMillis) {
+                setFamily(entry, family, 0, now);
+                log.warn("Replayed refresh token for UUID {}; ended its refresh family", uuid);
+                return OptionalLong.empty();
+            }
+            setVersion(entry, version, now + ttlMillis);
+            return OptionalLong.of(issued);
+        }
+    }
+
+    /** Records a family's sequence and last rotation; sequence 0 ends the family */
+    private void setFamily(SessionEntry entry, String family, long sequence, long rotatedAt) {
+        if (sequence == 0) {
+            if (entry.families != null) {
+                entry.families.remove(family);
+            }
+        } else {
+            if (entry.families == null) {
+                entry.families = new HashMap<>();
+            }
+            entry.families.put(family, new RefreshFamily(sequence, rotatedAt));
+        }
+        journal(SessionJournal.Change.family(entry.uuid, family, sequence, rotatedAt));
+    }
 
-        int removed = beforeSize - tokenStore.size();
+    private long setVersion(SessionEntry entry, long version, long expiresAt) {
+        if (entry.version != version) {
+            entry.families = null;
+        }
+        entry.versionExpiresAt = expiresAt;
+        entry.version = version;
+        schedule(entry);
+        journal(SessionJournal.Change.version(entry.uuid, version, expiresAt));
+        return version;
+    }
+
+    // Everything is in memory, so the reactive variants complete immediately on the caller's thread.
+
+    @Override
+    public Mono<Session> findSession(String uuid) {
+        return Mono.fromSupplier(() -> retrieveSession(uuid).orElse(null));
+    }
+
+    @Override
+    public Mono<Map<String, Session>> findSessions(Collection<String> uuids) {
+        return Mono.fromSupplier(() -> {
+            Map<String, Session> sessions = new LinkedHashMap<>();
+            uuids.forEach(uuid -> retrieveSession(uuid).ifPresent(session -> sessions.put(uuid, session)));
+            return sessions;
+        });
+    }
+
+    @Override
+    public Mono<Set<String>> findAllowedCards(String uuid) {
+        return Mono.fromSupplier(() -> getAllowedCards(uuid).orElse(null));
+    }
+
+    @Override
+    public Mono<Void> saveAllowedCards(String uuid, Set<String> cardIds, long ttlMillis) {
+        return Mono.fromRunnable(() -> storeAllowedCards(uuid, cardIds, ttlMillis));
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void expireEntries() {
+        expireEntries(System.currentTimeMillis());
+    }
+
+    /** Turns the wheel to {@code now}, dropping expired fields and sessions left with none */
+    void expireEntries(long now) {
+        int removed = 0;
+        synchronized (this) {
+            clock = Math.max(clock, now);
+            for (TimingWheel.Timer<SessionEntry> timer : wheel.advance(now)) {
+                SessionEntry entry = timer.value();
+                if (entry.removed || entry.scheduledAt != timer.deadline()) {
+                    continue;
+                }
+                if (entry.token != null && entry.tokenExpiresAt < now) {
+                    clearToken(entry);
+                }
+                if (entry.cardIds != null && entry.cardsExpiresAt < now) {
+                    entry.cardIds = null;
+                }
+                if (entry.version != 0 && entry.versionExpiresAt < now) {
+                    entry.version = 0;
+                    entry.families = null;
+                }
+                if (entry.isEmpty()) {
+                    drop(entry);
+                    removed++;
+                } else {
+                    entry.scheduledAt = 0;
+                    schedule(entry);
+                }
+            }
+        }
         if (removed > 0) {
-            log.info("Cleaned up {} expired external tokens. Remaining: {}", removed, tokenStore.size());
+            expired.increment(removed);
+            log.debug("Expired {} sessions from the in-memory token store", removed);
+        }
+    }
+
+    /** Reloads the sessions saved by the journal, skipping anything that expired meanwhile */
+    @PostConstruct
+    void restore() {
+        if (journal == null) {
+            return;
         }
+        long started = System.currentTimeMillis();
+        long changes;
+        synchronized (this) {
+            try {
+                changes = journal.replay(this::apply);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to restore sessions from the journal", e);
+            }
+        }
+        log.info("Restored {} sessions from {} journal changes in {} ms",
+                size(), changes, System.currentTimeMillis() - started);
+    }
+
+    private void apply(SessionJournal.Change change) {
+        switch (change.op()) {
+            case TOKEN -> {
+                if (change.expiresAt() >= clock) {
+                    putToken(change.uuid(), change.token(), change.expiresAt());
+                }
+            }
+            case CARDS -> {
+                if (change.expiresAt() >= clock) {
+                    putCards(change.uuid(), Collections.unmodifiableSet(change.cardIds()), change.expiresAt());
+                }
+            }
+            case VERSION -> {
+                if (change.expiresAt() >= clock) {
+                    SessionEntry entry = entryFor(change.uuid());
+                    if (entry.version != change.version()) {
+                        entry.families = null;
+                    }
+                    entry.versionExpiresAt = change.expiresAt();
+                    entry.version = change.version();
+                    schedule(entry);
+                }
+            }
+            case REMOVE -> {
+                SessionEntry entry = entries.get(change.uuid());
+                if (entry != null) {
+                    removeToken(entry);
+                }
+            }
+            case DROP -> {
+                SessionEntry entry = entries.get(change.uuid());
+                if (entry != null) {
+                    drop(entry);
+                }
+            }
+            case FAMILY -> {
+                SessionEntry entry = entries.get(change.uuid());
+                if (entry != null && entry.version != 0) {
+                    if (change.version() == 0) {
+                        if (entry.families != null) {
+                            entry.families.remove(change.token());
+                        }
+                    } else {
+                        if (entry.families == null) {
+                            entry.families = new HashMap<>();
+                        }
+                        entry.families.put(change.token(), new RefreshFamily(change.version(), change.expiresAt()));
+                    }
+                }
+            }
+            case CLEAR -> clearEntries();
+        }
+    }
+
+    /**
+     * Compacts the journal: starts a new generation and saves the live sessions as its
+     * snapshot, in least recently used order so a restore keeps the eviction order.
+     */
+    @Scheduled(fixedRateString = "${external-token-store.in-memory.persistence.snapshot-interval-ms:300000}",
+            initialDelayString = "${external-token-store.in-memory.persistence.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (journal == null) {
+            return;
+        }
+        long generation;
+        List<SessionJournal.Change> state = new ArrayList<>();
+        try {
+            synchronized (this) {
+                generation = journal.rotate();
+                long now = clock;
+                List<SessionEntry> live = new ArrayList<>(entries.values());
+                live.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+                for (SessionEntry entry : live) {
+                    if (entry.currentVersion(now) != 0) {
+                        state.add(SessionJournal.Change.version(entry.uuid, entry.version, entry.versionExpiresAt));
+                        if (entry.families != null) {
+                            entry.families.forEach((family, refresh) -> state.add(SessionJournal.Change.family(
+                                    entry.uuid, family, refresh.sequence(), refresh.rotatedAt())));
+                        }
+                    }
+                    if (entry.liveCards(now) != null) {
+                        state.add(SessionJournal.Change.cards(entry.uuid, entry.cardIds, entry.cardsExpiresAt));
+                    }
+                    if (entry.liveToken(now) != null) {
+                        state.add(SessionJournal.Change.token(entry.uuid, entry.token, entry.tokenExpiresAt));
+                    }
+                }
+            }
+            journal.writeSnapshot(generation, state);
+        } catch (IOException e) {
+            log.warn("Failed to snapshot the session journal: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        if (journal != null) {
+            snapshot();
+            journal.close();
+        }
+    }
+
+    private long now() {
+        long now = System.currentTimeMillis();
+        if (now > clock) {
+            clock = now;
+        }
+        return now;
+    }
+
+    /** Entry for a uuid without taking the lock, stamped as just used */
+    private SessionEntry read(String uuid) {
+        SessionEntry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.lastAccess = System.nanoTime();
+        }
+        return entry;
+    }
+
+    /** Entry for a uuid, created if missing; creating one may evict a least recently used one */
+    private SessionEntry entryFor(String uuid) {
+        SessionEntry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.lastAccess = System.nanoTime();
+            return entry;
+        }
+        entry = new SessionEntry(uuid);
+        entries.put(uuid, entry);
+        if (entries.size() > maxEntries) {
+            SessionEntry victim = sampleLeastRecentlyUsed(entry);
+            drop(victim);
+            journal(SessionJournal.Change.drop(victim.uuid));
+            evicted.increment();
+            log.debug("Evicted least recently used session for UUID: {}", victim.uuid);
+        }
+        return entry;
+    }
+
+    /** Least recently used of the next few entries of a sweep over the map, never {@code keep} */
+    private SessionEntry sampleLeastRecentlyUsed(SessionEntry keep) {
+        SessionEntry victim = null;
+        int remaining = Math.min(EVICTION_SAMPLE, entries.size() - 1);
+        while (remaining > 0) {
+            if (evictionSweep == null || !evictionSweep.hasNext()) {
+                evictionSweep = entries.values().iterator();
+            }
+            SessionEntry candidate = evictionSweep.next();
+            if (candidate == keep || candidate.removed) {
+                continue;
+            }
+            remaining--;
+            if (victim == null || candidate.lastAccess < victim.lastAccess) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private void putToken(String uuid, String token, long expiresAt) {
+        SessionEntry entry = entryFor(uuid);
+        if (entry.token == null) {
+            tokenCount++;
+        }
+        entry.tokenExpiresAt = expiresAt;
+        entry.token = token;
+        schedule(entry);
+    }
+
+    private void putCards(String uuid, Set<String> cardIds, long expiresAt) {
+        SessionEntry entry = entryFor(uuid);
+        entry.cardsExpiresAt = expiresAt;
+        entry.cardIds = cardIds;
+        schedule(entry);
+    }
+
+    /** Drops the external token and allowed cards, keeping the session version */
+    private void removeToken(SessionEntry entry) {
+        clearToken(entry);
+        entry.cardIds = null;
+        if (entry.isEmpty()) {
+            drop(entry);
+        }
+    }
+
+    private void clearEntries() {
+        entries.values().forEach(entry -> entry.removed = true);
+        entries.clear();
+        evictionSweep = null;
+        tokenCount = 0;
+        wheel = new TimingWheel<>(TICK_MILLIS, clock);
+    }
+
+    // called under the store so the journal sees changes in the order they were applied; it only queues them
+    private void journal(SessionJournal.Change change) {
+        if (journal != null) {
+            journal.append(change);
+        }
+    }
+
+    /** Arms a timer for the entry's next expiry, unless an earlier one is already pending */
+    private void schedule(SessionEntry entry) {
+        long next = entry.nextExpiry();
+        if (next == Long.MAX_VALUE || (entry.scheduledAt != 0 && entry.scheduledAt <= next)) {
+            return;
+        }
+        entry.scheduledAt = next;
+        wheel.schedule(entry, next);
+    }
+
+    private void clearToken(SessionEntry entry) {
+        if (entry.token != null) {
+            entry.token = null;
+            tokenCount--;
+        }
+    }
+
+    private void drop(SessionEntry entry) {
+        entries.remove(entry.uuid);
+        entry.removed = true;
+        clearToken(entry);
     }
 }
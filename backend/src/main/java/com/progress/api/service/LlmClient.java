@@ -0,0 +1,29 @@
+package com.progress.api.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Chat completion against an OpenAI-compatible LLM. Implemented by a single provider
+ * ({@link OpenAiCompatibleClient}) and by {@link LlmRouter}, which spreads calls over several.
+ */
+public interface LlmClient {
+
+    /**
+     * Text produced by a model. For streams, each reply carries one content delta.
+     *
+     * @param provider configured name of the backend that produced it
+     * @param model    model the backend ran
+     */
+    record Reply(String provider, String model, String content) {
+    }
+
+    Mono<Reply> chat(String systemPrompt, String userPrompt);
+
+    /**
+     * Streams content deltas as the model produces them.
+     */
+    Flux<Reply> chatStream(String systemPrompt, String userPrompt);
+
+    boolean isConfigured();
+}
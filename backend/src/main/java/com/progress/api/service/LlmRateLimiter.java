@@ -0,0 +1,279 @@
+package com.progress.api.service;
+
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side view of one LLM provider's quota. Tracks a requests window and a tokens window, seeded
+ * from configuration and resynchronised from the {@code x-ratelimit-*} headers of every response.
+ * A call is admitted when both windows have room, queued when room frees up within
+ * {@code max-wait-ms}, and otherwise rejected locally instead of spending a round-trip on a 429.
+ */
+@Slf4j
+public class LlmRateLimiter {
+
+    static final String LIMIT_TOKENS = "x-ratelimit-limit-tokens";
+    static final String REMAINING_REQUESTS = "x-ratelimit-remaining-requests";
+    static final String REMAINING_TOKENS = "x-ratelimit-remaining-tokens";
+    static final String RESET_REQUESTS = "x-ratelimit-reset-requests";
+    static final String RESET_TOKENS = "x-ratelimit-reset-tokens";
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final long WINDOW_MILLIS = 60_000L;
+
+    /**
+     * A fixed quota window. Remaining capacity refills to the limit once {@code resetAt} passes.
+     */
+    private static final class Window {
+        private long limit;
+        private long remaining;
+        private long resetAt;
+
+        private Window(long limit) {
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        private void refresh(long now) {
+            if (now >= resetAt) {
+                remaining = limit;
+                resetAt = now + WINDOW_MILLIS;
+            }
+        }
+
+        private long waitFor(long amount, long now) {
+            refresh(now);
+            return remaining >= amount ? 0 : Math.max(1, resetAt - now);
+        }
+    }
+
+    private final String provider;
+    private final Window requests;
+    private final Window tokens;
+    private final int completionTokenEstimate;
+    private final long maxWaitMillis;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter admittedCounter;
+    private final Counter queuedCounter;
+    private final Counter rejectedCounter;
+
+    public LlmRateLimiter(
+            String provider,
+            long requestsPerMinute,
+            long tokensPerMinute,
+            int completionTokenEstimate,
+            long maxWaitMillis,
+            int maxQueued,
+            MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.requests = new Window(requestsPerMinute);
+        this.tokens = new Window(tokensPerMinute);
+        this.completionTokenEstimate = completionTokenEstimate;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxQueued = maxQueued;
+
+        this.admittedCounter = scheduledCounter(meterRegistry, provider, "admitted");
+        this.queuedCounter = scheduledCounter(meterRegistry, provider, "queued");
+        this.rejectedCounter = scheduledCounter(meterRegistry, provider, "rejected");
+        Gauge.builder("llm.requests.waiting", queued, AtomicInteger::get)
+                .description("LLM calls waiting for quota")
+                .tag("provider", provider)
+                .register(meterRegistry);
+    }
+
+    private static Counter scheduledCounter(MeterRegistry meterRegistry, String provider, String outcome) {
+        return Counter.builder("llm.requests.scheduled")
+                .description("LLM calls by local scheduling outcome")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Completes once the call fits in the quota, or errors with {@code 429 Retry-After} if it
+     * would have to wait longer than allowed.
+     *
+     * @param promptTokens estimated prompt tokens; the expected completion is added on top
+     */
+    public Mono<Void> acquire(int promptTokens) {
+        long cost = (long) promptTokens + completionTokenEstimate;
+        return Mono.defer(() -> {
+            long waitMillis = tryReserve(cost);
+            if (waitMillis == 0) {
+                admittedCounter.increment();
+                return Mono.empty();
+            }
+            if (waitMillis > maxWaitMillis) {
+                return Mono.error(reject(waitMillis));
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                return Mono.error(reject(waitMillis));
+            }
+
+            queuedCounter.increment();
+            log.debug("Queueing {} call for {} ms ({} tokens estimated)", provider, waitMillis, cost);
+            long deadline = System.currentTimeMillis() + maxWaitMillis;
+            return Mono.delay(Duration.ofMillis(waitMillis))
+                    .then(awaitCapacity(cost, deadline))
+                    .doFinally(signal -> queued.decrementAndGet());
+        });
+    }
+
+    private Mono<Void> awaitCapacity(long cost, long deadline) {
+        return Mono.defer(() -> {
+            long waitMillis = tryReserve(cost);
+            if (waitMillis == 0) {
+                admittedCounter.increment();
+                return Mono.empty();
+            }
+            if (System.currentTimeMillis() + waitMillis > deadline) {
+                return Mono.error(reject(waitMillis));
+            }
+            return Mono.delay(Duration.ofMillis(waitMillis)).then(awaitCapacity(cost, deadline));
+        });
+    }
+
+    /**
+     * Reserves capacity in both windows, or returns how long to wait before it could fit.
+     */
+    private synchronized long tryReserve(long cost) {
+        if (cost > tokens.limit) {
+            throw new ApiException("Prompt is too large for the " + provider + " token quota",
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        long now = System.currentTimeMillis();
+        long wait = Math.max(requests.waitFor(1, now), tokens.waitFor(cost, now));
+        if (wait == 0) {
+            requests.remaining -= 1;
+            tokens.remaining -= cost;
+        }
+        return wait;
+    }
+
+    private ApiException reject(long waitMillis) {
+        rejectedCounter.increment();
+        long retryAfterSeconds = Math.max(1, (waitMillis + 999) / 1000);
+        log.warn("{} quota exhausted locally, rejecting call (retry in {}s)", provider, retryAfterSeconds);
+        return new ApiException("AI service rate limit reached. Please try again later.",
+                HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+    }
+
+    /**
+     * Resynchronises both windows from the provider's rate-limit headers. The server is authoritative
+     * for remaining capacity; the requests window keeps the stricter of the local and server view.
+     */
+    public synchronized void update(HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+
+        Long tokenLimit = parseLong(headers.getFirst(LIMIT_TOKENS));
+        if (tokenLimit != null) {
+            tokens.limit = tokenLimit;
+        }
+        Long remainingTokens = parseLong(headers.getFirst(REMAINING_TOKENS));
+        Long tokensReset = parseDuration(headers.getFirst(RESET_TOKENS));
+        if (remainingTokens != null) {
+            tokens.refresh(now);
+            tokens.remaining = remainingTokens;
+            if (tokensReset != null) {
+                tokens.resetAt = now + tokensReset;
+            }
+        }
+
+        Long remainingRequests = parseLong(headers.getFirst(REMAINING_REQUESTS));
+        Long requestsReset = parseDuration(headers.getFirst(RESET_REQUESTS));
+        requests.refresh(now);
+        if (remainingRequests != null && remainingRequests < requests.remaining) {
+            requests.remaining = remainingRequests;
+            if (requestsReset != null) {
+                requests.resetAt = Math.max(requests.resetAt, now + requestsReset);
+            }
+        }
+    }
+
+    /**
+     * Blocks all calls until the provider's {@code retry-after} elapses after an upstream 429.
+     */
+    public synchronized void exhausted(HttpHeaders headers) {
+        Long retryAfterSeconds = parseLong(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        long resetAt = System.currentTimeMillis()
+                + (retryAfterSeconds != null ? retryAfterSeconds * 1000 : WINDOW_MILLIS);
+        requests.remaining = 0;
+        requests.resetAt = Math.max(requests.resetAt, resetAt);
+        tokens.remaining = 0;
+        tokens.resetAt = Math.max(tokens.resetAt, resetAt);
+    }
+
+    public synchronized long remainingTokens() {
+        tokens.refresh(System.currentTimeMillis());
+        return tokens.remaining;
+    }
+
+    public synchronized long remainingRequests() {
+        requests.refresh(System.currentTimeMillis());
+        return requests.remaining;
+    }
+
+    /**
+     * Fraction of the tighter of the two windows still available, from 0 (exhausted) to 1.
+     */
+    public synchronized double headroom() {
+        long now = System.currentTimeMillis();
+        requests.refresh(now);
+        tokens.refresh(now);
+        double requestShare = requests.limit > 0 ? (double) requests.remaining / requests.limit : 0;
+        double tokenShare = tokens.limit > 0 ? (double) tokens.remaining / tokens.limit : 0;
+        return Math.max(0, Math.min(1, Math.min(requestShare, tokenShare)));
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return (long) Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses reset durations such as {@code 7.66s}, {@code 2m59.56s} or {@code 120ms}.
+     */
+    static Long parseDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? (long) Math.ceil(millis) : null;
+    }
+}
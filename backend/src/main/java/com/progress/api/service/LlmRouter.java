@@ -0,0 +1,228 @@
+package com.progress.api.service;
+
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spreads chat completions over several OpenAI-compatible backends. Each call goes to the
+ * backend with the best observed p95 latency, weighted by its recent error rate and remaining
+ * quota; if that backend errors or times out, the next one is tried, all within one deadline.
+ * A streaming call only fails over before its first delta, so callers never see mixed output.
+ */
+@Slf4j
+public class LlmRouter implements LlmClient {
+
+    static final int WINDOW_SIZE = 50;
+
+    /**
+     * A backend failing every call scores as if it were this many times slower.
+     */
+    private static final double ERROR_PENALTY = 4.0;
+
+    /**
+     * Floor on quota headroom, so an exhausted backend ranks last instead of dividing by zero.
+     */
+    private static final double MIN_HEADROOM = 0.05;
+
+    /**
+     * Latency and outcome of the backend's last {@link #WINDOW_SIZE} calls.
+     */
+    private static final class Backend {
+        private final OpenAiCompatibleClient client;
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private final boolean[] failures = new boolean[WINDOW_SIZE];
+        private int next;
+        private int count;
+
+        private Backend(OpenAiCompatibleClient client) {
+            this.client = client;
+        }
+
+        private synchronized void record(long latencyMillis, boolean failed) {
+            latencies[next] = latencyMillis;
+            failures[next] = failed;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        private synchronized long p95() {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * count) - 1];
+        }
+
+        private synchronized double errorRate() {
+            if (count == 0) {
+                return 0;
+            }
+            int failed = 0;
+            for (int i = 0; i < count; i++) {
+                if (failures[i]) {
+                    failed++;
+                }
+            }
+            return (double) failed / count;
+        }
+
+        /**
+         * Lower is better. Backends with no samples yet score zero so they get tried early.
+         */
+        private double score() {
+            if (count == 0) {
+                return 0;
+            }
+            double headroom = Math.max(MIN_HEADROOM, client.getRateLimiter().headroom());
+            return (p95() + 1) * (1 + ERROR_PENALTY * errorRate()) / headroom;
+        }
+    }
+
+    private final List<Backend> backends = new ArrayList<>();
+    private final long deadlineMillis;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param clients        backends in order of preference; ties in score keep this order.
+     *                       Clients without an API key are left out.
+     * @param deadlineMillis time budget for one call across all failover attempts
+     */
+    public LlmRouter(List<OpenAiCompatibleClient> clients, long deadlineMillis, MeterRegistry meterRegistry) {
+        for (OpenAiCompatibleClient client : clients) {
+            if (client.isConfigured()) {
+                backends.add(new Backend(client));
+            }
+        }
+        this.deadlineMillis = deadlineMillis;
+        this.meterRegistry = meterRegistry;
+
+        if (backends.isEmpty()) {
+            log.warn("No LLM provider is configured. AI recommendations will not work.");
+        } else {
+            log.info("LLM providers: {}", backends.stream().map(b -> b.client.getName()).toList());
+        }
+    }
+
+    @Override
+    public Mono<Reply> chat(String systemPrompt, String userPrompt) {
+        return Mono.defer(() -> chat(systemPrompt, userPrompt, rank(), 0, deadline(), null));
+    }
+
+    @Override
+    public Flux<Reply> chatStream(String systemPrompt, String userPrompt) {
+        return Flux.defer(() -> chatStream(systemPrompt, userPrompt, rank(), 0, deadline(), null));
+    }
+
+    private Mono<Reply> chat(String systemPrompt, String userPrompt, List<Backend> ranked, int index,
+            long deadline, Throwable lastError) {
+        long remaining = deadline - System.nanoTime();
+        if (index >= ranked.size() || remaining <= 0) {
+            return Mono.error(exhausted(lastError));
+        }
+        Backend backend = ranked.get(index);
+        long start = System.nanoTime();
+        return backend.client.chat(systemPrompt, userPrompt)
+                .timeout(Duration.ofNanos(remaining))
+                .doOnSuccess(reply -> backend.record(elapsedMillis(start), false))
+                .onErrorResume(e -> {
+                    failed(backend, start, e, index + 1 < ranked.size());
+                    return chat(systemPrompt, userPrompt, ranked, index + 1, deadline, e);
+                });
+    }
+
+    private Flux<Reply> chatStream(String systemPrompt, String userPrompt, List<Backend> ranked, int index,
+            long deadline, Throwable lastError) {
+        long remaining = deadline - System.nanoTime();
+        if (index >= ranked.size() || remaining <= 0) {
+            return Flux.error(exhausted(lastError));
+        }
+        Backend backend = ranked.get(index);
+        long start = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        // the deadline bounds the wait for the first delta; later gaps fall under the client's own timeout
+        return backend.client.chatStream(systemPrompt, userPrompt)
+                .timeout(Mono.delay(Duration.ofNanos(remaining)), delta -> Mono.never())
+                .doOnNext(delta -> started.set(true))
+                .doOnComplete(() -> backend.record(elapsedMillis(start), false))
+                .onErrorResume(e -> {
+                    if (started.get()) {
+                        failed(backend, start, e, false);
+                        return Flux.error(e);
+                    }
+                    failed(backend, start, e, index + 1 < ranked.size());
+                    return chatStream(systemPrompt, userPrompt, ranked, index + 1, deadline, e);
+                });
+    }
+
+    /**
+     * Records a failed call. Quota rejections are not held against the backend's latency or
+     * error rate; its drained headroom already pushes it down the ranking.
+     */
+    private void failed(Backend backend, long start, Throwable error, boolean failingOver) {
+        if (!isQuotaRejection(error)) {
+            backend.record(elapsedMillis(start), true);
+        }
+        if (failingOver) {
+            log.warn("LLM provider {} failed ({}), failing over", backend.client.getName(), error.getMessage());
+            Counter.builder("llm.failovers")
+                    .description("LLM calls retried on another provider after a failure")
+                    .tag("provider", backend.client.getName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static boolean isQuotaRejection(Throwable error) {
+        return error instanceof ApiException api && api.getStatus() == HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    private Throwable exhausted(Throwable lastError) {
+        if (lastError == null) {
+            return new ApiException("AI service is not available", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (lastError instanceof TimeoutException) {
+            return new ApiException("AI service did not respond in time", HttpStatus.GATEWAY_TIMEOUT);
+        }
+        return lastError;
+    }
+
+    private List<Backend> rank() {
+        List<Backend> ranked = new ArrayList<>(backends);
+        ranked.sort(Comparator.comparingDouble(Backend::score));
+        return ranked;
+    }
+
+    /**
+     * Provider names in the order the next call would try them.
+     */
+    List<String> ranking() {
+        return rank().stream().map(backend -> backend.client.getName()).toList();
+    }
+
+    private long deadline() {
+        return System.nanoTime() + Duration.ofMillis(deadlineMillis).toNanos();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return !backends.isEmpty();
+    }
+}
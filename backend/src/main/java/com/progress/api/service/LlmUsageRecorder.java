@@ -0,0 +1,352 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.progress.api.dto.LlmUsageSnapshot;
+import com.progress.api.dto.LlmUsageSnapshot.Latency;
+import com.progress.api.dto.LlmUsageSnapshot.Usage;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Records the cost and timing of every LLM call: Micrometer meters for dashboards, one log
+ * line per call, and a sliding window of recent calls summarised by the {@code llmusage}
+ * actuator endpoint. Token counts come from the provider's {@code usage} block and fall back
+ * to local estimates when a provider does not report them. Cost is priced from those token
+ * counts with each provider's configured per-million rates.
+ */
+@Slf4j
+@Component
+public class LlmUsageRecorder {
+
+    public static final String MODE_CHAT = "chat";
+    public static final String MODE_STREAM = "stream";
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_CANCELLED = "cancelled";
+
+    /**
+     * One finished call. Latency covers the whole call as the caller saw it, queue time
+     * included; time to first byte is measured from when the request was sent.
+     */
+    public record CallRecord(
+            Instant completedAt,
+            String provider,
+            String model,
+            String mode,
+            String outcome,
+            long queueMillis,
+            Long ttfbMillis,
+            long latencyMillis,
+            long promptTokens,
+            long completionTokens,
+            boolean estimatedTokens) {
+
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    /** USD per million prompt and completion tokens */
+    record Price(double promptPerMillion, double completionPerMillion) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Price> prices = new ConcurrentHashMap<>();
+    private final Duration window;
+    private final int maxRecords;
+    private final Deque<CallRecord> records = new ArrayDeque<>();
+
+    public LlmUsageRecorder(
+            MeterRegistry meterRegistry,
+            @Value("${llm.usage.window-minutes:15}") long windowMinutes,
+            @Value("${llm.usage.max-records:10000}") int maxRecords) {
+        this.meterRegistry = meterRegistry;
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * Sets the per-million token prices used to cost the provider's calls.
+     */
+    public void price(String provider, double promptPerMillion, double completionPerMillion) {
+        prices.put(provider, new Price(promptPerMillion, completionPerMillion));
+    }
+
+    double cost(CallRecord call) {
+        Price price = prices.get(call.provider());
+        if (price == null) {
+            return 0;
+        }
+        return (call.promptTokens() * price.promptPerMillion()
+                + call.completionTokens() * price.completionPerMillion()) / 1_000_000;
+    }
+
+    /**
+     * Starts timing a call, before it waits for quota.
+     */
+    public Call start(String provider, String model, String mode, int promptTokenEstimate) {
+        return new Call(provider, model, mode, promptTokenEstimate);
+    }
+
+    /**
+     * Tracks one call as it moves through the quota queue, the request and the response.
+     * The first terminal signal wins; later ones are ignored.
+     */
+    public final class Call {
+        private final String provider;
+        private final String model;
+        private final String mode;
+        private final int promptTokenEstimate;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final AtomicLong completionChars = new AtomicLong();
+        private volatile long admittedNanos;
+        private volatile long firstByteNanos;
+        private volatile long promptTokens = -1;
+        private volatile long completionTokens = -1;
+
+        private Call(String provider, String model, String mode, int promptTokenEstimate) {
+            this.provider = provider;
+            this.model = model;
+            this.mode = mode;
+            this.promptTokenEstimate = promptTokenEstimate;
+        }
+
+        public void admitted() {
+            admittedNanos = System.nanoTime();
+        }
+
+        public void firstByte() {
+            firstByteNanos = System.nanoTime();
+        }
+
+        /**
+         * Takes token counts from an OpenAI-style {@code usage} object; anything else is ignored.
+         */
+        public void usage(JsonNode usage) {
+            if (usage != null && usage.has("prompt_tokens")) {
+                promptTokens = usage.path("prompt_tokens").asLong();
+                completionTokens = usage.path("completion_tokens").asLong();
+            }
+        }
+
+        /**
+         * Counts generated text, used to estimate completion tokens when no usage is reported.
+         */
+        public void content(String text) {
+            if (text != null) {
+                completionChars.addAndGet(text.length());
+            }
+        }
+
+        public void succeeded() {
+            finish(OUTCOME_SUCCESS);
+        }
+
+        public void failed(Throwable error) {
+            finish(outcome(error, admittedNanos != 0));
+        }
+
+        public void cancelled() {
+            finish(OUTCOME_CANCELLED);
+        }
+
+        private void finish(String outcome) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            long queueNanos = (admittedNanos != 0 ? admittedNanos : now) - startNanos;
+            Long ttfbMillis = admittedNanos != 0 && firstByteNanos != 0
+                    ? TimeUnit.NANOSECONDS.toMillis(firstByteNanos - admittedNanos)
+                    : null;
+            boolean estimated = promptTokens < 0;
+            long prompt;
+            long completion;
+            if (estimated) {
+                // nothing reached the model if the call never got past the quota queue
+                prompt = admittedNanos != 0 ? promptTokenEstimate : 0;
+                completion = TokenEstimator.estimateLength(completionChars.get());
+            } else {
+                prompt = promptTokens;
+                completion = completionTokens;
+            }
+            record(new CallRecord(Instant.now(), provider, model, mode, outcome,
+                    TimeUnit.NANOSECONDS.toMillis(queueNanos), ttfbMillis,
+                    TimeUnit.NANOSECONDS.toMillis(now - startNanos), prompt, completion, estimated));
+        }
+    }
+
+    static String outcome(Throwable error, boolean admitted) {
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof WebClientResponseException e) {
+            if (e.getStatusCode().value() == 429) {
+                return "rate_limited";
+            }
+            return e.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+        }
+        if (error instanceof ApiException && !admitted) {
+            return "rejected";
+        }
+        return "error";
+    }
+
+    void record(CallRecord call) {
+        Timer.builder("llm.call.latency")
+                .description("LLM call duration including time queued for quota")
+                .tags("provider", call.provider(), "model", call.model(), "mode", call.mode(),
+                        "outcome", call.outcome())
+                .register(meterRegistry)
+                .record(call.latencyMillis(), TimeUnit.MILLISECONDS);
+        Timer.builder("llm.call.queue")
+                .description("Time an LLM call waited for local quota")
+                .tag("provider", call.provider())
+                .register(meterRegistry)
+                .record(call.queueMillis(), TimeUnit.MILLISECONDS);
+        if (call.ttfbMillis() != null) {
+            Timer.builder("llm.call.ttfb")
+                    .description("Time from sending an LLM request to its response headers")
+                    .tags("provider", call.provider(), "model", call.model(), "mode", call.mode())
+                    .register(meterRegistry)
+                    .record(call.ttfbMillis(), TimeUnit.MILLISECONDS);
+        }
+        tokens(call, "prompt", call.promptTokens());
+        tokens(call, "completion", call.completionTokens());
+        double cost = cost(call);
+        Counter.builder("llm.call.cost")
+                .description("Cost of LLM calls priced from their token counts")
+                .baseUnit("usd")
+                .tags("provider", call.provider(), "model", call.model())
+                .register(meterRegistry)
+                .increment(cost);
+
+        log.info("LLM call provider={} model={} mode={} outcome={} queue={}ms ttfb={}ms latency={}ms "
+                        + "tokens={}+{}={}{} cost=${}",
+                call.provider(), call.model(), call.mode(), call.outcome(), call.queueMillis(),
+                call.ttfbMillis() != null ? call.ttfbMillis() : "-", call.latencyMillis(),
+                call.promptTokens(), call.completionTokens(), call.totalTokens(),
+                call.estimatedTokens() ? " (estimated)" : "", String.format(Locale.ROOT, "%.6f", cost));
+
+        synchronized (records) {
+            records.addLast(call);
+            while (records.size() > maxRecords) {
+                records.removeFirst();
+            }
+        }
+    }
+
+    private void tokens(CallRecord call, String type, long amount) {
+        DistributionSummary.builder("llm.call.tokens")
+                .description("Tokens per LLM call")
+                .baseUnit("tokens")
+                .tags("provider", call.provider(), "model", call.model(), "type", type)
+                .register(meterRegistry)
+                .record(amount);
+    }
+
+    /**
+     * Aggregates the calls that finished within the window, overall and per provider/model.
+     */
+    public LlmUsageSnapshot snapshot() {
+        Instant to = Instant.now();
+        Instant from = to.minus(window);
+        List<CallRecord> recent;
+        synchronized (records) {
+            evictBefore(from);
+            recent = new ArrayList<>(records);
+        }
+
+        double minutes = window.toMillis() / 60_000.0;
+        Map<String, Usage> byModel = recent.stream()
+                .collect(Collectors.groupingBy(call -> call.provider() + "/" + call.model(), TreeMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(), calls -> usage(calls, minutes))));
+
+        return LlmUsageSnapshot.builder()
+                .from(from)
+                .to(to)
+                .total(usage(recent, minutes))
+                .byModel(byModel)
+                .build();
+    }
+
+    private Usage usage(List<CallRecord> calls, double minutes) {
+        long prompt = calls.stream().mapToLong(CallRecord::promptTokens).sum();
+        long completion = calls.stream().mapToLong(CallRecord::completionTokens).sum();
+        return Usage.builder()
+                .calls(calls.size())
+                .outcomes(calls.stream().collect(Collectors.groupingBy(CallRecord::outcome, TreeMap::new,
+                        Collectors.counting())))
+                .promptTokens(prompt)
+                .completionTokens(completion)
+                .totalTokens(prompt + completion)
+                .costUsd(calls.stream().mapToDouble(this::cost).sum())
+                .callsPerMinute(calls.size() / minutes)
+                .tokensPerMinute((prompt + completion) / minutes)
+                .latencyMs(latency(calls, CallRecord::latencyMillis))
+                .ttfbMs(latency(calls.stream().filter(call -> call.ttfbMillis() != null).toList(),
+                        CallRecord::ttfbMillis))
+                .queueMs(latency(calls, CallRecord::queueMillis))
+                .build();
+    }
+
+    private static Latency latency(List<CallRecord> calls, ToLongFunction<CallRecord> metric) {
+        long[] sorted = calls.stream().mapToLong(metric).sorted().toArray();
+        if (sorted.length == 0) {
+            return Latency.builder().build();
+        }
+        return Latency.builder()
+                .p50(percentile(sorted, 0.50))
+                .p95(percentile(sorted, 0.95))
+                .max(sorted[sorted.length - 1])
+                .build();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    private void evictBefore(Instant cutoff) {
+        while (!records.isEmpty() && records.peekFirst().completedAt().isBefore(cutoff)) {
+            records.removeFirst();
+        }
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void cleanupExpiredRecords() {
+        synchronized (records) {
+            int beforeSize = records.size();
+            evictBefore(Instant.now().minus(window));
+            int removed = beforeSize - records.size();
+            if (removed > 0) {
+                log.debug("Evicted {} LLM call records older than {}. Remaining: {}", removed, window, records.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived local copy of values read from a remote store. Only present values are kept, for
+ * at most the TTL, and a value loaded while its key was invalidated is not kept at all, so an
+ * invalidation can never be overwritten by the read it raced with. Invalidations are tracked per
+ * key, so loads of other keys are unaffected.
+ */
+class NearCache<V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private record Invalidation(long sequence, long at) {
+    }
+
+    // last invalidation of each key; kept for a TTL, which is as long as a load may take and still be cached
+    private final Map<String, Invalidation> invalidations = new ConcurrentHashMap<>();
+    // orders invalidations against the start of loads, which the clock cannot within one millisecond
+    private final AtomicLong sequence = new AtomicLong();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    NearCache(String name, long ttlMillis, int maxEntries, MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.hits = counter(name, "hit", meterRegistry);
+        this.misses = counter(name, "miss", meterRegistry);
+        Gauge.builder("token.store.near_cache.size", entries, Map::size)
+                .description("Entries held in the token store near-cache")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    Optional<V> get(String key, Supplier<Optional<V>> loader) {
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired()) {
+            hits.increment();
+            return Optional.of(entry.value());
+        }
+        misses.increment();
+
+        long seen = sequence.get();
+        long started = System.currentTimeMillis();
+        Optional<V> loaded = loader.get();
+        loaded.ifPresent(value -> cache(key, value, seen, started));
+        return loaded;
+    }
+
+    /** Same as {@link #get}, for a loader that completes empty when there is no value */
+    Mono<V> getReactive(String key, Supplier<Mono<V>> loader) {
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        return Mono.defer(() -> {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired()) {
+                hits.increment();
+                return Mono.just(entry.value());
+            }
+            misses.increment();
+
+            long seen = sequence.get();
+            long started = System.currentTimeMillis();
+            return loader.get().doOnNext(value -> cache(key, value, seen, started));
+        });
+    }
+
+    private void cache(String key, V value, long seenSequence, long loadStartedAt) {
+        long now = System.currentTimeMillis();
+        // past a TTL, an invalidation during the load may already have been cleaned up
+        if (now - loadStartedAt > ttlMillis || invalidatedSince(key, seenSequence) || !hasRoom()) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, now + ttlMillis);
+        entries.put(key, entry);
+        // an invalidation that landed while we stored may predate the value we just cached
+        if (invalidatedSince(key, seenSequence)) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private boolean invalidatedSince(String key, long seenSequence) {
+        Invalidation invalidation = invalidations.get(key);
+        return invalidation != null && invalidation.sequence() > seenSequence;
+    }
+
+    void invalidate(String key) {
+        invalidations.put(key, new Invalidation(sequence.incrementAndGet(), System.currentTimeMillis()));
+        entries.remove(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void cleanup() {
+        entries.values().removeIf(Entry::isExpired);
+        long horizon = System.currentTimeMillis() - ttlMillis;
+        invalidations.values().removeIf(invalidation -> invalidation.at() < horizon);
+    }
+
+    private boolean hasRoom() {
+        if (entries.size() < maxEntries) {
+            return true;
+        }
+        cleanup();
+        return entries.size() < maxEntries;
+    }
+
+    private static Counter counter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("token.store.near_cache.requests")
+                .description("Token store reads answered from the near-cache or from Redis")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
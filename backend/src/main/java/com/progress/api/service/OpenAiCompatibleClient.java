@@ -0,0 +1,239 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One OpenAI-compatible chat completions backend (Groq, OpenRouter, a local vLLM, ...),
+ * with its own model, timeout and quota.
+ */
+@Slf4j
+public class OpenAiCompatibleClient implements LlmClient {
+
+    private static final String STREAM_DONE = "[DONE]";
+
+    private final String name;
+    private final String model;
+    private final int timeout;
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final LlmRateLimiter rateLimiter;
+    private final LlmUsageRecorder usageRecorder;
+    private final boolean configured;
+
+    public OpenAiCompatibleClient(
+            String name,
+            String apiKey,
+            String baseUrl,
+            String model,
+            int timeout,
+            ObjectMapper objectMapper,
+            LlmRateLimiter rateLimiter,
+            LlmUsageRecorder usageRecorder) {
+        this.name = name;
+        this.model = model;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
+        this.usageRecorder = usageRecorder;
+        this.configured = apiKey != null && !apiKey.isBlank();
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .defaultHeader("Authorization", "Bearer " + apiKey)
+                .defaultHeader("Content-Type", "application/json")
+                .build();
+
+        if (!configured) {
+            log.warn("{} API key is not configured. This LLM provider will not be used.", name);
+        }
+    }
+
+    /**
+     * Sends a chat completion once the local quota scheduler admits it.
+     */
+    @Override
+    public Mono<Reply> chat(String systemPrompt, String userPrompt) {
+        int promptTokens = TokenEstimator.estimateChat(systemPrompt, userPrompt);
+        return Mono.defer(() -> {
+            LlmUsageRecorder.Call call = usageRecorder.start(name, model, LlmUsageRecorder.MODE_CHAT, promptTokens);
+            return rateLimiter.acquire(promptTokens)
+                    .doOnSuccess(admitted -> call.admitted())
+                    .then(webClient.post()
+                            .uri("/chat/completions")
+                            .bodyValue(requestBody(systemPrompt, userPrompt, false))
+                            .exchangeToMono(response -> {
+                                call.firstByte();
+                                recordRateLimits(response);
+                                if (response.statusCode().isError()) {
+                                    return response.createException().flatMap(Mono::error);
+                                }
+                                return response.bodyToMono(String.class);
+                            })
+                            .timeout(Duration.ofMillis(timeout)))
+                    .handle((String response, SynchronousSink<Reply> sink) -> {
+                        try {
+                            JsonNode root = objectMapper.readTree(response);
+                            call.usage(root.path("usage"));
+                            JsonNode choices = root.path("choices");
+                            if (choices.isArray() && !choices.isEmpty()) {
+                                String content = choices.get(0).path("message").path("content").asText();
+                                call.content(content);
+                                sink.next(reply(content));
+                                return;
+                            }
+                            sink.error(new ApiException("Invalid response from " + name + " API",
+                                    HttpStatus.INTERNAL_SERVER_ERROR));
+                        } catch (JsonProcessingException e) {
+                            sink.error(e);
+                        }
+                    })
+                    .doOnSuccess(reply -> call.succeeded())
+                    .doOnError(call::failed)
+                    .doOnCancel(call::cancelled)
+                    .onErrorMap(this::mapError);
+        });
+    }
+
+    /**
+     * Streams the completion with {@code stream=true}, emitting content deltas as the model produces them.
+     * The timeout applies between chunks, not to the whole completion.
+     */
+    @Override
+    public Flux<Reply> chatStream(String systemPrompt, String userPrompt) {
+        int promptTokens = TokenEstimator.estimateChat(systemPrompt, userPrompt);
+        return Flux.defer(() -> {
+            LlmUsageRecorder.Call call = usageRecorder.start(name, model, LlmUsageRecorder.MODE_STREAM, promptTokens);
+            return rateLimiter.acquire(promptTokens)
+                    .doOnSuccess(admitted -> call.admitted())
+                    .thenMany(webClient.post()
+                            .uri("/chat/completions")
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .bodyValue(requestBody(systemPrompt, userPrompt, true))
+                            .exchangeToFlux(response -> {
+                                call.firstByte();
+                                recordRateLimits(response);
+                                if (response.statusCode().isError()) {
+                                    return response.createException().flatMapMany(Flux::error);
+                                }
+                                return response.bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                                });
+                            })
+                            .timeout(Duration.ofMillis(timeout)))
+                    .mapNotNull(ServerSentEvent::data)
+                    .takeWhile(data -> !STREAM_DONE.equals(data.trim()))
+                    .handle((String data, SynchronousSink<Reply> sink) -> {
+                        try {
+                            JsonNode root = objectMapper.readTree(data);
+                            // OpenAI reports usage on a final chunk, Groq under x_groq on the last delta
+                            call.usage(root.path("usage"));
+                            call.usage(root.path("x_groq").path("usage"));
+                            JsonNode choices = root.path("choices");
+                            if (choices.isArray() && !choices.isEmpty()) {
+                                String delta = choices.get(0).path("delta").path("content").asText("");
+                                if (!delta.isEmpty()) {
+                                    call.content(delta);
+                                    sink.next(reply(delta));
+                                }
+                            }
+                        } catch (JsonProcessingException e) {
+                            sink.error(e);
+                        }
+                    })
+                    .doOnComplete(call::succeeded)
+                    .doOnError(call::failed)
+                    .doOnCancel(call::cancelled)
+                    .onErrorMap(this::mapError);
+        });
+    }
+
+    private Reply reply(String content) {
+        return new Reply(name, model, content);
+    }
+
+    private void recordRateLimits(ClientResponse response) {
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        if (response.statusCode().value() == 429) {
+            rateLimiter.exhausted(headers);
+        } else {
+            rateLimiter.update(headers);
+        }
+    }
+
+    private Map<String, Object> requestBody(String systemPrompt, String userPrompt, boolean stream) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.put("messages", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userPrompt)));
+        body.put("temperature", 0.7);
+        body.put("max_tokens", 2048);
+        body.put("response_format", Map.of("type", "json_object"));
+        body.put("stream", stream);
+        if (stream) {
+            body.put("stream_options", Map.of("include_usage", true));
+        }
+        return body;
+    }
+
+    private Throwable mapError(Throwable error) {
+        if (error instanceof ApiException) {
+            return error;
+        }
+        if (error instanceof WebClientResponseException e) {
+            log.error("{} API error: {} - {}", name, e.getStatusCode(), e.getResponseBodyAsString());
+
+            if (e.getStatusCode().value() == 401) {
+                return new ApiException("Invalid " + name + " API key", HttpStatus.UNAUTHORIZED);
+            } else if (e.getStatusCode().value() == 429) {
+                return new ApiException("AI service rate limit exceeded. Please try again later.",
+                        HttpStatus.TOO_MANY_REQUESTS);
+            }
+
+            return new ApiException("Failed to get AI recommendation: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        log.error("Error calling {} API", name, error);
+        return new ApiException("Failed to get AI recommendation: " + error.getMessage(),
+                HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return configured;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public LlmRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
@@ -0,0 +1,99 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BM25 index over one list of catalogue options. Each option is a small document made of its
+ * name, its key subjects (weighted by their catalogue weight) and its description, tokenised
+ * with the same stemming as transcript matching so "Systèmes d'exploitation" in a preference
+ * hits "Système d'exploitation" in the catalogue.
+ */
+final class OptionIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double NAME_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 0.5;
+
+    private final List<JsonNode> options;
+    private final List<Map<String, Double>> termFrequencies;
+    private final double[] lengths;
+    private final double averageLength;
+    private final Map<String, Double> idf;
+
+    private OptionIndex(List<JsonNode> options) {
+        this.options = List.copyOf(options);
+        this.termFrequencies = new ArrayList<>(options.size());
+        this.lengths = new double[options.size()];
+
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        double totalLength = 0;
+        for (int i = 0; i < options.size(); i++) {
+            Map<String, Double> frequencies = document(options.get(i));
+            termFrequencies.add(frequencies);
+            lengths[i] = frequencies.values().stream().mapToDouble(Double::doubleValue).sum();
+            totalLength += lengths[i];
+            frequencies.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+        }
+        this.averageLength = options.isEmpty() ? 0 : totalLength / options.size();
+
+        int n = options.size();
+        this.idf = new HashMap<>();
+        documentFrequencies.forEach((term, df) -> idf.put(term, Math.log(1 + (n - df + 0.5) / (df + 0.5))));
+    }
+
+    static OptionIndex build(JsonNode options) {
+        List<JsonNode> list = new ArrayList<>();
+        options.forEach(list::add);
+        return new OptionIndex(list);
+    }
+
+    List<JsonNode> options() {
+        return options;
+    }
+
+    int size() {
+        return options.size();
+    }
+
+    /**
+     * BM25 score of every option, in catalogue order, for a query whose terms carry weights.
+     */
+    double[] score(Map<String, Double> query) {
+        Map<String, Double> queryTerms = new HashMap<>();
+        query.forEach((text, weight) -> GradeFeatures.stems(text)
+                .forEach(term -> queryTerms.merge(term, weight, Double::sum)));
+
+        double[] scores = new double[options.size()];
+        for (int i = 0; i < options.size(); i++) {
+            Map<String, Double> frequencies = termFrequencies.get(i);
+            double norm = K1 * (1 - B + B * (averageLength == 0 ? 0 : lengths[i] / averageLength));
+            double score = 0;
+            for (Map.Entry<String, Double> term : queryTerms.entrySet()) {
+                Double tf = frequencies.get(term.getKey());
+                if (tf != null) {
+                    score += term.getValue() * idf.get(term.getKey()) * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            scores[i] = score;
+        }
+        return scores;
+    }
+
+    private static Map<String, Double> document(JsonNode option) {
+        Map<String, Double> frequencies = new HashMap<>();
+        add(frequencies, option.path("name").asText(""), NAME_WEIGHT);
+        GradeFeatures.keySubjectWeights(option).forEach((subject, weight) -> add(frequencies, subject, weight));
+        add(frequencies, option.path("description").asText(""), DESCRIPTION_WEIGHT);
+        return frequencies;
+    }
+
+    private static void add(Map<String, Double> frequencies, String text, double weight) {
+        GradeFeatures.stems(text).forEach(term -> frequencies.merge(term, weight, Double::sum));
+    }
+}
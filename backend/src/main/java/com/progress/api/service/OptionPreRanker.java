@@ -0,0 +1,105 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.progress.api.dto.RecommendationRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Narrows long option lists before they reach the LLM. Options are ranked with a BM25 index
+ * against the student's stated preferences and strong key subjects, with key-subject fit and
+ * then catalogue order breaking ties, and only the top K are offered in the prompt. Lists that
+ * already fit are passed through untouched.
+ */
+@Slf4j
+@Component
+public class OptionPreRanker {
+
+    private static final double PREFERRED_SUBJECT_WEIGHT = 2.0;
+    private static final double CAREER_PREFERENCE_WEIGHT = 1.0;
+    private static final double STRENGTH_WEIGHT = 1.0;
+    private static final double CONTEXT_WEIGHT = 0.5;
+
+    private final int topK;
+    private final MeterRegistry meterRegistry;
+
+    public OptionPreRanker(
+            @Value("${recommendation.options.top-k:8}") int topK,
+            MeterRegistry meterRegistry) {
+        this.topK = topK;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the node with its option list cut to the best {@code topK}, kept in catalogue
+     * order, or the node itself, pre-rendered prompt block included, when there is nothing to cut.
+     */
+    CatalogNode shortlist(CatalogNode node, GradeFeatures grades, RecommendationRequest request) {
+        JsonNode availableOptions = node.availableOptions();
+        JsonNode options = availableOptions.path("availableOptions");
+        if (topK <= 0 || options.size() <= topK) {
+            return node;
+        }
+
+        OptionIndex index = node.index();
+        double[] scores = index.score(query(grades, options, request));
+        double[] fits = index.options().stream()
+                .mapToDouble(option -> {
+                    Double fit = grades.optionFit(option);
+                    return fit != null ? fit : -1;
+                })
+                .toArray();
+
+        boolean[] keep = new boolean[index.size()];
+        IntStream.range(0, index.size()).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> -scores[i])
+                        .thenComparingDouble(i -> -fits[i])
+                        .thenComparingInt(i -> i))
+                .limit(topK)
+                .forEach(i -> keep[i] = true);
+
+        ObjectNode shortlisted = availableOptions.deepCopy();
+        ArrayNode kept = shortlisted.putArray("availableOptions");
+        for (int i = 0; i < index.size(); i++) {
+            if (keep[i]) {
+                kept.add(index.options().get(i));
+            }
+        }
+
+        int pruned = index.size() - kept.size();
+        Counter.builder("recommendation.options.pruned")
+                .description("Options left out of recommendation prompts by local pre-ranking")
+                .register(meterRegistry)
+                .increment(pruned);
+        log.debug("Pre-ranked {} options down to {}", index.size(), kept.size());
+        return CatalogNode.of(node.key(), shortlisted);
+    }
+
+    private static Map<String, Double> query(GradeFeatures grades, JsonNode options, RecommendationRequest request) {
+        Map<String, Double> query = new LinkedHashMap<>();
+        if (request != null) {
+            if (request.getPreferredSubjects() != null) {
+                request.getPreferredSubjects()
+                        .forEach(subject -> query.merge(subject, PREFERRED_SUBJECT_WEIGHT, Double::sum));
+            }
+            if (request.getCareerPreference() != null) {
+                query.merge(request.getCareerPreference(), CAREER_PREFERENCE_WEIGHT, Double::sum);
+            }
+            if (request.getAdditionalContext() != null) {
+                query.merge(request.getAdditionalContext(), CONTEXT_WEIGHT, Double::sum);
+            }
+        }
+        grades.strengths(options).keySet().forEach(subject -> query.merge(subject, STRENGTH_WEIGHT, Double::sum));
+        return query;
+    }
+}
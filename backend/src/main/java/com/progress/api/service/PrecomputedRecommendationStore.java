@@ -0,0 +1,141 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import com.progress.api.dto.RecommendationResponse.Recommendation;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Baseline recommendations generated ahead of time for every catalogue position and average
+ * band, served to students without personal preferences. Entries live in memory and are
+ * persisted to a JSON file so they survive restarts. An entry is only served while it is younger
+ * than the maximum age and was generated for the options the catalogue offers today.
+ */
+@Slf4j
+@Service
+public class PrecomputedRecommendationStore {
+
+    record Entry(List<String> optionCodes, List<Recommendation> recommendations, String summary, String model,
+            long generatedAt) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Path storePath;
+    private final Duration maxAge;
+
+    public PrecomputedRecommendationStore(
+            ObjectMapper objectMapper,
+            @Value("${recommendation.precompute.enabled:true}") boolean enabled,
+            @Value("${recommendation.precompute.store-path:precomputed-recommendations.json}") String storePath,
+            @Value("${recommendation.precompute.max-age-days:30}") long maxAgeDays) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.storePath = Path.of(storePath);
+        this.maxAge = Duration.ofDays(maxAgeDays);
+    }
+
+    @PostConstruct
+    void load() {
+        if (!enabled || !Files.exists(storePath)) {
+            return;
+        }
+        try {
+            Map<String, Entry> loaded = objectMapper.readValue(storePath.toFile(), new TypeReference<>() {
+            });
+            entries.putAll(loaded);
+            log.info("Loaded {} precomputed cohort recommendations from {}", loaded.size(), storePath);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable precomputed recommendations at {}: {}", storePath, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    static String key(CatalogNode node, String averageBand) {
+        return node.key() + "|" + averageBand;
+    }
+
+    Optional<RecommendationResponse> get(CatalogNode node, String averageBand, CurrentStatus currentStatus) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(key(node, averageBand));
+        if (!isCurrent(entry, node)) {
+            return Optional.empty();
+        }
+        log.debug("Serving precomputed recommendations for {}", key(node, averageBand));
+        return Optional.of(RecommendationResponse.builder()
+                .currentStatus(currentStatus)
+                .recommendations(List.copyOf(entry.recommendations()))
+                .summary(entry.summary())
+                .model(entry.model())
+                .build());
+    }
+
+    /**
+     * Whether a servable entry already exists, so a batch run can skip it.
+     */
+    boolean contains(CatalogNode node, String averageBand) {
+        return isCurrent(entries.get(key(node, averageBand)), node);
+    }
+
+    void put(CatalogNode node, String averageBand, RecommendationResponse response) {
+        entries.put(key(node, averageBand), new Entry(
+                optionCodes(node),
+                List.copyOf(response.getRecommendations()),
+                response.getSummary(),
+                response.getModel(),
+                System.currentTimeMillis()));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes every entry to the store file, replacing it atomically so readers never see a
+     * partial file.
+     */
+    void save() throws IOException {
+        Path directory = storePath.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, storePath.getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), new TreeMap<>(entries));
+            Files.move(temp, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("Saved {} precomputed cohort recommendations to {}", entries.size(), storePath);
+    }
+
+    private boolean isCurrent(Entry entry, CatalogNode node) {
+        return entry != null
+                && System.currentTimeMillis() - entry.generatedAt() < maxAge.toMillis()
+                && entry.optionCodes().equals(optionCodes(node));
+    }
+
+    private static List<String> optionCodes(CatalogNode node) {
+        return node.availableOptions().path("availableOptions").findValuesAsText("code");
+    }
+}
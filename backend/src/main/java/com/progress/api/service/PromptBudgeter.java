@@ -0,0 +1,148 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps recommendation prompts inside a fixed input-token budget. Sections are added in
+ * priority order; each takes what it needs from the budget left by the sections before it and
+ * is cut on line boundaries when it does not fit, so the same inputs always yield the same prompt.
+ */
+@Slf4j
+@Component
+public class PromptBudgeter {
+
+    static final String TRUNCATION_MARKER = "[... truncated]";
+
+    private final int maxInputTokens;
+    private final MeterRegistry meterRegistry;
+
+    public PromptBudgeter(
+            @Value("${recommendation.prompt.max-input-tokens:4000}") int maxInputTokens,
+            MeterRegistry meterRegistry) {
+        this.maxInputTokens = maxInputTokens;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts a prompt whose user message shares the budget with {@code systemPrompt}.
+     *
+     * @param kind metric tag distinguishing prompt flavours, e.g. {@code personal} or {@code cohort}
+     */
+    public Builder newPrompt(String kind, String systemPrompt) {
+        return new Builder(kind, systemPrompt);
+    }
+
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+
+    private record Section(String heading, String body) {
+    }
+
+    public final class Builder {
+
+        private final String kind;
+        private final String systemPrompt;
+        private final List<Section> sections = new ArrayList<>();
+
+        private Builder(String kind, String systemPrompt) {
+            this.kind = kind;
+            this.systemPrompt = systemPrompt;
+        }
+
+        /**
+         * Adds a section after those already added; earlier sections win when the budget is tight.
+         * Null or blank bodies are skipped.
+         */
+        public Builder section(String heading, String body) {
+            if (body != null && !body.isBlank()) {
+                sections.add(new Section(heading, body.strip()));
+            }
+            return this;
+        }
+
+        /**
+         * Assembles the sections followed by {@code closing}, which is always kept in full.
+         */
+        public String build(String closing) {
+            int remaining = maxInputTokens - TokenEstimator.estimateChat(systemPrompt, closing);
+            int truncated = 0;
+
+            StringBuilder prompt = new StringBuilder();
+            for (Section section : sections) {
+                String heading = "## " + section.heading() + "\n";
+                int headingTokens = TokenEstimator.estimate(heading);
+                int bodyBudget = remaining - headingTokens;
+                String body = truncate(section.body(), bodyBudget);
+                if (body == null) {
+                    truncated++;
+                    remaining = 0;
+                    continue;
+                }
+                if (body.length() < section.body().length()) {
+                    truncated++;
+                }
+                String rendered = heading + body + "\n\n";
+                prompt.append(rendered);
+                remaining -= TokenEstimator.estimate(rendered);
+            }
+            prompt.append(closing);
+
+            String userPrompt = prompt.toString();
+            int inputTokens = TokenEstimator.estimateChat(systemPrompt, userPrompt);
+            DistributionSummary.builder("recommendation.prompt.tokens")
+                    .description("Estimated input tokens per recommendation prompt")
+                    .baseUnit("tokens")
+                    .tag("kind", kind)
+                    .register(meterRegistry)
+                    .record(inputTokens);
+            if (truncated > 0) {
+                Counter.builder("recommendation.prompt.truncated")
+                        .description("Prompt sections truncated or dropped to fit the token budget")
+                        .tag("kind", kind)
+                        .register(meterRegistry)
+                        .increment(truncated);
+                log.debug("Truncated {} prompt section(s) to fit {} tokens", truncated, maxInputTokens);
+            }
+            return userPrompt;
+        }
+    }
+
+    /**
+     * Cuts {@code body} to {@code maxTokens}: whole lines first, then characters if not even the
+     * first line fits. Returns null when there is no room for any content.
+     */
+    static String truncate(String body, int maxTokens) {
+        if (TokenEstimator.estimate(body) <= maxTokens) {
+            return body;
+        }
+        int markerTokens = TokenEstimator.estimate("\n" + TRUNCATION_MARKER);
+        int contentTokens = maxTokens - markerTokens;
+        if (contentTokens <= 0) {
+            return null;
+        }
+
+        StringBuilder kept = new StringBuilder();
+        for (String line : body.split("\n", -1)) {
+            String candidate = kept.isEmpty() ? line : kept + "\n" + line;
+            if (TokenEstimator.estimate(candidate) > contentTokens) {
+                break;
+            }
+            kept.setLength(0);
+            kept.append(candidate);
+        }
+        if (kept.isEmpty()) {
+            int maxChars = Math.min(body.length(), TokenEstimator.maxChars(contentTokens));
+            kept.append(body, 0, maxChars);
+        }
+        return kept.append("\n").append(TRUNCATION_MARKER).toString();
+    }
+}
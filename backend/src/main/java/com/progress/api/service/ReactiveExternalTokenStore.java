@@ -0,0 +1,25 @@
+package com.progress.api.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non-blocking access to the session data read while serving requests, for use inside reactive
+ * chains. Implemented by the same beans as {@link ExternalTokenStore}; every Mono completes
+ * empty where the blocking method would return an empty Optional.
+ */
+public interface ReactiveExternalTokenStore {
+
+    Mono<ExternalTokenStore.Session> findSession(String uuid);
+
+    /** Sessions of several uuids at once; uuids without a session are left out of the map */
+    Mono<Map<String, ExternalTokenStore.Session>> findSessions(Collection<String> uuids);
+
+    Mono<Set<String>> findAllowedCards(String uuid);
+
+    /** Completes once the cards are cached; a failed write is logged rather than signalled */
+    Mono<Void> saveAllowedCards(String uuid, Set<String> cardIds, long ttlMillis);
+}
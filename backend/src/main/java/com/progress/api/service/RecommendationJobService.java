@@ -0,0 +1,235 @@
+package com.progress.api.service;
+
+import com.progress.api.dto.RecommendationJobResponse;
+import com.progress.api.dto.RecommendationJobResponse.JobStatus;
+import com.progress.api.dto.RecommendationRequest;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.exception.ApiException;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs recommendations as background jobs. Submissions go into a bounded queue drained by a
+ * fixed pool of workers, paced so the pool never starts more LLM calls per minute than the
+ * configured quota. When the queue is full, new submissions are shed with {@code 503 Retry-After}.
+ */
+@Slf4j
+@Service
+public class RecommendationJobService {
+
+    private static final class Job {
+        private final String id;
+        private final String uuid;
+        private final Instant submittedAt = Instant.now();
+        private final long enqueuedAtNanos = System.nanoTime();
+        private final Sinks.One<RecommendationJobResponse> completion = Sinks.one();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile Instant completedAt;
+        private volatile RecommendationResponse result;
+        private volatile String error;
+
+        private Job(String id, String uuid) {
+            this.id = id;
+            this.uuid = uuid;
+        }
+
+        private RecommendationJobResponse toResponse() {
+            return RecommendationJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .submittedAt(submittedAt)
+                    .completedAt(completedAt)
+                    .result(result)
+                    .error(error)
+                    .build();
+        }
+
+        private boolean isFinished() {
+            return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        }
+    }
+
+    private final RecommendationService recommendationService;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final Bucket startRate;
+    private final long retryAfterSeconds;
+    private final long retentionMillis;
+
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final Counter rejectedCounter;
+
+    public RecommendationJobService(
+            RecommendationService recommendationService,
+            MeterRegistry meterRegistry,
+            @Value("${recommendation.jobs.workers:4}") int workers,
+            @Value("${recommendation.jobs.queue-capacity:200}") int queueCapacity,
+            @Value("${recommendation.jobs.requests-per-minute:30}") int requestsPerMinute,
+            @Value("${recommendation.jobs.retry-after-seconds:30}") long retryAfterSeconds,
+            @Value("${recommendation.jobs.retention-minutes:30}") long retentionMinutes) {
+        this.recommendationService = recommendationService;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.retentionMillis = retentionMinutes * 60_000L;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "recommendation-job-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.startRate = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(requestsPerMinute)
+                        .refillGreedy(requestsPerMinute, Duration.ofMinutes(1))
+                        .build())
+                .build();
+
+        Gauge.builder("recommendation.jobs.queue.depth", executor, e -> e.getQueue().size())
+                .description("Recommendation jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("recommendation.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Recommendation jobs currently running")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("recommendation.jobs.wait")
+                .description("Time a recommendation job spent queued before a worker picked it up")
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("recommendation.jobs.execution")
+                .description("Time spent generating a queued recommendation")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("recommendation.jobs.rejected")
+                .description("Recommendation jobs shed because the queue was full")
+                .register(meterRegistry);
+    }
+
+    public RecommendationJobResponse submit(String uuid, String externalToken, RecommendationRequest request) {
+        Job job = new Job(UUID.randomUUID().toString(), uuid);
+        jobs.put(job.id, job);
+        // snapshot before handing off: a fast worker may finish the job before execute returns
+        RecommendationJobResponse accepted = job.toResponse();
+
+        try {
+            executor.execute(() -> run(job, externalToken, request));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejectedCounter.increment();
+            log.warn("Recommendation job queue full ({} queued), rejecting job for UUID: {}",
+                    executor.getQueue().size(), uuid);
+            throw new ApiException("Recommendation service is busy. Please try again later.",
+                    HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds);
+        }
+
+        log.debug("Queued recommendation job {} for UUID: {}", job.id, uuid);
+        return accepted;
+    }
+
+    public RecommendationJobResponse getJob(String jobId, String uuid) {
+        return findJob(jobId, uuid).toResponse();
+    }
+
+    /**
+     * Completes with the finished job, immediately if it has already finished.
+     */
+    public Mono<RecommendationJobResponse> awaitJob(String jobId, String uuid) {
+        Job job = findJob(jobId, uuid);
+        if (job.isFinished()) {
+            return Mono.just(job.toResponse());
+        }
+        return job.completion.asMono();
+    }
+
+    private Job findJob(String jobId, String uuid) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.uuid.equals(uuid)) {
+            throw new ApiException("Recommendation job not found", HttpStatus.NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void run(Job job, String externalToken, RecommendationRequest request) {
+        try {
+            startRate.asBlocking().consume(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, null, "Recommendation job was interrupted");
+            return;
+        }
+
+        waitTimer.record(System.nanoTime() - job.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+        job.status = JobStatus.RUNNING;
+
+        Timer.Sample sample = Timer.start();
+        try {
+            RecommendationResponse response = recommendationService
+                    .getRecommendations(job.uuid, externalToken, request)
+                    .block();
+            finish(job, response, null);
+        } catch (ApiException e) {
+            finish(job, null, e.getMessage());
+        } catch (Exception e) {
+            log.error("Recommendation job {} failed", job.id, e);
+            finish(job, null, "Failed to generate recommendations");
+        } finally {
+            sample.stop(executionTimer);
+        }
+    }
+
+    private void finish(Job job, RecommendationResponse result, String error) {
+        job.result = result;
+        job.error = error;
+        job.completedAt = Instant.now();
+        job.status = error == null ? JobStatus.COMPLETED : JobStatus.FAILED;
+        job.completion.tryEmitValue(job.toResponse());
+        log.debug("Recommendation job {} finished with status {}", job.id, job.status);
+    }
+
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void cleanupFinishedJobs() {
+        Instant cutoff = Instant.now().minusMillis(retentionMillis);
+        int beforeSize = jobs.size();
+
+        jobs.values().removeIf(job -> job.isFinished() && job.completedAt.isBefore(cutoff));
+
+        int removed = beforeSize - jobs.size();
+        if (removed > 0) {
+            log.info("Cleaned up {} finished recommendation jobs. Remaining: {}", removed, jobs.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
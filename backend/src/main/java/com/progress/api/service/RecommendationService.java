@@ -7,30 +7,65 @@ import com.progress.api.dto.RecommendationResponse;
 import com.progress.api.dto.RecommendationResponse.CurrentStatus;
 import com.progress.api.dto.RecommendationResponse.Recommendation;
 import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
-record UniversityLookupResult(JsonNode structure, boolean isSupported, String fallbackName) {
-}
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RecommendationService {
 
+    private record ResolvedStudent(CurrentStatus currentStatus, CatalogNode catalogNode,
+            RecommendationResponse earlyResponse) {
+        static ResolvedStudent early(RecommendationResponse response) {
+            return new ResolvedStudent(response.getCurrentStatus(), null, response);
+        }
+    }
+
     private final StudentService studentService;
-    private final GroqClient groqClient;
+    private final LlmClient llmClient;
+    private final AcademicCatalog academicCatalog;
+    private final CohortRecommendationCache cohortCache;
+    private final PrecomputedRecommendationStore precomputedStore;
+    private final PromptBudgeter promptBudgeter;
+    private final RuleBasedRecommender ruleBasedRecommender;
+    private final AiResponseParser aiResponseParser;
+    private final OptionPreRanker optionPreRanker;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private static final String EVENT_STATUS = "status";
+    private static final String EVENT_RECOMMENDATION = "recommendation";
+    private static final String EVENT_COMPLETE = "complete";
+    private static final String EVENT_PRELIMINARY = "preliminary";
+    private static final String EVENT_ERROR = "error";
+    private static final String MODE_QUICK = "quick";
+    private static final String ABANDONED_SYNC = "sync";
+    private static final String ABANDONED_STREAM = "stream";
+
+    private static final String NO_EXAM_DATA = "No detailed exam data available";
+    private static final String PROMPT_PERSONAL = "personal";
+    private static final String PROMPT_COHORT = "cohort";
+    private static final String STATUS_HEADING = "Student's Current Academic Status";
+    private static final String OPTIONS_HEADING = "Available Options for Next Level";
+    private static final String CLOSING_INSTRUCTION =
+            "Based on this information, provide 3-5 personalized recommendations for the student's next academic step.";
 
     private static final String SYSTEM_PROMPT = """
             You are an expert academic advisor for the Algerian university system (LMD format).
@@ -83,601 +118,512 @@ public class RecommendationService {
      * @param request       Optional preferences from the student
      * @return AI-generated recommendations
      */
-    public RecommendationResponse getRecommendations(
+    public Mono<RecommendationResponse> getRecommendations(
             String uuid,
             String externalToken,
             RecommendationRequest request) {
-        try {
-            Object studentDataRaw = studentService.getStudentData(uuid, externalToken).block();
-            JsonNode studentData = objectMapper.valueToTree(studentDataRaw);
-
-            CurrentStatus currentStatus = extractCurrentStatus(studentData);
-
-            String universityName = null;
-            if (studentData.isArray() && !studentData.isEmpty()) {
-                universityName = getTextOrNull(studentData.get(0), "llEtablissementLatin");
-            }
-
-            UniversityLookupResult lookupResult = loadAcademicStructure(universityName);
-
-            if (!lookupResult.isSupported()) {
-                log.info("University '{}' not supported, returning early without AI recommendations", universityName);
-                return RecommendationResponse.builder()
-                        .currentStatus(currentStatus)
-                        .recommendations(java.util.Collections.emptyList())
-                        .summary(null)
-                        .model(null)
-                        .universitySupported(false)
-                        .fallbackUniversity(lookupResult.fallbackName())
-                        .build();
-            }
-
-            JsonNode academicStructure = lookupResult.structure();
-
-            String[] universityInfo = getUniversityInfo(academicStructure);
-            currentStatus.setUniversity(universityInfo[0]);
-            currentStatus.setUniversityAr(universityInfo[1]);
-
-            JsonNode availableOptions = findAvailableOptions(
-                    academicStructure,
-                    currentStatus.getField(),
-                    currentStatus.getLevel(),
-                    currentStatus.getMajor(),
-                    currentStatus.getSpeciality());
-
-            if (availableOptions == null) {
-                log.info("Field '{}' not supported for university '{}', returning early without AI recommendations",
-                        currentStatus.getField(), universityName);
-                return RecommendationResponse.builder()
-                        .currentStatus(currentStatus)
-                        .recommendations(java.util.Collections.emptyList())
-                        .summary(null)
-                        .model(null)
-                        .universitySupported(true)
-                        .fieldSupported(false)
-                        .unsupportedReason("تشكيلة تخصصكم (" +
-                                (currentStatus.getFieldAr() != null ? currentStatus.getFieldAr()
-                                        : currentStatus.getField())
-                                +
-                                ") غير متوفرة بعد في نظام التوصيات")
-                        .build();
-            }
-
-            String examData = fetchExamDataSafe(uuid, studentData, externalToken);
-
-            String userPrompt = buildUserPrompt(currentStatus, availableOptions, examData, request);
-
-            String aiResponse = groqClient.chat(SYSTEM_PROMPT, userPrompt);
+        return studentService.getStudentData(uuid, externalToken)
+                .map(studentDataRaw -> (JsonNode) objectMapper.valueToTree(studentDataRaw))
+                .flatMap(studentData -> recommend(uuid, externalToken, studentData, request))
+                .onErrorMap(e -> !(e instanceof ApiException), e -> {
+                    log.error("Error generating recommendations", e);
+                    return new ApiException(
+                            "Failed to generate recommendations: " + e.getMessage(),
+                            HttpStatus.INTERNAL_SERVER_ERROR);
+                })
+                .doFinally(signal -> recordAbandoned(signal, ABANDONED_SYNC, uuid));
+    }
 
-            RecommendationResponse response = parseAiResponse(aiResponse, currentStatus);
-            response.setUniversitySupported(true);
-            response.setFieldSupported(true);
-            return response;
+    /**
+     * Streams recommendations as server-sent events: a {@code status} event straight away, one
+     * {@code recommendation} event per option as soon as the model finishes writing it, and a final
+     * {@code complete} event carrying the sorted response. Failures end the stream with an
+     * {@code error} event.
+     */
+    public Flux<ServerSentEvent<Object>> streamRecommendations(
+            String uuid,
+            String externalToken,
+            RecommendationRequest request) {
+        return studentService.getStudentData(uuid, externalToken)
+                .map(studentDataRaw -> (JsonNode) objectMapper.valueToTree(studentDataRaw))
+                .flatMapMany(studentData -> streamRecommend(uuid, externalToken, studentData, request))
+                .onErrorResume(e -> {
+                    String message = e.getMessage();
+                    if (!(e instanceof ApiException)) {
+                        log.error("Error streaming recommendations", e);
+                        message = "Failed to generate recommendations";
+                    }
+                    return Flux.just(event(EVENT_ERROR, Map.of("message", message)));
+                })
+                .doFinally(signal -> recordAbandoned(signal, ABANDONED_STREAM, uuid));
+    }
 
-        } catch (ApiException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("Error generating recommendations", e);
-            throw new ApiException(
-                    "Failed to generate recommendations: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+    /**
+     * Counts requests cancelled before they finished: the client went away or the request timed
+     * out. Cancellation has already travelled upstream to any in-flight PROGRES or LLM call.
+     */
+    private void recordAbandoned(SignalType signal, String mode, String uuid) {
+        if (signal == SignalType.CANCEL) {
+            log.debug("Recommendation request abandoned ({}) for UUID: {}", mode, uuid);
+            Counter.builder("recommendation.abandoned")
+                    .description("Recommendation requests cancelled before completion")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .increment();
         }
     }
 
-    private CurrentStatus extractCurrentStatus(JsonNode studentData) {
-        if (studentData.isArray() && !studentData.isEmpty()) {
-            JsonNode latestRegistration = studentData.get(0);
-
-            return CurrentStatus.builder()
-                    .field(getTextOrNull(latestRegistration, "llFiliere", "ofLlFiliere"))
-                    .fieldAr(getTextOrNull(latestRegistration, "llFiliereArabe", "ofLlFiliereArabe"))
-                    .major(getTextOrNull(latestRegistration, "ofLlFiliere"))
-                    .majorAr(getTextOrNull(latestRegistration, "ofLlFiliereArabe"))
-                    .speciality(getTextOrNull(latestRegistration, "ofLlSpecialite"))
-                    .specialityAr(getTextOrNull(latestRegistration, "ofLlSpecialiteArabe"))
-                    .level(getTextOrNull(latestRegistration, "refLibelleNiveau"))
-                    .levelAr(getTextOrNull(latestRegistration, "refLibelleNiveauArabe"))
-                    .currentAverage(
-                            latestRegistration.has("lastMoyenne") ? latestRegistration.get("lastMoyenne").asDouble()
-                                    : null)
-                    .academicYear(getTextOrNull(latestRegistration, "anneeAcademiqueCode"))
-                    .build();
+    private Mono<RecommendationResponse> recommend(
+            String uuid,
+            String externalToken,
+            JsonNode studentData,
+            RecommendationRequest request) {
+        ResolvedStudent resolved = resolve(studentData);
+        if (resolved.earlyResponse() != null) {
+            return Mono.just(resolved.earlyResponse());
         }
 
-        throw new ApiException("No academic registration found for student", HttpStatus.NOT_FOUND);
-    }
+        CurrentStatus currentStatus = resolved.currentStatus();
+        CatalogNode catalogNode = resolved.catalogNode();
+        JsonNode availableOptions = catalogNode.availableOptions();
+        Mono<GradeFeatures> grades = fetchGradeFeaturesSafe(uuid, studentData, externalToken).cache();
 
-    private String getTextOrNull(JsonNode node, String... fieldNames) {
-        for (String fieldName : fieldNames) {
-            if (node.has(fieldName) && !node.get(fieldName).isNull()) {
-                String text = node.get(fieldName).asText();
-                if (!text.isBlank()) {
-                    return text;
-                }
-            }
+        String localTrigger = localTrigger(request);
+        if (localTrigger != null) {
+            return rankLocally(grades, currentStatus, availableOptions, request, localTrigger);
         }
-        return null;
-    }
 
-    private String normalizeUniversityName(String name) {
-        if (name == null || name.isBlank())
-            return null;
-        return name.toLowerCase()
-                .replaceAll("[àáâãäå]", "a")
-                .replaceAll("[èéêë]", "e")
-                .replaceAll("[ìíîï]", "i")
-                .replaceAll("[òóôõö]", "o")
-                .replaceAll("[ùúûü]", "u")
-                .replaceAll("[ç]", "c")
-                .replaceAll("[^a-z0-9\\s]", "")
-                .trim()
-                .replaceAll("\\s+", "_");
+        Mono<RecommendationResponse> generated;
+        if (servesCohort(request)) {
+            generated = getCohortRecommendations(currentStatus, catalogNode);
+        } else {
+            generated = buildPersonalPrompt(grades, currentStatus, catalogNode, request)
+                    .flatMap(userPrompt -> llmClient.chat(SYSTEM_PROMPT, userPrompt))
+                    .map(reply -> markSupported(
+                            parseAiResponse(reply.content(), currentStatus, reply.model(), availableOptions)));
+        }
+        return generated.onErrorResume(e -> {
+            log.warn("LLM recommendation failed, serving rule-based ranking: {}", e.getMessage());
+            return rankLocally(grades, currentStatus, availableOptions, request, RuleBasedRecommender.TRIGGER_FALLBACK);
+        });
     }
 
-    private UniversityLookupResult loadAcademicStructure(String universityName) throws IOException {
-        ClassPathResource resource = new ClassPathResource("data/academic-structure.json");
-        try (InputStream is = resource.getInputStream()) {
-            JsonNode root = objectMapper.readTree(is);
-            JsonNode universities = root.path("universities");
-
-            if (universityName == null || universityName.isBlank()) {
-                Map.Entry<String, JsonNode> first = universities.fields().next();
-                String fallbackName = first.getValue().path("name").asText();
-                log.info("No university specified, using default: {}", fallbackName);
-                return new UniversityLookupResult(first.getValue(), false, fallbackName);
-            }
-
-            String normalizedKey = normalizeUniversityName(universityName);
-            log.info("Looking for university with key: {}", normalizedKey);
-
-            JsonNode university = universities.path(normalizedKey);
-            if (!university.isMissingNode()) {
-                log.info("Found exact match for university: {}", university.path("name").asText());
-                return new UniversityLookupResult(university, true, null);
-            }
+    private Flux<ServerSentEvent<Object>> streamRecommend(
+            String uuid,
+            String externalToken,
+            JsonNode studentData,
+            RecommendationRequest request) {
+        ResolvedStudent resolved = resolve(studentData);
+        if (resolved.earlyResponse() != null) {
+            return Flux.just(
+                    event(EVENT_STATUS, resolved.earlyResponse().getCurrentStatus()),
+                    event(EVENT_COMPLETE, resolved.earlyResponse()));
+        }
 
-            Iterator<Map.Entry<String, JsonNode>> fields = universities.fields();
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fields.next();
-                String key = entry.getKey();
+        CurrentStatus currentStatus = resolved.currentStatus();
+        CatalogNode catalogNode = resolved.catalogNode();
+        JsonNode availableOptions = catalogNode.availableOptions();
+        Mono<GradeFeatures> grades = fetchGradeFeaturesSafe(uuid, studentData, externalToken).cache();
+
+        String localTrigger = localTrigger(request);
+        if (localTrigger != null) {
+            return Flux.concat(
+                    Flux.just(event(EVENT_STATUS, currentStatus)),
+                    rankLocally(grades, currentStatus, availableOptions, request, localTrigger)
+                            .flatMapMany(this::replay));
+        }
 
-                if (key.contains(normalizedKey) || normalizedKey.contains(key)) {
-                    log.info("Found partial match for university: {}", entry.getValue().path("name").asText());
-                    return new UniversityLookupResult(entry.getValue(), true, null);
-                }
+        CohortProfile profile = null;
+        Flux<ServerSentEvent<Object>> preliminary = Flux.empty();
+        Mono<String> userPrompt;
+        if (servesCohort(request)) {
+            profile = CohortProfile.from(currentStatus, availableOptions);
+            Optional<RecommendationResponse> cached =
+                    cachedCohortRecommendations(profile, catalogNode, currentStatus);
+            if (cached.isPresent()) {
+                return Flux.concat(
+                        Flux.just(event(EVENT_STATUS, currentStatus)),
+                        replay(markSupported(cached.get())));
             }
-
-            Map.Entry<String, JsonNode> first = universities.fields().next();
-            String fallbackName = first.getValue().path("name").asText();
-            log.warn("No match found for '{}', using fallback: {}", universityName, fallbackName);
-            return new UniversityLookupResult(first.getValue(), false, fallbackName);
+            CohortProfile cohortProfile = profile;
+            userPrompt = Mono.fromSupplier(() -> buildCohortPrompt(cohortProfile, catalogNode));
+        } else {
+            // grades are on the personal prompt's critical path anyway, so rank locally first
+            preliminary = rankLocally(grades, currentStatus, availableOptions, request,
+                    RuleBasedRecommender.TRIGGER_PRELIMINARY)
+                    .map(response -> event(EVENT_PRELIMINARY, response))
+                    .flux();
+            userPrompt = buildPersonalPrompt(grades, currentStatus, catalogNode, request);
         }
+
+        CohortProfile cohortProfile = profile;
+        Flux<ServerSentEvent<Object>> llmStream = userPrompt.flatMapMany(prompt -> Flux.defer(() -> {
+            RecommendationStreamParser parser = new RecommendationStreamParser(objectMapper);
+            AtomicReference<String> model = new AtomicReference<>();
+            Map<String, String> options = AiResponseParser.optionNames(availableOptions);
+            Set<String> streamed = new HashSet<>();
+            return llmClient.chatStream(SYSTEM_PROMPT, prompt)
+                    .doOnNext(delta -> model.set(delta.model()))
+                    .concatMapIterable(delta -> parser.feed(delta.content()))
+                    .concatMapIterable(rec -> aiResponseParser.validate(rec, options)
+                            .filter(valid -> streamed.add(valid.path("code").asText()))
+                            .stream().toList())
+                    .map(rec -> event(EVENT_RECOMMENDATION, toRecommendation(rec)))
+                    .concatWith(Mono.fromCallable(() -> {
+                        RecommendationResponse response = markSupported(
+                                parseAiResponse(parser.content(), currentStatus, model.get(), availableOptions));
+                        if (cohortProfile != null) {
+                            cohortCache.put(cohortProfile, response);
+                        }
+                        return event(EVENT_COMPLETE, response);
+                    }));
+        }));
+        // students of one cohort share a single LLM stream; each gets the final response with its own status
+        Flux<ServerSentEvent<Object>> generation = cohortProfile == null ? llmStream
+                : cohortCache.streamOrLoad(cohortProfile, () -> llmStream)
+                        .map(event -> EVENT_COMPLETE.equals(event.event())
+                                ? event(EVENT_COMPLETE, markSupported(CohortRecommendationCache.withStatus(
+                                        (RecommendationResponse) event.data(), currentStatus)))
+                                : event);
+        Flux<ServerSentEvent<Object>> recommendations = generation.onErrorResume(e -> {
+            log.warn("LLM recommendation stream failed, completing with rule-based ranking: {}", e.getMessage());
+            return rankLocally(grades, currentStatus, availableOptions, request,
+                    RuleBasedRecommender.TRIGGER_FALLBACK)
+                    .map(response -> event(EVENT_COMPLETE, response));
+        });
+
+        return Flux.concat(Flux.just(event(EVENT_STATUS, currentStatus)), preliminary, recommendations);
     }
 
-    private String[] getUniversityInfo(JsonNode structure) {
-        return new String[] {
-                structure.path("name").asText("Unknown University"),
-                structure.path("nameAr").asText("")
-        };
+    /**
+     * Requests without personal preferences are answered per cohort whenever either a
+     * precomputed baseline or the runtime cohort cache can serve them.
+     */
+    private boolean servesCohort(RecommendationRequest request) {
+        return (precomputedStore.isEnabled() || cohortCache.isEnabled()) && !hasPreferences(request);
     }
 
-    private JsonNode findAvailableOptions(JsonNode structure, String currentField, String currentLevel,
-            String currentMajor, String currentSpeciality) {
-        JsonNode fields = structure.path("fields");
-        if (!fields.isArray() || currentField == null) {
-            return null; // Field not supported
+    /**
+     * Why the request should skip the LLM entirely, or null if it should not.
+     */
+    private String localTrigger(RecommendationRequest request) {
+        if (request != null && MODE_QUICK.equalsIgnoreCase(request.getMode())) {
+            return RuleBasedRecommender.TRIGGER_QUICK;
         }
-
-        String normalizedCurrentField = normalizeFieldName(currentField);
-        JsonNode matchedField = null;
-
-        // Find matching field
-        for (JsonNode field : fields) {
-            String fieldName = field.path("name").asText();
-            String fieldNameAr = field.path("nameAr").asText("");
-            String normalizedFieldName = normalizeFieldName(fieldName);
-
-            if (normalizedCurrentField.equals(normalizedFieldName) ||
-                    normalizedCurrentField.contains(normalizedFieldName) ||
-                    normalizedFieldName.contains(normalizedCurrentField) ||
-                    currentField.contains(fieldNameAr) ||
-                    fieldNameAr.contains(currentField)) {
-                log.info("Found field match: {} -> {}", currentField, fieldName);
-                matchedField = field;
-                break;
-            }
+        if (!llmClient.isConfigured()) {
+            return RuleBasedRecommender.TRIGGER_UNCONFIGURED;
         }
+        return null;
+    }
 
-        if (matchedField == null) {
-            log.warn("Field '{}' not found in academic structure", currentField);
-            return null; // Field not supported
-        }
+    private Mono<RecommendationResponse> rankLocally(
+            Mono<GradeFeatures> grades,
+            CurrentStatus currentStatus,
+            JsonNode availableOptions,
+            RecommendationRequest request,
+            String trigger) {
+        return grades.map(features -> markSupported(
+                ruleBasedRecommender.recommend(currentStatus, availableOptions, features, request, trigger)));
+    }
 
-        String levelCode = extractLevelCode(currentLevel);
-        log.info("Extracted level code: {} from '{}'", levelCode, currentLevel);
-        return extractNextOptions(matchedField.path("levels"), levelCode, currentMajor, currentSpeciality);
+    private Flux<ServerSentEvent<Object>> replay(RecommendationResponse response) {
+        return Flux.concat(
+                Flux.fromIterable(response.getRecommendations())
+                        .map(recommendation -> event(EVENT_RECOMMENDATION, recommendation)),
+                Flux.just(event(EVENT_COMPLETE, response)));
     }
 
-    private String extractLevelCode(String levelName) {
-        if (levelName == null)
-            return "L1";
+    /**
+     * Matches the latest registration against the catalogue. Unsupported universities and
+     * fields short-circuit with an early response that needs no LLM call.
+     */
+    private ResolvedStudent resolve(JsonNode studentData) {
+        CurrentStatus currentStatus = extractCurrentStatus(studentData);
 
-        String lowerLevel = levelName.toLowerCase();
+        String universityName = null;
+        if (studentData.isArray() && !studentData.isEmpty()) {
+            universityName = getTextOrNull(studentData.get(0), "llEtablissementLatin");
+        }
 
-        // ===== ENGINEERING / CLASSIC SYSTEM =====
+        UniversityLookupResult lookupResult = academicCatalog.lookupUniversity(universityName);
 
-        // CPI - Cycle Préparatoire Intégré (prep years 1-2)
-        if (lowerLevel.contains("cpi") || lowerLevel.contains("préparatoire intégré") ||
-                lowerLevel.contains("classe préparatoire")) {
-            if (lowerLevel.contains("1") || lowerLevel.contains("première") || lowerLevel.contains("أولى")) {
-                return "1CPI";
-            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième") || lowerLevel.contains("ثانية")) {
-                return "2CPI";
-            }
-            return "1CPI";
+        if (!lookupResult.isSupported()) {
+            log.info("University '{}' not supported, returning early without AI recommendations", universityName);
+            return ResolvedStudent.early(RecommendationResponse.builder()
+                    .currentStatus(currentStatus)
+                    .recommendations(java.util.Collections.emptyList())
+                    .summary(null)
+                    .model(null)
+                    .universitySupported(false)
+                    .fallbackUniversity(lookupResult.fallbackName())
+                    .build());
         }
 
-        // CS - Cycle Supérieur (engineering years 3-5)
-        if (lowerLevel.contains("cycle supérieur") || lowerLevel.contains("cs")) {
-            if (lowerLevel.contains("1") || lowerLevel.contains("première") || lowerLevel.contains("أولى")) {
-                return "1CS";
-            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième") || lowerLevel.contains("ثانية")) {
-                return "2CS";
-            } else if (lowerLevel.contains("3") || lowerLevel.contains("troisième") || lowerLevel.contains("ثالثة")) {
-                return "3CS";
-            }
-            return "1CS";
-        }
+        JsonNode academicStructure = lookupResult.structure();
 
-        // Generic engineering year detection (e.g., "3ème année ingénieur")
-        if (lowerLevel.contains("ingénieur") || lowerLevel.contains("مهندس")) {
-            if (lowerLevel.contains("1") || lowerLevel.contains("première")) {
-                return "1CPI"; // Year 1 = 1st prep
-            } else if (lowerLevel.contains("2") || lowerLevel.contains("deuxième")) {
-                return "2CPI"; // Year 2 = 2nd prep
-            } else if (lowerLevel.contains("3") || lowerLevel.contains("troisième")) {
-                return "1CS"; // Year 3 = 1st senior
-            } else if (lowerLevel.contains("4") || lowerLevel.contains("quatrième")) {
-                return "2CS"; // Year 4 = 2nd senior
-            } else if (lowerLevel.contains("5") || lowerLevel.contains("cinquième")) {
-                return "3CS"; // Year 5 = 3rd senior (final)
-            }
-        }
+        String[] universityInfo = academicCatalog.getUniversityInfo(academicStructure);
+        currentStatus.setUniversity(universityInfo[0]);
+        currentStatus.setUniversityAr(universityInfo[1]);
 
-        if (lowerLevel.contains("master") || lowerLevel.contains("ماستر")) {
-            if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
-                return "M1";
-            } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
-                return "M2";
-            }
-            return "M1";
-        }
+        CatalogNode catalogNode = academicCatalog.findNode(
+                academicStructure,
+                currentStatus.getField(),
+                currentStatus.getLevel(),
+                currentStatus.getMajor(),
+                currentStatus.getSpeciality());
 
-        if (lowerLevel.contains("licence") || lowerLevel.contains("ليسانس")) {
-            if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
-                return "L1";
-            } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
-                return "L2";
-            } else if (lowerLevel.contains("3") || lowerLevel.contains("ثالثة") || lowerLevel.contains("troisième")) {
-                return "L3";
-            }
+        if (catalogNode == null) {
+            log.info("Field '{}' not supported for university '{}', returning early without AI recommendations",
+                    currentStatus.getField(), universityName);
+            return ResolvedStudent.early(RecommendationResponse.builder()
+                    .currentStatus(currentStatus)
+                    .recommendations(java.util.Collections.emptyList())
+                    .summary(null)
+                    .model(null)
+                    .universitySupported(true)
+                    .fieldSupported(false)
+                    .unsupportedReason("تشكيلة تخصصكم (" +
+                            (currentStatus.getFieldAr() != null ? currentStatus.getFieldAr()
+                                    : currentStatus.getField())
+                            +
+                            ") غير متوفرة بعد في نظام التوصيات")
+                    .build());
         }
 
-        if (lowerLevel.contains("1") || lowerLevel.contains("أولى") || lowerLevel.contains("première")) {
-            return "L1";
-        } else if (lowerLevel.contains("2") || lowerLevel.contains("ثانية") || lowerLevel.contains("deuxième")) {
-            return "L2";
-        } else if (lowerLevel.contains("3") || lowerLevel.contains("ثالثة") || lowerLevel.contains("troisième")) {
-            return "L3";
-        }
+        return new ResolvedStudent(currentStatus, catalogNode, null);
+    }
 
-        return "L1"; 
+    /**
+     * Subscribes to the exam-data fetch first so the PROGRES call is in flight
+     * while the status section is assembled. Options are shortlisted against the
+     * grades and preferences once they arrive.
+     */
+    private Mono<String> buildPersonalPrompt(
+            Mono<GradeFeatures> grades,
+            CurrentStatus currentStatus,
+            CatalogNode catalogNode,
+            RecommendationRequest request) {
+        return Mono.zip(
+                        grades,
+                        Mono.fromSupplier(() -> promptBudgeter.newPrompt(PROMPT_PERSONAL, SYSTEM_PROMPT)
+                                .section(STATUS_HEADING, buildStatusSection(currentStatus))))
+                .map(parts -> {
+                    GradeFeatures features = parts.getT1();
+                    CatalogNode shortlist = optionPreRanker.shortlist(catalogNode, features, request);
+                    return buildUserPrompt(parts.getT2().section(OPTIONS_HEADING, shortlist.rendered()),
+                            features.isEmpty() ? NO_EXAM_DATA
+                                    : features.render(shortlist.availableOptions().path("availableOptions")),
+                            request);
+                });
     }
 
-    private JsonNode extractNextOptions(JsonNode levels, String currentLevelCode, String currentMajor,
-            String currentSpeciality) {
-        var result = objectMapper.createObjectNode();
-        var optionsList = objectMapper.createArrayNode();
-
-        String normMajor = normalizeFieldName(currentMajor);
-        String normSpeciality = normalizeFieldName(currentSpeciality);
-
-        switch (currentLevelCode) {
-            case "L1":
-                JsonNode l1 = levels.path("L1");
-                JsonNode l1NextOptions = l1.path("nextOptions");
-                if (l1NextOptions.isArray()) {
-                    JsonNode l2Majors = levels.path("L2").path("majors");
-                    for (JsonNode optionCode : l1NextOptions) {
-                        JsonNode major = findByCode(l2Majors, optionCode.asText());
-                        if (major != null) {
-                            var opt = objectMapper.createObjectNode();
-                            opt.put("code", optionCode.asText());
-                            opt.put("name", major.path("name").asText());
-                            opt.put("type", "major");
-                            optionsList.add(opt);
-                        }
-                    }
-                }
-                result.put("nextLevel", "L2 (2ème année Licence)");
-                break;
-
-            case "L2":
-                result.put("nextLevel", "L3 (3ème année Licence)");
-
-                String currentMajorCode = null;
-                JsonNode l2Majors = levels.path("L2").path("majors");
-                if (l2Majors.isArray()) {
-                    for (JsonNode major : l2Majors) {
-                        if (isMatch(major.path("name").asText(), major.path("nameAr").asText(), normMajor)) {
-                            currentMajorCode = major.path("code").asText();
-                            break;
-                        }
-                    }
-                }
+    /**
+     * Students without personal preferences are served from a prompt built only from their
+     * anonymised cohort profile, so the LLM output can be reused across the whole cohort.
+     */
+    private Mono<RecommendationResponse> getCohortRecommendations(
+            CurrentStatus currentStatus,
+            CatalogNode catalogNode) {
+        JsonNode availableOptions = catalogNode.availableOptions();
+        CohortProfile profile = CohortProfile.from(currentStatus, availableOptions);
+
+        return precomputedStore.get(catalogNode, profile.averageBand(), currentStatus)
+                .map(Mono::just)
+                .orElseGet(() -> cohortCache.getOrLoad(profile, currentStatus,
+                        () -> llmClient.chat(SYSTEM_PROMPT, buildCohortPrompt(profile, catalogNode))
+                                .map(reply -> parseAiResponse(reply.content(), currentStatus, reply.model(),
+                                        availableOptions))))
+                .map(this::markSupported);
+    }
 
-                JsonNode l3Specs = levels.path("L3").path("specialities");
-                if (l3Specs.isArray()) {
-                    for (JsonNode spec : l3Specs) {
-                        String parentMajor = spec.path("parentMajor").asText();
-                        if (currentMajorCode == null || parentMajor.equals(currentMajorCode)) {
-                            var opt = objectMapper.createObjectNode();
-                            opt.put("code", spec.path("code").asText());
-                            opt.put("name", spec.path("name").asText());
-                            opt.put("type", "speciality");
-                            opt.put("parentMajor", parentMajor);
-                            optionsList.add(opt);
-                        }
-                    }
-                }
-                break;
-
-            case "L3":
-                result.put("nextLevel", "M1 (1ère année Master)");
-
-                String currentL3Code = null;
-                JsonNode l3Specialities = levels.path("L3").path("specialities");
-                if (l3Specialities.isArray()) {
-                    for (JsonNode spec : l3Specialities) {
-                        if (isMatch(spec.path("name").asText(), spec.path("nameAr").asText(), normSpeciality)) {
-                            currentL3Code = spec.path("code").asText();
-                            break;
-                        }
-                    }
-                }
+    private Optional<RecommendationResponse> cachedCohortRecommendations(
+            CohortProfile profile,
+            CatalogNode catalogNode,
+            CurrentStatus currentStatus) {
+        return precomputedStore.get(catalogNode, profile.averageBand(), currentStatus)
+                .or(() -> cohortCache.get(profile, currentStatus));
+    }
 
-                JsonNode masterSpecs = levels.path("Master").path("specialities");
-                if (masterSpecs.isArray()) {
-                    for (JsonNode spec : masterSpecs) {
-                        String parentL3 = spec.path("parentL3").asText();
-                        if (currentL3Code == null || parentL3.equals(currentL3Code)) {
-                            var opt = objectMapper.createObjectNode();
-                            opt.put("code", spec.path("code").asText());
-                            opt.put("name", spec.path("name").asText());
-                            opt.put("type", "master_speciality");
-                            opt.put("parentL3", parentL3);
-                            optionsList.add(opt);
-                        }
-                    }
-                }
-                break;
-
-            case "M1":                    
-                result.put("nextLevel", "M2 (2ème année Master)");
-                result.put("note", "You will continue in the same Master speciality for M2.");
-                break;
-
-            case "M2":                
-                result.put("nextLevel", "Graduation");
-                result.put("note", "You are in your final year! No more academic levels after this.");
-                break;
-
-            case "1CPI":                
-                result.put("nextLevel", "2CPI (2ème année Cycle Préparatoire)");
-                result.put("note",
-                        "Continue to 2nd year of preparatory cycle. No specialization choices at this stage.");
-                break;
-
-            case "2CPI":
-                result.put("nextLevel", "1CS (1ère année Cycle Supérieur)");
-                JsonNode seniorSpecs = levels.path("CS").path("specialities");
-                if (seniorSpecs.isArray()) {
-                    for (JsonNode spec : seniorSpecs) {
-                        var opt = objectMapper.createObjectNode();
-                        opt.put("code", spec.path("code").asText());
-                        opt.put("name", spec.path("name").asText());
-                        opt.put("type", "engineering_speciality");
-                        optionsList.add(opt);
-                    }
-                }
-                if (optionsList.isEmpty()) {
-                    result.put("note",
-                            "Specializations available at 3CS (final year). Continue with common curriculum for now.");
-                }
-                break;
-
-            case "1CS":                
-                result.put("nextLevel", "2CS (2ème année Cycle Supérieur)");
-                result.put("note", "Continue to 2nd year of senior cycle. Main specialization often chosen at 3CS.");
-                break;
-
-            case "2CS":
-                result.put("nextLevel", "3CS (3ème année Cycle Supérieur - Final Year)");
-                JsonNode finalSpecs = levels.path("3CS").path("specialities");
-                if (!finalSpecs.isArray()) {
-                    finalSpecs = levels.path("CS").path("specialities"); // fallback
-                }
-                if (finalSpecs.isArray()) {
-                    for (JsonNode spec : finalSpecs) {
-                        var opt = objectMapper.createObjectNode();
-                        opt.put("code", spec.path("code").asText());
-                        opt.put("name", spec.path("name").asText());
-                        opt.put("type", "final_year_speciality");
-                        optionsList.add(opt);
-                    }
-                }
-                if (optionsList.isEmpty()) {
-                    result.put("note",
-                            "Final year specialization choices will be based on your performance and available spots.");
-                }
-                break;
+    /**
+     * Generates the baseline for one cohort without any student data, for the offline batch.
+     * Failures propagate so a baseline is never replaced by the rule-based ranking.
+     */
+    Mono<RecommendationResponse> generateCohortBaseline(CohortProfile profile, CatalogNode catalogNode) {
+        return llmClient.chat(SYSTEM_PROMPT, buildCohortPrompt(profile, catalogNode))
+                .map(reply -> parseAiResponse(reply.content(), null, reply.model(),
+                        catalogNode.availableOptions()));
+    }
+
+    private RecommendationResponse markSupported(RecommendationResponse response) {
+        response.setUniversitySupported(true);
+        response.setFieldSupported(true);
+        return response;
+    }
 
-            case "3CS":
-                result.put("nextLevel", "Graduation - Diploma of State Engineer (Diplôme d'Ingénieur d'État)");
-                result.put("note",
-                        "Congratulations! You are in your final year. Focus on your PFE (Projet de Fin d'Études) and prepare for your engineering career!");
-                break;
+    private ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
 
-            default:
-                result.put("note", "Unable to determine next level options for level code: " + currentLevelCode);
+    private boolean hasPreferences(RecommendationRequest request) {
+        if (request == null) {
+            return false;
         }
+        return (request.getCareerPreference() != null && !request.getCareerPreference().isBlank())
+                || (request.getPreferredSubjects() != null && !request.getPreferredSubjects().isEmpty())
+                || (request.getAdditionalContext() != null && !request.getAdditionalContext().isBlank());
+    }
 
-        result.set("availableOptions", optionsList);
+    private CurrentStatus extractCurrentStatus(JsonNode studentData) {
+        if (studentData.isArray() && !studentData.isEmpty()) {
+            JsonNode latestRegistration = studentData.get(0);
 
-        if (optionsList.isEmpty() && !result.has("note")) {
-            result.put("note", "No specific options found for your current level/major in the system.");
+            return CurrentStatus.builder()
+                    .field(getTextOrNull(latestRegistration, "llFiliere", "ofLlFiliere"))
+                    .fieldAr(getTextOrNull(latestRegistration, "llFiliereArabe", "ofLlFiliereArabe"))
+                    .major(getTextOrNull(latestRegistration, "ofLlFiliere"))
+                    .majorAr(getTextOrNull(latestRegistration, "ofLlFiliereArabe"))
+                    .speciality(getTextOrNull(latestRegistration, "ofLlSpecialite"))
+                    .specialityAr(getTextOrNull(latestRegistration, "ofLlSpecialiteArabe"))
+                    .level(getTextOrNull(latestRegistration, "refLibelleNiveau"))
+                    .levelAr(getTextOrNull(latestRegistration, "refLibelleNiveauArabe"))
+                    .currentAverage(
+                            latestRegistration.has("lastMoyenne") ? latestRegistration.get("lastMoyenne").asDouble()
+                                    : null)
+                    .academicYear(getTextOrNull(latestRegistration, "anneeAcademiqueCode"))
+                    .build();
         }
 
-        return result;
-    }
-
-    private boolean isMatch(String name, String nameAr, String normalizedSearch) {
-        if (normalizedSearch == null || normalizedSearch.isEmpty())
-            return false;
-        String normName = normalizeFieldName(name);
-        return normName.contains(normalizedSearch) || normalizedSearch.contains(normName) ||
-                (nameAr != null && nameAr.contains(normalizedSearch)); // loose match for arabic if passed
+        throw new ApiException("No academic registration found for student", HttpStatus.NOT_FOUND);
     }
 
-    private JsonNode findByCode(JsonNode array, String code) {
-        if (!array.isArray())
-            return null;
-        for (JsonNode item : array) {
-            if (code.equals(item.path("code").asText())) {
-                return item;
+    private String getTextOrNull(JsonNode node, String... fieldNames) {
+        for (String fieldName : fieldNames) {
+            if (node.has(fieldName) && !node.get(fieldName).isNull()) {
+                String text = node.get(fieldName).asText();
+                if (!text.isBlank()) {
+                    return text;
+                }
             }
         }
         return null;
     }
 
-    private String normalizeFieldName(String name) {
-        if (name == null)
-            return "";
-        return name.toLowerCase()
-                .replaceAll("[àâäãå]", "a")
-                .replaceAll("[éèêë]", "e")
-                .replaceAll("[îï]", "i")
-                .replaceAll("[ôöõ]", "o")
-                .replaceAll("[ùûü]", "u")
-                .replaceAll("[ç]", "c")
-                .replaceAll("[^a-z0-9]", "");
-    }
-
-    private String fetchExamDataSafe(String uuid, JsonNode studentData, String externalToken) {
-        try {
-            if (studentData.isArray() && !studentData.isEmpty()) {
-                long diaId = studentData.get(0).path("id").asLong();
-                if (diaId > 0) {
-                    Object examData = studentService.getExamData(uuid, String.valueOf(diaId), externalToken).block();
-                    return objectMapper.writeValueAsString(examData);
-                }
+    /**
+     * Fetches the exam bilans and reduces them to compact {@link GradeFeatures} rather than
+     * pasting the raw document, which is mostly administrative fields, into the prompt.
+     * Any failure yields empty features.
+     */
+    private Mono<GradeFeatures> fetchGradeFeaturesSafe(String uuid, JsonNode studentData, String externalToken) {
+        if (studentData.isArray() && !studentData.isEmpty()) {
+            long diaId = studentData.get(0).path("id").asLong();
+            if (diaId > 0) {
+                return studentService.getExamData(uuid, String.valueOf(diaId), externalToken)
+                        .map(examData -> GradeFeatures.extract(objectMapper.valueToTree(examData)))
+                        .onErrorResume(e -> {
+                            log.debug("Could not fetch exam data: {}", e.getMessage());
+                            return Mono.empty();
+                        })
+                        .defaultIfEmpty(GradeFeatures.empty());
             }
-        } catch (Exception e) {
-            log.debug("Could not fetch exam data: {}", e.getMessage());
         }
-        return "No detailed exam data available";
+        return Mono.just(GradeFeatures.empty());
     }
 
-    private String buildUserPrompt(
-            CurrentStatus status,
-            JsonNode availableOptions,
-            String examData,
-            RecommendationRequest request) {
-        StringBuilder prompt = new StringBuilder();
-
-        prompt.append("## Student's Current Academic Status\n");
-        prompt.append("- Field: ").append(status.getField()).append("\n");
-        prompt.append("- Level: ").append(status.getLevel()).append("\n");
+    private String buildStatusSection(CurrentStatus status) {
+        StringBuilder section = new StringBuilder();
+        section.append("- Field: ").append(status.getField()).append("\n");
+        section.append("- Level: ").append(status.getLevel()).append("\n");
         if (status.getMajor() != null) {
-            prompt.append("- Major: ").append(status.getMajor()).append("\n");
+            section.append("- Major: ").append(status.getMajor()).append("\n");
         }
         if (status.getSpeciality() != null) {
-            prompt.append("- Speciality: ").append(status.getSpeciality()).append("\n");
+            section.append("- Speciality: ").append(status.getSpeciality()).append("\n");
         }
         if (status.getCurrentAverage() != null) {
-            prompt.append("- Current Average: ").append(status.getCurrentAverage()).append("/20\n");
+            section.append("- Current Average: ").append(status.getCurrentAverage()).append("/20\n");
         }
-        prompt.append("- Academic Year: ").append(status.getAcademicYear()).append("\n\n");
-
-        prompt.append("## Available Options for Next Level\n");
-        prompt.append(availableOptions.toPrettyString()).append("\n\n");
+        section.append("- Academic Year: ").append(status.getAcademicYear());
+        return section.toString();
+    }
 
-        prompt.append("## Exam Data and Grades\n");
-        prompt.append(examData).append("\n\n");
+    /**
+     * Appends the lower-priority sections; the budgeter trims from the end when space runs out.
+     */
+    private String buildUserPrompt(
+            PromptBudgeter.Builder prompt,
+            String gradeProfile,
+            RecommendationRequest request) {
+        prompt.section("Grade Profile", gradeProfile);
 
         if (request != null) {
-            if (request.getCareerPreference() != null) {
-                prompt.append("## Student's Career Preference\n");
-                prompt.append(request.getCareerPreference()).append("\n\n");
-            }
+            prompt.section("Student's Career Preference", request.getCareerPreference());
             if (request.getPreferredSubjects() != null && !request.getPreferredSubjects().isEmpty()) {
-                prompt.append("## Preferred Subjects\n");
-                prompt.append(String.join(", ", request.getPreferredSubjects())).append("\n\n");
-            }
-            if (request.getAdditionalContext() != null) {
-                prompt.append("## Additional Context\n");
-                prompt.append(request.getAdditionalContext()).append("\n\n");
+                prompt.section("Preferred Subjects", String.join(", ", request.getPreferredSubjects()));
             }
+            prompt.section("Additional Context", request.getAdditionalContext());
         }
 
-        prompt.append(
-                "Based on this information, provide 3-5 personalized recommendations for the student's next academic step.");
-
-        return prompt.toString();
+        return prompt.build(CLOSING_INSTRUCTION);
     }
 
-    private RecommendationResponse parseAiResponse(String aiResponse, CurrentStatus currentStatus) {
-        try {
-            JsonNode responseJson = objectMapper.readTree(aiResponse);
-
-            List<Recommendation> recommendations = new ArrayList<>();
-            JsonNode recsNode = responseJson.path("recommendations");
-
-            if (recsNode.isArray()) {
-                for (JsonNode rec : recsNode) {
-                    recommendations.add(Recommendation.builder()
-                            .code(rec.path("code").asText())
-                            .name(rec.path("name").asText())
-                            .type(rec.path("type").asText("speciality"))
-                            .matchScore(rec.path("matchScore").asInt(0))
-                            .reasoning(rec.path("reasoning").asText())
-                            .keySubjects(jsonArrayToList(rec.path("keySubjects")))
-                            .careerOutcomes(jsonArrayToList(rec.path("careerOutcomes")))
-                            .furtherOptions(jsonArrayToList(rec.path("furtherOptions")))
-                            .build());
-                }
-            }
+    private String buildCohortPrompt(CohortProfile profile, CatalogNode catalogNode) {
+        StringBuilder status = new StringBuilder();
+        status.append("- Field: ").append(profile.field()).append("\n");
+        status.append("- Level: ").append(profile.level()).append("\n");
+        if (profile.major() != null) {
+            status.append("- Major: ").append(profile.major()).append("\n");
+        }
+        if (profile.speciality() != null) {
+            status.append("- Speciality: ").append(profile.speciality()).append("\n");
+        }
+        if (!CohortProfile.UNKNOWN_BAND.equals(profile.averageBand())) {
+            status.append("- Current Average: between ").append(profile.averageBand().replace("-", " and "))
+                    .append(" out of 20\n");
+        }
 
-            // Sort by matchScore descending, then by name ascending for stability
-            recommendations.sort((a, b) -> {
-                int scoreCompare = Integer.compare(b.getMatchScore(), a.getMatchScore());
-                if (scoreCompare != 0) {
-                    return scoreCompare;
-                }
-                return a.getName().compareToIgnoreCase(b.getName());
-            });
+        return promptBudgeter.newPrompt(PROMPT_COHORT, SYSTEM_PROMPT)
+                .section(STATUS_HEADING, status.toString())
+                .section(OPTIONS_HEADING, catalogNode.rendered())
+                .build(CLOSING_INSTRUCTION);
+    }
 
-            return RecommendationResponse.builder()
-                    .currentStatus(currentStatus)
-                    .recommendations(recommendations)
-                    .summary(responseJson.path("summary").asText(""))
-                    .model(groqClient.getModel())
-                    .build();
+    private RecommendationResponse parseAiResponse(String aiResponse, CurrentStatus currentStatus, String model,
+            JsonNode availableOptions) {
+        AiResponseParser.Parsed parsed = aiResponseParser.parse(aiResponse, availableOptions);
 
-        } catch (Exception e) {
-            log.error("Error parsing AI response: {}", aiResponse, e);
-            throw new ApiException("Failed to parse AI recommendation", HttpStatus.INTERNAL_SERVER_ERROR);
+        List<Recommendation> recommendations = new ArrayList<>();
+        for (JsonNode rec : parsed.recommendations()) {
+            recommendations.add(toRecommendation(rec));
         }
+
+        // Sort by matchScore descending, then by name ascending for stability
+        recommendations.sort((a, b) -> {
+            int scoreCompare = Integer.compare(b.getMatchScore(), a.getMatchScore());
+            if (scoreCompare != 0) {
+                return scoreCompare;
+            }
+            return a.getName().compareToIgnoreCase(b.getName());
+        });
+
+        return RecommendationResponse.builder()
+                .currentStatus(currentStatus)
+                .recommendations(recommendations)
+                .summary(parsed.summary())
+                .model(model)
+                .build();
+    }
+
+    private Recommendation toRecommendation(JsonNode rec) {
+        return Recommendation.builder()
+                .code(rec.path("code").asText())
+                .name(rec.path("name").asText())
+                .type(rec.path("type").asText("speciality"))
+                .matchScore(rec.path("matchScore").asInt(0))
+                .reasoning(rec.path("reasoning").asText())
+                .keySubjects(jsonArrayToList(rec.path("keySubjects")))
+                .careerOutcomes(jsonArrayToList(rec.path("careerOutcomes")))
+                .furtherOptions(jsonArrayToList(rec.path("furtherOptions")))
+                .build();
     }
 
     private List<String> jsonArrayToList(JsonNode arrayNode) {
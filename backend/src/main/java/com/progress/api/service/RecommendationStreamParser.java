@@ -0,0 +1,117 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Incrementally scans streamed LLM output and hands back each object of the top-level
+ * {@code "recommendations"} array as soon as its closing brace arrives.
+ * Not thread-safe; one instance per stream.
+ */
+@Slf4j
+class RecommendationStreamParser {
+
+    private static final String RECOMMENDATIONS_KEY = "recommendations";
+
+    private final ObjectMapper objectMapper;
+    private final StringBuilder content = new StringBuilder();
+    private final Deque<Character> containers = new ArrayDeque<>();
+
+    private int position;
+    private boolean inString;
+    private boolean escaped;
+    private int stringStart = -1;
+    private String lastKey;
+    private int recommendationsDepth = -1;
+    private int objectStart = -1;
+
+    RecommendationStreamParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Appends a chunk of model output and returns the recommendation objects it completed.
+     */
+    List<JsonNode> feed(String chunk) {
+        content.append(chunk);
+        List<JsonNode> completed = new ArrayList<>();
+
+        for (; position < content.length(); position++) {
+            char c = content.charAt(position);
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (containers.size() == 1 && containers.peek() == '{') {
+                        lastKey = content.substring(stringStart + 1, position);
+                    }
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    stringStart = position;
+                }
+                case '{' -> {
+                    if (recommendationsDepth >= 0 && containers.size() == recommendationsDepth) {
+                        objectStart = position;
+                    }
+                    containers.push('{');
+                }
+                case '[' -> {
+                    if (containers.size() == 1 && RECOMMENDATIONS_KEY.equals(lastKey)) {
+                        recommendationsDepth = containers.size() + 1;
+                    }
+                    containers.push('[');
+                }
+                case '}' -> {
+                    containers.poll();
+                    if (objectStart >= 0 && containers.size() == recommendationsDepth) {
+                        parseObject(content.substring(objectStart, position + 1), completed);
+                        objectStart = -1;
+                    }
+                }
+                case ']' -> {
+                    if (containers.size() == recommendationsDepth) {
+                        recommendationsDepth = -1;
+                        lastKey = null;
+                    }
+                    containers.poll();
+                }
+                default -> {
+                    // structural characters outside strings are the only ones that matter
+                }
+            }
+        }
+
+        return completed;
+    }
+
+    /**
+     * The full text received so far.
+     */
+    String content() {
+        return content.toString();
+    }
+
+    private void parseObject(String json, List<JsonNode> completed) {
+        try {
+            completed.add(objectMapper.readTree(json));
+        } catch (JsonProcessingException e) {
+            log.debug("Skipping unparseable streamed recommendation: {}", e.getOriginalMessage());
+        }
+    }
+}
@@ -1,25 +1,175 @@
 package com.progress.api.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.UUID;
 
+/**
+ * Sessions in Redis, one hash per uuid holding the external token, the session version and
+ * the allowed cards, so a request reads its whole session with one HGETALL and every write is a
+ * single atomic script. A near-cache in front skips even that for most authenticated requests.
+ * Writes that change the token or the version invalidate the local copy and publish the uuid, so
+ * the other instances drop theirs within a pub/sub round-trip; the TTL bounds staleness if a
+ * message is lost. Card writes only drop the local copy, since a stale copy elsewhere merely
+ * lacks cards that the next load will bring.
+ *
+ * <p>The reactive variants run the same commands through the non-blocking Lettuce connection.
+ * Lettuce multiplexes concurrent commands on one connection, so the per-uuid reads of a batch
+ * go out pipelined rather than one round-trip after another.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ConditionalOnProperty(name = "external-token-store.type", havingValue = "redis")
-public class RedisExternalTokenStore implements ExternalTokenStore {
+public class RedisExternalTokenStore implements ExternalTokenStore, ReactiveExternalTokenStore, MessageListener {
 
-    private static final String TOKEN_KEY_PREFIX = "ext:token:";
-    private static final String CARDS_KEY_PREFIX = "ext:cards:";
+    static final String INVALIDATION_CHANNEL = "ext:invalidate";
+    // messages are "<node>/<uuid>", so a node can skip its own; older nodes publish the bare uuid
+    private static final char NODE_SEPARATOR = '/';
+
+    private static final String SESSION_KEY_PREFIX = "ext:session:";
+    // layout before the session hash; only read until sessions stored that way have expired
+    private static final String LEGACY_TOKEN_KEY_PREFIX = "ext:token:";
+    private static final String LEGACY_CARDS_KEY_PREFIX = "ext:cards:";
+
+    private static final String TOKEN_FIELD = "token";
+    private static final String VERSION_FIELD = "ver";
+    private static final String CARDS_FIELD = "cards";
+    private static final String CARDS_EXPIRES_FIELD = "cards_exp";
+    private static final String FAMILY_FIELD_PREFIX = "fam:";
+    private static final String CARD_SEPARATOR = ",";
+
+    // The key lives as long as its longest-lived field; fields with a shorter life carry their own expiry.
+    private static final String EXTEND_TTL = """
+            local ttl = tonumber(ARGV[1])
+            if redis.call('PTTL', KEYS[1]) < ttl then
+                redis.call('PEXPIRE', KEYS[1], ttl)
+            end
+            """;
+
+    // ARGV: ttl millis, then field/value pairs
+    private static final RedisScript<Long> SET_FIELDS_SCRIPT = RedisScript.of("""
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            """ + EXTEND_TTL + """
+            return 1
+            """, Long.class);
+
+    // KEYS: session, legacy token, legacy cards. The version stays so that logout remains in effect.
+    private static final RedisScript<Long> REMOVE_SCRIPT = RedisScript.of("""
+            redis.call('HDEL', KEYS[1], 'token', 'cards', 'cards_exp')
+            return redis.call('DEL', KEYS[2], KEYS[3])
+            """, Long.class);
+
+    // ARGV: ttl millis, initial version; returns the version and 1 if this call started it
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SESSION_VERSION_SCRIPT = RedisScript.of("""
+            local current = redis.call('HGET', KEYS[1], 'ver')
+            local created = 0
+            if not current then
+                current = ARGV[2]
+                created = 1
+                redis.call('HSET', KEYS[1], 'ver', current)
+            end
+            """ + EXTEND_TTL + """
+            return {tonumber(current), created}
+            """, List.class);
+
+    // Refresh families are fields named fam:<id> holding "<sequence>:<last rotation millis>".
+    private static final String DROP_FAMILIES = """
+            for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+                if string.sub(field, 1, 4) == 'fam:' and (ARGV[3] == nil
+                        or tonumber(string.match(redis.call('HGET', KEYS[1], field), ':(%d+)$')) < tonumber(ARGV[3])) then
+                    redis.call('HDEL', KEYS[1], field)
+                end
+            end
+            """;
+
+    // ARGV: ttl millis, clock millis; a new version ends every refresh family of the old one
+    private static final RedisScript<Long> BUMP_VERSION_SCRIPT = RedisScript.of("""
+            local current = tonumber(redis.call('HGET', KEYS[1], 'ver') or '0')
+            local next = math.max(current + 1, tonumber(ARGV[2]))
+            redis.call('HSET', KEYS[1], 'ver', string.format('%d', next))
+            """ + DROP_FAMILIES + EXTEND_TTL + """
+            return next
+            """, Long.class);
+
+    // ARGV: ttl millis, family field, drop families idle since (millis), clock millis
+    private static final RedisScript<Long> START_FAMILY_SCRIPT = RedisScript.of(DROP_FAMILIES + """
+            redis.call('HSET', KEYS[1], ARGV[2], string.format('1:%d', tonumber(ARGV[4])))
+            """ + EXTEND_TTL + """
+            return 1
+            """, Long.class);
+
+    // ARGV: ttl millis, version, family field, presented sequence, grace millis, clock millis.
+    // Returns the sequence to issue, -1 if the version or family is gone, -2 if a replay ended the family.
+    private static final RedisScript<Long> ROTATE_FAMILY_SCRIPT = RedisScript.of("""
+            local version = redis.call('HGET', KEYS[1], 'ver')
+            local state = redis.call('HGET', KEYS[1], ARGV[3])
+            if not version or tonumber(version) ~= tonumber(ARGV[2]) or not state then
+                return -1
+            end
+            local sequence, rotatedAt = string.match(state, '^(%d+):(%d+)$')
+            sequence = tonumber(sequence)
+            local presented = tonumber(ARGV[4])
+            local now = tonumber(ARGV[6])
+            if presented == sequence then
+                sequence = sequence + 1
+                redis.call('HSET', KEYS[1], ARGV[3], string.format('%d:%d', sequence, now))
+            elseif presented ~= sequence - 1 or now - tonumber(rotatedAt) > tonumber(ARGV[5]) then
+                redis.call('HDEL', KEYS[1], ARGV[3])
+                return -2
+            end
+            """ + EXTEND_TTL + """
+            return sequence
+            """, Long.class);
+
+    /** Everything held for one uuid, as read by one HGETALL */
+    private record SessionRecord(Session session, Set<String> allowedCards, long cardsExpiresAt) {
+        Optional<Set<String>> cards() {
+            if (allowedCards.isEmpty() || System.currentTimeMillis() > cardsExpiresAt) {
+                return Optional.empty();
+            }
+            return Optional.of(allowedCards);
+        }
+    }
 
     private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private final NearCache<SessionRecord> sessionCache;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public RedisExternalTokenStore(
+            StringRedisTemplate redisTemplate,
+            ReactiveStringRedisTemplate reactiveRedisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            MeterRegistry meterRegistry,
+            @Value("${external-token-store.near-cache.ttl-ms:2000}") long nearCacheTtlMillis,
+            @Value("${external-token-store.near-cache.max-entries:10000}") int nearCacheMaxEntries) {
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.sessionCache = new NearCache<>("session", nearCacheTtlMillis, nearCacheMaxEntries, meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
 
     @Override
     public void store(String uuid, String externalToken, long ttlMillis) {
@@ -32,9 +182,10 @@ public class RedisExternalTokenStore implements ExternalTokenStore {
             return;
         }
 
-        String key = tokenKey(uuid);
         try {
-            redisTemplate.opsForValue().set(key, externalToken, Duration.ofMillis(ttlMillis));
+            redisTemplate.execute(SET_FIELDS_SCRIPT, List.of(sessionKey(uuid)),
+                    String.valueOf(ttlMillis), TOKEN_FIELD, externalToken);
+            invalidate(uuid);
             log.debug("Stored external token for UUID: {}", uuid);
         } catch (Exception e) {
             log.error("Redis store failed for UUID {}: {}", uuid, e.getMessage());
@@ -43,34 +194,77 @@ public class RedisExternalTokenStore implements ExternalTokenStore {
 
     @Override
     public Optional<String> retrieve(String uuid) {
+        return retrieveSession(uuid).map(Session::externalToken);
+    }
+
+    @Override
+    public Optional<Session> retrieveSession(String uuid) {
+        return sessionRecord(uuid).map(SessionRecord::session);
+    }
+
+    private Optional<SessionRecord> sessionRecord(String uuid) {
         if (uuid == null || uuid.isBlank()) {
             return Optional.empty();
         }
+        return sessionCache.get(uuid, () -> loadSession(uuid));
+    }
+
+    private Optional<SessionRecord> loadSession(String uuid) {
         try {
-            String value = redisTemplate.opsForValue().get(tokenKey(uuid));
-            return Optional.ofNullable(value);
+            Map<Object, Object> fields = redisTemplate.opsForHash().entries(sessionKey(uuid));
+            String token = (String) fields.get(TOKEN_FIELD);
+            if (token == null) {
+                token = redisTemplate.opsForValue().get(LEGACY_TOKEN_KEY_PREFIX + uuid);
+                if (token == null) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(toRecord(token, fields));
         } catch (Exception e) {
             log.error("Redis retrieve failed for UUID {}: {}", uuid, e.getMessage());
             return Optional.empty();
         }
     }
 
+    private Mono<SessionRecord> loadSessionReactive(String uuid) {
+        return reactiveRedisTemplate.opsForHash().entries(sessionKey(uuid))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(fields -> {
+                    String token = (String) fields.get(TOKEN_FIELD);
+                    Mono<String> tokenMono = token != null
+                            ? Mono.just(token)
+                            : reactiveRedisTemplate.opsForValue().get(LEGACY_TOKEN_KEY_PREFIX + uuid);
+                    return tokenMono.map(resolved -> toRecord(resolved, fields));
+                })
+                .onErrorResume(e -> {
+                    log.error("Redis retrieve failed for UUID {}: {}", uuid, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static SessionRecord toRecord(String token, Map<Object, Object> fields) {
+        String version = (String) fields.get(VERSION_FIELD);
+        String cards = (String) fields.get(CARDS_FIELD);
+        String cardsExpiresAt = (String) fields.get(CARDS_EXPIRES_FIELD);
+        return new SessionRecord(
+                new Session(token, version == null ? 0 : Long.parseLong(version)),
+                cards == null || cards.isEmpty() ? Set.of() : Set.of(cards.split(CARD_SEPARATOR)),
+                cardsExpiresAt == null ? 0 : Long.parseLong(cardsExpiresAt));
+    }
+
     @Override
     public void remove(String uuid) {
         if (uuid == null || uuid.isBlank()) {
             return;
         }
-        redisTemplate.delete(tokenKey(uuid));
-        redisTemplate.delete(cardsKey(uuid));
+        redisTemplate.execute(REMOVE_SCRIPT,
+                List.of(sessionKey(uuid), LEGACY_TOKEN_KEY_PREFIX + uuid, LEGACY_CARDS_KEY_PREFIX + uuid));
+        invalidate(uuid);
     }
 
     @Override
     public boolean exists(String uuid) {
-        if (uuid == null || uuid.isBlank()) {
-            return false;
-        }
-        Boolean hasKey = redisTemplate.hasKey(tokenKey(uuid));
-        return Boolean.TRUE.equals(hasKey);
+        return retrieveSession(uuid).isPresent();
     }
 
     @Override
@@ -89,30 +283,138 @@ public class RedisExternalTokenStore implements ExternalTokenStore {
         if (uuid == null || uuid.isBlank() || cardIds == null || cardIds.isEmpty()) {
             return;
         }
-        String key = cardsKey(uuid);
-        redisTemplate.opsForSet().add(key, cardIds.toArray(new String[0]));
-        redisTemplate.expire(key, Duration.ofMillis(ttlMillis));
+        redisTemplate.execute(SET_FIELDS_SCRIPT, List.of(sessionKey(uuid)), String.valueOf(ttlMillis),
+                CARDS_FIELD, String.join(CARD_SEPARATOR, cardIds),
+                CARDS_EXPIRES_FIELD, String.valueOf(System.currentTimeMillis() + ttlMillis));
+        // cards only add to a session; other instances pick them up once their copy expires
+        sessionCache.invalidate(uuid);
         log.debug("Cached {} allowed cards for UUID: {}", cardIds.size(), uuid);
     }
 
     @Override
     public Optional<Set<String>> getAllowedCards(String uuid) {
+        return sessionRecord(uuid).flatMap(SessionRecord::cards);
+    }
+
+    @Override
+    public Mono<Session> findSession(String uuid) {
+        return findSessionRecord(uuid).map(SessionRecord::session);
+    }
+
+    @Override
+    public Mono<Map<String, Session>> findSessions(Collection<String> uuids) {
+        return Flux.fromIterable(uuids)
+                .flatMap(uuid -> findSession(uuid).map(session -> Map.entry(uuid, session)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    @Override
+    public Mono<Set<String>> findAllowedCards(String uuid) {
+        return findSessionRecord(uuid).flatMap(record -> Mono.justOrEmpty(record.cards()));
+    }
+
+    @Override
+    public Mono<Void> saveAllowedCards(String uuid, Set<String> cardIds, long ttlMillis) {
+        if (uuid == null || uuid.isBlank() || cardIds == null || cardIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveRedisTemplate.execute(SET_FIELDS_SCRIPT, List.of(sessionKey(uuid)), List.of(
+                        String.valueOf(ttlMillis),
+                        CARDS_FIELD, String.join(CARD_SEPARATOR, cardIds),
+                        CARDS_EXPIRES_FIELD, String.valueOf(System.currentTimeMillis() + ttlMillis)))
+                .then(Mono.fromRunnable(() -> sessionCache.invalidate(uuid)))
+                .doOnSuccess(done -> log.debug("Cached {} allowed cards for UUID: {}", cardIds.size(), uuid))
+                .onErrorResume(e -> {
+                    log.error("Redis card cache write failed for UUID {}: {}", uuid, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<SessionRecord> findSessionRecord(String uuid) {
         if (uuid == null || uuid.isBlank()) {
-            return Optional.empty();
+            return Mono.empty();
         }
-        String key = cardsKey(uuid);
-        Set<String> members = redisTemplate.opsForSet().members(key);
-        if (members == null || members.isEmpty()) {
-            return Optional.empty();
+        return sessionCache.getReactive(uuid, () -> loadSessionReactive(uuid));
+    }
+
+    @Override
+    public long sessionVersion(String uuid, long ttlMillis) {
+        List<?> result = redisTemplate.execute(SESSION_VERSION_SCRIPT, List.of(sessionKey(uuid)),
+                String.valueOf(ttlMillis), String.valueOf(ExternalTokenStore.nextVersion(0)));
+        if (result == null || result.size() < 2) {
+            return 0;
+        }
+        // only a newly started version changes what the near-caches hold
+        if (((Number) result.get(1)).longValue() == 1) {
+            invalidate(uuid);
+        }
+        return ((Number) result.get(0)).longValue();
+    }
+
+    @Override
+    public long bumpSessionVersion(String uuid, long ttlMillis) {
+        Long version = redisTemplate.execute(BUMP_VERSION_SCRIPT, List.of(sessionKey(uuid)),
+                String.valueOf(ttlMillis), String.valueOf(System.currentTimeMillis()));
+        invalidate(uuid);
+        log.debug("Session version for UUID {} bumped to {}", uuid, version);
+        return version == null ? -1 : version;
+    }
+
+    // Families are not part of the cached session record, so neither call touches the near-cache.
+    @Override
+    public void startRefreshFamily(String uuid, String family, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        redisTemplate.execute(START_FAMILY_SCRIPT, List.of(sessionKey(uuid)), String.valueOf(ttlMillis),
+                FAMILY_FIELD_PREFIX + family, String.valueOf(now - ttlMillis), String.valueOf(now));
+    }
+
+    @Override
+    public OptionalLong rotateRefreshFamily(String uuid, long version, String family, long sequence,
+            long graceMillis, long ttlMillis) {
+        Long issued = redisTemplate.execute(ROTATE_FAMILY_SCRIPT, List.of(sessionKey(uuid)),
+                String.valueOf(ttlMillis), String.valueOf(version), FAMILY_FIELD_PREFIX + family,
+                String.valueOf(sequence), String.valueOf(graceMillis), String.valueOf(System.currentTimeMillis()));
+        if (issued == null || issued < 0) {
+            if (issued != null && issued == -2) {
+                log.warn("Replayed refresh token for UUID {}; ended its refresh family", uuid);
+            }
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(issued);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(NODE_SEPARATOR);
+        if (separator < 0) {
+            sessionCache.invalidate(body);
+        } else if (!body.substring(0, separator).equals(nodeId)) {
+            // our own writes already dropped the local copy
+            sessionCache.invalidate(body.substring(separator + 1));
+        }
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void cleanupNearCache() {
+        sessionCache.cleanup();
+    }
+
+    private void invalidate(String uuid) {
+        sessionCache.invalidate(uuid);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, invalidationMessage(uuid));
+        } catch (Exception e) {
+            log.warn("Could not publish invalidation for UUID {}: {}", uuid, e.getMessage());
         }
-        return Optional.of(members);
     }
 
-    private String tokenKey(String uuid) {
-        return TOKEN_KEY_PREFIX + uuid;
+    private String invalidationMessage(String uuid) {
+        return nodeId + NODE_SEPARATOR + uuid;
     }
 
-    private String cardsKey(String uuid) {
-        return CARDS_KEY_PREFIX + uuid;
+    private String sessionKey(String uuid) {
+        return SESSION_KEY_PREFIX + uuid;
     }
 }
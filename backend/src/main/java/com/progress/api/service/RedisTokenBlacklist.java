@@ -0,0 +1,186 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Blacklist shared by every instance through Redis, one key per revoked token digest with the
+ * token's remaining lifetime as TTL. Each instance keeps a Bloom filter of the revoked digests,
+ * fed by a pub/sub channel, so a token that was never revoked (almost every request) is cleared
+ * without a Redis round-trip. Only filter hits are confirmed against Redis.
+ *
+ * <p>The filter is rebuilt from Redis on startup and every five minutes, which drops expired
+ * digests and repairs any revocation missed while the subscription was down.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "token-blacklist.type", havingValue = "redis")
+public class RedisTokenBlacklist implements TokenBlacklist, MessageListener {
+
+    static final String KEY_PREFIX = "blacklist:";
+    static final String CHANNEL = "blacklist:revoked";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+    // set while a rebuild scans Redis, so revocations arriving meanwhile reach the new filter too
+    private volatile BloomFilter nextFilter;
+
+    public RedisTokenBlacklist(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            MeterRegistry meterRegistry,
+            @Value("${token-blacklist.bloom.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${token-blacklist.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PostConstruct
+    void init() {
+        rebuildFilter();
+    }
+
+    @Override
+    public void blacklist(String token, long expirationTimeMs) {
+        if (token == null || token.isBlank()) {
+            log.warn("Attempted to blacklist null or blank token");
+            return;
+        }
+        long ttlMillis = expirationTimeMs - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            log.debug("Token already expired, not blacklisting");
+            return;
+        }
+
+        TokenDigest digest = TokenDigest.of(token);
+        try {
+            // written to Redis before it is announced, so a concurrent rebuild either scans it or sees the message
+            redisTemplate.opsForValue().set(key(digest), "1", Duration.ofMillis(ttlMillis));
+            addToFilter(digest);
+            redisTemplate.convertAndSend(CHANNEL, digest.toHex());
+            log.debug("Token blacklisted in Redis, ttl: {} ms", ttlMillis);
+        } catch (Exception e) {
+            log.error("Redis blacklist failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isBlacklisted(String token) {
+        if (token == null || token.isBlank()) {
+            return false;
+        }
+        TokenDigest digest = TokenDigest.of(token);
+        if (!filter.mightContain(digest)) {
+            count("filtered");
+            return false;
+        }
+        try {
+            boolean revoked = Boolean.TRUE.equals(redisTemplate.hasKey(key(digest)));
+            count(revoked ? "revoked" : "false_positive");
+            return revoked;
+        } catch (Exception e) {
+            // the filter says it may be revoked and Redis cannot tell us otherwise
+            log.error("Redis blacklist lookup failed, rejecting token: {}", e.getMessage());
+            count("error");
+            return true;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String hex = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            addToFilter(TokenDigest.fromHex(hex));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.warn("Ignoring malformed blacklist message: {}", hex);
+        }
+    }
+
+    @Override
+    public void remove(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        redisTemplate.delete(key(TokenDigest.of(token)));
+    }
+
+    @Override
+    public int size() {
+        log.warn("Size not supported for RedisTokenBlacklist; returning 0");
+        return 0;
+    }
+
+    @Override
+    public void clear() {
+        log.warn("Clear not supported for RedisTokenBlacklist; skipping");
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(expectedInsertions, falsePositiveRate);
+        nextFilter = rebuilt;
+        int loaded = 0;
+        try (Cursor<String> keys = redisTemplate.scan(
+                ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build())) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                try {
+                    rebuilt.put(TokenDigest.fromHex(key.substring(KEY_PREFIX.length())));
+                    loaded++;
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    log.warn("Ignoring unexpected blacklist key: {}", key);
+                }
+            }
+            filter = rebuilt;
+            log.debug("Rebuilt blacklist filter from {} revoked tokens", loaded);
+        } catch (Exception e) {
+            log.warn("Could not rebuild blacklist filter from Redis, keeping the current one: {}", e.getMessage());
+        } finally {
+            nextFilter = null;
+        }
+    }
+
+    private void addToFilter(TokenDigest digest) {
+        filter.put(digest);
+        BloomFilter next = nextFilter;
+        if (next != null) {
+            next.put(digest);
+        }
+    }
+
+    private static String key(TokenDigest digest) {
+        return KEY_PREFIX + digest.toHex();
+    }
+
+    private void count(String result) {
+        Counter.builder("token.blacklist.lookups")
+                .description("Blacklist lookups by how they were answered")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
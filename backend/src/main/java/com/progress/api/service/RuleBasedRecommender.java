@@ -0,0 +1,169 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.progress.api.dto.RecommendationRequest;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import com.progress.api.dto.RecommendationResponse.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic ranking of the next-level options from the student's grades in each option's
+ * weighted key subjects. Needs no network call, so it answers in milliseconds: on its own in
+ * quick mode, as a preliminary answer while the LLM streams, and as the fallback when the LLM
+ * is unavailable.
+ */
+@Component
+public class RuleBasedRecommender {
+
+    public static final String MODEL = "rule-based";
+
+    public static final String TRIGGER_QUICK = "quick";
+    public static final String TRIGGER_PRELIMINARY = "preliminary";
+    public static final String TRIGGER_FALLBACK = "fallback";
+    public static final String TRIGGER_UNCONFIGURED = "unconfigured";
+
+    private static final double POINTS_PER_GRADE = 5.0;
+    private static final int PREFERENCE_BONUS = 5;
+    private static final int MAX_PREFERENCE_BONUS = 15;
+
+    private final MeterRegistry meterRegistry;
+
+    public RuleBasedRecommender(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Scores every available option. Key subjects the student has no grade in count at their
+     * overall average, so an option is neither rewarded nor punished for unfamiliar subjects.
+     * Preferred subjects and career keywords that match an option add a small bonus.
+     *
+     * @param availableOptions the catalogue result with {@code availableOptions} and optional {@code note}
+     * @param trigger          why the local ranking is being served, recorded as a metric tag
+     */
+    public RecommendationResponse recommend(
+            CurrentStatus currentStatus,
+            JsonNode availableOptions,
+            GradeFeatures features,
+            RecommendationRequest request,
+            String trigger) {
+        Counter.builder("recommendation.rule_based")
+                .description("Recommendations ranked locally instead of by the LLM")
+                .tag("trigger", trigger)
+                .register(meterRegistry)
+                .increment();
+
+        Double baseline = features.overallAverage();
+        if (baseline == null) {
+            baseline = currentStatus.getCurrentAverage() != null ? currentStatus.getCurrentAverage() : GradeFeatures.PASS_MARK;
+        }
+
+        List<Recommendation> recommendations = new ArrayList<>();
+        for (JsonNode option : availableOptions.path("availableOptions")) {
+            recommendations.add(score(option, features, baseline, request));
+        }
+        recommendations.sort(Comparator.comparingInt(Recommendation::getMatchScore).reversed()
+                .thenComparing(Recommendation::getName));
+
+        return RecommendationResponse.builder()
+                .currentStatus(currentStatus)
+                .recommendations(recommendations)
+                .summary(summary(recommendations, availableOptions, trigger))
+                .model(MODEL)
+                .build();
+    }
+
+    private Recommendation score(JsonNode option, GradeFeatures features, double baseline,
+            RecommendationRequest request) {
+        Map<String, Double> weights = GradeFeatures.keySubjectWeights(option);
+
+        double weighted = 0;
+        double totalWeight = 0;
+        List<String> graded = new ArrayList<>();
+        List<String> ungraded = new ArrayList<>();
+        for (Map.Entry<String, Double> keySubject : weights.entrySet()) {
+            Double average = features.keySubjectAverage(keySubject.getKey());
+            if (average != null) {
+                graded.add(String.format(Locale.ROOT, "%s %.2f/20", keySubject.getKey(), average));
+            } else {
+                ungraded.add(keySubject.getKey());
+            }
+            weighted += (average != null ? average : baseline) * keySubject.getValue();
+            totalWeight += keySubject.getValue();
+        }
+        double fit = totalWeight == 0 ? baseline : weighted / totalWeight;
+        int matchScore = (int) Math.round(fit * POINTS_PER_GRADE) + preferenceBonus(option, weights, request);
+
+        return Recommendation.builder()
+                .code(option.path("code").asText())
+                .name(option.path("name").asText())
+                .type(option.path("type").asText("speciality"))
+                .matchScore(Math.max(0, Math.min(100, matchScore)))
+                .reasoning(reasoning(graded, ungraded, baseline))
+                .keySubjects(new ArrayList<>(weights.keySet()))
+                .careerOutcomes(List.of())
+                .furtherOptions(List.of())
+                .build();
+    }
+
+    private int preferenceBonus(JsonNode option, Map<String, Double> weights, RecommendationRequest request) {
+        if (request == null) {
+            return 0;
+        }
+        int bonus = 0;
+        if (request.getPreferredSubjects() != null) {
+            for (String preferred : request.getPreferredSubjects()) {
+                if (weights.keySet().stream().anyMatch(keySubject -> GradeFeatures.matches(keySubject, preferred)
+                        || GradeFeatures.matches(preferred, keySubject))) {
+                    bonus += PREFERENCE_BONUS;
+                }
+            }
+        }
+        String career = request.getCareerPreference();
+        if (career != null && !career.isBlank()) {
+            String optionName = option.path("name").asText();
+            boolean related = GradeFeatures.matches(career, optionName)
+                    || weights.keySet().stream().anyMatch(keySubject -> GradeFeatures.matches(career, keySubject));
+            if (related) {
+                bonus += PREFERENCE_BONUS;
+            }
+        }
+        return Math.min(bonus, MAX_PREFERENCE_BONUS);
+    }
+
+    private String reasoning(List<String> graded, List<String> ungraded, double baseline) {
+        if (graded.isEmpty()) {
+            return String.format(Locale.ROOT,
+                    "No grades yet in this option's key subjects; ranked on your overall average of %.2f/20.",
+                    baseline);
+        }
+        StringBuilder reasoning = new StringBuilder("Your grades in its key subjects: ")
+                .append(String.join(", ", graded)).append('.');
+        if (!ungraded.isEmpty()) {
+            reasoning.append(" Not yet studied: ").append(String.join(", ", ungraded)).append('.');
+        }
+        return reasoning.toString();
+    }
+
+    private String summary(List<Recommendation> recommendations, JsonNode availableOptions, String trigger) {
+        if (recommendations.isEmpty()) {
+            return availableOptions.path("note").asText(null);
+        }
+        String prefix = switch (trigger) {
+            case TRIGGER_FALLBACK, TRIGGER_UNCONFIGURED ->
+                    "AI recommendations are temporarily unavailable, so these options were ranked from";
+            default -> "Quick ranking based on";
+        };
+        Recommendation best = recommendations.get(0);
+        return String.format(Locale.ROOT, "%s your grades in each option's key subjects. Best fit: %s (%d/100).",
+                prefix, best.getName(), best.getMatchScore());
+    }
+}
@@ -0,0 +1,462 @@
+package com.progress.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only log of changes to the {@link InMemoryExternalTokenStore}, so sessions survive a
+ * restart instead of sending every student back to the PROGRES login at once.
+ *
+ * <p>Files are numbered by generation. {@code journal-N.log} holds every change made since
+ * {@code snapshot-N.bin}, which is the compacted state at the moment the journal was rotated to
+ * generation N. Startup reads the newest snapshot and every journal from that generation on,
+ * then writes to a new generation, so a record torn by a crash is never followed by good ones.
+ * Each record is sealed on its own with AES-GCM under {@code external-token-store.in-memory.persistence.key};
+ * reading stops at the first record that is incomplete or fails authentication.
+ *
+ * <p>{@link #append} only queues the change. A single writer thread seals and writes the queue in
+ * order, so neither encryption nor file I/O runs under the store's lock; a crash of the process
+ * loses at most the changes still queued. The journal is forced to disk once a second without
+ * holding up appends.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${external-token-store.type:in-memory}' == 'in-memory' and ${external-token-store.in-memory.persistence.enabled:false}")
+public class SessionJournal {
+
+    enum Op {
+        TOKEN, CARDS, VERSION, REMOVE, DROP, CLEAR, FAMILY
+    }
+
+    /** One change to the store; fields that do not apply to {@code op} are null or 0 */
+    record Change(Op op, String uuid, String token, Set<String> cardIds, long version, long expiresAt) {
+
+        static Change token(String uuid, String token, long expiresAt) {
+            return new Change(Op.TOKEN, uuid, token, null, 0, expiresAt);
+        }
+
+        static Change cards(String uuid, Set<String> cardIds, long expiresAt) {
+            return new Change(Op.CARDS, uuid, null, cardIds, 0, expiresAt);
+        }
+
+        static Change version(String uuid, long version, long expiresAt) {
+            return new Change(Op.VERSION, uuid, null, null, version, expiresAt);
+        }
+
+        /** External token and allowed cards removed, session version kept */
+        static Change remove(String uuid) {
+            return new Change(Op.REMOVE, uuid, null, null, 0, 0);
+        }
+
+        /** Whole session gone, version included */
+        static Change drop(String uuid) {
+            return new Change(Op.DROP, uuid, null, null, 0, 0);
+        }
+
+        static Change clear() {
+            return new Change(Op.CLEAR, null, null, null, 0, 0);
+        }
+
+        /**
+         * Refresh family state: {@code token} holds the family id, {@code version} its sequence
+         * (0 once the family is ended) and {@code expiresAt} the time of its last rotation.
+         */
+        static Change family(String uuid, String family, long sequence, long rotatedAt) {
+            return new Change(Op.FAMILY, uuid, family, null, sequence, rotatedAt);
+        }
+    }
+
+    private static final Pattern FILE_NAME = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|bin)");
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final Object STOP = new Object();
+
+    /** Queued between changes: everything after it goes to the journal of {@code generation} */
+    private record Rotation(long generation) {
+    }
+
+    private final Path directory;
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    private final Cipher sealer;
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private volatile Thread writer;
+    // last generation handed out by replay or rotate
+    private long generation;
+    // owned by the writer thread once it runs; sync only forces whichever channel is current
+    private volatile FileChannel journal;
+    private long journalGeneration;
+
+    public SessionJournal(
+            @Value("${external-token-store.in-memory.persistence.directory:sessions}") String directory,
+            @Value("${external-token-store.in-memory.persistence.key:}") String key) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException("external-token-store.in-memory.persistence.key is required when persistence is enabled");
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(key.trim());
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalStateException("external-token-store.in-memory.persistence.key must be a base64 AES key of 128, 192 or 256 bits");
+        }
+        this.directory = Path.of(directory);
+        this.key = new SecretKeySpec(keyBytes, "AES");
+        try {
+            this.sealer = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    /**
+     * Feeds the newest snapshot and every later journal to {@code apply}, oldest change first,
+     * then opens a fresh journal for {@link #append}. Returns the number of changes read.
+     */
+    synchronized long replay(Consumer<Change> apply) throws IOException {
+        Files.createDirectories(directory);
+        TreeSet<Long> journals = new TreeSet<>();
+        long snapshot = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                long fileGeneration = Long.parseLong(matcher.group(2));
+                if (matcher.group(1).equals("snapshot")) {
+                    snapshot = Math.max(snapshot, fileGeneration);
+                } else {
+                    journals.add(fileGeneration);
+                }
+            }
+        }
+
+        long changes = 0;
+        if (snapshot >= 0) {
+            changes += read(snapshotFile(snapshot), snapshot, apply);
+        }
+        for (long journalGeneration : journals.tailSet(Math.max(snapshot, 0), true)) {
+            changes += read(journalFile(journalGeneration), journalGeneration, apply);
+        }
+        long latest = Math.max(snapshot, journals.isEmpty() ? -1 : journals.last());
+        generation = latest + 1;
+        open(generation);
+        writer = new Thread(this::drain, "session-journal");
+        writer.setDaemon(true);
+        writer.start();
+        return changes;
+    }
+
+    /** Queues one change for the writer thread; changes are written in the order they are queued */
+    void append(Change change) {
+        if (writer != null) {
+            pending.add(change);
+        }
+    }
+
+    /**
+     * Starts a new journal generation and returns it. Changes appended afterwards go to the new
+     * journal; the caller then writes the state as of this call with {@link #writeSnapshot}.
+     */
+    synchronized long rotate() {
+        generation++;
+        pending.add(new Rotation(generation));
+        return generation;
+    }
+
+    /**
+     * Saves a compacted snapshot for {@code snapshotGeneration} and deletes every file it
+     * supersedes. The snapshot is moved into place atomically, so a crash leaves either the old
+     * files or the new ones.
+     */
+    void writeSnapshot(long snapshotGeneration, Collection<Change> state) throws IOException {
+        Path target = snapshotFile(snapshotGeneration);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                for (Change change : state) {
+                    out.write(seal(encode(change), snapshotGeneration));
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to seal session snapshot", e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshotGeneration) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        log.info("Saved snapshot of {} session changes as generation {}", state.size(), snapshotGeneration);
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void sync() {
+        FileChannel channel = journal;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // rotated or closed meanwhile, which forces the channel first
+        } catch (IOException e) {
+            log.warn("Failed to sync session journal: {}", e.getMessage());
+        }
+    }
+
+    /** Writes out everything queued so far, then closes the journal */
+    synchronized void close() throws IOException {
+        Thread running = writer;
+        if (running != null) {
+            writer = null;
+            pending.add(STOP);
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        FileChannel channel = journal;
+        if (channel != null) {
+            journal = null;
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Object next = pending.take();
+                if (next == STOP) {
+                    return;
+                }
+                if (next instanceof Rotation rotation) {
+                    try {
+                        open(rotation.generation());
+                    } catch (IOException e) {
+                        log.warn("Failed to open session journal generation {}: {}",
+                                rotation.generation(), e.getMessage());
+                    }
+                } else {
+                    write((Change) next);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Change change) {
+        FileChannel channel = journal;
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer record = ByteBuffer.wrap(seal(encode(change), journalGeneration));
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Failed to journal session change for UUID {}: {}", change.uuid(), e.getMessage());
+        }
+    }
+
+    private void open(long nextGeneration) throws IOException {
+        FileChannel next = FileChannel.open(journalFile(nextGeneration),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        FileChannel previous = journal;
+        journalGeneration = nextGeneration;
+        journal = next;
+        if (previous != null) {
+            previous.force(false);
+            previous.close();
+        }
+    }
+
+    private long read(Path file, long fileGeneration, Consumer<Change> apply) throws IOException {
+        long changes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte[] record = readRecord(in);
+                if (record == null) {
+                    break;
+                }
+                apply.accept(decode(open(record, fileGeneration)));
+                changes++;
+            }
+        } catch (AEADBadTagException e) {
+            log.warn("Stopped reading {} at a record that failed authentication", file.getFileName());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to open session records in " + file.getFileName(), e);
+        }
+        return changes;
+    }
+
+    /** Next sealed record, or null at the end of the file or at a record cut short by a crash */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= NONCE_BYTES || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private byte[] seal(byte[] plaintext, long fileGeneration) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        synchronized (sealer) {
+            sealer.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+            sealer.updateAAD(associatedData(fileGeneration));
+            byte[] ciphertext = sealer.doFinal(plaintext);
+            return ByteBuffer.allocate(Integer.BYTES + NONCE_BYTES + ciphertext.length)
+                    .putInt(NONCE_BYTES + ciphertext.length)
+                    .put(nonce)
+                    .put(ciphertext)
+                    .array();
+        }
+    }
+
+    private byte[] open(byte[] record, long fileGeneration) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, record, 0, NONCE_BYTES));
+        cipher.updateAAD(associatedData(fileGeneration));
+        return cipher.doFinal(record, NONCE_BYTES, record.length - NONCE_BYTES);
+    }
+
+    // binds each record to its generation, so records cannot be moved between files
+    private static byte[] associatedData(long fileGeneration) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(fileGeneration).array();
+    }
+
+    private static byte[] encode(Change change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(change.op().ordinal());
+        if (change.op() != Op.CLEAR) {
+            writeString(out, change.uuid());
+        }
+        switch (change.op()) {
+            case TOKEN -> {
+                writeString(out, change.token());
+                out.writeLong(change.expiresAt());
+            }
+            case CARDS -> {
+                out.writeInt(change.cardIds().size());
+                for (String cardId : change.cardIds()) {
+                    writeString(out, cardId);
+                }
+                out.writeLong(change.expiresAt());
+            }
+            case VERSION -> {
+                out.writeLong(change.version());
+                out.writeLong(change.expiresAt());
+            }
+            case FAMILY -> {
+                writeString(out, change.token());
+                out.writeLong(change.version());
+                out.writeLong(change.expiresAt());
+            }
+            default -> {
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Change decode(byte[] plaintext) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext));
+        Op op = Op.values()[in.readUnsignedByte()];
+        if (op == Op.CLEAR) {
+            return Change.clear();
+        }
+        String uuid = readString(in);
+        return switch (op) {
+            case TOKEN -> Change.token(uuid, readString(in), in.readLong());
+            case CARDS -> {
+                int count = in.readInt();
+                Set<String> cardIds = new LinkedHashSet<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    cardIds.add(readString(in));
+                }
+                yield Change.cards(uuid, cardIds, in.readLong());
+            }
+            case VERSION -> Change.version(uuid, in.readLong(), in.readLong());
+            case FAMILY -> Change.family(uuid, readString(in), in.readLong(), in.readLong());
+            case REMOVE -> Change.remove(uuid);
+            default -> Change.drop(uuid);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path journalFile(long fileGeneration) {
+        return directory.resolve("journal-" + fileGeneration + ".log");
+    }
+
+    private Path snapshotFile(long fileGeneration) {
+        return directory.resolve("snapshot-" + fileGeneration + ".bin");
+    }
+}
@@ -0,0 +1,30 @@
+package com.progress.api.service;
+
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * Interleaves SSE comment lines into a slow event stream. A servlet container only notices a
+ * client has gone when a write fails, so without them a stream waiting on the LLM would keep
+ * running, and paying, long after the student left the page.
+ */
+public final class SseHeartbeat {
+
+    private static final String COMMENT = "keep-alive";
+
+    private SseHeartbeat() {
+    }
+
+    public static <T> Flux<ServerSentEvent<T>> wrap(Flux<ServerSentEvent<T>> events, Duration interval) {
+        return Flux.defer(() -> {
+            Sinks.Empty<Void> finished = Sinks.empty();
+            Flux<ServerSentEvent<T>> heartbeats = Flux.interval(interval, interval)
+                    .map(tick -> ServerSentEvent.<T>builder().comment(COMMENT).build())
+                    .takeUntilOther(finished.asMono());
+            return Flux.merge(events.doFinally(signal -> finished.tryEmitEmpty()), heartbeats);
+        });
+    }
+}
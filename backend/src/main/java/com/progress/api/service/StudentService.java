@@ -12,7 +12,6 @@ import reactor.core.publisher.Mono;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -22,7 +21,7 @@ import java.util.stream.Collectors;
 public class StudentService {
 
     private final WebClient webClient;
-    private final ExternalTokenStore externalTokenStore;
+    private final ReactiveExternalTokenStore externalTokenStore;
     
     private static final long CARD_CACHE_TTL = 60 * 60 * 1000L;
 
@@ -80,21 +79,26 @@ public class StudentService {
                 });
     }
 
-    @SuppressWarnings("unchecked")
-    private Mono<Void> validateCardOwnership(String uuid, String cardId, String externalToken) {        
-        Optional<Set<String>> cached = externalTokenStore.getAllowedCards(uuid);
-        if (cached.isPresent()) {
-            if (cached.get().contains(cardId)) {
-                return Mono.empty();
-            }
-            log.warn("SECURITY: User {} attempted to access cardId {} which doesn't belong to them",
-                    uuid, cardId);
-            return Mono.error(new ApiException(
-                    "Access denied: You can only access your own academic records",
-                    HttpStatus.FORBIDDEN));
-        }
+    private Mono<Void> validateCardOwnership(String uuid, String cardId, String externalToken) {
+        return externalTokenStore.findAllowedCards(uuid)
+                .map(allowedCards -> allowedCards.contains(cardId))
+                // Cache miss: fetch student data, cache the card IDs, then validate
+                .switchIfEmpty(Mono.defer(() -> fetchAllowedCards(uuid, externalToken)
+                        .map(allowedCards -> allowedCards.contains(cardId))))
+                .flatMap(allowed -> {
+                    if (allowed) {
+                        return Mono.<Void>empty();
+                    }
+                    log.warn("SECURITY: User {} attempted to access cardId {} which doesn't belong to them",
+                            uuid, cardId);
+                    return Mono.<Void>error(new ApiException(
+                            "Access denied: You can only access your own academic records",
+                            HttpStatus.FORBIDDEN));
+                });
+    }
 
-        // Cache miss: fetch student data, cache the card IDs, then validate
+    @SuppressWarnings("unchecked")
+    private Mono<Set<String>> fetchAllowedCards(String uuid, String externalToken) {
         return getStudentData(uuid, externalToken)
                 .flatMap(studentData -> {
                     if (studentData instanceof List<?> dias) {
@@ -104,21 +108,12 @@ public class StudentService {
                                 .map(String::valueOf)
                                 .collect(Collectors.toSet());
 
-                        externalTokenStore.storeAllowedCards(uuid, allowedCards, CARD_CACHE_TTL);
-
-                        if (allowedCards.contains(cardId)) {
-                            return Mono.<Void>empty();
-                        }
-
-                        log.warn("SECURITY: User {} attempted to access cardId {} which doesn't belong to them",
-                                uuid, cardId);
-                        return Mono.<Void>error(new ApiException(
-                                "Access denied: You can only access your own academic records",
-                                HttpStatus.FORBIDDEN));
+                        return externalTokenStore.saveAllowedCards(uuid, allowedCards, CARD_CACHE_TTL)
+                                .thenReturn(allowedCards);
                     }
 
                     log.warn("SECURITY: Could not validate cardId ownership for user {}", uuid);
-                    return Mono.<Void>error(new ApiException(
+                    return Mono.error(new ApiException(
                             "Unable to validate access permissions",
                             HttpStatus.FORBIDDEN));
                 });
@@ -0,0 +1,93 @@
+package com.progress.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: four levels of 64 slots, each slot of a level spanning a whole
+ * turn of the level below. At a one-second tick it covers about 194 days; later deadlines are
+ * parked in the top level and placed again when it turns. Scheduling is O(1), and each timer is
+ * moved down at most three times before it fires, so expiry never scans live entries.
+ *
+ * <p>Not thread-safe; the owner serialises access. Timers are never cancelled: the owner
+ * checks on firing whether the deadline still applies.
+ */
+class TimingWheel<T> {
+
+    record Timer<T>(T value, long deadline) {
+    }
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long SLOT_MASK = SLOTS - 1;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final List<List<List<Timer<T>>>> levels = new ArrayList<>(LEVELS);
+    private List<Timer<T>> overdue = new ArrayList<>();
+    private long currentTick;
+
+    TimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(now, tickMillis);
+        for (int level = 0; level < LEVELS; level++) {
+            List<List<Timer<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new ArrayList<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    void schedule(T value, long deadline) {
+        place(new Timer<>(value, deadline));
+    }
+
+    /** Turns the wheel up to {@code now} and returns the timers whose deadline has passed. */
+    List<Timer<T>> advance(long now) {
+        List<Timer<T>> due = overdue;
+        overdue = new ArrayList<>();
+        long targetTick = Math.floorDiv(now, tickMillis);
+        while (currentTick < targetTick) {
+            currentTick++;
+            // a higher level slot comes due when every level below it has wrapped around
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    take(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)).forEach(this::place);
+                }
+            }
+            due.addAll(take(0, (int) (currentTick & SLOT_MASK)));
+            due.addAll(overdue);
+            overdue.clear();
+        }
+        return due;
+    }
+
+    private void place(Timer<T> timer) {
+        long deadlineTick = Math.floorDiv(timer.deadline() + tickMillis - 1, tickMillis);
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            overdue.add(timer);
+            return;
+        }
+        if (delta >= SPAN) {
+            deadlineTick = currentTick + SPAN - 1;
+            delta = SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        levels.get(level).get((int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK)).add(timer);
+    }
+
+    private List<Timer<T>> take(int level, int slot) {
+        List<Timer<T>> timers = levels.get(level).get(slot);
+        if (timers.isEmpty()) {
+            return List.of();
+        }
+        levels.get(level).set(slot, new ArrayList<>());
+        return timers;
+    }
+}
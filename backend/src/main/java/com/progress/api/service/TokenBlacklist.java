@@ -4,6 +4,15 @@ public interface TokenBlacklist {
 
     void blacklist(String token, long expirationTimeMs);
     boolean isBlacklisted(String token);
+
+    /**
+     * Same as {@link #isBlacklisted(String)} for a token whose expiry the caller already knows,
+     * which lets implementations go straight to the right expiry bucket.
+     */
+    default boolean isBlacklisted(String token, long expirationTimeMs) {
+        return isBlacklisted(token);
+    }
+
     void remove(String token);
     int size();
     void clear();
@@ -1,18 +1,35 @@
 package com.progress.api.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+/**
+ * Keeps a 128-bit digest of each revoked token rather than the token itself, grouped into
+ * buckets by expiry time. A bucket is dropped as a whole once every token in it has expired,
+ * so cleanup never scans live entries.
+ */
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "token-blacklist.type", havingValue = "in-memory", matchIfMissing = true)
 public class TokenBlacklistService implements TokenBlacklist {
 
-    private final Map<String, Long> blacklistedTokens = new ConcurrentHashMap<>();
+    private final long bucketWidthMs;
+
+    // bucket index (expiry / bucketWidthMs) -> digests of the tokens expiring in that window
+    private final NavigableMap<Long, Set<TokenDigest>> buckets = new ConcurrentSkipListMap<>();
+
+    public TokenBlacklistService(@Value("${token-blacklist.bucket-width-ms:900000}") long bucketWidthMs) {
+        this.bucketWidthMs = bucketWidthMs;
+    }
 
     @Override
     public void blacklist(String token, long expirationTimeMs) {
@@ -20,7 +37,8 @@ public class TokenBlacklistService implements TokenBlacklist {
             log.warn("Attempted to blacklist null or blank token");
             return;
         }
-        blacklistedTokens.put(token, expirationTimeMs);
+        buckets.computeIfAbsent(bucketOf(expirationTimeMs), bucket -> ConcurrentHashMap.newKeySet())
+                .add(TokenDigest.of(token));
         log.debug("Token blacklisted, expiration: {}", Instant.ofEpochMilli(expirationTimeMs));
     }
 
@@ -29,35 +47,58 @@ public class TokenBlacklistService implements TokenBlacklist {
         if (token == null || token.isBlank()) {
             return false;
         }
-        return blacklistedTokens.containsKey(token);
+        TokenDigest digest = TokenDigest.of(token);
+        for (Set<TokenDigest> bucket : buckets.values()) {
+            if (bucket.contains(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isBlacklisted(String token, long expirationTimeMs) {
+        if (token == null || token.isBlank()) {
+            return false;
+        }
+        Set<TokenDigest> bucket = buckets.get(bucketOf(expirationTimeMs));
+        return bucket != null && bucket.contains(TokenDigest.of(token));
     }
 
     @Override
     public void remove(String token) {
-        blacklistedTokens.remove(token);
+        TokenDigest digest = TokenDigest.of(token);
+        buckets.values().forEach(bucket -> bucket.remove(digest));
     }
 
     @Override
     public int size() {
-        return blacklistedTokens.size();
+        return buckets.values().stream().mapToInt(Set::size).sum();
     }
 
     @Override
     public void clear() {
-        blacklistedTokens.clear();
+        buckets.clear();
     }
 
     @Scheduled(fixedRate = 300000)
     public void cleanupExpiredTokens() {
-        long now = System.currentTimeMillis();
-        int beforeSize = blacklistedTokens.size();
-
-        blacklistedTokens.entrySet().removeIf(entry -> entry.getValue() < now);
+        // every bucket before the current one ends at or before now
+        NavigableMap<Long, Set<TokenDigest>> expired = buckets.headMap(bucketOf(System.currentTimeMillis()), false);
+        if (expired.isEmpty()) {
+            return;
+        }
+        int removed = expired.values().stream().mapToInt(Set::size).sum();
+        int droppedBuckets = expired.size();
+        expired.clear();
 
-        int removed = beforeSize - blacklistedTokens.size();
         if (removed > 0) {
-            log.info("Cleaned up {} expired tokens from blacklist. Remaining: {}",
-                    removed, blacklistedTokens.size());
+            log.info("Cleaned up {} expired tokens in {} buckets from blacklist. Remaining: {}",
+                    removed, droppedBuckets, size());
         }
     }
+
+    private long bucketOf(long expirationTimeMs) {
+        return Math.floorDiv(expirationTimeMs, bucketWidthMs);
+    }
 }
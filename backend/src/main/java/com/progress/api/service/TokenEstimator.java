@@ -0,0 +1,46 @@
+package com.progress.api.service;
+
+/**
+ * Cheap local approximation of LLM token counts, used to budget requests before they are sent.
+ * Llama-family tokenizers average roughly four characters per token on mixed French/English text.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * Per-message framing the chat template adds around each message's content.
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (int) estimateLength(text.length());
+    }
+
+    /**
+     * Estimated tokens for text of the given length, e.g. a completion streamed in pieces.
+     */
+    public static long estimateLength(long chars) {
+        return (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Longest text, in characters, that {@link #estimate} counts as at most {@code tokens}.
+     */
+    public static int maxChars(int tokens) {
+        return Math.max(0, tokens) * CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Estimated prompt tokens for a system + user chat request.
+     */
+    public static int estimateChat(String systemPrompt, String userPrompt) {
+        return estimate(systemPrompt) + estimate(userPrompt) + 2 * MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -121,12 +121,50 @@ class SecurityIntegrationTest {
                     .andExpect(status().isUnauthorized());
         }
 
+        @Test
+        @DisplayName("should reject a refresh token used as a bearer token")
+        void shouldRejectRefreshTokenAsBearer() throws Exception {
+            wireMockServer.stubFor(com.github.tomakehurst.wiremock.client.WireMock.post(urlEqualTo("/authentication/v1/"))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withHeader("Content-Type", "application/json")
+                            .withBody("""
+                                {
+                                    "token": "external-api-token",
+                                    "uuid": "student-uuid-123"
+                                }
+                                """)));
+
+            MvcResult loginAsync = mockMvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new LoginRequest("testuser", "testpass"))))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            MvcResult loginResult = mockMvc.perform(asyncDispatch(loginAsync))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            String refreshToken = loginResult.getResponse().getCookie("refresh_token").getValue();
+
+            mockMvc.perform(get("/api/student/data")
+                            .header("Authorization", "Bearer " + refreshToken))
+                    .andExpect(status().isUnauthorized());
+        }
+
         @Test
         @DisplayName("should allow access to public endpoints")
         void shouldAllowPublicEndpoints() throws Exception {
             mockMvc.perform(get("/actuator/health"))
                     .andExpect(status().isOk());
         }
+
+        @Test
+        @DisplayName("should require a token for actuator endpoints other than health and info")
+        void shouldProtectOtherActuatorEndpoints() throws Exception {
+            mockMvc.perform(get("/actuator/metrics"))
+                    .andExpect(status().isUnauthorized());
+            mockMvc.perform(get("/actuator/llmusage"))
+                    .andExpect(status().isUnauthorized());
+        }
     }
 
     @Nested
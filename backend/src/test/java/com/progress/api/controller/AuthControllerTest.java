@@ -5,6 +5,7 @@ import com.progress.api.dto.LoginRequest;
 import com.progress.api.dto.LoginResponse;
 import com.progress.api.exception.ApiException;
 import com.progress.api.security.JwtTokenProvider;
+import com.progress.api.security.VerifiedToken;
 import com.progress.api.service.AuthService;
 import com.progress.api.service.ExternalTokenStore;
 import com.progress.api.service.TokenBlacklist;
@@ -19,9 +20,17 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import jakarta.servlet.http.Cookie;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+import java.util.OptionalLong;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -151,4 +160,155 @@ class AuthControllerTest {
                     .andExpect(status().isBadRequest());
         }
     }
+
+    @Nested
+    @DisplayName("POST /api/auth/refresh")
+    class Refresh {
+
+        private final VerifiedToken refreshClaims = new VerifiedToken(
+                "uuid-1", "refresh", 7L, System.currentTimeMillis() + 60000, null, "family-1", 3L);
+
+        @Test
+        @DisplayName("should rotate the refresh token within its family while keeping the session version")
+        void shouldRotateRefreshToken() throws Exception {
+            when(jwtTokenProvider.verify("old-refresh")).thenReturn(Optional.of(refreshClaims));
+            when(authService.renewSession(refreshClaims)).thenReturn(OptionalLong.of(4L));
+            when(jwtTokenProvider.generateToken("uuid-1", 7L)).thenReturn("new-access");
+            when(jwtTokenProvider.generateRefreshToken("uuid-1", 7L, "family-1", 4L)).thenReturn("new-refresh");
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "old-refresh")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.token").value("new-access"))
+                    .andExpect(cookie().value("refresh_token", "new-refresh"));
+            verify(tokenBlacklist, never()).blacklist(anyString(), anyLong());
+            verify(authService, never()).revokeSessions(anyString());
+        }
+
+        @Test
+        @DisplayName("should return 401 for a refresh token its family no longer accepts")
+        void shouldRejectRevokedToken() throws Exception {
+            when(jwtTokenProvider.verify("old-refresh")).thenReturn(Optional.of(refreshClaims));
+            when(authService.renewSession(refreshClaims)).thenReturn(OptionalLong.empty());
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "old-refresh")))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(cookie().maxAge("refresh_token", 0));
+            verify(authService, never()).revokeSessions(anyString());
+            verify(jwtTokenProvider, never()).generateToken(anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("should return 401 for a blacklisted refresh token without revoking other sessions")
+        void shouldRejectBlacklistedToken() throws Exception {
+            when(jwtTokenProvider.verify("old-refresh")).thenReturn(Optional.of(refreshClaims));
+            when(tokenBlacklist.isBlacklisted("old-refresh", refreshClaims.expiresAt())).thenReturn(true);
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "old-refresh")))
+                    .andExpect(status().isUnauthorized());
+            verify(authService, never()).revokeSessions(anyString());
+            verify(jwtTokenProvider, never()).generateToken(anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("should return 401 for a refresh token issued without a family")
+        void shouldRejectTokenWithoutFamily() throws Exception {
+            when(jwtTokenProvider.verify("legacy-refresh")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "refresh", 7L, System.currentTimeMillis() + 60000)));
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "legacy-refresh")))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(cookie().maxAge("refresh_token", 0));
+            verify(authService, never()).renewSession(any());
+        }
+
+        @Test
+        @DisplayName("should return 401 for an access token presented as the refresh token")
+        void shouldRejectAccessTokenInCookie() throws Exception {
+            when(jwtTokenProvider.verify("access")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "access", 7L, System.currentTimeMillis() + 60000)));
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "access")))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(cookie().maxAge("refresh_token", 0));
+            verify(authService, never()).renewSession(any());
+            verify(jwtTokenProvider, never()).generateToken(anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("should return 401 in stateless mode for a stateless access token presented as the refresh token")
+        void shouldRejectStatelessAccessTokenInCookie() throws Exception {
+            when(jwtTokenProvider.isStateless()).thenReturn(true);
+            when(jwtTokenProvider.verify("stateless-access")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "access", 0L, System.currentTimeMillis() + 60000, "external")));
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "stateless-access")))
+                    .andExpect(status().isUnauthorized());
+            verify(jwtTokenProvider, never()).generateStatelessToken(anyString(), anyString());
+        }
+
+        @Test
+        @DisplayName("should issue a stateless access token from the sealed external token, keeping the refresh token")
+        void shouldRefreshStateless() throws Exception {
+            when(jwtTokenProvider.isStateless()).thenReturn(true);
+            when(jwtTokenProvider.verify("stateless-refresh")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "refresh", 0L, System.currentTimeMillis() + 60000, "external")));
+            when(jwtTokenProvider.generateStatelessToken("uuid-1", "external")).thenReturn("new-access");
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "stateless-refresh")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.token").value("new-access"))
+                    .andExpect(cookie().doesNotExist("refresh_token"));
+            verify(authService, never()).renewSession(any());
+        }
+
+        @Test
+        @DisplayName("should return 401 in stateless mode for a refresh token without a sealed external token")
+        void shouldRejectStatefulTokenInStatelessMode() throws Exception {
+            when(jwtTokenProvider.isStateless()).thenReturn(true);
+            when(jwtTokenProvider.verify("old-refresh")).thenReturn(Optional.of(refreshClaims));
+
+            mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie("refresh_token", "old-refresh")))
+                    .andExpect(status().isUnauthorized());
+            verify(jwtTokenProvider, never()).generateStatelessToken(anyString(), anyString());
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /api/auth/logout")
+    class Logout {
+
+        @Test
+        @DisplayName("should revoke the session version and drop the external token")
+        void shouldRevokeSession() throws Exception {
+            when(jwtTokenProvider.verify("access")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "access", 7L, System.currentTimeMillis() + 60000)));
+
+            mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer access"))
+                    .andExpect(status().isOk());
+
+            verify(authService).revokeSessions("uuid-1");
+            verify(authService).removeExternalToken("uuid-1");
+        }
+
+        @Test
+        @DisplayName("should blacklist the presented tokens until they expire in stateless mode")
+        void shouldBlacklistStatelessTokens() throws Exception {
+            long accessExpiry = System.currentTimeMillis() + 60000;
+            long refreshExpiry = System.currentTimeMillis() + 600000;
+            when(jwtTokenProvider.isStateless()).thenReturn(true);
+            when(jwtTokenProvider.verify("access")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "access", 0L, accessExpiry, "external")));
+            when(jwtTokenProvider.verify("refresh")).thenReturn(Optional.of(
+                    new VerifiedToken("uuid-1", "refresh", 0L, refreshExpiry, "external")));
+
+            mockMvc.perform(post("/api/auth/logout")
+                            .header("Authorization", "Bearer access")
+                            .cookie(new Cookie("refresh_token", "refresh")))
+                    .andExpect(status().isOk());
+
+            verify(tokenBlacklist).blacklist("access", accessExpiry);
+            verify(tokenBlacklist).blacklist("refresh", refreshExpiry);
+            verify(authService, never()).revokeSessions(anyString());
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package com.progress.api.controller;
+
+import com.progress.api.dto.RecommendationJobResponse;
+import com.progress.api.dto.RecommendationJobResponse.JobStatus;
+import com.progress.api.security.JwtTokenProvider;
+import com.progress.api.service.ExternalTokenStore;
+import com.progress.api.service.RecommendationJobService;
+import com.progress.api.service.RecommendationService;
+import com.progress.api.service.TokenBlacklist;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@WebMvcTest(controllers = RecommendationController.class,
+        properties = "recommendation.jobs.events-timeout-seconds=1")
+@DisplayName("RecommendationController Tests")
+class RecommendationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RecommendationService recommendationService;
+
+    @MockBean
+    private RecommendationJobService recommendationJobService;
+
+    @MockBean
+    private JwtTokenProvider jwtTokenProvider;
+
+    @MockBean
+    private TokenBlacklist tokenBlacklist;
+
+    @MockBean
+    private ExternalTokenStore externalTokenStore;
+
+    private UsernamePasswordAuthenticationToken createMockAuthentication() {
+        return new UsernamePasswordAuthenticationToken("test-uuid", "external-token", Collections.emptyList());
+    }
+
+    // waits until the named event has been written out in full, up to five seconds
+    private String awaitEvent(MvcResult result, String event) throws Exception {
+        for (int i = 0; i < 250; i++) {
+            String content = result.getResponse().getContentAsString();
+            int start = content.indexOf("event:" + event);
+            if (start >= 0 && content.indexOf("\n\n", start) > 0) {
+                return content;
+            }
+            Thread.sleep(20);
+        }
+        return result.getResponse().getContentAsString();
+    }
+
+    @Nested
+    @DisplayName("GET /api/recommendations/jobs/{jobId}/events")
+    class JobEvents {
+
+        @Test
+        @DisplayName("should send the complete event once the job finishes")
+        void shouldSendCompleteEvent() throws Exception {
+            when(recommendationJobService.awaitJob("job-1", "test-uuid")).thenReturn(Mono.just(
+                    RecommendationJobResponse.builder().jobId("job-1").status(JobStatus.COMPLETED).build()));
+
+            MvcResult result = mockMvc.perform(get("/api/recommendations/jobs/job-1/events")
+                            .with(authentication(createMockAuthentication())))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            assertThat(awaitEvent(result, "complete")).contains("\"status\":\"COMPLETED\"");
+        }
+
+        @Test
+        @DisplayName("should end with a pending event while the job is still queued at the timeout")
+        void shouldSendPendingEventOnTimeout() throws Exception {
+            when(recommendationJobService.awaitJob("job-1", "test-uuid")).thenReturn(Mono.never());
+            when(recommendationJobService.getJob("job-1", "test-uuid")).thenReturn(
+                    RecommendationJobResponse.builder().jobId("job-1").status(JobStatus.QUEUED).build());
+
+            MvcResult result = mockMvc.perform(get("/api/recommendations/jobs/job-1/events")
+                            .with(authentication(createMockAuthentication())))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            String content = awaitEvent(result, "pending");
+            assertThat(content).contains("event:pending").contains("\"status\":\"QUEUED\"");
+            assertThat(content).doesNotContain("event:complete");
+        }
+    }
+}
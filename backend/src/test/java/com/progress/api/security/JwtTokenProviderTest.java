@@ -8,6 +8,11 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("JwtTokenProvider Tests")
@@ -26,6 +31,7 @@ class JwtTokenProviderTest {
         ReflectionTestUtils.setField(jwtTokenProvider, "secretKey", TEST_SECRET);
         ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpiration", JWT_EXPIRATION);
         ReflectionTestUtils.setField(jwtTokenProvider, "refreshExpiration", REFRESH_EXPIRATION);
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxEntries", 100);
     }
 
     @Nested
@@ -174,4 +180,172 @@ class JwtTokenProviderTest {
             assertThat(jwtTokenProvider.getRefreshExpiration()).isEqualTo(REFRESH_EXPIRATION);
         }
     }
+
+    @Nested
+    @DisplayName("Single Verification")
+    class SingleVerification {
+
+        @Test
+        @DisplayName("should return subject, type and expiry in one pass")
+        void shouldReturnVerifiedClaims() {
+            String token = jwtTokenProvider.generateToken("uuid-1");
+
+            VerifiedToken verified = jwtTokenProvider.verify(token).orElseThrow();
+
+            assertThat(verified.subject()).isEqualTo("uuid-1");
+            assertThat(verified.type()).isEqualTo("access");
+            assertThat(verified.expiresAt()).isEqualTo(jwtTokenProvider.extractExpiration(token));
+        }
+
+        @Test
+        @DisplayName("should carry the session version, or 0 for unversioned tokens")
+        void shouldCarrySessionVersion() {
+            assertThat(jwtTokenProvider.verify(jwtTokenProvider.generateToken("uuid-1", 1760000000123L))
+                    .orElseThrow().version()).isEqualTo(1760000000123L);
+            assertThat(jwtTokenProvider.verify(jwtTokenProvider.generateRefreshToken("uuid-1", 5L))
+                    .orElseThrow().version()).isEqualTo(5L);
+            assertThat(jwtTokenProvider.verify(jwtTokenProvider.generateToken("uuid-1"))
+                    .orElseThrow().version()).isZero();
+        }
+
+        @Test
+        @DisplayName("should reject tampered, foreign and expired tokens without caching them")
+        void shouldRejectInvalidTokens() {
+            String token = jwtTokenProvider.generateToken("uuid-1");
+            JwtTokenProvider other = new JwtTokenProvider();
+            ReflectionTestUtils.setField(other, "secretKey",
+                    "b3RoZXItc2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0yNTYtYml0cy1sb25nLWVub3VnaA==");
+            ReflectionTestUtils.setField(other, "jwtExpiration", JWT_EXPIRATION);
+            ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpiration", -1L);
+
+            assertThat(jwtTokenProvider.verify(token.substring(0, token.length() - 2) + "xx")).isEmpty();
+            assertThat(jwtTokenProvider.verify(other.generateToken("uuid-1"))).isEmpty();
+            assertThat(jwtTokenProvider.verify(jwtTokenProvider.generateToken("uuid-1"))).isEmpty();
+            assertThat(jwtTokenProvider.verifiedCacheSize()).isZero();
+        }
+
+        @Test
+        @DisplayName("should serve repeated verifications from the cache")
+        void shouldCacheVerifiedTokens() {
+            String token = jwtTokenProvider.generateToken("uuid-1");
+
+            VerifiedToken first = jwtTokenProvider.verify(token).orElseThrow();
+            VerifiedToken second = jwtTokenProvider.verify(token).orElseThrow();
+
+            assertThat(second).isSameAs(first);
+            assertThat(jwtTokenProvider.verifiedCacheSize()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should keep the cache within the configured bound")
+        void shouldBoundCache() {
+            ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxEntries", 2);
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(jwtTokenProvider.verify(jwtTokenProvider.generateToken("uuid-" + i))).isPresent();
+            }
+
+            assertThat(jwtTokenProvider.verifiedCacheSize()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should make room for new tokens by evicting the one expiring soonest")
+        void shouldEvictSoonestExpiringWhenFull() {
+            ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxEntries", 2);
+            String soonest = jwtTokenProvider.generateToken("uuid-1");
+            String later = jwtTokenProvider.generateToken("uuid-2");
+            VerifiedToken soonestVerified = jwtTokenProvider.verify(soonest).orElseThrow();
+            VerifiedToken laterVerified = jwtTokenProvider.verify(later).orElseThrow();
+            @SuppressWarnings("unchecked")
+            Map<ByteBuffer, VerifiedToken> cache = (Map<ByteBuffer, VerifiedToken>) ReflectionTestUtils.getField(jwtTokenProvider, "verifiedTokens");
+            cache.replaceAll((digest, verified) -> verified == soonestVerified
+                    ? new VerifiedToken(verified.subject(), verified.type(), verified.version(), verified.expiresAt() - 60000)
+                    : verified);
+
+            String fresh = jwtTokenProvider.generateToken("uuid-3");
+            VerifiedToken freshVerified = jwtTokenProvider.verify(fresh).orElseThrow();
+
+            assertThat(jwtTokenProvider.verifiedCacheSize()).isEqualTo(2);
+            assertThat(cache.values()).containsExactlyInAnyOrder(laterVerified, freshVerified);
+            assertThat(jwtTokenProvider.verify(fresh).orElseThrow()).isSameAs(freshVerified);
+        }
+
+        @Test
+        @DisplayName("should evict cached tokens once they expire")
+        void shouldEvictExpiredTokens() {
+            String token = jwtTokenProvider.generateToken("uuid-1");
+            assertThat(jwtTokenProvider.verify(token)).isPresent();
+
+            @SuppressWarnings("unchecked")
+            Map<ByteBuffer, VerifiedToken> cache = (Map<ByteBuffer, VerifiedToken>) ReflectionTestUtils.getField(jwtTokenProvider, "verifiedTokens");
+            cache.replaceAll((digest, verified) ->
+                    new VerifiedToken(verified.subject(), verified.type(), verified.version(), System.currentTimeMillis() - 1));
+
+            assertThat(jwtTokenProvider.verify(token)).isEmpty();
+            assertThat(jwtTokenProvider.verifiedCacheSize()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Stateless Sessions")
+    class StatelessSessions {
+
+        private static final String ENCRYPTION_KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+        @BeforeEach
+        void enableStateless() {
+            ReflectionTestUtils.setField(jwtTokenProvider, "sessionMode", "stateless");
+            ReflectionTestUtils.setField(jwtTokenProvider, "encryptionKey", ENCRYPTION_KEY);
+            ReflectionTestUtils.setField(jwtTokenProvider, "statelessExpiration", 300000L);
+        }
+
+        @Test
+        @DisplayName("should carry the external token sealed, not readable in the JWT payload")
+        void shouldSealExternalToken() {
+            String token = jwtTokenProvider.generateStatelessToken("uuid-1", "progres-secret-token");
+
+            VerifiedToken verified = jwtTokenProvider.verify(token).orElseThrow();
+            String payload = new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), StandardCharsets.UTF_8);
+
+            assertThat(verified.externalToken()).isEqualTo("progres-secret-token");
+            assertThat(verified.type()).isEqualTo("access");
+            assertThat(payload).doesNotContain("progres-secret-token");
+            assertThat(jwtTokenProvider.isStateless()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should use the short stateless lifetime for access tokens only")
+        void shouldUseShortLifetime() {
+            long now = System.currentTimeMillis();
+
+            VerifiedToken access = jwtTokenProvider.verify(jwtTokenProvider.generateStatelessToken("uuid-1", "external")).orElseThrow();
+            VerifiedToken refresh = jwtTokenProvider.verify(jwtTokenProvider.generateStatelessRefreshToken("uuid-1", "external")).orElseThrow();
+
+            assertThat(access.expiresAt()).isBetween(now + 299000, now + 301000);
+            assertThat(refresh.expiresAt()).isGreaterThan(now + JWT_EXPIRATION);
+            assertThat(refresh.externalToken()).isEqualTo("external");
+        }
+
+        @Test
+        @DisplayName("should reject tokens sealed under another key")
+        void shouldRejectForeignSeal() {
+            String token = jwtTokenProvider.generateStatelessToken("uuid-1", "external");
+            JwtTokenProvider other = new JwtTokenProvider();
+            ReflectionTestUtils.setField(other, "secretKey", TEST_SECRET);
+            ReflectionTestUtils.setField(other, "verifiedCacheMaxEntries", 100);
+            ReflectionTestUtils.setField(other, "encryptionKey", "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=");
+
+            assertThat(other.verify(token)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should refuse to run stateless without a 256-bit key")
+        void shouldRequireKey() {
+            ReflectionTestUtils.setField(jwtTokenProvider, "encryptionKey", "");
+            assertThatThrownBy(jwtTokenProvider::checkStatelessKey).isInstanceOf(IllegalStateException.class);
+
+            ReflectionTestUtils.setField(jwtTokenProvider, "encryptionKey", "c2hvcnQ=");
+            assertThatThrownBy(jwtTokenProvider::checkStatelessKey).isInstanceOf(IllegalStateException.class);
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package com.progress.api.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request cost of JWT checks in {@link JwtAuthenticationFilter}: the former
+ * {@code isTokenValid} + {@code extractUuid} pair (two full verifications), a single uncached
+ * {@code verify}, and a {@code verify} served from the verified-token cache.
+ *
+ * <p>Not run by surefire. Compile the tests, then run:
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.progress.api.security.JwtVerificationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "dGVzdC11bml0LXRlc3Qtc2VjcmV0LWtleS1kby1ub3QtdXNlLWluLXByb2R1Y3Rpb24tMjU2LWJpdHM=";
+
+    private JwtTokenProvider uncached;
+    private JwtTokenProvider cached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncached = provider(0);
+        cached = provider(10000);
+        token = cached.generateToken("benchmark-uuid");
+        cached.verify(token);
+    }
+
+    private static JwtTokenProvider provider(int cacheEntries) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "secretKey", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpiration", 3600000L);
+        ReflectionTestUtils.setField(provider, "refreshExpiration", 3600000L);
+        ReflectionTestUtils.setField(provider, "verifiedCacheMaxEntries", cacheEntries);
+        return provider;
+    }
+
+    @Benchmark
+    public String validateThenExtract() {
+        return uncached.isTokenValid(token) ? uncached.extractUuid(token) : null;
+    }
+
+    @Benchmark
+    public String verifyUncached() {
+        return uncached.verify(token).map(VerifiedToken::subject).orElse(null);
+    }
+
+    @Benchmark
+    public String verifyCached() {
+        return cached.verify(token).map(VerifiedToken::subject).orElse(null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
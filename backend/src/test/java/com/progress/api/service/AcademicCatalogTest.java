@@ -0,0 +1,53 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AcademicCatalog Tests")
+class AcademicCatalogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AcademicCatalog catalog;
+    private JsonNode usthb;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new AcademicCatalog(objectMapper);
+        usthb = catalog.lookupUniversity("Université des Sciences et de la Technologie Houari Boumediène")
+                .structure();
+    }
+
+    @Test
+    @DisplayName("should serve students in the same position from one pre-rendered node")
+    void shouldShareNodes() {
+        CatalogNode first = catalog.findNode(usthb, "Mathématiques et Informatique", "Licence 2",
+                "Informatique", null);
+        CatalogNode second = catalog.findNode(usthb, "Mathématiques et Informatique", "2ème année Licence",
+                "informatique", null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.rendered()).isEqualTo(first.availableOptions().toPrettyString());
+        assertThat(first.index().size()).isEqualTo(first.availableOptions().path("availableOptions").size());
+    }
+
+    @Test
+    @DisplayName("should narrow options by the student's major and fall back to all of them")
+    void shouldNarrowByParent() {
+        JsonNode narrowed = catalog.findAvailableOptions(usthb, "Mathématiques et Informatique", "Licence 2",
+                "Informatique", null).path("availableOptions");
+        JsonNode unmatched = catalog.findAvailableOptions(usthb, "Mathématiques et Informatique", "Licence 2",
+                "Unknown major", null).path("availableOptions");
+
+        assertThat(narrowed.findValuesAsText("parentMajor")).isNotEmpty().containsOnly("L2_INFO");
+        assertThat(unmatched.size()).isGreaterThan(narrowed.size());
+    }
+
+    @Test
+    @DisplayName("should return null for fields outside the catalogue")
+    void shouldRejectUnknownField() {
+        assertThat(catalog.findNode(usthb, "Droit", "Licence 1", null, null)).isNull();
+    }
+}
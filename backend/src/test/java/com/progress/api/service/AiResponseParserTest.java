@@ -0,0 +1,157 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AiResponseParser Tests")
+class AiResponseParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private AiResponseParser parser;
+    private JsonNode options;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        parser = new AiResponseParser(objectMapper, meterRegistry);
+        ObjectNode root = objectMapper.createObjectNode();
+        root.putArray("availableOptions")
+                .add(objectMapper.createObjectNode().put("code", "L3_SI").put("name", "Systèmes Informatiques"))
+                .add(objectMapper.createObjectNode().put("code", "L3_ISIL").put("name", "Génie Logiciel"));
+        options = root;
+    }
+
+    private double outputs(String result) {
+        return meterRegistry.counter("recommendation.llm_output", "result", result).count();
+    }
+
+    @Nested
+    @DisplayName("Repair")
+    class Repair {
+
+        @Test
+        @DisplayName("should accept valid output as is")
+        void shouldAcceptValidOutput() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    {"recommendations": [{"code": "L3_SI", "name": "SI", "matchScore": 80}], "summary": "ok"}
+                    """, options);
+
+            assertThat(parsed.repaired()).isFalse();
+            assertThat(parsed.summary()).isEqualTo("ok");
+            assertThat(parsed.recommendations()).hasSize(1);
+            assertThat(outputs(AiResponseParser.RESULT_VALID)).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should strip code fences and surrounding prose")
+        void shouldStripFencesAndProse() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    Sure! Here is the JSON:
+                    ```json
+                    {"recommendations": [{"code": "L3_SI", "name": "SI", "matchScore": 80}]}
+                    ```
+                    Let me know if you need anything else.
+                    """, options);
+
+            assertThat(parsed.recommendations()).extracting(rec -> rec.path("code").asText())
+                    .containsExactly("L3_SI");
+            assertThat(parsed.repaired()).isTrue();
+            assertThat(outputs(AiResponseParser.RESULT_REPAIRED)).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should accept single quotes and trailing commas")
+        void shouldAcceptLenientSyntax() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    {'recommendations': [{'code': 'L3_ISIL', 'name': "Génie l'ogiciel", 'matchScore': 75,},],}
+                    """, options);
+
+            assertThat(parsed.recommendations()).extracting(rec -> rec.path("name").asText())
+                    .containsExactly("Génie l'ogiciel");
+        }
+
+        @Test
+        @DisplayName("should keep the complete entries of truncated output")
+        void shouldCloseTruncatedOutput() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    {"recommendations": [
+                        {"code": "L3_SI", "name": "SI", "matchScore": 80, "keySubjects": ["Réseaux"]},
+                        {"code": "L3_ISIL", "name": "ISIL", "keySubjects": ["Algo", "Bases de donn""", options);
+
+            assertThat(parsed.recommendations()).extracting(rec -> rec.path("code").asText())
+                    .containsExactly("L3_SI");
+        }
+
+        @Test
+        @DisplayName("should read a bare array as the recommendations")
+        void shouldReadBareArray() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    [{"code": "L3_SI", "name": "SI", "matchScore": 80}]
+                    """, options);
+
+            assertThat(parsed.recommendations()).hasSize(1);
+            assertThat(parsed.summary()).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Validation")
+    class Validation {
+
+        @Test
+        @DisplayName("should drop unknown and duplicate codes and normalise the rest")
+        void shouldValidateEntries() {
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    {"recommendations": [
+                        {"code": "l3_isil", "matchScore": "85%"},
+                        {"code": "L3_MADE_UP", "name": "Invented", "matchScore": 99},
+                        {"code": "L3_ISIL", "name": "Duplicate", "matchScore": 60},
+                        {"code": "L3_SI", "name": "SI", "matchScore": 140},
+                        "not an object"
+                    ]}
+                    """, options);
+
+            assertThat(parsed.recommendations()).hasSize(2);
+            ObjectNode isil = parsed.recommendations().get(0);
+            assertThat(isil.path("code").asText()).isEqualTo("L3_ISIL");
+            assertThat(isil.path("name").asText()).isEqualTo("Génie Logiciel");
+            assertThat(isil.path("matchScore").asInt()).isEqualTo(85);
+            assertThat(parsed.recommendations().get(1).path("matchScore").asInt()).isEqualTo(100);
+            assertThat(parsed.dropped()).isEqualTo(3);
+            assertThat(meterRegistry.counter("recommendation.llm_output.dropped").count()).isEqualTo(3.0);
+        }
+
+        @Test
+        @DisplayName("should accept an empty list when no options were offered")
+        void shouldAcceptEmptyListWithoutOptions() {
+            ObjectNode noOptions = objectMapper.createObjectNode().put("note", "Final year");
+            noOptions.putArray("availableOptions");
+
+            AiResponseParser.Parsed parsed = parser.parse("""
+                    {"recommendations": [], "summary": "Focus on your final project."}
+                    """, noOptions);
+
+            assertThat(parsed.recommendations()).isEmpty();
+            assertThat(parsed.summary()).isEqualTo("Focus on your final project.");
+        }
+
+        @Test
+        @DisplayName("should fail when nothing usable can be recovered")
+        void shouldFailOnUnrecoverableOutput() {
+            assertThatThrownBy(() -> parser.parse("I cannot help with that.", options))
+                    .isInstanceOf(ApiException.class);
+            assertThatThrownBy(() -> parser.parse("""
+                    {"recommendations": [{"code": "L3_MADE_UP", "name": "Invented", "matchScore": 99}]}
+                    """, options))
+                    .isInstanceOf(ApiException.class);
+            assertThat(outputs(AiResponseParser.RESULT_FAILED)).isEqualTo(2.0);
+        }
+    }
+}
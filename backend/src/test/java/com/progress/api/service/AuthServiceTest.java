@@ -5,13 +5,17 @@ import com.progress.api.dto.LoginRequest;
 import com.progress.api.dto.LoginResponse;
 import com.progress.api.exception.ApiException;
 import com.progress.api.security.JwtTokenProvider;
+import com.progress.api.security.VerifiedToken;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.io.IOException;
+import java.util.OptionalLong;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -36,9 +40,9 @@ class AuthServiceTest {
                 .build();
 
         jwtTokenProvider = mock(JwtTokenProvider.class);
-        when(jwtTokenProvider.generateToken(anyString()))
+        when(jwtTokenProvider.generateToken(anyString(), anyLong()))
                 .thenReturn("mock-jwt-token");
-        when(jwtTokenProvider.generateRefreshToken(anyString()))
+        when(jwtTokenProvider.generateRefreshToken(anyString(), anyLong(), anyString(), anyLong()))
                 .thenReturn("mock-refresh-token");
         when(jwtTokenProvider.getRefreshExpiration())
                 .thenReturn(604800000L);
@@ -46,6 +50,7 @@ class AuthServiceTest {
         externalTokenStore = mock(ExternalTokenStore.class);
 
         authService = new AuthService(webClient, jwtTokenProvider, externalTokenStore);
+        ReflectionTestUtils.setField(authService, "refreshReuseGraceMillis", 10000L);
     }
 
     @AfterEach
@@ -88,6 +93,46 @@ class AuthServiceTest {
             verify(externalTokenStore).store(eq("student-uuid-123"), eq("external-api-token-xyz"), anyLong());
         }
 
+        @Test
+        @DisplayName("should bind issued tokens to the session version")
+        void shouldIssueVersionedTokens() {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody("""
+                        {"uuid": "student-uuid-123", "token": "external-api-token-xyz"}
+                        """)
+                    .addHeader("Content-Type", "application/json"));
+            when(externalTokenStore.sessionVersion(eq("student-uuid-123"), anyLong())).thenReturn(42L);
+
+            authService.authenticate(new LoginRequest("testuser", "testpass")).block();
+
+            ArgumentCaptor<String> family = ArgumentCaptor.forClass(String.class);
+            verify(externalTokenStore).startRefreshFamily(eq("student-uuid-123"), family.capture(), anyLong());
+            verify(jwtTokenProvider).generateToken("student-uuid-123", 42L);
+            verify(jwtTokenProvider).generateRefreshToken("student-uuid-123", 42L, family.getValue(),
+                    ExternalTokenStore.FIRST_REFRESH_SEQUENCE);
+        }
+
+        @Test
+        @DisplayName("should seal the external token into the JWTs and store nothing in stateless mode")
+        void shouldIssueStatelessTokens() {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody("""
+                        {"uuid": "student-uuid-123", "token": "external-api-token-xyz"}
+                        """)
+                    .addHeader("Content-Type", "application/json"));
+            when(jwtTokenProvider.isStateless()).thenReturn(true);
+            when(jwtTokenProvider.generateStatelessToken("student-uuid-123", "external-api-token-xyz"))
+                    .thenReturn("stateless-jwt");
+            when(jwtTokenProvider.generateStatelessRefreshToken("student-uuid-123", "external-api-token-xyz"))
+                    .thenReturn("stateless-refresh");
+
+            LoginResponse response = authService.authenticate(new LoginRequest("testuser", "testpass")).block();
+
+            assertThat(response.getToken()).isEqualTo("stateless-jwt");
+            assertThat(response.getRefreshToken()).isEqualTo("stateless-refresh");
+            verifyNoInteractions(externalTokenStore);
+        }
+
         @Test
         @DisplayName("should throw ApiException on invalid credentials (401)")
         void shouldThrowExceptionOnInvalidCredentials() {
@@ -141,4 +186,31 @@ class AuthServiceTest {
                     .isInstanceOf(ApiException.class);
         }
     }
+
+    @Nested
+    @DisplayName("Session Renewal")
+    class SessionRenewal {
+
+        private final VerifiedToken refreshToken =
+                new VerifiedToken("uuid-1", "refresh", 7L, System.currentTimeMillis() + 60000, null, "family-1", 3L);
+
+        @Test
+        @DisplayName("should rotate the token's family without touching the session version")
+        void shouldRotateFamily() {
+            when(externalTokenStore.rotateRefreshFamily("uuid-1", 7L, "family-1", 3L, 10000L, 604800000L))
+                    .thenReturn(OptionalLong.of(4L));
+
+            assertThat(authService.renewSession(refreshToken)).hasValue(4L);
+            verify(externalTokenStore, never()).bumpSessionVersion(anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("should refuse a refresh token its family no longer accepts")
+        void shouldRefuseRefusedRotation() {
+            when(externalTokenStore.rotateRefreshFamily("uuid-1", 7L, "family-1", 3L, 10000L, 604800000L))
+                    .thenReturn(OptionalLong.empty());
+
+            assertThat(authService.renewSession(refreshToken)).isEmpty();
+        }
+    }
 }
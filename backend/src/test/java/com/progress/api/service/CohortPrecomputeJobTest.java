@@ -0,0 +1,99 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("CohortPrecomputeJob Tests")
+class CohortPrecomputeJobTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AcademicCatalog catalog = new AcademicCatalog(objectMapper);
+    private SimpleMeterRegistry meterRegistry;
+    private RecommendationService recommendationService;
+    private PrecomputedRecommendationStore store;
+    private CohortPrecomputeJob job;
+    private int cohorts;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        recommendationService = mock(RecommendationService.class);
+        store = newStore();
+        job = new CohortPrecomputeJob(catalog, recommendationService, store, meterRegistry, 4, 1_000_000);
+        cohorts = catalog.positions().size() * CohortProfile.averageBands().size();
+        when(recommendationService.generateCohortBaseline(any(), any())).thenAnswer(invocation -> {
+            CohortProfile profile = invocation.getArgument(0);
+            return Mono.just(RecommendationResponse.builder()
+                    .recommendations(List.of())
+                    .summary(profile.level() + " " + profile.averageBand())
+                    .model("batch-model")
+                    .build());
+        });
+    }
+
+    private PrecomputedRecommendationStore newStore() {
+        return new PrecomputedRecommendationStore(objectMapper, true, tempDir.resolve("store.json").toString(), 30);
+    }
+
+    private CatalogNode anyNode() {
+        return catalog.positions().get(0).node();
+    }
+
+    @Test
+    @DisplayName("should generate a baseline for every position and average band and persist them")
+    void shouldGenerateEveryCohort() {
+        CohortPrecomputeJob.Summary summary = job.run();
+
+        assertThat(summary.cohorts()).isEqualTo(cohorts);
+        assertThat(summary.generated()).isEqualTo(cohorts);
+        assertThat(store.size()).isEqualTo(cohorts);
+
+        PrecomputedRecommendationStore reloaded = newStore();
+        reloaded.load();
+        assertThat(reloaded.size()).isEqualTo(cohorts);
+        assertThat(reloaded.get(anyNode(), "12-14", null)).get()
+                .extracting(RecommendationResponse::getModel).isEqualTo("batch-model");
+    }
+
+    @Test
+    @DisplayName("should skip cohorts that already have a baseline on the next run")
+    void shouldSkipExistingBaselines() {
+        job.run();
+        clearInvocations(recommendationService);
+
+        CohortPrecomputeJob.Summary summary = job.run();
+
+        assertThat(summary.skipped()).isEqualTo(cohorts);
+        verify(recommendationService, never()).generateCohortBaseline(any(), any());
+    }
+
+    @Test
+    @DisplayName("should leave failed cohorts out so a later run retries them")
+    void shouldRetryFailedCohorts() {
+        doReturn(Mono.error(new ApiException("Too many requests", HttpStatus.TOO_MANY_REQUESTS)))
+                .when(recommendationService).generateCohortBaseline(any(), any());
+
+        CohortPrecomputeJob.Summary summary = job.run();
+
+        assertThat(summary.failed()).isEqualTo(cohorts);
+        assertThat(store.size()).isZero();
+        assertThat(meterRegistry.counter("recommendation.precompute.cohorts", "outcome", "failed").count())
+                .isEqualTo(cohorts);
+    }
+}
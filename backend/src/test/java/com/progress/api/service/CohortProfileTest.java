@@ -0,0 +1,84 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CohortProfile Tests")
+class CohortProfileTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonNode options(String... codes) {
+        var result = objectMapper.createObjectNode();
+        var list = result.putArray("availableOptions");
+        for (String code : codes) {
+            list.addObject().put("code", code);
+        }
+        return result;
+    }
+
+    private CurrentStatus status(Double average, String academicYear) {
+        return CurrentStatus.builder()
+                .university("USTHB")
+                .field("Mathématiques et Informatique")
+                .level("Licence 2")
+                .major("Informatique")
+                .currentAverage(average)
+                .academicYear(academicYear)
+                .build();
+    }
+
+    @Nested
+    @DisplayName("Average Bands")
+    class AverageBands {
+
+        @Test
+        @DisplayName("should round averages down into two-point bands")
+        void shouldRoundIntoBands() {
+            assertThat(CohortProfile.averageBand(13.4)).isEqualTo("12-14");
+            assertThat(CohortProfile.averageBand(12.0)).isEqualTo("12-14");
+            assertThat(CohortProfile.averageBand(9.99)).isEqualTo("8-10");
+        }
+
+        @Test
+        @DisplayName("should keep a perfect average in the top band")
+        void shouldKeepPerfectAverageInTopBand() {
+            assertThat(CohortProfile.averageBand(20.0)).isEqualTo("18-20");
+        }
+
+        @Test
+        @DisplayName("should mark missing average as unknown")
+        void shouldMarkMissingAverageAsUnknown() {
+            assertThat(CohortProfile.averageBand(null)).isEqualTo(CohortProfile.UNKNOWN_BAND);
+        }
+    }
+
+    @Nested
+    @DisplayName("Cohort Key")
+    class CohortKey {
+
+        @Test
+        @DisplayName("should share key between students of the same cohort")
+        void shouldShareKeyWithinCohort() {
+            CohortProfile first = CohortProfile.from(status(12.3, "2023/2024"), options("L3_SI", "L3_ISIL"));
+            CohortProfile second = CohortProfile.from(status(13.9, "2024/2025"), options("L3_ISIL", "L3_SI"));
+
+            assertThat(first.key()).isEqualTo(second.key());
+        }
+
+        @Test
+        @DisplayName("should separate students in different average bands")
+        void shouldSeparateAverageBands() {
+            CohortProfile first = CohortProfile.from(status(11.5, "2024/2025"), options("L3_SI"));
+            CohortProfile second = CohortProfile.from(status(12.5, "2024/2025"), options("L3_SI"));
+
+            assertThat(first.key()).isNotEqualTo(second.key());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import com.progress.api.dto.RecommendationResponse.Recommendation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("CohortRecommendationCache Tests")
+class CohortRecommendationCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CohortRecommendationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CohortRecommendationCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+    }
+
+    private CurrentStatus status(String university, Double average) {
+        return CurrentStatus.builder()
+                .university(university)
+                .field("Mathématiques et Informatique")
+                .level("Licence 2")
+                .major("Informatique")
+                .currentAverage(average)
+                .build();
+    }
+
+    private CohortProfile profile(Double average) {
+        JsonNode options = objectMapper.createObjectNode();
+        return CohortProfile.from(status("USTHB", average), options);
+    }
+
+    private RecommendationResponse response(String summary) {
+        return RecommendationResponse.builder()
+                .recommendations(List.of(Recommendation.builder().code("L3_SI").matchScore(80).build()))
+                .summary(summary)
+                .model("test-model")
+                .build();
+    }
+
+    @Nested
+    @DisplayName("Expiry")
+    class Expiry {
+
+        @Test
+        @DisplayName("should serve an entry with the caller's current status until it expires")
+        void shouldServeFreshEntry() {
+            cache.put(profile(13.0), response("Cohort."));
+
+            CurrentStatus caller = status("USTHB", 13.5);
+            RecommendationResponse hit = cache.get(profile(13.5), caller).orElseThrow();
+
+            assertThat(hit.getSummary()).isEqualTo("Cohort.");
+            assertThat(hit.getCurrentStatus()).isSameAs(caller);
+        }
+
+        @Test
+        @DisplayName("should drop an entry once its TTL has passed")
+        void shouldDropExpiredEntry() throws InterruptedException {
+            ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+            cache.put(profile(13.0), response("Cohort."));
+            Thread.sleep(5);
+
+            assertThat(cache.get(profile(13.0), status("USTHB", 13.0))).isEmpty();
+            assertThat(cache.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should evict only expired entries on cleanup")
+        void shouldEvictExpiredEntries() throws InterruptedException {
+            ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+            cache.put(profile(9.0), response("Expired."));
+            Thread.sleep(5);
+            ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+            cache.put(profile(13.0), response("Fresh."));
+
+            cache.cleanupExpiredEntries();
+
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(cache.get(profile(13.0), status("USTHB", 13.0))).isPresent();
+        }
+    }
+
+    @Nested
+    @DisplayName("Capacity")
+    class Capacity {
+
+        @Test
+        @DisplayName("should refuse new cohorts once max entries are live")
+        void shouldRespectMaxEntries() {
+            cache.put(profile(9.0), response("First."));
+            cache.put(profile(11.0), response("Second."));
+            cache.put(profile(13.0), response("Third."));
+
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.get(profile(13.0), status("USTHB", 13.0))).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should make room by evicting expired entries when full")
+        void shouldEvictExpiredEntriesWhenFull() throws InterruptedException {
+            ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+            cache.put(profile(9.0), response("First."));
+            cache.put(profile(11.0), response("Second."));
+            Thread.sleep(5);
+            ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+
+            cache.put(profile(13.0), response("Third."));
+
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(cache.get(profile(13.0), status("USTHB", 13.0))).isPresent();
+        }
+    }
+
+    @Nested
+    @DisplayName("Single Flight")
+    class SingleFlight {
+
+        @Test
+        @DisplayName("should share one generation between concurrent misses of a cohort")
+        void shouldCoalesceConcurrentMisses() {
+            AtomicInteger loads = new AtomicInteger();
+            Sinks.One<RecommendationResponse> generation = Sinks.one();
+            CurrentStatus first = status("USTHB", 13.0);
+            CurrentStatus second = status("USTHB", 13.5);
+
+            Mono<RecommendationResponse> a = cache.getOrLoad(profile(13.0), first, () -> {
+                loads.incrementAndGet();
+                return generation.asMono();
+            });
+            Mono<RecommendationResponse> b = cache.getOrLoad(profile(13.5), second, () -> {
+                loads.incrementAndGet();
+                return generation.asMono();
+            });
+            var pendingA = a.toFuture();
+            var pendingB = b.toFuture();
+            generation.tryEmitValue(response("Shared."));
+
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(pendingA.join().getCurrentStatus()).isSameAs(first);
+            assertThat(pendingB.join().getCurrentStatus()).isSameAs(second);
+            assertThat(pendingB.join().getSummary()).isEqualTo("Shared.");
+            assertThat(cache.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should retry after a failed generation instead of replaying the error")
+        void shouldRetryAfterFailure() {
+            AtomicInteger loads = new AtomicInteger();
+
+            Mono<RecommendationResponse> failing = cache.getOrLoad(profile(13.0), status("USTHB", 13.0), () -> {
+                loads.incrementAndGet();
+                return Mono.error(new IllegalStateException("LLM down"));
+            });
+            assertThatThrownBy(failing::block).hasMessageContaining("LLM down");
+
+            RecommendationResponse retried = cache.getOrLoad(profile(13.0), status("USTHB", 13.0), () -> {
+                loads.incrementAndGet();
+                return Mono.just(response("Recovered."));
+            }).block();
+
+            assertThat(loads.get()).isEqualTo(2);
+            assertThat(retried.getSummary()).isEqualTo("Recovered.");
+        }
+
+        @Test
+        @DisplayName("should share one streamed generation and replay it to late subscribers")
+        void shouldCoalesceConcurrentStreams() {
+            AtomicInteger loads = new AtomicInteger();
+            Sinks.Many<String> generation = Sinks.many().unicast().onBackpressureBuffer();
+
+            Flux<String> first = cache.streamOrLoad(profile(13.0), () -> {
+                loads.incrementAndGet();
+                return generation.asFlux();
+            });
+            List<String> firstEvents = new ArrayList<>();
+            first.subscribe(firstEvents::add);
+            generation.tryEmitNext("recommendation");
+
+            List<String> lateEvents = new ArrayList<>();
+            cache.streamOrLoad(profile(13.5), () -> {
+                loads.incrementAndGet();
+                return Flux.just("other");
+            }).subscribe(lateEvents::add);
+            generation.tryEmitNext("complete");
+            generation.tryEmitComplete();
+
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(firstEvents).containsExactly("recommendation", "complete");
+            assertThat(lateEvents).containsExactly("recommendation", "complete");
+        }
+
+        @Test
+        @DisplayName("should start a new stream once the previous one has finished")
+        void shouldRestreamAfterCompletion() {
+            AtomicInteger loads = new AtomicInteger();
+
+            cache.streamOrLoad(profile(13.0), () -> Flux.just(loads.incrementAndGet())).blockLast();
+            cache.streamOrLoad(profile(13.0), () -> Flux.just(loads.incrementAndGet())).blockLast();
+
+            assertThat(loads.get()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should generate directly when the cache is disabled")
+        void shouldBypassWhenDisabled() {
+            ReflectionTestUtils.setField(cache, "enabled", false);
+
+            RecommendationResponse response = cache.getOrLoad(profile(13.0), status("USTHB", 13.0),
+                    () -> Mono.just(response("Direct."))).block();
+
+            assertThat(response.getSummary()).isEqualTo("Direct.");
+            assertThat(cache.size()).isZero();
+        }
+    }
+}
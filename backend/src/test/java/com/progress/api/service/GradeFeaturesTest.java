@@ -0,0 +1,144 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("GradeFeatures Tests")
+class GradeFeaturesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JsonNode bilans;
+    private JsonNode l3Options;
+    private GradeFeatures features;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream is = new ClassPathResource("fixtures/bilans-l2-informatique.json").getInputStream()) {
+            bilans = objectMapper.readTree(is);
+        }
+        AcademicCatalog catalog = new AcademicCatalog(objectMapper);
+        JsonNode structure = catalog.lookupUniversity("Université des Sciences et de la Technologie Houari Boumediène")
+                .structure();
+        l3Options = catalog.findAvailableOptions(structure, "Mathématiques et Informatique", "Licence 2",
+                "Informatique", null).path("availableOptions");
+        features = GradeFeatures.extract(bilans);
+    }
+
+    @Nested
+    @DisplayName("Prompt Size")
+    class PromptSize {
+
+        @Test
+        @DisplayName("should render a small fraction of the raw bilans tokens")
+        void shouldReduceTokens() throws IOException {
+            int rawTokens = TokenEstimator.estimate(objectMapper.writeValueAsString(bilans));
+            int compactTokens = TokenEstimator.estimate(features.render(l3Options));
+
+            assertThat(compactTokens).isLessThan(rawTokens / 10);
+        }
+    }
+
+    @Nested
+    @DisplayName("Equivalence")
+    class Equivalence {
+
+        @Test
+        @DisplayName("should keep every graded subject with its average and coefficient")
+        void shouldKeepEverySubject() {
+            String rendered = features.render(l3Options);
+
+            int subjects = 0;
+            for (JsonNode period : bilans) {
+                for (JsonNode ue : period.path("bilanUes")) {
+                    for (JsonNode mc : ue.path("bilanMcs")) {
+                        subjects++;
+                        assertThat(rendered).contains(String.format(Locale.ROOT, "%s | %s | %.2f | %d",
+                                ue.path("ueLibelleFr").asText(), mc.path("mcLibelleFr").asText(),
+                                mc.path("moyenneGenerale").asDouble(), mc.path("coefficient").asInt()));
+                    }
+                }
+            }
+            assertThat(features.subjects()).hasSize(subjects);
+        }
+
+        @Test
+        @DisplayName("should match the coefficient-weighted average and credits of the raw document")
+        void shouldMatchAveragesAndCredits() {
+            double weighted = 0;
+            double coefficients = 0;
+            double credits = 0;
+            double earned = 0;
+            for (JsonNode period : bilans) {
+                for (JsonNode ue : period.path("bilanUes")) {
+                    credits += ue.path("credit").asDouble();
+                    earned += ue.path("creditObtenu").asDouble();
+                    for (JsonNode mc : ue.path("bilanMcs")) {
+                        weighted += mc.path("moyenneGenerale").asDouble() * mc.path("coefficient").asDouble();
+                        coefficients += mc.path("coefficient").asDouble();
+                    }
+                }
+            }
+
+            assertThat(features.overallAverage()).isCloseTo(weighted / coefficients, within(1e-9));
+            assertThat(features.render(l3Options)).startsWith(String.format(Locale.ROOT,
+                    "Overall average: %.2f/20 | credits %d/%d", weighted / coefficients, (int) earned, (int) credits));
+            assertThat(features.units()).extracting(GradeFeatures.Unit::name)
+                    .contains("UEF 3.1", "UEF 4.2");
+        }
+    }
+
+    @Nested
+    @DisplayName("Key Subjects")
+    class KeySubjects {
+
+        @Test
+        @DisplayName("should match transcript subjects to catalogue key subjects by stem")
+        void shouldMatchByStem() {
+            assertThat(GradeFeatures.matches("Système d'exploitation 1", "Systèmes d'exploitation")).isTrue();
+            assertThat(GradeFeatures.matches("Algorithmique et structures de données 3", "Structures de données"))
+                    .isTrue();
+            assertThat(GradeFeatures.matches("Programmation orientée objet", "Programmation")).isTrue();
+            assertThat(GradeFeatures.matches("Mécanique rationnelle", "Mécanique des fluides")).isFalse();
+            assertThat(GradeFeatures.matches("Systèmes d'information", "Systèmes distribués")).isFalse();
+        }
+
+        @Test
+        @DisplayName("should rank strengths and weaknesses against the options' key subjects")
+        void shouldFindStrengthsAndWeaknesses() {
+            assertThat(features.strengths(l3Options)).containsOnlyKeys("Bases de données", "Programmation");
+            assertThat(features.weaknesses(l3Options)).containsOnlyKeys("Systèmes d'exploitation", "Réseaux");
+        }
+
+        @Test
+        @DisplayName("should score each option by the student's weighted key-subject averages")
+        void shouldScoreOptionFit() {
+            double isil = 0;
+            double rsd = 0;
+            for (JsonNode option : l3Options) {
+                switch (option.path("code").asText()) {
+                    case "L3_ISIL" -> isil = features.optionFit(option);
+                    case "L3_RSD" -> rsd = features.optionFit(option);
+                    default -> {
+                    }
+                }
+            }
+
+            // ISIL: Bases de données 14.5 (x3), Systèmes d'information 13.0 (x2), Programmation 16.0 (x1)
+            assertThat(isil).isCloseTo((14.5 * 3 + 13.0 * 2 + 16.0) / 6, within(1e-9));
+            // RSD: Réseaux 8.5 (x3), Systèmes d'exploitation 11.0 (x2)
+            assertThat(rsd).isCloseTo((8.5 * 3 + 11.0 * 2) / 5, within(1e-9));
+            assertThat(features.render(l3Options)).contains("L3_ISIL | 14.25");
+        }
+    }
+}
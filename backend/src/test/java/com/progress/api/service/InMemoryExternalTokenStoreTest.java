@@ -0,0 +1,310 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("InMemoryExternalTokenStore Tests")
+class InMemoryExternalTokenStoreTest {
+
+    private static final long TTL = 60000L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InMemoryExternalTokenStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new InMemoryExternalTokenStore(3, meterRegistry, Optional.empty());
+    }
+
+    private double removals(String reason) {
+        return meterRegistry.get("token.store.removals").tag("reason", reason).counter().count();
+    }
+
+    @Nested
+    @DisplayName("Expiry")
+    class Expiry {
+
+        @Test
+        @DisplayName("should drop sessions once every field has expired")
+        void shouldExpireSessions() {
+            long now = System.currentTimeMillis();
+            store.store("uuid-1", "external", TTL);
+
+            store.expireEntries(now + TTL - 5000);
+            assertThat(store.retrieve("uuid-1")).contains("external");
+
+            store.expireEntries(now + TTL + 5000);
+            assertThat(store.retrieve("uuid-1")).isEmpty();
+            assertThat(store.size()).isZero();
+            assertThat(store.entryCount()).isZero();
+            assertThat(removals("expired")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should expire each field on its own deadline")
+        void shouldExpireFieldsSeparately() {
+            long now = System.currentTimeMillis();
+            store.store("uuid-1", "external", TTL);
+            store.storeAllowedCards("uuid-1", Set.of("card-1"), TTL / 2);
+            long version = store.sessionVersion("uuid-1", TTL * 10);
+
+            store.expireEntries(now + TTL / 2 + 5000);
+            assertThat(store.getAllowedCards("uuid-1")).isEmpty();
+            assertThat(store.retrieveSession("uuid-1")).contains(new ExternalTokenStore.Session("external", version));
+
+            store.expireEntries(now + TTL + 5000);
+            assertThat(store.retrieve("uuid-1")).isEmpty();
+            assertThat(store.sessionVersion("uuid-1", TTL)).isEqualTo(version);
+            assertThat(removals("expired")).isZero();
+        }
+
+        @Test
+        @DisplayName("should follow a refreshed token to its new deadline")
+        void shouldHonourRefresh() {
+            long now = System.currentTimeMillis();
+            store.store("uuid-1", "external", TTL);
+            store.store("uuid-1", "external-2", TTL * 100);
+
+            store.expireEntries(now + TTL + 5000);
+
+            assertThat(store.retrieve("uuid-1")).contains("external-2");
+            store.expireEntries(now + TTL * 100 + 5000);
+            assertThat(store.retrieve("uuid-1")).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Capacity")
+    class Capacity {
+
+        @Test
+        @DisplayName("should evict the least recently used session beyond the bound")
+        void shouldEvictLeastRecentlyUsed() {
+            store.store("uuid-1", "external-1", TTL);
+            store.store("uuid-2", "external-2", TTL);
+            store.store("uuid-3", "external-3", TTL);
+            store.retrieve("uuid-1");
+
+            store.store("uuid-4", "external-4", TTL);
+
+            assertThat(store.exists("uuid-2")).isFalse();
+            assertThat(store.exists("uuid-1")).isTrue();
+            assertThat(store.exists("uuid-4")).isTrue();
+            assertThat(store.size()).isEqualTo(3);
+            assertThat(removals("evicted")).isEqualTo(1);
+            assertThat(meterRegistry.get("token.store.entries").gauge().value()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should ignore the timer of an evicted session")
+        void shouldIgnoreEvictedTimers() {
+            long now = System.currentTimeMillis();
+            for (int i = 1; i <= 4; i++) {
+                store.store("uuid-" + i, "external-" + i, TTL);
+            }
+
+            store.expireEntries(now + TTL + 5000);
+
+            assertThat(store.entryCount()).isZero();
+            assertThat(removals("expired")).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should serve reads while a writer holds the store")
+        void shouldReadWithoutTheLock() throws Exception {
+            store.store("uuid-1", "external-1", TTL);
+            store.storeAllowedCards("uuid-1", Set.of("card-1"), TTL);
+
+            synchronized (store) {
+                var read = CompletableFuture.supplyAsync(() -> store.retrieveSession("uuid-1").isPresent()
+                        && store.getAllowedCards("uuid-1").isPresent());
+
+                assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Session versions")
+    class SessionVersions {
+
+        @Test
+        @DisplayName("should keep the same version across logins until it is bumped")
+        void shouldReuseVersion() {
+            long version = store.sessionVersion("uuid-1", TTL);
+
+            assertThat(version).isPositive();
+            assertThat(store.sessionVersion("uuid-1", TTL)).isEqualTo(version);
+            assertThat(store.bumpSessionVersion("uuid-1", TTL)).isGreaterThan(version);
+        }
+
+        @Test
+        @DisplayName("should return the version with the external token")
+        void shouldRetrieveSession() {
+            store.store("uuid-1", "external", TTL);
+            assertThat(store.retrieveSession("uuid-1")).contains(new ExternalTokenStore.Session("external", 0));
+
+            long version = store.sessionVersion("uuid-1", TTL);
+
+            assertThat(store.retrieveSession("uuid-1")).contains(new ExternalTokenStore.Session("external", version));
+        }
+
+        @Test
+        @DisplayName("should keep the version after the external token is removed")
+        void shouldOutliveRemoval() {
+            store.store("uuid-1", "external", TTL);
+            long revoked = store.bumpSessionVersion("uuid-1", TTL);
+
+            store.remove("uuid-1");
+            store.store("uuid-1", "external-2", TTL);
+
+            assertThat(store.sessionVersion("uuid-1", TTL)).isEqualTo(revoked);
+        }
+    }
+
+    @Nested
+    @DisplayName("Refresh families")
+    class RefreshFamilies {
+
+        private static final long GRACE = 10000L;
+
+        private long version;
+
+        @BeforeEach
+        void startFamilies() {
+            version = store.sessionVersion("uuid-1", TTL);
+            store.startRefreshFamily("uuid-1", "laptop", TTL);
+            store.startRefreshFamily("uuid-1", "phone", TTL);
+        }
+
+        @Test
+        @DisplayName("should advance a family one sequence per rotation")
+        void shouldRotate() {
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 1, GRACE, TTL)).hasValue(2);
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 2, GRACE, TTL)).hasValue(3);
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "phone", 1, GRACE, TTL)).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("should hand the current sequence to the replaced token within the grace window")
+        void shouldAllowConcurrentRefresh() {
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 1, GRACE, TTL)).hasValue(2);
+
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 1, GRACE, TTL)).hasValue(2);
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 2, GRACE, TTL)).hasValue(3);
+        }
+
+        @Test
+        @DisplayName("should end only the family of a replayed token")
+        void shouldEndFamilyOnReplay() {
+            store.rotateRefreshFamily("uuid-1", version, "laptop", 1, GRACE, TTL);
+
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 1, -1, TTL)).isEmpty();
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 2, GRACE, TTL)).isEmpty();
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "phone", 1, GRACE, TTL)).hasValue(2);
+            assertThat(store.sessionVersion("uuid-1", TTL)).isEqualTo(version);
+        }
+
+        @Test
+        @DisplayName("should end every family when the version is bumped")
+        void shouldEndFamiliesOnBump() {
+            long bumped = store.bumpSessionVersion("uuid-1", TTL);
+
+            assertThat(store.rotateRefreshFamily("uuid-1", version, "laptop", 1, GRACE, TTL)).isEmpty();
+            assertThat(store.rotateRefreshFamily("uuid-1", bumped, "phone", 1, GRACE, TTL)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Persistence")
+    class Persistence {
+
+        private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+        @TempDir
+        Path directory;
+
+        private SessionJournal journal;
+
+        // a restart: the previous instance's journal writes out its queue and closes first
+        private InMemoryExternalTokenStore start() throws IOException {
+            if (journal != null) {
+                journal.close();
+            }
+            journal = new SessionJournal(directory.toString(), KEY);
+            InMemoryExternalTokenStore persistent = new InMemoryExternalTokenStore(3, new SimpleMeterRegistry(),
+                    Optional.of(journal));
+            persistent.restore();
+            return persistent;
+        }
+
+        @Test
+        @DisplayName("should bring sessions back after a restart")
+        void shouldRestoreSessions() throws IOException {
+            InMemoryExternalTokenStore first = start();
+            first.store("uuid-1", "external-1", TTL);
+            first.storeAllowedCards("uuid-1", Set.of("card-1"), TTL);
+            long version = first.sessionVersion("uuid-1", TTL);
+            first.store("uuid-2", "external-2", TTL);
+            first.remove("uuid-2");
+            first.store("uuid-3", "expired", -1000L);
+
+            InMemoryExternalTokenStore second = start();
+
+            assertThat(second.retrieveSession("uuid-1")).contains(new ExternalTokenStore.Session("external-1", version));
+            assertThat(second.getAllowedCards("uuid-1")).contains(Set.of("card-1"));
+            assertThat(second.exists("uuid-2")).isFalse();
+            assertThat(second.exists("uuid-3")).isFalse();
+            assertThat(second.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should bring refresh families back after a restart")
+        void shouldRestoreFamilies() throws IOException {
+            InMemoryExternalTokenStore first = start();
+            long version = first.sessionVersion("uuid-1", TTL);
+            first.startRefreshFamily("uuid-1", "laptop", TTL);
+            first.startRefreshFamily("uuid-1", "phone", TTL);
+            first.rotateRefreshFamily("uuid-1", version, "laptop", 1, 10000L, TTL);
+            first.rotateRefreshFamily("uuid-1", version, "phone", 5, 10000L, TTL);
+
+            InMemoryExternalTokenStore second = start();
+            second.shutdown();
+            InMemoryExternalTokenStore third = start();
+
+            assertThat(third.rotateRefreshFamily("uuid-1", version, "laptop", 2, 10000L, TTL)).hasValue(3);
+            assertThat(third.rotateRefreshFamily("uuid-1", version, "phone", 1, 10000L, TTL)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should restore from the snapshot written at shutdown, keeping later changes")
+        void shouldRestoreFromSnapshot() throws IOException {
+            InMemoryExternalTokenStore first = start();
+            for (int i = 1; i <= 4; i++) {
+                first.store("uuid-" + i, "external-" + i, TTL);
+            }
+            first.shutdown();
+
+            InMemoryExternalTokenStore second = start();
+            second.store("uuid-5", "external-5", TTL);
+
+            InMemoryExternalTokenStore third = start();
+
+            assertThat(third.exists("uuid-1")).isFalse();
+            assertThat(third.exists("uuid-2")).isFalse();
+            assertThat(third.retrieve("uuid-5")).contains("external-5");
+            assertThat(third.size()).isEqualTo(3);
+        }
+    }
+}
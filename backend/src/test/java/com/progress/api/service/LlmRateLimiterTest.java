@@ -0,0 +1,156 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LlmRateLimiter Tests")
+class LlmRateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private LlmRateLimiter limiter(long rpm, long tpm, long maxWaitMillis) {
+        return new LlmRateLimiter("groq", rpm, tpm, 100, maxWaitMillis, 5, meterRegistry);
+    }
+
+    private double scheduled(String outcome) {
+        return meterRegistry.counter("llm.requests.scheduled", "provider", "groq", "outcome", outcome).count();
+    }
+
+    private HttpHeaders headers(String remainingTokens, String resetTokens) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(LlmRateLimiter.REMAINING_TOKENS, remainingTokens);
+        headers.set(LlmRateLimiter.RESET_TOKENS, resetTokens);
+        return headers;
+    }
+
+    @Nested
+    @DisplayName("Admission")
+    class Admission {
+
+        @Test
+        @DisplayName("should admit calls while both budgets have room")
+        void shouldAdmitWithinBudget() {
+            LlmRateLimiter limiter = limiter(2, 10_000, 0);
+
+            limiter.acquire(400).block();
+            limiter.acquire(400).block();
+
+            assertThat(scheduled("admitted")).isEqualTo(2.0);
+            assertThat(limiter.remainingRequests()).isZero();
+            assertThat(limiter.remainingTokens()).isEqualTo(10_000 - 2 * 500);
+        }
+
+        @Test
+        @DisplayName("should reject locally with Retry-After once the request budget is spent")
+        void shouldRejectWhenRequestsExhausted() {
+            LlmRateLimiter limiter = limiter(1, 10_000, 0);
+            limiter.acquire(10).block();
+
+            assertThatThrownBy(() -> limiter.acquire(10).block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> {
+                        ApiException api = (ApiException) ex;
+                        assertThat(api.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                        assertThat(api.getRetryAfterSeconds()).isBetween(1L, 60L);
+                    });
+            assertThat(scheduled("rejected")).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should refuse prompts that can never fit the token budget")
+        void shouldRefuseOversizedPrompt() {
+            LlmRateLimiter limiter = limiter(10, 1_000, 0);
+
+            assertThatThrownBy(() -> limiter.acquire(5_000).block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getStatus())
+                            .isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+    }
+
+    @Nested
+    @DisplayName("Header Synchronisation")
+    class HeaderSynchronisation {
+
+        @Test
+        @DisplayName("should queue a call until the server-reported token window resets")
+        void shouldQueueUntilTokensReset() {
+            LlmRateLimiter limiter = limiter(10, 10_000, 5_000);
+            limiter.update(headers("0", "300ms"));
+
+            long start = System.nanoTime();
+            limiter.acquire(100).block(Duration.ofSeconds(5));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(elapsedMillis).isGreaterThanOrEqualTo(250);
+            assertThat(scheduled("queued")).isEqualTo(1.0);
+            assertThat(scheduled("admitted")).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should parse Groq reset durations")
+        void shouldParseResetDurations() {
+            assertThat(LlmRateLimiter.parseDuration("7.66s")).isEqualTo(7_660L);
+            assertThat(LlmRateLimiter.parseDuration("2m59.56s")).isEqualTo(179_560L);
+            assertThat(LlmRateLimiter.parseDuration("1h2m")).isEqualTo(3_720_000L);
+            assertThat(LlmRateLimiter.parseDuration("120ms")).isEqualTo(120L);
+            assertThat(LlmRateLimiter.parseDuration("soon")).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("Client Integration")
+    class ClientIntegration {
+
+        private MockWebServer mockWebServer;
+
+        @BeforeEach
+        void startServer() throws IOException {
+            mockWebServer = new MockWebServer();
+            mockWebServer.start();
+        }
+
+        @AfterEach
+        void stopServer() throws IOException {
+            mockWebServer.shutdown();
+        }
+
+        @Test
+        @DisplayName("should not call the provider again once headers report the token budget exhausted")
+        void shouldSkipGuaranteed429() {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody("{\"choices\":[{\"message\":{\"content\":\"{}\"}}]}")
+                    .addHeader("Content-Type", "application/json")
+                    .addHeader(LlmRateLimiter.REMAINING_REQUESTS, "100")
+                    .addHeader(LlmRateLimiter.REMAINING_TOKENS, "50")
+                    .addHeader(LlmRateLimiter.RESET_TOKENS, "45s"));
+
+            OpenAiCompatibleClient client = new OpenAiCompatibleClient("groq", "test-key",
+                    mockWebServer.url("/").toString(), "test-model", 5000, new ObjectMapper(),
+                    limiter(30, 12_000, 1_000), new LlmUsageRecorder(meterRegistry, 15, 1000));
+
+            assertThat(client.chat("system", "user").block().content()).isEqualTo("{}");
+            assertThatThrownBy(() -> client.chat("system", "user").block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getRetryAfterSeconds()).isGreaterThan(1L));
+
+            assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+        }
+    }
+}
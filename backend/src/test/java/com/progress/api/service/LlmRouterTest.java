@@ -0,0 +1,197 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LlmRouter Tests")
+class LlmRouterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private MockWebServer primaryServer;
+    private MockWebServer backupServer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        primaryServer = new MockWebServer();
+        primaryServer.start();
+        backupServer = new MockWebServer();
+        backupServer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        primaryServer.shutdown();
+        backupServer.shutdown();
+    }
+
+    private OpenAiCompatibleClient client(String name, MockWebServer server, int timeout) {
+        return new OpenAiCompatibleClient(name, "test-key", server.url("/").toString(), name + "-model", timeout,
+                objectMapper, new LlmRateLimiter(name, 1000, 1_000_000, 512, 0, 0, meterRegistry),
+                new LlmUsageRecorder(meterRegistry, 15, 1000));
+    }
+
+    private LlmRouter router(int primaryTimeout, long deadlineMillis) {
+        return new LlmRouter(List.of(client("primary", primaryServer, primaryTimeout),
+                client("backup", backupServer, 5000)), deadlineMillis, meterRegistry);
+    }
+
+    private MockResponse completion(String content) {
+        var root = objectMapper.createObjectNode();
+        root.putArray("choices").addObject().putObject("message").put("content", content);
+        return new MockResponse().setBody(root.toString()).addHeader("Content-Type", "application/json");
+    }
+
+    private MockResponse stream(String... deltas) {
+        StringBuilder body = new StringBuilder();
+        for (String delta : deltas) {
+            var chunk = objectMapper.createObjectNode();
+            chunk.putArray("choices").addObject().putObject("delta").put("content", delta);
+            body.append("data: ").append(chunk).append("\n\n");
+        }
+        body.append("data: [DONE]\n\n");
+        return new MockResponse().setBody(body.toString()).addHeader("Content-Type", "text/event-stream");
+    }
+
+    private MockResponse serverError() {
+        return new MockResponse().setResponseCode(500).setBody("{\"error\": \"overloaded\"}")
+                .addHeader("Content-Type", "application/json");
+    }
+
+    @Nested
+    @DisplayName("Failover")
+    class Failover {
+
+        @Test
+        @DisplayName("should answer from the next provider when the first one errors")
+        void shouldFailOverOnError() {
+            primaryServer.enqueue(serverError());
+            backupServer.enqueue(completion("from backup"));
+
+            LlmClient.Reply reply = router(5000, 10_000).chat("system", "user").block();
+
+            assertThat(reply.provider()).isEqualTo("backup");
+            assertThat(reply.model()).isEqualTo("backup-model");
+            assertThat(reply.content()).isEqualTo("from backup");
+            assertThat(meterRegistry.counter("llm.failovers", "provider", "primary").count()).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should fail over when the first provider times out")
+        void shouldFailOverOnTimeout() {
+            primaryServer.enqueue(completion("too late").setHeadersDelay(2, TimeUnit.SECONDS));
+            backupServer.enqueue(completion("from backup"));
+
+            LlmClient.Reply reply = router(300, 10_000).chat("system", "user").block();
+
+            assertThat(reply.provider()).isEqualTo("backup");
+        }
+
+        @Test
+        @DisplayName("should give up with 504 once the request deadline is spent")
+        void shouldRespectDeadline() {
+            primaryServer.enqueue(completion("too late").setHeadersDelay(2, TimeUnit.SECONDS));
+            backupServer.enqueue(completion("from backup"));
+
+            assertThatThrownBy(() -> router(5000, 300).chat("system", "user").block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            assertThat(backupServer.getRequestCount()).isZero();
+        }
+
+        @Test
+        @DisplayName("should fail over a stream that errors before its first delta")
+        void shouldFailOverStream() {
+            primaryServer.enqueue(serverError());
+            backupServer.enqueue(stream("{\"recommendations\"", ": []}"));
+
+            List<LlmClient.Reply> deltas = router(5000, 10_000).chatStream("system", "user").collectList().block();
+
+            assertThat(deltas).extracting(LlmClient.Reply::provider).containsOnly("backup");
+            assertThat(deltas.stream().map(LlmClient.Reply::content).collect(Collectors.joining()))
+                    .isEqualTo("{\"recommendations\": []}");
+        }
+    }
+
+    @Nested
+    @DisplayName("Routing")
+    class Routing {
+
+        @Test
+        @DisplayName("should prefer the provider with the lower p95 latency")
+        void shouldPreferFasterProvider() {
+            primaryServer.enqueue(completion("slow").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+            backupServer.enqueue(completion("fast"));
+            backupServer.enqueue(completion("fast"));
+            LlmRouter router = router(5000, 10_000);
+
+            // the first call lands on the primary, the second explores the unsampled backup
+            assertThat(router.chat("system", "user").block().provider()).isEqualTo("primary");
+            assertThat(router.chat("system", "user").block().provider()).isEqualTo("backup");
+
+            assertThat(router.ranking()).containsExactly("backup", "primary");
+            assertThat(router.chat("system", "user").block().provider()).isEqualTo("backup");
+        }
+
+        @Test
+        @DisplayName("should rank a provider that keeps failing behind a healthy one")
+        void shouldDemoteFailingProvider() {
+            primaryServer.enqueue(serverError());
+            backupServer.enqueue(completion("from backup"));
+            LlmRouter router = router(5000, 10_000);
+
+            router.chat("system", "user").block();
+
+            assertThat(router.ranking()).containsExactly("backup", "primary");
+        }
+
+        @Test
+        @DisplayName("should skip a provider whose quota is exhausted without calling it")
+        void shouldSkipExhaustedProvider() {
+            primaryServer.enqueue(completion("last one")
+                    .addHeader(LlmRateLimiter.REMAINING_REQUESTS, "0")
+                    .addHeader(LlmRateLimiter.RESET_REQUESTS, "50s"));
+            backupServer.enqueue(completion("from backup"));
+            backupServer.enqueue(completion("from backup"));
+            LlmRouter router = router(5000, 10_000);
+
+            router.chat("system", "user").block();
+            router.chat("system", "user").block();
+            LlmClient.Reply reply = router.chat("system", "user").block();
+
+            assertThat(reply.provider()).isEqualTo("backup");
+            assertThat(primaryServer.getRequestCount()).isEqualTo(1);
+            assertThat(router.ranking()).containsExactly("backup", "primary");
+        }
+
+        @Test
+        @DisplayName("should leave out providers without an API key")
+        void shouldIgnoreUnconfiguredProviders() {
+            OpenAiCompatibleClient unconfigured = new OpenAiCompatibleClient("empty", "",
+                    primaryServer.url("/").toString(), "model", 5000, objectMapper,
+                    new LlmRateLimiter("empty", 1000, 1_000_000, 512, 0, 0, meterRegistry),
+                    new LlmUsageRecorder(meterRegistry, 15, 1000));
+
+            LlmRouter router = new LlmRouter(List.of(unconfigured), 10_000, meterRegistry);
+
+            assertThat(router.isConfigured()).isFalse();
+            assertThatThrownBy(() -> router.chat("system", "user").block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getStatus())
+                            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+}
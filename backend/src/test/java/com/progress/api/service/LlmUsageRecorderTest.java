@@ -0,0 +1,135 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.LlmUsageSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("LlmUsageRecorder Tests")
+class LlmUsageRecorderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private LlmUsageRecorder recorder;
+    private MockWebServer mockWebServer;
+    private OpenAiCompatibleClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new LlmUsageRecorder(meterRegistry, 15, 100);
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        client = new OpenAiCompatibleClient("groq", "test-key", mockWebServer.url("/").toString(), "test-model",
+                5000, objectMapper, new LlmRateLimiter("groq", 1000, 1_000_000, 512, 0, 0, meterRegistry),
+                recorder);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private MockResponse json(String body) {
+        return new MockResponse().setBody(body).addHeader("Content-Type", "application/json");
+    }
+
+    @Test
+    @DisplayName("should record tokens from the usage block and the call's timings")
+    void shouldRecordUsage() {
+        mockWebServer.enqueue(json("""
+                {
+                    "choices": [{"message": {"content": "{}"}}],
+                    "usage": {"prompt_tokens": 1200, "completion_tokens": 300, "total_tokens": 1500}
+                }
+                """).setHeadersDelay(50, TimeUnit.MILLISECONDS));
+
+        client.chat("system", "user").block();
+
+        var prompt = meterRegistry.get("llm.call.tokens").tags("model", "test-model", "type", "prompt").summary();
+        var completion = meterRegistry.get("llm.call.tokens").tags("type", "completion").summary();
+        assertThat(prompt.totalAmount()).isEqualTo(1200);
+        assertThat(completion.totalAmount()).isEqualTo(300);
+        var latency = meterRegistry.get("llm.call.latency")
+                .tags("provider", "groq", "mode", "chat", "outcome", "success").timer();
+        assertThat(latency.count()).isEqualTo(1);
+        assertThat(latency.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        assertThat(meterRegistry.get("llm.call.ttfb").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(50);
+        assertThat(meterRegistry.get("llm.call.queue").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should estimate tokens for a stream that reports no usage")
+    void shouldEstimateStreamTokens() {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("data: {\"choices\":[{\"delta\":{\"content\":\"12345678\"}}]}\n\ndata: [DONE]\n\n")
+                .addHeader("Content-Type", "text/event-stream"));
+
+        client.chatStream("system", "user").blockLast();
+
+        LlmUsageSnapshot.Usage total = recorder.snapshot().getTotal();
+        assertThat(total.getCalls()).isEqualTo(1);
+        assertThat(total.getCompletionTokens()).isEqualTo(2);
+        assertThat(total.getPromptTokens()).isEqualTo(TokenEstimator.estimateChat("system", "user"));
+    }
+
+    @Test
+    @DisplayName("should record failed calls by outcome")
+    void shouldRecordOutcome() {
+        mockWebServer.enqueue(json("{\"error\": \"overloaded\"}").setResponseCode(503));
+
+        assertThatThrownBy(() -> client.chat("system", "user").block());
+
+        assertThat(meterRegistry.get("llm.call.latency").tag("outcome", "server_error").timer().count())
+                .isEqualTo(1);
+        assertThat(recorder.snapshot().getTotal().getOutcomes()).containsEntry("server_error", 1L);
+    }
+
+    @Test
+    @DisplayName("should summarise the window per model with latency percentiles")
+    void shouldSummariseWindow() {
+        for (long latency = 1; latency <= 20; latency++) {
+            recorder.record(new LlmUsageRecorder.CallRecord(Instant.now(), "groq", "test-model", "chat",
+                    "success", 0, latency, latency * 100, 100, 50, false));
+        }
+        recorder.record(new LlmUsageRecorder.CallRecord(Instant.now(), "backup", "other", "chat",
+                "timeout", 0, null, 5000, 0, 0, true));
+
+        LlmUsageSnapshot snapshot = recorder.snapshot();
+
+        assertThat(snapshot.getTotal().getCalls()).isEqualTo(21);
+        assertThat(snapshot.getByModel()).containsOnlyKeys("groq/test-model", "backup/other");
+        LlmUsageSnapshot.Usage groq = snapshot.getByModel().get("groq/test-model");
+        assertThat(groq.getTotalTokens()).isEqualTo(20 * 150);
+        assertThat(groq.getLatencyMs().getP50()).isEqualTo(1000);
+        assertThat(groq.getLatencyMs().getP95()).isEqualTo(1900);
+        assertThat(groq.getLatencyMs().getMax()).isEqualTo(2000);
+        assertThat(snapshot.getTotal().getOutcomes()).containsEntry("success", 20L).containsEntry("timeout", 1L);
+        assertThat(snapshot.getTotal().getTokensPerMinute()).isEqualTo(20 * 150 / 15.0);
+    }
+
+    @Test
+    @DisplayName("should price calls from their tokens with the provider's rates")
+    void shouldPriceCalls() {
+        recorder.price("groq", 0.59, 0.79);
+        recorder.record(new LlmUsageRecorder.CallRecord(Instant.now(), "groq", "test-model", "chat",
+                "success", 0, 10L, 100, 1_000_000, 500_000, false));
+        recorder.record(new LlmUsageRecorder.CallRecord(Instant.now(), "unpriced", "other", "chat",
+                "success", 0, 10L, 100, 1_000, 1_000, false));
+
+        assertThat(meterRegistry.get("llm.call.cost").tag("provider", "groq").counter().count())
+                .isCloseTo(0.59 + 0.395, within(1e-9));
+        assertThat(recorder.snapshot().getByModel().get("groq/test-model").getCostUsd())
+                .isCloseTo(0.985, within(1e-9));
+        assertThat(recorder.snapshot().getByModel().get("unpriced/other").getCostUsd()).isZero();
+    }
+}
@@ -0,0 +1,92 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.progress.api.dto.RecommendationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("OptionPreRanker Tests")
+class OptionPreRankerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogNode node;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectNode root = objectMapper.createObjectNode().put("nextLevel", "M1 (1ère année Master)");
+        var options = root.putArray("availableOptions");
+        options.add(option("M_RSD", "Réseaux et Systèmes Distribués", "Réseaux", "Systèmes d'exploitation"));
+        options.add(option("M_IA", "Intelligence Artificielle", "Probabilités", "Algorithmique"));
+        options.add(option("M_SII", "Systèmes Informatiques Intelligents", "Algorithmique", "Logique"));
+        options.add(option("M_BIO", "Bioinformatique", "Biologie", "Statistiques"));
+        options.add(option("M_SEC", "Sécurité des Systèmes", "Cryptographie", "Réseaux"));
+        node = CatalogNode.of("test", root);
+    }
+
+    private ObjectNode option(String code, String name, String... keySubjects) {
+        ObjectNode option = objectMapper.createObjectNode().put("code", code).put("name", name);
+        ObjectNode weights = option.putObject("keySubjects");
+        for (String subject : keySubjects) {
+            weights.put(subject, 1.0);
+        }
+        return option;
+    }
+
+    private List<String> codes(CatalogNode shortlist) {
+        return shortlist.availableOptions().path("availableOptions").findValuesAsText("code");
+    }
+
+    @Test
+    @DisplayName("should keep the options that best match the stated preferences, in catalogue order")
+    void shouldKeepBestMatches() {
+        RecommendationRequest request = RecommendationRequest.builder()
+                .preferredSubjects(List.of("Algorithmique"))
+                .careerPreference("intelligence artificielle")
+                .build();
+
+        CatalogNode shortlist = new OptionPreRanker(2, meterRegistry)
+                .shortlist(node, GradeFeatures.empty(), request);
+
+        assertThat(codes(shortlist)).containsExactly("M_IA", "M_SII");
+        assertThat(shortlist.availableOptions().path("nextLevel").asText()).isEqualTo("M1 (1ère année Master)");
+        assertThat(meterRegistry.counter("recommendation.options.pruned").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("should match preferences through stemming")
+    void shouldMatchStems() {
+        RecommendationRequest request = RecommendationRequest.builder()
+                .preferredSubjects(List.of("réseau", "cryptographie"))
+                .build();
+
+        CatalogNode shortlist = new OptionPreRanker(1, meterRegistry)
+                .shortlist(node, GradeFeatures.empty(), request);
+
+        assertThat(codes(shortlist)).containsExactly("M_SEC");
+    }
+
+    @Test
+    @DisplayName("should fall back to catalogue order without any signal")
+    void shouldKeepCatalogueOrderWithoutSignal() {
+        CatalogNode shortlist = new OptionPreRanker(3, meterRegistry)
+                .shortlist(node, GradeFeatures.empty(), null);
+
+        assertThat(codes(shortlist)).containsExactly("M_RSD", "M_IA", "M_SII");
+    }
+
+    @Test
+    @DisplayName("should pass short lists through untouched")
+    void shouldPassShortListsThrough() {
+        CatalogNode shortlist = new OptionPreRanker(8, meterRegistry)
+                .shortlist(node, GradeFeatures.empty(), null);
+
+        assertThat(shortlist).isSameAs(node);
+    }
+}
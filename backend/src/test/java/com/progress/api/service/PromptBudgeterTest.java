@@ -0,0 +1,94 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("PromptBudgeter Tests")
+class PromptBudgeterTest {
+
+    private static final String SYSTEM = "You are an academic advisor.";
+    private static final String CLOSING = "Recommend the next step.";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private String lines(String prefix, int count) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            out.append(prefix).append(" line ").append(i).append('\n');
+        }
+        return out.toString();
+    }
+
+    private String build(int budget) {
+        return new PromptBudgeter(budget, meterRegistry)
+                .newPrompt("personal", SYSTEM)
+                .section("Status", "- Field: MI\n- Level: L2")
+                .section("Options", lines("option", 20))
+                .section("Grades", lines("grade", 200))
+                .section("Preferences", lines("preference", 200))
+                .build(CLOSING);
+    }
+
+    @Test
+    @DisplayName("should keep the prompt unchanged when it fits the budget")
+    void shouldKeepPromptWithinBudget() {
+        String prompt = build(100_000);
+
+        assertThat(prompt).doesNotContain(PromptBudgeter.TRUNCATION_MARKER);
+        assertThat(prompt).contains("grade line 199", "preference line 199");
+        assertThat(prompt).endsWith(CLOSING);
+        assertThat(meterRegistry.find("recommendation.prompt.truncated").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("should cut lower-priority sections first and stay within the budget")
+    void shouldTruncateByPriority() {
+        String prompt = build(600);
+
+        assertThat(TokenEstimator.estimateChat(SYSTEM, prompt)).isLessThanOrEqualTo(600);
+        assertThat(prompt).contains("- Level: L2", "option line 19", "## Grades", "grade line 0");
+        assertThat(prompt).doesNotContain("grade line 199", "## Preferences");
+        assertThat(prompt).endsWith(CLOSING);
+        assertThat(meterRegistry.counter("recommendation.prompt.truncated", "kind", "personal").count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("should truncate deterministically on line boundaries")
+    void shouldTruncateDeterministically() {
+        String first = build(600);
+        String second = build(600);
+
+        assertThat(first).isEqualTo(second);
+        assertThat(first).containsPattern("grade line \\d+\n\\Q" + PromptBudgeter.TRUNCATION_MARKER + "\\E");
+    }
+
+    @Test
+    @DisplayName("should cut a single oversized line by characters")
+    void shouldCutSingleLine() {
+        String truncated = PromptBudgeter.truncate("x".repeat(1_000), 20);
+
+        assertThat(TokenEstimator.estimate(truncated)).isLessThanOrEqualTo(20);
+        assertThat(truncated).startsWith("xxxx").endsWith(PromptBudgeter.TRUNCATION_MARKER);
+        assertThat(PromptBudgeter.truncate("x".repeat(1_000), 2)).isNull();
+    }
+
+    @Test
+    @DisplayName("should record the estimated input tokens")
+    void shouldRecordEstimatedTokens() {
+        String prompt = build(100_000);
+
+        var summary = meterRegistry.get("recommendation.prompt.tokens").tag("kind", "personal").summary();
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.totalAmount()).isEqualTo(TokenEstimator.estimateChat(SYSTEM, prompt));
+    }
+}
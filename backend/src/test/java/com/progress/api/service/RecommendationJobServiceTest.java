@@ -0,0 +1,125 @@
+package com.progress.api.service;
+
+import com.progress.api.dto.RecommendationJobResponse;
+import com.progress.api.dto.RecommendationJobResponse.JobStatus;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("RecommendationJobService Tests")
+class RecommendationJobServiceTest {
+
+    private RecommendationService recommendationService;
+    private SimpleMeterRegistry meterRegistry;
+    private RecommendationJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        recommendationService = mock(RecommendationService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        jobService = new RecommendationJobService(recommendationService, meterRegistry, 1, 1, 600, 15, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    private RecommendationResponse response() {
+        return RecommendationResponse.builder()
+                .recommendations(List.of())
+                .summary("done")
+                .build();
+    }
+
+    @Test
+    @DisplayName("should complete a queued job with the recommendation result")
+    void shouldCompleteJob() {
+        when(recommendationService.getRecommendations(anyString(), anyString(), any()))
+                .thenReturn(Mono.just(response()));
+
+        RecommendationJobResponse submitted = jobService.submit("test-uuid", "Bearer token", null);
+        assertThat(submitted.getStatus()).isEqualTo(JobStatus.QUEUED);
+
+        RecommendationJobResponse finished = jobService.awaitJob(submitted.getJobId(), "test-uuid")
+                .block(Duration.ofSeconds(5));
+
+        assertThat(finished.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(finished.getResult().getSummary()).isEqualTo("done");
+        assertThat(jobService.getJob(submitted.getJobId(), "test-uuid").getStatus())
+                .isEqualTo(JobStatus.COMPLETED);
+    }
+
+    @Test
+    @DisplayName("should record failures on the job instead of throwing")
+    void shouldRecordFailure() {
+        when(recommendationService.getRecommendations(anyString(), anyString(), any()))
+                .thenReturn(Mono.error(new ApiException("Session expired", HttpStatus.UNAUTHORIZED)));
+
+        RecommendationJobResponse submitted = jobService.submit("test-uuid", "Bearer token", null);
+        RecommendationJobResponse finished = jobService.awaitJob(submitted.getJobId(), "test-uuid")
+                .block(Duration.ofSeconds(5));
+
+        assertThat(finished.getStatus()).isEqualTo(JobStatus.FAILED);
+        assertThat(finished.getError()).isEqualTo("Session expired");
+    }
+
+    @Test
+    @DisplayName("should hide jobs from other students")
+    void shouldHideJobsFromOtherStudents() {
+        when(recommendationService.getRecommendations(anyString(), anyString(), any()))
+                .thenReturn(Mono.just(response()));
+
+        RecommendationJobResponse submitted = jobService.submit("owner-uuid", "Bearer token", null);
+
+        assertThatThrownBy(() -> jobService.getJob(submitted.getJobId(), "other-uuid"))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("should shed load with Retry-After when the queue is full")
+    void shouldShedLoadWhenQueueFull() {
+        Sinks.One<RecommendationResponse> blocker = Sinks.one();
+        when(recommendationService.getRecommendations(anyString(), anyString(), any()))
+                .thenReturn(blocker.asMono());
+
+        // one job occupies the single worker, one fills the single queue slot
+        RecommendationJobResponse running = jobService.submit("test-uuid", "Bearer token", null);
+        await(() -> jobService.getJob(running.getJobId(), "test-uuid").getStatus() == JobStatus.RUNNING);
+        jobService.submit("test-uuid", "Bearer token", null);
+
+        assertThatThrownBy(() -> jobService.submit("test-uuid", "Bearer token", null))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> {
+                    ApiException api = (ApiException) ex;
+                    assertThat(api.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(api.getRetryAfterSeconds()).isEqualTo(15L);
+                });
+        assertThat(meterRegistry.counter("recommendation.jobs.rejected").count()).isEqualTo(1.0);
+        assertThat(jobService.queueDepth()).isEqualTo(1);
+
+        blocker.tryEmitValue(response());
+    }
+
+    private void await(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationRequest;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("RecommendationService Tests")
+class RecommendationServiceTest {
+
+    private static final String STUDENT_DATA = """
+            [
+                {
+                    "id": 42,
+                    "llEtablissementLatin": "Université des Sciences et de la Technologie Houari Boumediène",
+                    "llFiliere": "Mathématiques et Informatique",
+                    "ofLlFiliere": "Informatique",
+                    "refLibelleNiveau": "Licence 2",
+                    "lastMoyenne": 13.25,
+                    "anneeAcademiqueCode": "2024/2025"
+                }
+            ]
+            """;
+
+    private static final String EXAM_DATA = """
+            [
+                {
+                    "periodeLibelleFr": "Semestre 3",
+                    "bilanUes": [
+                        {
+                            "ueLibelleFr": "UEF 1",
+                            "bilanMcs": [
+                                {"mcLibelleFr": "Algorithmique", "coefficient": 3, "moyenneGenerale": 15.5},
+                                {"mcLibelleFr": "Analyse 3", "coefficient": 2, "moyenneGenerale": 9.0}
+                            ]
+                        }
+                    ]
+                }
+            ]
+            """;
+
+    private static final String AI_CONTENT = """
+            {
+                "recommendations": [
+                    {"code": "L3_ISIL", "name": "Ingénierie des Systèmes d'Information et du Logiciel", "matchScore": 70},
+                    {"code": "L3_SI", "name": "Systèmes Informatiques", "matchScore": 85}
+                ],
+                "summary": "Strong algorithmic profile."
+            }
+            """;
+
+    private MockWebServer mockWebServer;
+    private RecommendationService recommendationService;
+    private CohortRecommendationCache cohortCache;
+    private AcademicCatalog catalog;
+    private PrecomputedRecommendationStore precomputedStore;
+    @TempDir
+    Path tempDir;
+    private final AtomicInteger groqCalls = new AtomicInteger();
+    private final AtomicInteger groqStatus = new AtomicInteger(200);
+    private final AtomicLong groqDelayMillis = new AtomicLong();
+    private final AtomicReference<String> aiContent = new AtomicReference<>(AI_CONTENT);
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicReference<String> lastGroqBody = new AtomicReference<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.endsWith("/dias")) {
+                    return json(STUDENT_DATA);
+                }
+                if (path.endsWith("/periode/bilans")) {
+                    return json(EXAM_DATA);
+                }
+                if (path.endsWith("/chat/completions")) {
+                    groqCalls.incrementAndGet();
+                    lastGroqBody.set(request.getBody().readUtf8());
+                    if (groqStatus.get() != 200) {
+                        return json("{\"error\": \"unavailable\"}").setResponseCode(groqStatus.get());
+                    }
+                    MockResponse response = lastGroqBody.get().contains("\"stream\":true")
+                            ? streamBody(aiContent.get())
+                            : json(groqBody(aiContent.get()));
+                    return response.setHeadersDelay(groqDelayMillis.get(), TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        mockWebServer.start();
+
+        String baseUrl = mockWebServer.url("/").toString();
+        WebClient webClient = WebClient.builder().baseUrl(baseUrl).build();
+        StudentService studentService = new StudentService(webClient, mock(ReactiveExternalTokenStore.class));
+
+        meterRegistry = new SimpleMeterRegistry();
+        OpenAiCompatibleClient groq = new OpenAiCompatibleClient("groq", "test-key", baseUrl, "test-model", 5000,
+                objectMapper, new LlmRateLimiter("groq", 1000, 1_000_000, 512, 0, 0, meterRegistry),
+                new LlmUsageRecorder(meterRegistry, 15, 1000));
+        LlmRouter llmRouter = new LlmRouter(List.of(groq), 10_000, meterRegistry);
+
+        cohortCache = new CohortRecommendationCache();
+        ReflectionTestUtils.setField(cohortCache, "enabled", true);
+        ReflectionTestUtils.setField(cohortCache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cohortCache, "maxEntries", 100);
+
+        catalog = new AcademicCatalog(objectMapper);
+        precomputedStore = new PrecomputedRecommendationStore(objectMapper, true,
+                tempDir.resolve("precomputed.json").toString(), 30);
+
+        recommendationService = new RecommendationService(
+                studentService, llmRouter, catalog, cohortCache, precomputedStore,
+                new PromptBudgeter(4000, new SimpleMeterRegistry()), new RuleBasedRecommender(new SimpleMeterRegistry()),
+                new AiResponseParser(objectMapper, meterRegistry), new OptionPreRanker(8, meterRegistry),
+                objectMapper, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    private MockResponse json(String body) {
+        return new MockResponse().setBody(body).addHeader("Content-Type", "application/json");
+    }
+
+    private String groqBody(String content) {
+        var root = objectMapper.createObjectNode();
+        root.putArray("choices").addObject().putObject("message").put("content", content);
+        return root.toString();
+    }
+
+    private MockResponse streamBody(String content) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < content.length(); i += 16) {
+            var chunk = objectMapper.createObjectNode();
+            chunk.putArray("choices").addObject().putObject("delta")
+                    .put("content", content.substring(i, Math.min(content.length(), i + 16)));
+            body.append("data: ").append(chunk).append("\n\n");
+        }
+        body.append("data: [DONE]\n\n");
+        return new MockResponse().setBody(body.toString()).addHeader("Content-Type", "text/event-stream");
+    }
+
+    private RecommendationRequest preferences() {
+        return RecommendationRequest.builder()
+                .preferredSubjects(List.of("Algorithmique"))
+                .build();
+    }
+
+    @Nested
+    @DisplayName("Personalised Recommendations")
+    class PersonalisedRecommendations {
+
+        @Test
+        @DisplayName("should return recommendations sorted by match score")
+        void shouldReturnSortedRecommendations() {
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", preferences())
+                    .block();
+
+            assertThat(response).isNotNull();
+            assertThat(response.isUniversitySupported()).isTrue();
+            assertThat(response.isFieldSupported()).isTrue();
+            assertThat(response.getModel()).isEqualTo("test-model");
+            assertThat(response.getRecommendations())
+                    .extracting(RecommendationResponse.Recommendation::getCode)
+                    .containsExactly("L3_SI", "L3_ISIL");
+        }
+
+        @Test
+        @DisplayName("should send a compact grade profile instead of the raw bilans")
+        void shouldSendCompactGradeProfile() {
+            recommendationService.getRecommendations("test-uuid", "Bearer token", preferences()).block();
+
+            String body = lastGroqBody.get();
+            assertThat(body).contains("## Grade Profile");
+            assertThat(body).contains("UEF 1 | Algorithmique | 15.50 | 3");
+            assertThat(body).doesNotContain("bilanUes", "moyenneGenerale");
+        }
+
+        @Test
+        @DisplayName("should truncate oversized additional context to the prompt budget")
+        void shouldTruncateOversizedContext() throws IOException {
+            RecommendationRequest request = preferences();
+            request.setAdditionalContext("I like building things. ".repeat(2000));
+
+            recommendationService.getRecommendations("test-uuid", "Bearer token", request).block();
+
+            var messages = objectMapper.readTree(lastGroqBody.get()).path("messages");
+            String systemPrompt = messages.get(0).path("content").asText();
+            String userPrompt = messages.get(1).path("content").asText();
+            assertThat(userPrompt).contains("## Grade Profile", PromptBudgeter.TRUNCATION_MARKER);
+            assertThat(TokenEstimator.estimateChat(systemPrompt, userPrompt)).isLessThanOrEqualTo(4000);
+        }
+
+        @Test
+        @DisplayName("should rank locally without calling the LLM in quick mode")
+        void shouldRankLocallyInQuickMode() {
+            RecommendationRequest request = preferences();
+            request.setMode("quick");
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", request)
+                    .block();
+
+            assertThat(groqCalls.get()).isZero();
+            assertThat(response.getModel()).isEqualTo(RuleBasedRecommender.MODEL);
+            assertThat(response.isFieldSupported()).isTrue();
+            assertThat(response.getRecommendations()).isNotEmpty();
+            assertThat(response.getRecommendations())
+                    .extracting(RecommendationResponse.Recommendation::getMatchScore)
+                    .isSortedAccordingTo((a, b) -> Integer.compare(b, a));
+        }
+
+        @Test
+        @DisplayName("should fall back to the rule-based ranking when the LLM fails")
+        void shouldFallBackWhenLlmFails() {
+            groqStatus.set(500);
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", preferences())
+                    .block();
+
+            assertThat(groqCalls.get()).isEqualTo(1);
+            assertThat(response.getModel()).isEqualTo(RuleBasedRecommender.MODEL);
+            assertThat(response.getSummary()).contains("temporarily unavailable");
+            assertThat(response.getRecommendations()).isNotEmpty();
+        }
+
+        @Test
+        @DisplayName("should repair malformed LLM output locally instead of calling again")
+        void shouldRepairMalformedOutput() {
+            aiContent.set("""
+                    Here are my recommendations:
+                    ```json
+                    {'recommendations': [
+                        {"code": "L3_SI", "name": "Systèmes Informatiques", "matchScore": "85"},
+                        {"code": "L3_MADE_UP", "name": "Invented", "matchScore": 99},
+                        {"code": "L3_ISIL", "name": "Ingénierie des Systèmes d'Information et du Logiciel", "matchScore": 70},
+                        {"code": "L3_ISIL", "name": "Ingénierie des Sys""");
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", preferences())
+                    .block();
+
+            assertThat(response.getModel()).isEqualTo("test-model");
+            assertThat(response.getRecommendations())
+                    .extracting(RecommendationResponse.Recommendation::getCode)
+                    .containsExactly("L3_SI", "L3_ISIL");
+            assertThat(groqCalls.get()).isEqualTo(1);
+            assertThat(meterRegistry.counter("recommendation.llm_output", "result", "repaired").count())
+                    .isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should propagate PROGRES errors as ApiException")
+        void shouldPropagateStudentDataErrors() {
+            mockWebServer.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    return json("{\"error\": \"Unauthorized\"}").setResponseCode(401);
+                }
+            });
+
+            assertThatThrownBy(() -> recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", preferences())
+                    .block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.UNAUTHORIZED));
+        }
+    }
+
+    @Nested
+    @DisplayName("Cohort Recommendations")
+    class CohortRecommendations {
+
+        @Test
+        @DisplayName("should reuse cohort recommendations without calling the LLM again")
+        void shouldReuseCohortRecommendations() {
+            RecommendationResponse first = recommendationService
+                    .getRecommendations("student-a", "Bearer token", null)
+                    .block();
+            RecommendationResponse second = recommendationService
+                    .getRecommendations("student-b", "Bearer token", new RecommendationRequest())
+                    .block();
+
+            assertThat(groqCalls.get()).isEqualTo(1);
+            assertThat(cohortCache.size()).isEqualTo(1);
+            assertThat(second.getRecommendations()).isEqualTo(first.getRecommendations());
+            assertThat(second.isFieldSupported()).isTrue();
+        }
+
+        private void storeBaseline() {
+            CatalogPosition position = catalog.positions().stream()
+                    .filter(p -> p.field().equals("Mathématiques et Informatique") && p.levelCode().equals("L2")
+                            && "Informatique".equals(p.major()))
+                    .findFirst()
+                    .orElseThrow();
+            RecommendationResponse baseline = RecommendationResponse.builder()
+                    .recommendations(List.of(RecommendationResponse.Recommendation.builder()
+                            .code("L3_SI").name("Systèmes Informatiques").matchScore(80).build()))
+                    .summary("Precomputed.")
+                    .model("batch-model")
+                    .build();
+            CohortProfile.averageBands().forEach(band -> precomputedStore.put(position.node(), band, baseline));
+        }
+
+        @Test
+        @DisplayName("should serve a precomputed baseline without calling the LLM")
+        void shouldServePrecomputedBaseline() {
+            storeBaseline();
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", null)
+                    .block();
+
+            assertThat(groqCalls.get()).isZero();
+            assertThat(response.getSummary()).isEqualTo("Precomputed.");
+            assertThat(response.getModel()).isEqualTo("batch-model");
+            assertThat(response.getCurrentStatus()).isNotNull();
+            assertThat(response.isFieldSupported()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should serve a precomputed baseline while the cohort cache is disabled")
+        void shouldServePrecomputedBaselineWithoutCohortCache() {
+            ReflectionTestUtils.setField(cohortCache, "enabled", false);
+            storeBaseline();
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", null)
+                    .block();
+
+            assertThat(groqCalls.get()).isZero();
+            assertThat(response.getSummary()).isEqualTo("Precomputed.");
+            assertThat(cohortCache.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should not cache the fallback ranking when the LLM fails")
+        void shouldNotCacheFallback() {
+            groqStatus.set(429);
+
+            RecommendationResponse response = recommendationService
+                    .getRecommendations("student-a", "Bearer token", null)
+                    .block();
+
+            assertThat(response.getModel()).isEqualTo(RuleBasedRecommender.MODEL);
+            assertThat(cohortCache.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Streaming Recommendations")
+    class StreamingRecommendations {
+
+        @Test
+        @DisplayName("should stream status, a preliminary ranking, each recommendation, then the sorted response")
+        void shouldStreamEventsInOrder() {
+            List<ServerSentEvent<Object>> events = recommendationService
+                    .streamRecommendations("test-uuid", "Bearer token", preferences())
+                    .collectList()
+                    .block();
+
+            assertThat(events).extracting(ServerSentEvent::event)
+                    .containsExactly("status", "preliminary", "recommendation", "recommendation", "complete");
+            assertThat(((RecommendationResponse) events.get(1).data()).getModel())
+                    .isEqualTo(RuleBasedRecommender.MODEL);
+            assertThat(((RecommendationResponse.Recommendation) events.get(2).data()).getCode())
+                    .isEqualTo("L3_ISIL");
+
+            RecommendationResponse complete = (RecommendationResponse) events.get(4).data();
+            assertThat(complete.getSummary()).isEqualTo("Strong algorithmic profile.");
+            assertThat(complete.getRecommendations())
+                    .extracting(RecommendationResponse.Recommendation::getCode)
+                    .containsExactly("L3_SI", "L3_ISIL");
+        }
+
+        @Test
+        @DisplayName("should share one LLM stream between concurrent students of a cohort")
+        void shouldCoalesceCohortStreams() {
+            groqDelayMillis.set(500);
+
+            Mono<List<ServerSentEvent<Object>>> first = recommendationService
+                    .streamRecommendations("student-a", "Bearer token", null)
+                    .collectList();
+            Mono<List<ServerSentEvent<Object>>> second = recommendationService
+                    .streamRecommendations("student-b", "Bearer token", null)
+                    .collectList();
+            var pendingFirst = first.toFuture();
+            var pendingSecond = second.toFuture();
+
+            for (List<ServerSentEvent<Object>> events : List.of(pendingFirst.join(), pendingSecond.join())) {
+                assertThat(events).extracting(ServerSentEvent::event)
+                        .containsExactly("status", "recommendation", "recommendation", "complete");
+                RecommendationResponse complete = (RecommendationResponse) events.get(3).data();
+                assertThat(complete.getCurrentStatus()).isSameAs(events.get(0).data());
+                assertThat(complete.isFieldSupported()).isTrue();
+            }
+            assertThat(groqCalls.get()).isEqualTo(1);
+            assertThat(cohortCache.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should end the stream with an error event on failure")
+        void shouldEmitErrorEvent() {
+            mockWebServer.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    return json("{\"error\": \"Unauthorized\"}").setResponseCode(401);
+                }
+            });
+
+            List<ServerSentEvent<Object>> events = recommendationService
+                    .streamRecommendations("test-uuid", "Bearer token", preferences())
+                    .collectList()
+                    .block();
+
+            assertThat(events).extracting(ServerSentEvent::event).containsExactly("error");
+        }
+
+        @Test
+        @DisplayName("should complete with the rule-based ranking when the LLM stream fails")
+        void shouldCompleteWithFallback() {
+            groqStatus.set(503);
+
+            List<ServerSentEvent<Object>> events = recommendationService
+                    .streamRecommendations("test-uuid", "Bearer token", preferences())
+                    .collectList()
+                    .block();
+
+            assertThat(events).extracting(ServerSentEvent::event)
+                    .containsExactly("status", "preliminary", "complete");
+            assertThat(((RecommendationResponse) events.get(2).data()).getModel())
+                    .isEqualTo(RuleBasedRecommender.MODEL);
+        }
+    }
+
+    @Nested
+    @DisplayName("Cancellation")
+    class Cancellation {
+
+        private void awaitGroqCall() throws InterruptedException {
+            for (int i = 0; i < 100 && groqCalls.get() == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertThat(groqCalls.get()).isEqualTo(1);
+        }
+
+        private double cancelledLlmCalls(String mode) {
+            var timer = meterRegistry.find("llm.call.latency").tags("mode", mode, "outcome", "cancelled").timer();
+            return timer == null ? 0 : timer.count();
+        }
+
+        @Test
+        @DisplayName("should cancel the in-flight LLM call when the caller goes away")
+        void shouldCancelLlmCall() throws InterruptedException {
+            groqDelayMillis.set(5000);
+
+            Disposable request = recommendationService
+                    .getRecommendations("test-uuid", "Bearer token", preferences())
+                    .subscribe();
+            awaitGroqCall();
+            request.dispose();
+
+            assertThat(cancelledLlmCalls("chat")).isEqualTo(1.0);
+            assertThat(meterRegistry.counter("recommendation.abandoned", "mode", "sync").count()).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should cancel the LLM stream when the SSE subscriber goes away")
+        void shouldCancelLlmStream() throws InterruptedException {
+            groqDelayMillis.set(5000);
+
+            Disposable stream = recommendationService
+                    .streamRecommendations("test-uuid", "Bearer token", preferences())
+                    .subscribe();
+            awaitGroqCall();
+            stream.dispose();
+
+            assertThat(cancelledLlmCalls("stream")).isEqualTo(1.0);
+            assertThat(meterRegistry.counter("recommendation.abandoned", "mode", "stream").count()).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should not count completed requests as abandoned")
+        void shouldNotCountCompletedRequests() {
+            recommendationService.getRecommendations("test-uuid", "Bearer token", preferences()).block();
+
+            assertThat(meterRegistry.find("recommendation.abandoned").counter()).isNull();
+        }
+    }
+}
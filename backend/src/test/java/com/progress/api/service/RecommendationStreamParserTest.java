@@ -0,0 +1,70 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("RecommendationStreamParser Tests")
+class RecommendationStreamParserTest {
+
+    private static final String CONTENT = """
+            {"recommendations": [
+              {"code": "L3_SI", "name": "Systèmes {Informatiques}", "keySubjects": ["Algo", "SE"], "matchScore": 85},
+              {"code": "L3_ISIL", "name": "Ingénierie \\"Logiciel\\"", "matchScore": 70}
+            ], "summary": "Profile with [brackets] and {braces}"}
+            """;
+
+    private RecommendationStreamParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new RecommendationStreamParser(new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("should emit each recommendation once its object is complete")
+    void shouldEmitCompletedObjects() {
+        List<JsonNode> emitted = new ArrayList<>();
+        int firstObjectEnd = CONTENT.indexOf("},") + 1;
+
+        emitted.addAll(parser.feed(CONTENT.substring(0, firstObjectEnd - 1)));
+        assertThat(emitted).isEmpty();
+
+        emitted.addAll(parser.feed(CONTENT.substring(firstObjectEnd - 1, firstObjectEnd)));
+        assertThat(emitted).extracting(node -> node.path("code").asText()).containsExactly("L3_SI");
+
+        emitted.addAll(parser.feed(CONTENT.substring(firstObjectEnd)));
+        assertThat(emitted).extracting(node -> node.path("code").asText()).containsExactly("L3_SI", "L3_ISIL");
+    }
+
+    @Test
+    @DisplayName("should ignore braces inside strings when fed one character at a time")
+    void shouldIgnoreBracesInsideStrings() {
+        List<JsonNode> emitted = new ArrayList<>();
+        for (char c : CONTENT.toCharArray()) {
+            emitted.addAll(parser.feed(String.valueOf(c)));
+        }
+
+        assertThat(emitted).hasSize(2);
+        assertThat(emitted.get(0).path("name").asText()).isEqualTo("Systèmes {Informatiques}");
+        assertThat(emitted.get(1).path("name").asText()).isEqualTo("Ingénierie \"Logiciel\"");
+        assertThat(parser.content()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("should not emit objects outside the recommendations array")
+    void shouldNotEmitObjectsOutsideRecommendations() {
+        List<JsonNode> emitted = parser.feed("""
+                {"meta": [{"code": "X"}], "recommendations": [{"code": "A"}], "other": [{"code": "Y"}]}
+                """);
+
+        assertThat(emitted).extracting(node -> node.path("code").asText()).containsExactly("A");
+    }
+}
@@ -0,0 +1,282 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("RedisExternalTokenStore Tests")
+class RedisExternalTokenStoreTest {
+
+    private StringRedisTemplate redisTemplate;
+    private HashOperations<String, Object, Object> hashOperations;
+    private ValueOperations<String, String> valueOperations;
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private ReactiveHashOperations<String, Object, Object> reactiveHashOperations;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        valueOperations = mock(ValueOperations.class);
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(hashOperations.entries("ext:session:uuid-1")).thenReturn(Map.of(
+                "token", "external",
+                "ver", "7",
+                "cards", "card-1,card-2",
+                "cards_exp", String.valueOf(System.currentTimeMillis() + 60000)));
+        reactiveRedisTemplate = mock(ReactiveStringRedisTemplate.class);
+        reactiveHashOperations = mock(ReactiveHashOperations.class);
+        doReturn(reactiveHashOperations).when(reactiveRedisTemplate).opsForHash();
+        when(reactiveHashOperations.entries(anyString())).thenReturn(Flux.empty());
+        when(reactiveHashOperations.entries("ext:session:uuid-1")).thenReturn(Flux.fromIterable(Map.<Object, Object>of(
+                "token", "external",
+                "ver", "7",
+                "cards", "card-1",
+                "cards_exp", String.valueOf(System.currentTimeMillis() + 60000)).entrySet()));
+        when(reactiveRedisTemplate.opsForValue()).thenReturn(mock(ReactiveValueOperations.class));
+        when(reactiveRedisTemplate.opsForValue().get(anyString())).thenReturn(Mono.empty());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(RedisExternalTokenStore.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RedisExternalTokenStore store(long nearCacheTtl) {
+        return new RedisExternalTokenStore(redisTemplate, reactiveRedisTemplate, mock(RedisMessageListenerContainer.class),
+                meterRegistry, nearCacheTtl, 100);
+    }
+
+    @Nested
+    @DisplayName("Session hash")
+    class SessionHash {
+
+        @Test
+        @DisplayName("should read token, version and cards with one call")
+        void shouldReadWholeSession() {
+            RedisExternalTokenStore store = store(0);
+
+            assertThat(store.retrieveSession("uuid-1")).contains(new ExternalTokenStore.Session("external", 7));
+            verify(hashOperations, times(1)).entries(anyString());
+            assertThat(store.getAllowedCards("uuid-1")).contains(Set.of("card-1", "card-2"));
+        }
+
+        @Test
+        @DisplayName("should not return cards past their own expiry")
+        void shouldExpireCards() {
+            when(hashOperations.entries("ext:session:uuid-1")).thenReturn(Map.of(
+                    "token", "external", "cards", "card-1", "cards_exp", "1"));
+
+            assertThat(store(0).getAllowedCards("uuid-1")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should fall back to a token stored before the session hash")
+        void shouldReadLegacyToken() {
+            when(hashOperations.entries("ext:session:uuid-2")).thenReturn(Map.of("ver", "3"));
+            when(valueOperations.get("ext:token:uuid-2")).thenReturn("legacy");
+
+            assertThat(store(0).retrieveSession("uuid-2")).contains(new ExternalTokenStore.Session("legacy", 3));
+        }
+
+        @Test
+        @DisplayName("should write each change with a single script call")
+        @SuppressWarnings("unchecked")
+        void shouldWriteAtomically() {
+            RedisExternalTokenStore store = store(0);
+
+            store.store("uuid-1", "external", 60000);
+            store.storeAllowedCards("uuid-1", Set.of("card-1"), 60000);
+            store.remove("uuid-1");
+
+            verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+            verify(redisTemplate, never()).delete(anyString());
+        }
+    }
+
+    @Nested
+    @DisplayName("Near-cache")
+    class NearCacheBehaviour {
+
+        @Test
+        @DisplayName("should serve session and cards from one cached read")
+        void shouldServeFromNearCache() {
+            RedisExternalTokenStore store = store(60000);
+
+            store.retrieveSession("uuid-1");
+            store.retrieve("uuid-1");
+            store.getAllowedCards("uuid-1");
+
+            verify(hashOperations, times(1)).entries(anyString());
+            assertThat(meterRegistry.counter("token.store.near_cache.requests", "cache", "session", "result", "hit")
+                    .count()).isEqualTo(2.0);
+        }
+
+        @Test
+        @DisplayName("should not cache missing sessions")
+        void shouldNotCacheMisses() {
+            RedisExternalTokenStore store = store(60000);
+
+            assertThat(store.retrieveSession("uuid-2")).isEmpty();
+            assertThat(store.retrieveSession("uuid-2")).isEmpty();
+
+            verify(hashOperations, times(2)).entries("ext:session:uuid-2");
+        }
+
+        @Test
+        @DisplayName("should drop the local copy and notify other instances on write")
+        void shouldInvalidateOnWrite() {
+            RedisExternalTokenStore store = store(60000);
+            store.retrieveSession("uuid-1");
+
+            store.remove("uuid-1");
+            store.retrieveSession("uuid-1");
+
+            verify(redisTemplate).convertAndSend(eq(RedisExternalTokenStore.INVALIDATION_CHANNEL), endsWith("/uuid-1"));
+            verify(hashOperations, times(2)).entries(anyString());
+        }
+
+        @Test
+        @DisplayName("should publish a version only when it was started")
+        @SuppressWarnings("unchecked")
+        void shouldPublishNewVersionOnly() {
+            RedisExternalTokenStore store = store(60000);
+            when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                    .thenReturn(List.of(7L, 0L), List.of(8L, 1L));
+
+            assertThat(store.sessionVersion("uuid-1", 60000)).isEqualTo(7);
+            verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+
+            assertThat(store.sessionVersion("uuid-1", 60000)).isEqualTo(8);
+            verify(redisTemplate).convertAndSend(eq(RedisExternalTokenStore.INVALIDATION_CHANNEL), endsWith("/uuid-1"));
+        }
+
+        @Test
+        @DisplayName("should drop only the local copy when cards are written")
+        void shouldNotPublishCards() {
+            RedisExternalTokenStore store = store(60000);
+            store.retrieveSession("uuid-1");
+
+            store.storeAllowedCards("uuid-1", Set.of("card-3"), 60000);
+            store.retrieveSession("uuid-1");
+
+            verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+            verify(hashOperations, times(2)).entries("ext:session:uuid-1");
+        }
+
+        @Test
+        @DisplayName("should keep a value whose load raced only with another key's invalidation")
+        void shouldInvalidatePerKey() {
+            RedisExternalTokenStore store = store(60000);
+            when(hashOperations.entries("ext:session:uuid-1")).thenAnswer(invocation -> {
+                store.onMessage(message("uuid-2"), null);
+                return Map.of("token", "external", "ver", "7");
+            });
+
+            store.retrieveSession("uuid-1");
+            store.retrieveSession("uuid-1");
+
+            verify(hashOperations, times(1)).entries("ext:session:uuid-1");
+        }
+
+        @Test
+        @DisplayName("should drop a value whose own key was invalidated during the load")
+        void shouldNotCacheRacedLoad() {
+            RedisExternalTokenStore store = store(60000);
+            when(hashOperations.entries("ext:session:uuid-1")).thenAnswer(invocation -> {
+                store.onMessage(message("uuid-1"), null);
+                return Map.of("token", "external", "ver", "7");
+            });
+
+            store.retrieveSession("uuid-1");
+            store.retrieveSession("uuid-1");
+
+            verify(hashOperations, times(2)).entries("ext:session:uuid-1");
+        }
+
+        @Test
+        @DisplayName("should keep the local copy when its own invalidation comes back")
+        void shouldIgnoreOwnMessage() {
+            RedisExternalTokenStore store = store(60000);
+            store.remove("uuid-1");
+            ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+            verify(redisTemplate).convertAndSend(eq(RedisExternalTokenStore.INVALIDATION_CHANNEL), published.capture());
+            store.retrieveSession("uuid-1");
+
+            store.onMessage(message(published.getValue()), null);
+            store.retrieveSession("uuid-1");
+
+            verify(hashOperations, times(1)).entries(anyString());
+        }
+
+        @Test
+        @DisplayName("should drop the local copy when another instance writes")
+        void shouldInvalidateOnMessage() {
+            RedisExternalTokenStore store = store(60000);
+            store.retrieveSession("uuid-1");
+
+            store.onMessage(message("uuid-1"), null);
+            when(hashOperations.entries("ext:session:uuid-1")).thenReturn(Map.of("ver", "8"));
+
+            assertThat(store.retrieveSession("uuid-1")).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Reactive reads")
+    class ReactiveReads {
+
+        @Test
+        @DisplayName("should read cards without the blocking client")
+        void shouldReadCardsReactively() {
+            assertThat(store(0).findAllowedCards("uuid-1").block()).containsExactly("card-1");
+
+            verifyNoInteractions(hashOperations);
+        }
+
+        @Test
+        @DisplayName("should return the sessions of a batch, leaving out missing ones")
+        void shouldReadBatch() {
+            Map<String, ExternalTokenStore.Session> sessions =
+                    store(60000).findSessions(List.of("uuid-1", "uuid-2")).block();
+
+            assertThat(sessions).containsOnlyKeys("uuid-1");
+            assertThat(sessions.get("uuid-1").version()).isEqualTo(7);
+        }
+
+        @Test
+        @DisplayName("should share the near-cache with blocking reads")
+        void shouldShareNearCache() {
+            RedisExternalTokenStore store = store(60000);
+            store.retrieveSession("uuid-1");
+
+            assertThat(store.findSession("uuid-1").block()).isEqualTo(new ExternalTokenStore.Session("external", 7));
+
+            verify(reactiveHashOperations, never()).entries("ext:session:uuid-1");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.progress.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("RedisTokenBlacklist Tests")
+class RedisTokenBlacklistTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private SimpleMeterRegistry meterRegistry;
+    private RedisTokenBlacklist blacklist;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> cursor());
+        meterRegistry = new SimpleMeterRegistry();
+        blacklist = new RedisTokenBlacklist(redisTemplate, mock(RedisMessageListenerContainer.class),
+                meterRegistry, 1000, 0.01);
+        blacklist.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursor(String... keys) {
+        Cursor<String> cursor = mock(Cursor.class);
+        Iterator<String> iterator = List.of(keys).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private static String key(String token) {
+        return RedisTokenBlacklist.KEY_PREFIX + TokenDigest.of(token).toHex();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter("token.blacklist.lookups", "result", result).count();
+    }
+
+    @Nested
+    @DisplayName("Revocation")
+    class Revocation {
+
+        @Test
+        @DisplayName("should store the digest with the remaining lifetime and announce it")
+        void shouldStoreAndPublish() {
+            blacklist.blacklist("header.payload.signature", System.currentTimeMillis() + 60000);
+
+            verify(valueOperations).set(eq(key("header.payload.signature")), eq("1"),
+                    argThat((Duration ttl) -> ttl.toMillis() > 0 && ttl.toMillis() <= 60000));
+            verify(redisTemplate).convertAndSend(RedisTokenBlacklist.CHANNEL,
+                    TokenDigest.of("header.payload.signature").toHex());
+        }
+
+        @Test
+        @DisplayName("should skip tokens that have already expired")
+        void shouldSkipExpiredTokens() {
+            blacklist.blacklist("header.payload.signature", System.currentTimeMillis() - 1);
+
+            verifyNoInteractions(valueOperations);
+        }
+    }
+
+    @Nested
+    @DisplayName("Lookup")
+    class Lookup {
+
+        @Test
+        @DisplayName("should answer unknown tokens locally without calling Redis")
+        void shouldFilterUnknownTokens() {
+            assertThat(blacklist.isBlacklisted("never.revoked.token")).isFalse();
+
+            verify(redisTemplate, never()).hasKey(anyString());
+            assertThat(lookups("filtered")).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should confirm filter hits against Redis")
+        void shouldConfirmFilterHits() {
+            blacklist.blacklist("revoked.token", System.currentTimeMillis() + 60000);
+            when(redisTemplate.hasKey(key("revoked.token"))).thenReturn(true);
+
+            assertThat(blacklist.isBlacklisted("revoked.token")).isTrue();
+            assertThat(lookups("revoked")).isEqualTo(1.0);
+        }
+
+        @Test
+        @DisplayName("should learn revocations made on other instances")
+        void shouldLearnFromMessages() {
+            String hex = TokenDigest.of("revoked.elsewhere").toHex();
+            when(redisTemplate.hasKey(key("revoked.elsewhere"))).thenReturn(true);
+
+            blacklist.onMessage(new DefaultMessage(RedisTokenBlacklist.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    hex.getBytes(StandardCharsets.UTF_8)), null);
+
+            assertThat(blacklist.isBlacklisted("revoked.elsewhere")).isTrue();
+        }
+
+        @Test
+        @DisplayName("should load existing revocations when the filter is rebuilt")
+        void shouldRebuildFromRedis() {
+            when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> cursor(key("revoked.before")));
+            when(redisTemplate.hasKey(key("revoked.before"))).thenReturn(true);
+
+            blacklist.rebuildFilter();
+
+            assertThat(blacklist.isBlacklisted("revoked.before")).isTrue();
+        }
+
+        @Test
+        @DisplayName("should reject a possibly revoked token when Redis is unavailable")
+        void shouldFailClosedOnRedisError() {
+            blacklist.blacklist("revoked.token", System.currentTimeMillis() + 60000);
+            when(redisTemplate.hasKey(anyString())).thenThrow(new IllegalStateException("connection refused"));
+
+            assertThat(blacklist.isBlacklisted("revoked.token")).isTrue();
+            assertThat(lookups("error")).isEqualTo(1.0);
+        }
+    }
+
+    @Nested
+    @DisplayName("Bloom filter")
+    class Filter {
+
+        @Test
+        @DisplayName("should never miss an inserted digest and stay near its false positive rate")
+        void shouldHoldFalsePositiveRate() {
+            BloomFilter filter = new BloomFilter(10000, 0.01);
+            for (int i = 0; i < 10000; i++) {
+                TokenDigest digest = TokenDigest.of("revoked-" + i);
+                filter.put(digest);
+                assertThat(filter.mightContain(digest)).isTrue();
+            }
+
+            int falsePositives = 0;
+            for (int i = 0; i < 10000; i++) {
+                if (filter.mightContain(new TokenDigest(ThreadLocalRandom.current().nextLong(),
+                        ThreadLocalRandom.current().nextLong()))) {
+                    falsePositives++;
+                }
+            }
+            assertThat(falsePositives).isLessThan(300);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.progress.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.progress.api.dto.RecommendationRequest;
+import com.progress.api.dto.RecommendationResponse;
+import com.progress.api.dto.RecommendationResponse.CurrentStatus;
+import com.progress.api.dto.RecommendationResponse.Recommendation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("RuleBasedRecommender Tests")
+class RuleBasedRecommenderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private RuleBasedRecommender recommender;
+    private JsonNode options;
+    private GradeFeatures features;
+    private CurrentStatus status;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        recommender = new RuleBasedRecommender(meterRegistry);
+        AcademicCatalog catalog = new AcademicCatalog(objectMapper);
+        JsonNode structure = catalog.lookupUniversity("Université des Sciences et de la Technologie Houari Boumediène")
+                .structure();
+        options = catalog.findAvailableOptions(structure, "Mathématiques et Informatique", "Licence 2",
+                "Informatique", null);
+        try (InputStream is = new ClassPathResource("fixtures/bilans-l2-informatique.json").getInputStream()) {
+            features = GradeFeatures.extract(objectMapper.readTree(is));
+        }
+        status = CurrentStatus.builder().level("Licence 2").currentAverage(12.0).build();
+    }
+
+    @Test
+    @DisplayName("should rank options by the student's weighted key-subject grades")
+    void shouldRankByKeySubjects() {
+        RecommendationResponse response = recommender.recommend(status, options, features, null,
+                RuleBasedRecommender.TRIGGER_QUICK);
+
+        List<Recommendation> recommendations = response.getRecommendations();
+        assertThat(recommendations).hasSize(options.path("availableOptions").size());
+        assertThat(recommendations.get(0).getCode()).isEqualTo("L3_ISIL");
+        // Génie logiciel (x2) is not on the transcript yet and counts at the overall average
+        double fit = (14.5 * 3 + features.overallAverage() * 2 + 13.0 * 2 + 16.0) / 8;
+        assertThat(recommendations.get(0).getMatchScore()).isEqualTo((int) Math.round(fit * 5));
+        assertThat(recommendations.get(0).getReasoning())
+                .contains("Bases de données 14.50/20", "Not yet studied: Génie logiciel");
+        assertThat(recommendations).extracting(Recommendation::getMatchScore)
+                .isSortedAccordingTo((a, b) -> Integer.compare(b, a));
+        assertThat(response.getModel()).isEqualTo(RuleBasedRecommender.MODEL);
+        assertThat(meterRegistry.counter("recommendation.rule_based", "trigger", "quick").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("should give a bonus to options matching the student's preferences")
+    void shouldApplyPreferenceBonus() {
+        RecommendationRequest request = RecommendationRequest.builder()
+                .preferredSubjects(List.of("Réseaux"))
+                .build();
+
+        int without = scoreOf(recommender.recommend(status, options, features, null,
+                RuleBasedRecommender.TRIGGER_QUICK), "L3_RSD");
+        int with = scoreOf(recommender.recommend(status, options, features, request,
+                RuleBasedRecommender.TRIGGER_QUICK), "L3_RSD");
+
+        assertThat(with).isEqualTo(without + 5);
+    }
+
+    @Test
+    @DisplayName("should rank on the overall average when there are no grades")
+    void shouldUseAverageWithoutGrades() {
+        RecommendationResponse response = recommender.recommend(status, options, GradeFeatures.empty(), null,
+                RuleBasedRecommender.TRIGGER_FALLBACK);
+
+        assertThat(response.getRecommendations()).allSatisfy(recommendation ->
+                assertThat(recommendation.getMatchScore()).isEqualTo(60));
+        assertThat(response.getSummary()).contains("temporarily unavailable");
+    }
+
+    private int scoreOf(RecommendationResponse response, String code) {
+        return response.getRecommendations().stream()
+                .filter(recommendation -> recommendation.getCode().equals(code))
+                .findFirst()
+                .orElseThrow()
+                .getMatchScore();
+    }
+}
@@ -0,0 +1,159 @@
+package com.progress.api.service;
+
+import com.progress.api.service.SessionJournal.Change;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SessionJournal Tests")
+class SessionJournalTest {
+
+    private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+    private static final String OTHER_KEY = "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=";
+
+    @TempDir
+    Path directory;
+
+    private SessionJournal open(String key) {
+        return new SessionJournal(directory.toString(), key);
+    }
+
+    private static List<Change> replay(SessionJournal journal) throws IOException {
+        List<Change> changes = new ArrayList<>();
+        journal.replay(changes::add);
+        return changes;
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("should replay appended changes in order after a restart")
+    void shouldReplayChanges() throws IOException {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        journal.append(Change.token("uuid-1", "external", 1000L));
+        journal.append(Change.cards("uuid-1", Set.of("card-1", "card-2"), 2000L));
+        journal.append(Change.version("uuid-1", 42L, 3000L));
+        journal.append(Change.remove("uuid-1"));
+        journal.append(Change.clear());
+        journal.close();
+
+        assertThat(replay(open(KEY))).containsExactly(
+                Change.token("uuid-1", "external", 1000L),
+                Change.cards("uuid-1", Set.of("card-1", "card-2"), 2000L),
+                Change.version("uuid-1", 42L, 3000L),
+                Change.remove("uuid-1"),
+                Change.clear());
+    }
+
+    @Test
+    @DisplayName("should keep nothing readable on disk")
+    void shouldEncryptRecords() throws IOException {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        journal.append(Change.token("uuid-secret", "external-secret", 1000L));
+        journal.close();
+
+        for (String name : fileNames()) {
+            String content = new String(Files.readAllBytes(directory.resolve(name)), StandardCharsets.ISO_8859_1);
+            assertThat(content).doesNotContain("secret");
+        }
+    }
+
+    @Test
+    @DisplayName("should stop at a record torn by a crash and keep later journals readable")
+    void shouldSurviveTornRecord() throws IOException {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        journal.append(Change.token("uuid-1", "external-1", 1000L));
+        journal.close();
+        Files.write(directory.resolve("journal-0.log"), new byte[]{0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        SessionJournal restarted = open(KEY);
+        assertThat(replay(restarted)).containsExactly(Change.token("uuid-1", "external-1", 1000L));
+        restarted.append(Change.token("uuid-2", "external-2", 1000L));
+        restarted.close();
+
+        assertThat(replay(open(KEY))).containsExactly(
+                Change.token("uuid-1", "external-1", 1000L),
+                Change.token("uuid-2", "external-2", 1000L));
+    }
+
+    @Test
+    @DisplayName("should read nothing under a different key")
+    void shouldRejectWrongKey() throws IOException {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        journal.append(Change.token("uuid-1", "external", 1000L));
+        journal.close();
+
+        assertThat(replay(open(OTHER_KEY))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should replace older files with a snapshot plus the journal written after it")
+    void shouldCompact() throws IOException {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        journal.append(Change.token("uuid-1", "stale", 1000L));
+        journal.append(Change.token("uuid-1", "current", 1000L));
+
+        long generation = journal.rotate();
+        journal.append(Change.token("uuid-2", "after", 1000L));
+        journal.writeSnapshot(generation, List.of(Change.token("uuid-1", "current", 1000L)));
+        journal.close();
+
+        assertThat(fileNames()).containsExactly("journal-1.log", "snapshot-1.bin");
+        assertThat(replay(open(KEY))).containsExactly(
+                Change.token("uuid-1", "current", 1000L),
+                Change.token("uuid-2", "after", 1000L));
+    }
+
+    @Test
+    @DisplayName("should keep every queued change while syncing concurrently")
+    void shouldSyncWhileAppending() throws Exception {
+        SessionJournal journal = open(KEY);
+        replay(journal);
+        Thread syncer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                journal.sync();
+            }
+        });
+        syncer.start();
+        for (int i = 0; i < 500; i++) {
+            journal.append(Change.token("uuid-" + i, "external-" + i, 1000L));
+            if (i == 250) {
+                journal.rotate();
+            }
+        }
+        journal.close();
+        syncer.interrupt();
+        syncer.join();
+
+        List<Change> changes = replay(open(KEY));
+        assertThat(changes).hasSize(500);
+        assertThat(changes.get(499)).isEqualTo(Change.token("uuid-499", "external-499", 1000L));
+    }
+
+    @Test
+    @DisplayName("should refuse to start without a valid key")
+    void shouldRequireKey() {
+        assertThatThrownBy(() -> open("")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> open("c2hvcnQ=")).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,39 @@
+package com.progress.api.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SseHeartbeat Tests")
+class SseHeartbeatTest {
+
+    @Test
+    @DisplayName("should send comments while waiting and stop when the events complete")
+    void shouldInterleaveComments() {
+        Flux<ServerSentEvent<String>> events = Flux.just(ServerSentEvent.builder("done").event("complete").build())
+                .delaySubscription(Duration.ofMillis(300));
+
+        List<ServerSentEvent<String>> received = SseHeartbeat.wrap(events, Duration.ofMillis(50))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(received).hasSizeGreaterThan(2);
+        assertThat(received.get(0).comment()).isNotNull();
+        assertThat(received.get(received.size() - 1).event()).isEqualTo("complete");
+    }
+
+    @Test
+    @DisplayName("should propagate errors from the wrapped events")
+    void shouldPropagateErrors() {
+        Flux<ServerSentEvent<String>> events = Flux.error(new IllegalStateException("boom"));
+
+        assertThatThrownBy(() -> SseHeartbeat.wrap(events, Duration.ofMillis(50)).blockLast(Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
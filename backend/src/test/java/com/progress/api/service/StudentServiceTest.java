@@ -1,6 +1,7 @@
 package com.progress.api.service;
 
 import com.progress.api.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.*;
@@ -8,16 +9,17 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
-import static org.mockito.Mockito.mock;
 
 @DisplayName("StudentService Tests")
 class StudentServiceTest {
 
     private MockWebServer mockWebServer;
     private StudentService studentService;
-    private ExternalTokenStore externalTokenStore;
+    private InMemoryExternalTokenStore externalTokenStore;
 
     @BeforeEach
     void setUp() throws IOException {
@@ -28,7 +30,7 @@ class StudentServiceTest {
                 .baseUrl(mockWebServer.url("/").toString())
                 .build();
 
-        externalTokenStore = mock(ExternalTokenStore.class);
+        externalTokenStore = new InMemoryExternalTokenStore(100, new SimpleMeterRegistry(), Optional.empty());
         studentService = new StudentService(webClient, externalTokenStore);
     }
 
@@ -175,4 +177,37 @@ class StudentServiceTest {
                     });
         }
     }
+
+    @Nested
+    @DisplayName("Card Ownership")
+    class CardOwnership {
+
+        @Test
+        @DisplayName("should fetch and cache the student's cards on first access")
+        void shouldFetchAndCacheCards() throws InterruptedException {
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody("[{\"id\": 101}, {\"id\": 102}]")
+                    .addHeader("Content-Type", "application/json"));
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody("{\"notes\": []}")
+                    .addHeader("Content-Type", "application/json"));
+
+            Object grades = studentService.getCCGradesSecure("test-uuid", "101", "Bearer external-token").block();
+
+            assertThat(grades).isNotNull();
+            assertThat(externalTokenStore.getAllowedCards("test-uuid")).contains(Set.of("101", "102"));
+            assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/infos/bac/test-uuid/dias");
+        }
+
+        @Test
+        @DisplayName("should deny a card outside the cached set without calling PROGRES")
+        void shouldDenyForeignCardFromCache() {
+            externalTokenStore.storeAllowedCards("test-uuid", Set.of("101"), 60000);
+
+            assertThatThrownBy(() -> studentService.getCCGradesSecure("test-uuid", "999", "Bearer external-token").block())
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.FORBIDDEN));
+            assertThat(mockWebServer.getRequestCount()).isZero();
+        }
+    }
 }
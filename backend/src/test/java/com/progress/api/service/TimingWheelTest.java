@@ -0,0 +1,58 @@
+package com.progress.api.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("TimingWheel Tests")
+class TimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private static List<String> values(List<TimingWheel.Timer<String>> timers) {
+        return timers.stream().map(TimingWheel.Timer::value).toList();
+    }
+
+    @Test
+    @DisplayName("should fire a timer on the first turn at or after its deadline")
+    void shouldFireAtDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, START);
+        wheel.schedule("a", START + 2500);
+
+        assertThat(wheel.advance(START + 2000)).isEmpty();
+        assertThat(values(wheel.advance(START + 3000))).containsExactly("a");
+        assertThat(wheel.advance(START + 10000)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should fire past deadlines on the next turn")
+    void shouldFireOverdueTimers() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, START);
+        wheel.schedule("late", START - 5000);
+
+        assertThat(values(wheel.advance(START))).containsExactly("late");
+    }
+
+    @Test
+    @DisplayName("should cascade far deadlines down the levels without firing early")
+    void shouldCascadeAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, START);
+        long[] delays = {70_000, 4_100_000, 300_000_000, 20_000_000_000L};
+        for (long delay : delays) {
+            wheel.schedule(Long.toString(delay), START + delay);
+        }
+
+        List<String> fired = new ArrayList<>();
+        for (long delay : delays) {
+            fired.addAll(values(wheel.advance(START + delay - 1000)));
+            assertThat(fired).doesNotContain(Long.toString(delay));
+            fired.addAll(values(wheel.advance(START + delay + 1000)));
+            assertThat(fired).contains(Long.toString(delay));
+        }
+        assertThat(fired).hasSize(delays.length);
+    }
+}
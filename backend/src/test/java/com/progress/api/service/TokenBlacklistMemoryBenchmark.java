@@ -0,0 +1,74 @@
+package com.progress.api.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the retained heap and cleanup time of {@link TokenBlacklistService} with the former
+ * {@code ConcurrentHashMap<String, Long>} of whole tokens, at one million revoked tokens spread
+ * over a 30-day refresh lifetime.
+ *
+ * <p>Not run by surefire. Compile the tests, then run with a fixed heap so the numbers are stable:
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -Xms2g -Xmx2g -cp target/test-classes:target/classes:$(cat target/cp.txt) com.progress.api.service.TokenBlacklistMemoryBenchmark
+ * </pre>
+ */
+public class TokenBlacklistMemoryBenchmark {
+
+    private static final int TOKENS = 1_000_000;
+    // length of a signed access token from JwtTokenProvider
+    private static final int TOKEN_LENGTH = 190;
+    private static final long LIFETIME_MS = 30L * 24 * 3600 * 1000;
+
+    public static void main(String[] args) {
+        long now = System.currentTimeMillis();
+
+        long baseline = usedHeap();
+        Map<String, Long> legacy = new ConcurrentHashMap<>();
+        for (int i = 0; i < TOKENS; i++) {
+            legacy.put(randomToken(), expiry(now));
+        }
+        long legacyBytes = usedHeap() - baseline;
+        long start = System.nanoTime();
+        legacy.entrySet().removeIf(entry -> entry.getValue() < now);
+        long legacyCleanupMicros = (System.nanoTime() - start) / 1000;
+        System.out.printf("ConcurrentHashMap<String, Long>: %,d bytes (%d per token), cleanup scan %,d us%n",
+                legacyBytes, legacyBytes / TOKENS, legacyCleanupMicros);
+        legacy = null;
+
+        baseline = usedHeap();
+        TokenBlacklistService bucketed = new TokenBlacklistService(900000L);
+        for (int i = 0; i < TOKENS; i++) {
+            bucketed.blacklist(randomToken(), expiry(now));
+        }
+        long bucketedBytes = usedHeap() - baseline;
+        start = System.nanoTime();
+        bucketed.cleanupExpiredTokens();
+        long bucketedCleanupMicros = (System.nanoTime() - start) / 1000;
+        System.out.printf("TokenBlacklistService:           %,d bytes (%d per token), cleanup %,d us (%d tokens)%n",
+                bucketedBytes, bucketedBytes / TOKENS, bucketedCleanupMicros, bucketed.size());
+    }
+
+    private static long expiry(long now) {
+        return now + ThreadLocalRandom.current().nextLong(LIFETIME_MS);
+    }
+
+    private static String randomToken() {
+        byte[] bytes = new byte[TOKEN_LENGTH * 3 / 4];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,80 @@
+package com.progress.api.service;
+
+import org.junit.jupiter.api.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("TokenBlacklistService Tests")
+class TokenBlacklistServiceTest {
+
+    private static final long BUCKET_WIDTH = 60000L;
+
+    private TokenBlacklistService blacklist;
+
+    @BeforeEach
+    void setUp() {
+        blacklist = new TokenBlacklistService(BUCKET_WIDTH);
+    }
+
+    @Nested
+    @DisplayName("Lookup")
+    class Lookup {
+
+        @Test
+        @DisplayName("should find a revoked token with or without its expiry")
+        void shouldFindRevokedToken() {
+            long expiresAt = System.currentTimeMillis() + 3600000L;
+            blacklist.blacklist("header.payload.signature", expiresAt);
+
+            assertThat(blacklist.isBlacklisted("header.payload.signature")).isTrue();
+            assertThat(blacklist.isBlacklisted("header.payload.signature", expiresAt)).isTrue();
+            assertThat(blacklist.isBlacklisted("header.payload.other")).isFalse();
+            assertThat(blacklist.isBlacklisted("header.payload.other", expiresAt)).isFalse();
+        }
+
+        @Test
+        @DisplayName("should ignore null and blank tokens")
+        void shouldIgnoreBlankTokens() {
+            blacklist.blacklist(null, System.currentTimeMillis());
+            blacklist.blacklist(" ", System.currentTimeMillis());
+
+            assertThat(blacklist.size()).isZero();
+            assertThat(blacklist.isBlacklisted(null)).isFalse();
+        }
+
+        @Test
+        @DisplayName("should remove and clear revoked tokens")
+        void shouldRemoveTokens() {
+            long expiresAt = System.currentTimeMillis() + 3600000L;
+            blacklist.blacklist("a", expiresAt);
+            blacklist.blacklist("b", expiresAt + BUCKET_WIDTH * 10);
+
+            blacklist.remove("a");
+            assertThat(blacklist.isBlacklisted("a")).isFalse();
+            assertThat(blacklist.size()).isEqualTo(1);
+
+            blacklist.clear();
+            assertThat(blacklist.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Cleanup")
+    class Cleanup {
+
+        @Test
+        @DisplayName("should drop only buckets whose tokens have all expired")
+        void shouldDropExpiredBuckets() {
+            long now = System.currentTimeMillis();
+            blacklist.blacklist("expired-1", now - BUCKET_WIDTH * 3);
+            blacklist.blacklist("expired-2", now - BUCKET_WIDTH * 2);
+            blacklist.blacklist("live", now + BUCKET_WIDTH * 2);
+
+            blacklist.cleanupExpiredTokens();
+
+            assertThat(blacklist.size()).isEqualTo(1);
+            assertThat(blacklist.isBlacklisted("expired-1")).isFalse();
+            assertThat(blacklist.isBlacklisted("live")).isTrue();
+        }
+    }
+}